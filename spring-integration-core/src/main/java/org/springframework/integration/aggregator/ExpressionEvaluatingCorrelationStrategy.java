@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
@@ -33,6 +34,7 @@ import org.springframework.util.Assert;
  * @author Dave Syer
  * @author Oleg Zhurakousky
  * @author Artem Bilan
+ * @author Gary Russell
  */
 public class ExpressionEvaluatingCorrelationStrategy implements CorrelationStrategy, BeanFactoryAware {
 
@@ -51,6 +53,26 @@ public class ExpressionEvaluatingCorrelationStrategy implements CorrelationStrat
 		this.processor = new ExpressionEvaluatingMessageProcessor<Object>(expression, Object.class);
 	}
 
+	/**
+	 * Set the SpEL compiler mode for the correlation expression.
+	 * @param compilerMode the compiler mode.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingMessageProcessor#setCompilerMode(SpelCompilerMode)
+	 */
+	public void setCompilerMode(SpelCompilerMode compilerMode) {
+		this.processor.setCompilerMode(compilerMode);
+	}
+
+	/**
+	 * Set messages used to warm up (and compile) the expression during initialization.
+	 * @param warmUpMessages the messages.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingMessageProcessor#setWarmUpMessages(Message...)
+	 */
+	public void setWarmUpMessages(Message<?>... warmUpMessages) {
+		this.processor.setWarmUpMessages(warmUpMessages);
+	}
+
 	public Object getCorrelationKey(Message<?> message) {
 		return this.processor.processMessage(message);
 	}
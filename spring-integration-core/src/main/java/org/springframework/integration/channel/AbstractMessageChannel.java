@@ -30,6 +30,7 @@ import org.springframework.core.OrderComparator;
 import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.history.MessageHistorySampler;
 import org.springframework.integration.support.converter.DefaultDatatypeChannelMessageConverter;
 import org.springframework.integration.support.management.AbstractMessageChannelMetrics;
 import org.springframework.integration.support.management.ConfigurableMetricsAware;
@@ -72,6 +73,8 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 
 	private volatile boolean shouldTrack = false;
 
+	private volatile MessageHistorySampler historySampler;
+
 	private volatile Class<?>[] datatypes = new Class<?>[0];
 
 	private volatile String fullChannelName;
@@ -100,6 +103,11 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 		this.shouldTrack = shouldTrack;
 	}
 
+	@Override
+	public void setHistorySampler(MessageHistorySampler historySampler) {
+		this.historySampler = historySampler;
+	}
+
 	@Override
 	public void setCountsEnabled(boolean countsEnabled) {
 		this.countsEnabled = countsEnabled;
@@ -406,7 +414,7 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 	public boolean send(Message<?> message, long timeout) {
 		Assert.notNull(message, "message must not be null");
 		Assert.notNull(message.getPayload(), "message payload must not be null");
-		if (this.shouldTrack) {
+		if (this.shouldTrack && MessageHistorySampler.shouldWrite(this.historySampler, message, false)) {
 			message = MessageHistory.write(message, this, this.getMessageBuilderFactory());
 		}
 
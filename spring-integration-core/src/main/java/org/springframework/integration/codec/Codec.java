@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,14 +16,17 @@
 
 package org.springframework.integration.codec;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Interface for classes that perform both encode (serialize) and decode (deserialize) on multiple classes.
  *
  * @author David Turanski
+ * @author Gary Russell
  * @since 4.2
  */
 public interface Codec {
@@ -63,4 +66,45 @@ public interface Codec {
 	 */
 	<T> T decode(byte[] bytes, Class<T> type) throws IOException;
 
+	/**
+	 * Encode an object into a {@link ByteBuffer}, starting at its current position;
+	 * the position is advanced past the encoded object. The default implementation
+	 * copies the result of {@link #encode(Object)}; implementations should override to
+	 * avoid the intermediate array.
+	 * @param object the object to encode
+	 * @param buffer the buffer
+	 * @throws IOException if the operation fails
+	 * @throws java.nio.BufferOverflowException if the buffer has insufficient space
+	 * @since 5.0
+	 */
+	default void encode(Object object, ByteBuffer buffer) throws IOException {
+		buffer.put(encode(object));
+	}
+
+	/**
+	 * Decode an object of a given type from a {@link ByteBuffer}, starting at its
+	 * current position. The default implementation consumes all the remaining bytes;
+	 * implementations that can determine the end of the encoded object should override
+	 * to leave the position just after it, and to avoid copying the buffer.
+	 * @param buffer the buffer containing the encoded object
+	 * @param type the object's class
+	 * @param <T> the object's type
+	 * @return the object
+	 * @throws IOException if the operation fails
+	 * @since 5.0
+	 */
+	default <T> T decode(ByteBuffer buffer, Class<T> type) throws IOException {
+		if (buffer.hasArray()) {
+			InputStream inputStream = new ByteArrayInputStream(buffer.array(),
+					buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			buffer.position(buffer.limit());
+			return decode(inputStream, type);
+		}
+		else {
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			return decode(bytes, type);
+		}
+	}
+
 }
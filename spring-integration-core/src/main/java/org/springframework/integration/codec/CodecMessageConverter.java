@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.codec;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.support.AbstractIntegrationMessageBuilder;
@@ -28,7 +29,12 @@ import org.springframework.messaging.support.GenericMessage;
 import org.springframework.util.Assert;
 
 /**
- * A {@link MessageConverter} that delegates to a {@link Codec} to convert
+ * A {@link MessageConverter} that delegates to a {@link Codec} to convert.
+ * <p>
+ * Since 5.0, {@link #toMessage(Object, MessageHeaders)} accepts {@link ByteBuffer}
+ * payloads (e.g. obtained from a Netty {@code ByteBuf#nioBuffer()}) as well as
+ * {@code byte[]}; they are decoded in place, without an intermediate copy, when the
+ * codec supports it.
  *
  * @author Gary Russell
  * @since 4.2
@@ -57,9 +63,12 @@ public class CodecMessageConverter extends IntegrationObjectSupport implements M
 
 	@Override
 	public Message<?> toMessage(Object payload, MessageHeaders headers) {
-		Assert.isInstanceOf(byte[].class, payload);
+		Assert.isTrue(payload instanceof byte[] || payload instanceof ByteBuffer,
+				"payload must be a byte[] or a ByteBuffer");
 		try {
-			Message<?> decoded = (Message<?>) this.codec.decode((byte[]) payload, this.messageClass);
+			Message<?> decoded = payload instanceof ByteBuffer
+					? (Message<?>) this.codec.decode((ByteBuffer) payload, this.messageClass)
+					: (Message<?>) this.codec.decode((byte[]) payload, this.messageClass);
 			if (headers != null) {
 				AbstractIntegrationMessageBuilder<?> builder = getMessageBuilderFactory().fromMessage(decoded);
 				builder.copyHeaders(headers);
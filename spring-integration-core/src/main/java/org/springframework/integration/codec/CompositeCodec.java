@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,6 +30,7 @@ import org.springframework.util.Assert;
 /**
  * A Codec that can delegate to one out of many Codecs, each mapped to a class.
  * @author David Turanski
+ * @author Gary Russell
  * @since 4.2
  */
 public class CompositeCodec implements Codec {
@@ -85,11 +87,37 @@ public class CompositeCodec implements Codec {
 		}
 	}
 
+	@Override
+	public void encode(Object object, ByteBuffer buffer) throws IOException {
+		Assert.notNull(object, "cannot encode a null object");
+		Assert.notNull(buffer, "'buffer' cannot be null");
+		Codec codec = findDelegate(object.getClass());
+		if (codec != null) {
+			codec.encode(object, buffer);
+		}
+		else {
+			this.defaultCodec.encode(object, buffer);
+		}
+	}
+
 	@Override
 	public <T> T decode(byte[] bytes, Class<T> type) throws IOException {
 		return decode(new ByteArrayInputStream(bytes), type);
 	}
 
+	@Override
+	public <T> T decode(ByteBuffer buffer, Class<T> type) throws IOException {
+		Assert.notNull(buffer, "'buffer' cannot be null");
+		Assert.notNull(type, "'type' cannot be null");
+		Codec codec = findDelegate(type);
+		if (codec != null) {
+			return codec.decode(buffer, type);
+		}
+		else {
+			return this.defaultCodec.decode(buffer, type);
+		}
+	}
+
 	private Codec findDelegate(Class<?> type) {
 		if (this.delegates == null) {
 			return null;
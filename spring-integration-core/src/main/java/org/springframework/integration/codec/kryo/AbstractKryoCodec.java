@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,10 @@
 
 package org.springframework.integration.codec.kryo;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.springframework.integration.codec.Codec;
 import org.springframework.util.Assert;
@@ -33,14 +33,31 @@ import com.esotericsoftware.kryo.pool.KryoPool;
 /**
  * Base class for {@link Codec}s using {@link Kryo}.
  * Manages pooled {@link Kryo} instances.
+ * <p>
+ * Since 5.0, the {@link Output} and stream {@link Input} buffers are also pooled (one
+ * per thread) so that encoding and decoding does not allocate a new buffer for each
+ * object; buffers that grow beyond {@link #setMaxPooledBufferSize(int)} are discarded
+ * after use. The {@link ByteBuffer} variants encode and decode without an intermediate
+ * {@code byte[]}.
  *
  * @author David Turanski
+ * @author Gary Russell
  * @since 4.2
  */
 public abstract class AbstractKryoCodec implements Codec {
 
+	private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private static final int DEFAULT_MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
 	protected final KryoPool pool;
 
+	private final ThreadLocal<Output> outputs = new ThreadLocal<>();
+
+	private final ThreadLocal<Input> inputs = new ThreadLocal<>();
+
+	private volatile int maxPooledBufferSize = DEFAULT_MAX_POOLED_BUFFER_SIZE;
+
 	protected AbstractKryoCodec() {
 		KryoFactory factory = () -> {
 			Kryo kryo = new Kryo();
@@ -52,16 +69,71 @@ public abstract class AbstractKryoCodec implements Codec {
 		this.pool = new KryoPool.Builder(factory).softReferences().build();
 	}
 
+	/**
+	 * Set the maximum size of a buffer that is retained for reuse by the current
+	 * thread; larger buffers (grown to encode large objects) are discarded after use.
+	 * Default 64k.
+	 * @param maxPooledBufferSize the size.
+	 * @since 5.0
+	 */
+	public void setMaxPooledBufferSize(int maxPooledBufferSize) {
+		Assert.isTrue(maxPooledBufferSize > 0, "'maxPooledBufferSize' must be greater than 0");
+		this.maxPooledBufferSize = maxPooledBufferSize;
+	}
+
 	@Override
 	public void encode(final Object object, OutputStream outputStream) throws IOException {
 		Assert.notNull(object, "cannot encode a null object");
 		Assert.notNull(outputStream, "'outputSteam' cannot be null");
-		final Output output = (outputStream instanceof Output ? (Output) outputStream : new Output(outputStream));
-		this.pool.run(kryo -> {
-			doEncode(kryo, object, output);
-			return Void.class;
-		});
-		output.close();
+		if (outputStream instanceof Output) {
+			final Output output = (Output) outputStream;
+			this.pool.run(kryo -> {
+				doEncode(kryo, object, output);
+				return Void.class;
+			});
+			output.close();
+		}
+		else {
+			final Output output = borrowOutput();
+			try {
+				output.setOutputStream(outputStream);
+				this.pool.run(kryo -> {
+					doEncode(kryo, object, output);
+					return Void.class;
+				});
+				output.close();
+			}
+			finally {
+				returnOutput(output);
+			}
+		}
+	}
+
+	@Override
+	public byte[] encode(Object object) throws IOException {
+		Assert.notNull(object, "cannot encode a null object");
+		Output output = borrowOutput();
+		try {
+			encodeToBuffer(object, output);
+			return output.toBytes();
+		}
+		finally {
+			returnOutput(output);
+		}
+	}
+
+	@Override
+	public void encode(Object object, ByteBuffer buffer) throws IOException {
+		Assert.notNull(object, "cannot encode a null object");
+		Assert.notNull(buffer, "'buffer' cannot be null");
+		Output output = borrowOutput();
+		try {
+			encodeToBuffer(object, output);
+			buffer.put(output.getBuffer(), 0, output.position());
+		}
+		finally {
+			returnOutput(output);
+		}
 	}
 
 	@Override
@@ -80,24 +152,96 @@ public abstract class AbstractKryoCodec implements Codec {
 	public <T> T decode(InputStream inputStream, final Class<T> type) throws IOException {
 		Assert.notNull(inputStream, "'inputStream' cannot be null");
 		Assert.notNull(type, "'type' cannot be null");
-		final Input input = (inputStream instanceof Input ? (Input) inputStream : new Input(inputStream));
-		T result = null;
-		try {
-			result = this.pool.run(kryo -> doDecode(kryo, input, type));
+		if (inputStream instanceof Input) {
+			final Input input = (Input) inputStream;
+			try {
+				return this.pool.run(kryo -> doDecode(kryo, input, type));
+			}
+			finally {
+				input.close();
+			}
 		}
-		finally {
-			input.close();
+		else {
+			final Input input = borrowInput();
+			try {
+				input.setInputStream(inputStream);
+				return this.pool.run(kryo -> doDecode(kryo, input, type));
+			}
+			finally {
+				input.close();
+				returnInput(input);
+			}
 		}
-		return result;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>Heap buffers are decoded in place; the position is left just after the
+	 * decoded object in all cases.
+	 */
 	@Override
-	public byte[] encode(Object object) throws IOException {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		encode(object, bos);
-		byte[] bytes = bos.toByteArray();
-		bos.close();
-		return bytes;
+	public <T> T decode(ByteBuffer buffer, final Class<T> type) throws IOException {
+		Assert.notNull(buffer, "'buffer' cannot be null");
+		Assert.notNull(type, "'type' cannot be null");
+		if (buffer.hasArray()) {
+			int offset = buffer.arrayOffset() + buffer.position();
+			final Input input = new Input(buffer.array(), offset, buffer.remaining());
+			T result = this.pool.run(kryo -> doDecode(kryo, input, type));
+			buffer.position(buffer.position() + input.position() - offset);
+			return result;
+		}
+		else {
+			final Input input = borrowInput();
+			try {
+				input.setInputStream(new ByteBufferInputStream(buffer));
+				T result = this.pool.run(kryo -> doDecode(kryo, input, type));
+				// give back the bytes read ahead into the Input's buffer
+				buffer.position(buffer.position() - (input.limit() - input.position()));
+				return result;
+			}
+			finally {
+				returnInput(input);
+			}
+		}
+	}
+
+	private void encodeToBuffer(final Object object, final Output output) {
+		this.pool.run(kryo -> {
+			doEncode(kryo, object, output);
+			return Void.class;
+		});
+	}
+
+	private Output borrowOutput() {
+		Output output = this.outputs.get();
+		if (output == null) {
+			return new Output(DEFAULT_BUFFER_SIZE, -1);
+		}
+		this.outputs.set(null); // in case of reentrant use
+		return output;
+	}
+
+	private void returnOutput(Output output) {
+		if (output.getBuffer().length <= this.maxPooledBufferSize) {
+			output.setOutputStream(null);
+			this.outputs.set(output);
+		}
+	}
+
+	private Input borrowInput() {
+		Input input = this.inputs.get();
+		if (input == null) {
+			return new Input(DEFAULT_BUFFER_SIZE);
+		}
+		this.inputs.set(null);
+		return input;
+	}
+
+	private void returnInput(Input input) {
+		if (input.getBuffer().length <= this.maxPooledBufferSize) {
+			input.setInputStream(null);
+			this.inputs.set(input);
+		}
 	}
 
 	/**
@@ -125,4 +269,34 @@ public abstract class AbstractKryoCodec implements Codec {
 	 */
 	protected abstract void configureKryoInstance(Kryo kryo);
 
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (!this.buffer.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(length, this.buffer.remaining());
+			this.buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return this.buffer.remaining();
+		}
+
+	}
+
 }
@@ -77,6 +77,13 @@ public final class IntegrationProperties {
 	 */
 	public static final String ENDPOINTS_NO_AUTO_STARTUP = INTEGRATION_PROPERTIES_PREFIX + "endpoints.noAutoStartup";
 
+	/**
+	 * Specifies the default {@link org.springframework.expression.spel.SpelCompilerMode} for
+	 * {@link org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor}s
+	 * (expression-based routers, transformers, filters etc.); {@code OFF} by default.
+	 */
+	public static final String SPEL_COMPILER_MODE = INTEGRATION_PROPERTIES_PREFIX + "spel.compilerMode";
+
 
 	private static Properties defaults;
 
@@ -21,6 +21,7 @@ import org.springframework.core.AttributeAccessor;
 import org.springframework.integration.core.MessageProducer;
 import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.history.MessageHistorySampler;
 import org.springframework.integration.support.DefaultErrorMessageStrategy;
 import org.springframework.integration.support.ErrorMessageStrategy;
 import org.springframework.integration.support.ErrorMessageUtils;
@@ -57,6 +58,8 @@ public abstract class MessageProducerSupport extends AbstractEndpoint implements
 
 	private volatile boolean shouldTrack = false;
 
+	private volatile MessageHistorySampler historySampler;
+
 	protected MessageProducerSupport() {
 		this.setPhase(Integer.MAX_VALUE / 2);
 	}
@@ -133,6 +136,11 @@ public abstract class MessageProducerSupport extends AbstractEndpoint implements
 		this.shouldTrack = shouldTrack;
 	}
 
+	@Override
+	public void setHistorySampler(MessageHistorySampler historySampler) {
+		this.historySampler = historySampler;
+	}
+
 	/**
 	 * Set an {@link ErrorMessageStrategy} to use to build an error message when a exception occurs.
 	 * Default is the {@link DefaultErrorMessageStrategy}.
@@ -181,7 +189,7 @@ public abstract class MessageProducerSupport extends AbstractEndpoint implements
 		if (message == null) {
 			throw new MessagingException("cannot send a null message");
 		}
-		if (this.shouldTrack) {
+		if (this.shouldTrack && MessageHistorySampler.shouldWrite(this.historySampler, message, true)) {
 			message = MessageHistory.write(message, this, this.getMessageBuilderFactory());
 		}
 		try {
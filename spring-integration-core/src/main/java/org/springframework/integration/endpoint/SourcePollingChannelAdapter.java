@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,6 +32,7 @@ import org.springframework.integration.context.ExpressionCapable;
 import org.springframework.integration.core.MessageSource;
 import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.history.MessageHistorySampler;
 import org.springframework.integration.support.context.NamedComponent;
 import org.springframework.integration.support.management.TrackableComponent;
 import org.springframework.integration.transaction.IntegrationResourceHolder;
@@ -67,6 +68,8 @@ public class SourcePollingChannelAdapter extends AbstractPollingEndpoint
 
 	private volatile boolean shouldTrack;
 
+	private volatile MessageHistorySampler historySampler;
+
 	/**
 	 * Specify the source to be polled for Messages.
 	 *
@@ -126,6 +129,11 @@ public class SourcePollingChannelAdapter extends AbstractPollingEndpoint
 		this.shouldTrack = shouldTrack;
 	}
 
+	@Override
+	public void setHistorySampler(MessageHistorySampler historySampler) {
+		this.historySampler = historySampler;
+	}
+
 	@Override
 	public String getComponentType() {
 		return (this.source instanceof NamedComponent) ?
@@ -209,7 +217,7 @@ public class SourcePollingChannelAdapter extends AbstractPollingEndpoint
 
 	@Override
 	protected void handleMessage(Message<?> message) {
-		if (this.shouldTrack) {
+		if (this.shouldTrack && MessageHistorySampler.shouldWrite(this.historySampler, message, true)) {
 			message = MessageHistory.write(message, this, this.getMessageBuilderFactory());
 		}
 		try {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,10 +18,12 @@ package org.springframework.integration.filter;
 
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.core.MessageSelector;
 import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
+import org.springframework.messaging.Message;
 
 /**
  * A {@link MessageSelector} implementation that evaluates a SpEL expression.
@@ -29,6 +31,7 @@ import org.springframework.integration.handler.ExpressionEvaluatingMessageProces
  *
  * @author Mark Fisher
  * @author Liujiong
+ * @author Gary Russell
  * @since 2.0
  */
 public class ExpressionEvaluatingSelector extends AbstractMessageProcessingSelector {
@@ -38,15 +41,43 @@ public class ExpressionEvaluatingSelector extends AbstractMessageProcessingSelec
 
 	private final String expressionString;
 
+	private final ExpressionEvaluatingMessageProcessor<Boolean> processor;
+
 	public ExpressionEvaluatingSelector(String expressionString) {
-		super(new ExpressionEvaluatingMessageProcessor<Boolean>(expressionParser.parseExpression(expressionString),
-				Boolean.class));
-		this.expressionString = expressionString;
+		this(new ExpressionEvaluatingMessageProcessor<Boolean>(expressionParser.parseExpression(expressionString),
+				Boolean.class), expressionString);
 	}
 
 	public ExpressionEvaluatingSelector(Expression expression) {
-		super(new ExpressionEvaluatingMessageProcessor<Boolean>(expression, Boolean.class));
-		this.expressionString = expression.getExpressionString();
+		this(new ExpressionEvaluatingMessageProcessor<Boolean>(expression, Boolean.class),
+				expression.getExpressionString());
+	}
+
+	private ExpressionEvaluatingSelector(ExpressionEvaluatingMessageProcessor<Boolean> processor,
+			String expressionString) {
+		super(processor);
+		this.processor = processor;
+		this.expressionString = expressionString;
+	}
+
+	/**
+	 * Set the SpEL compiler mode for the selector expression.
+	 * @param compilerMode the compiler mode.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingMessageProcessor#setCompilerMode(SpelCompilerMode)
+	 */
+	public void setCompilerMode(SpelCompilerMode compilerMode) {
+		this.processor.setCompilerMode(compilerMode);
+	}
+
+	/**
+	 * Set messages used to warm up (and compile) the expression during initialization.
+	 * @param warmUpMessages the messages.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingMessageProcessor#setWarmUpMessages(Message...)
+	 */
+	public void setWarmUpMessages(Message<?>... warmUpMessages) {
+		this.processor.setWarmUpMessages(warmUpMessages);
 	}
 
 	public String getExpressionString() {
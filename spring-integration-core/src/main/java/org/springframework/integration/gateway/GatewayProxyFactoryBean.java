@@ -59,6 +59,7 @@ import org.springframework.integration.annotation.GatewayHeader;
 import org.springframework.integration.endpoint.AbstractEndpoint;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.expression.ValueExpression;
+import org.springframework.integration.history.MessageHistorySampler;
 import org.springframework.integration.support.DefaultMessageBuilderFactory;
 import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
 import org.springframework.integration.support.management.TrackableComponent;
@@ -118,6 +119,8 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint
 
 	private volatile boolean shouldTrack = false;
 
+	private volatile MessageHistorySampler historySampler;
+
 	private volatile TypeConverter typeConverter = new SimpleTypeConverter();
 
 	private volatile ClassLoader beanClassLoader = ClassUtils.getDefaultClassLoader();
@@ -317,6 +320,16 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint
 		}
 	}
 
+	@Override
+	public void setHistorySampler(MessageHistorySampler historySampler) {
+		this.historySampler = historySampler;
+		if (!CollectionUtils.isEmpty(this.gatewayMap)) {
+			for (MethodInvocationGateway gateway : this.gatewayMap.values()) {
+				gateway.setHistorySampler(historySampler);
+			}
+		}
+	}
+
 	/**
 	 * Set the executor for use when the gateway method returns
 	 * {@link java.util.concurrent.Future} or {@link org.springframework.util.concurrent.ListenableFuture}.
@@ -723,6 +736,7 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint
 			gateway.setReceiveTimeoutExpression(replyTimeout);
 		}
 		gateway.setShouldTrack(this.shouldTrack);
+		gateway.setHistorySampler(this.historySampler);
 		gateway.afterPropertiesSet();
 		return gateway;
 	}
@@ -31,6 +31,7 @@ import org.springframework.integration.endpoint.PollingConsumer;
 import org.springframework.integration.endpoint.ReactiveStreamsConsumer;
 import org.springframework.integration.handler.BridgeHandler;
 import org.springframework.integration.history.HistoryWritingMessagePostProcessor;
+import org.springframework.integration.history.MessageHistorySampler;
 import org.springframework.integration.mapping.InboundMessageMapper;
 import org.springframework.integration.mapping.MessageMappingException;
 import org.springframework.integration.mapping.OutboundMessageMapper;
@@ -255,6 +256,11 @@ public abstract class MessagingGatewaySupport extends AbstractEndpoint
 		this.historyWritingPostProcessor.setShouldTrack(shouldTrack);
 	}
 
+	@Override
+	public void setHistorySampler(MessageHistorySampler historySampler) {
+		this.historyWritingPostProcessor.setHistorySampler(historySampler);
+	}
+
 	@Override
 	public int getMessageCount() {
 		return (int) this.messageCount.get();
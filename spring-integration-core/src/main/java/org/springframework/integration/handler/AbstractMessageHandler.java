@@ -22,6 +22,7 @@ import org.springframework.core.Ordered;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.context.Orderable;
 import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.history.MessageHistorySampler;
 import org.springframework.integration.support.management.AbstractMessageHandlerMetrics;
 import org.springframework.integration.support.management.ConfigurableMetricsAware;
 import org.springframework.integration.support.management.DefaultMessageHandlerMetrics;
@@ -57,6 +58,8 @@ public abstract class AbstractMessageHandler extends IntegrationObjectSupport im
 
 	private volatile boolean shouldTrack = false;
 
+	private volatile MessageHistorySampler historySampler;
+
 	private volatile int order = Ordered.LOWEST_PRECEDENCE;
 
 	private volatile AbstractMessageHandlerMetrics handlerMetrics = new DefaultMessageHandlerMetrics();
@@ -102,6 +105,11 @@ public abstract class AbstractMessageHandler extends IntegrationObjectSupport im
 		this.shouldTrack = shouldTrack;
 	}
 
+	@Override
+	public void setHistorySampler(MessageHistorySampler historySampler) {
+		this.historySampler = historySampler;
+	}
+
 	@Override
 	public void configureMetrics(AbstractMessageHandlerMetrics metrics) {
 		Assert.notNull(metrics, "'metrics' must not be null");
@@ -132,7 +140,7 @@ public abstract class AbstractMessageHandler extends IntegrationObjectSupport im
 		boolean countsEnabled = this.countsEnabled;
 		AbstractMessageHandlerMetrics handlerMetrics = this.handlerMetrics;
 		try {
-			if (this.shouldTrack) {
+			if (this.shouldTrack && MessageHistorySampler.shouldWrite(this.historySampler, message, false)) {
 				message = MessageHistory.write(message, this, this.getMessageBuilderFactory());
 			}
 			if (countsEnabled) {
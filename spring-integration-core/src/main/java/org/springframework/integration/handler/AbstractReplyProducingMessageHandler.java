@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,8 @@ import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
 
+import reactor.core.publisher.Mono;
+
 /**
  * Base class for MessageHandlers that are capable of producing replies.
  *
@@ -52,6 +54,8 @@ public abstract class AbstractReplyProducingMessageHandler extends AbstractMessa
 	/**
 	 * Flag whether a reply is required. If true an incoming message MUST result in a reply message being sent.
 	 * If false an incoming message MAY result in a reply message being sent. Default is false.
+	 * In {@link #setAsync(boolean) async} mode, a {@link Mono} reply that completes empty
+	 * fails with a {@link ReplyRequiredException}.
 	 * @param requiresReply true if a reply is required.
 	 */
 	public void setRequiresReply(boolean requiresReply) {
@@ -112,17 +116,29 @@ public abstract class AbstractReplyProducingMessageHandler extends AbstractMessa
 			result = doInvokeAdvisedRequestHandler(message);
 		}
 		if (result != null) {
+			if (this.requiresReply && isAsync() && result instanceof Mono) {
+				result = requireMonoReply((Mono<?>) result, message);
+			}
 			sendOutputs(result, message);
 		}
 		else if (this.requiresReply && !isAsync()) {
-			throw new ReplyRequiredException(message, "No reply produced by handler '" +
-					getComponentName() + "', and its 'requiresReply' property is set to true.");
+			throw replyRequired(message);
 		}
 		else if (!isAsync() && logger.isDebugEnabled()) {
 			logger.debug("handler '" + this + "' produced no reply for request Message: " + message);
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	private Mono<?> requireMonoReply(Mono<?> reply, Message<?> message) {
+		return ((Mono<Object>) reply).switchIfEmpty(Mono.defer(() -> Mono.error(replyRequired(message))));
+	}
+
+	private ReplyRequiredException replyRequired(Message<?> message) {
+		return new ReplyRequiredException(message, "No reply produced by handler '" +
+				getComponentName() + "', and its 'requiresReply' property is set to true.");
+	}
+
 	protected Object doInvokeAdvisedRequestHandler(Message<?> message) {
 		return this.advisedRequestHandler.handleRequestMessage(message);
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,14 +16,34 @@
 
 package org.springframework.integration.handler;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.context.IntegrationProperties;
+import org.springframework.integration.support.management.IntegrationManagementConfigurer;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 /**
  * A {@link MessageProcessor} implementation that evaluates a SpEL expression
  * with the Message itself as the root object within the evaluation context.
+ * <p>
+ * When a {@link SpelCompilerMode} other than {@code OFF} is in effect (see
+ * {@link #setCompilerMode(SpelCompilerMode)} and
+ * {@link IntegrationProperties#SPEL_COMPILER_MODE}), the expression is re-parsed
+ * with a compiling parser (retaining the original parser's configuration); optional warm-up messages allow the expression to be
+ * compiled during initialization instead of on the message flow.
  *
  * @author Mark Fisher
  * @author Artem Bilan
@@ -32,10 +52,22 @@ import org.springframework.util.Assert;
  */
 public class ExpressionEvaluatingMessageProcessor<T> extends AbstractMessageProcessor<T> {
 
-	private final Expression expression;
+	private final Expression originalExpression;
 
 	private final Class<T> expectedType;
 
+	private volatile Expression expression;
+
+	private volatile SpelCompilerMode compilerMode;
+
+	private volatile SpelCompilerMode globalCompilerMode = SpelCompilerMode.OFF;
+
+	private volatile List<Message<?>> warmUpMessages = Collections.emptyList();
+
+	private volatile boolean prepared;
+
+	private volatile boolean compiled;
+
 
 	/**
 	 * Create an {@link ExpressionEvaluatingMessageProcessor} for the given expression.
@@ -54,6 +86,7 @@ public class ExpressionEvaluatingMessageProcessor<T> extends AbstractMessageProc
 	public ExpressionEvaluatingMessageProcessor(Expression expression, Class<T> expectedType) {
 		Assert.notNull(expression, "The expression must not be null");
 		try {
+			this.originalExpression = expression;
 			this.expression = expression;
 			this.expectedType = expectedType;
 		}
@@ -69,7 +102,8 @@ public class ExpressionEvaluatingMessageProcessor<T> extends AbstractMessageProc
 	 */
 	public ExpressionEvaluatingMessageProcessor(String expression) {
 		try {
-			this.expression = EXPRESSION_PARSER.parseExpression(expression);
+			this.originalExpression = EXPRESSION_PARSER.parseExpression(expression);
+			this.expression = this.originalExpression;
 			this.expectedType = null;
 		}
 		catch (ParseException e) {
@@ -86,7 +120,8 @@ public class ExpressionEvaluatingMessageProcessor<T> extends AbstractMessageProc
 	 */
 	public ExpressionEvaluatingMessageProcessor(String expression, Class<T> expectedType) {
 		try {
-			this.expression = EXPRESSION_PARSER.parseExpression(expression);
+			this.originalExpression = EXPRESSION_PARSER.parseExpression(expression);
+			this.expression = this.originalExpression;
 			this.expectedType = expectedType;
 		}
 		catch (ParseException e) {
@@ -94,6 +129,54 @@ public class ExpressionEvaluatingMessageProcessor<T> extends AbstractMessageProc
 		}
 	}
 
+	/**
+	 * Set the {@link SpelCompilerMode} for the expression, overriding the
+	 * {@link IntegrationProperties#SPEL_COMPILER_MODE} global property.
+	 * Only expressions parsed by a {@link SpelExpressionParser} can be compiled; the
+	 * expression is re-parsed with the same parser configuration (e.g. auto-grow
+	 * settings), apart from the compiler mode.
+	 * @param compilerMode the compiler mode.
+	 * @since 5.0
+	 */
+	public void setCompilerMode(SpelCompilerMode compilerMode) {
+		this.compilerMode = compilerMode;
+		this.prepared = false;
+	}
+
+	/**
+	 * Set representative messages to evaluate the expression with during
+	 * initialization so that it can be compiled before the first real message
+	 * arrives. Only applies when compilation is enabled; evaluation failures are
+	 * ignored. Since the expression is actually evaluated, it should be free of
+	 * side effects when warm-up messages are provided.
+	 * @param warmUpMessages the messages.
+	 * @since 5.0
+	 */
+	public void setWarmUpMessages(Message<?>... warmUpMessages) {
+		Assert.noNullElements(warmUpMessages, "'warmUpMessages' must not contain null elements");
+		this.warmUpMessages = Arrays.asList(warmUpMessages);
+		this.prepared = false;
+	}
+
+	/**
+	 * Return true if the expression was compiled to bytecode during warm-up.
+	 * @return true if compiled.
+	 * @since 5.0
+	 */
+	public boolean isCompiled() {
+		return this.compiled;
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) {
+		super.setBeanFactory(beanFactory);
+		if (beanFactory != null) {
+			this.globalCompilerMode = globalCompilerMode(beanFactory);
+			this.prepared = false;
+			prepare();
+		}
+	}
+
 	/**
 	 * Processes the Message by evaluating the expression with that Message as the
 	 * root object. The expression evaluation result Object will be returned.
@@ -102,12 +185,99 @@ public class ExpressionEvaluatingMessageProcessor<T> extends AbstractMessageProc
 	 */
 	@Override
 	public T processMessage(Message<?> message) {
+		if (!this.prepared) {
+			prepare();
+		}
 		return evaluateExpression(this.expression, message, this.expectedType);
 	}
 
+	private synchronized void prepare() {
+		if (this.prepared) {
+			return;
+		}
+		this.compiled = false;
+		SpelCompilerMode mode = this.compilerMode != null ? this.compilerMode : this.globalCompilerMode;
+		if (SpelCompilerMode.OFF.equals(mode) || !(this.originalExpression instanceof SpelExpression)) {
+			this.expression = this.originalExpression;
+		}
+		else {
+			this.expression = compilingParser((SpelExpression) this.originalExpression, mode)
+					.parseExpression(this.originalExpression.getExpressionString());
+			if (!this.warmUpMessages.isEmpty()) {
+				warmUp((SpelExpression) this.expression);
+			}
+		}
+		this.prepared = true;
+	}
+
+	private static SpelCompilerMode globalCompilerMode(BeanFactory beanFactory) {
+		String mode = IntegrationContextUtils.getIntegrationProperties(beanFactory)
+				.getProperty(IntegrationProperties.SPEL_COMPILER_MODE);
+		if (StringUtils.hasText(mode)) {
+			try {
+				return SpelCompilerMode.valueOf(mode.trim().toUpperCase());
+			}
+			catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Invalid value '" + mode + "' for property '"
+						+ IntegrationProperties.SPEL_COMPILER_MODE + "'; must be one of "
+						+ Arrays.toString(SpelCompilerMode.values()), e);
+			}
+		}
+		return SpelCompilerMode.OFF;
+	}
+
+	/**
+	 * Create a parser with the original expression's configuration and the compiler mode.
+	 */
+	private SpelExpressionParser compilingParser(SpelExpression spelExpression, SpelCompilerMode mode) {
+		SpelParserConfiguration original = null;
+		try {
+			original = (SpelParserConfiguration) new DirectFieldAccessor(spelExpression)
+					.getPropertyValue("configuration");
+		}
+		catch (Exception e) {
+			// no-op
+		}
+		if (original == null) {
+			if (this.logger.isDebugEnabled()) {
+				this.logger.debug("Could not determine the parser configuration of [" +
+						spelExpression.getExpressionString() + "]; using the default configuration");
+			}
+			return new SpelExpressionParser(new SpelParserConfiguration(mode, null));
+		}
+		return new SpelExpressionParser(new SpelParserConfiguration(mode, original.getCompilerClassLoader(),
+				original.isAutoGrowNullReferences(), original.isAutoGrowCollections(),
+				original.getMaximumAutoGrowSize()));
+	}
+
+	private void warmUp(SpelExpression spelExpression) {
+		for (Message<?> message : this.warmUpMessages) {
+			try {
+				evaluateExpression(spelExpression, message, this.expectedType);
+			}
+			catch (Exception e) {
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Warm-up evaluation failed for " + this, e);
+				}
+			}
+		}
+		this.compiled = spelExpression.compileExpression();
+		if (!this.compiled) {
+			this.logger.warn("Expression [" + spelExpression.getExpressionString()
+					+ "] could not be compiled after warm-up; it will be interpreted");
+			BeanFactory beanFactory = getBeanFactory();
+			if (beanFactory != null
+					&& beanFactory.containsBean(IntegrationManagementConfigurer.MANAGEMENT_CONFIGURER_NAME)) {
+				beanFactory.getBean(IntegrationManagementConfigurer.MANAGEMENT_CONFIGURER_NAME,
+						IntegrationManagementConfigurer.class)
+						.registerUncompiledExpression(spelExpression.getExpressionString());
+			}
+		}
+	}
+
 	@Override
 	public String toString() {
-		return "ExpressionEvaluatingMessageProcessor for: [" + this.expression.getExpressionString() + "]";
+		return "ExpressionEvaluatingMessageProcessor for: [" + this.originalExpression.getExpressionString() + "]";
 	}
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,6 +33,8 @@ public class HistoryWritingMessagePostProcessor implements MessagePostProcessor
 
 	private volatile boolean shouldTrack;
 
+	private volatile MessageHistorySampler historySampler;
+
 	private volatile MessageBuilderFactory messageBuilderFactory = new DefaultMessageBuilderFactory();
 
 	public HistoryWritingMessagePostProcessor() {
@@ -56,9 +58,20 @@ public class HistoryWritingMessagePostProcessor implements MessagePostProcessor
 		this.shouldTrack = shouldTrack;
 	}
 
+	/**
+	 * Set a {@link MessageHistorySampler} consulted for messages that do not yet carry
+	 * a history.
+	 * @param historySampler the sampler; null to track all messages.
+	 * @since 5.0
+	 */
+	public void setHistorySampler(MessageHistorySampler historySampler) {
+		this.historySampler = historySampler;
+	}
+
 	@Override
 	public Message<?> postProcessMessage(Message<?> message) {
-		if (this.shouldTrack && this.trackableComponent != null) {
+		if (this.shouldTrack && this.trackableComponent != null
+				&& MessageHistorySampler.shouldWrite(this.historySampler, message, true)) {
 			return MessageHistory.write(message, this.trackableComponent, this.messageBuilderFactory);
 		}
 		return message;
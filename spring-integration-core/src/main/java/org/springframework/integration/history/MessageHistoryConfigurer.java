@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -57,6 +57,8 @@ public class MessageHistoryConfigurer implements SmartLifecycle, BeanFactoryAwar
 
 	private volatile boolean componentNamePatternsExplicitlySet;
 
+	private volatile MessageHistorySampler historySampler;
+
 	private final Set<String> currentlyTrackedComponentNames = new HashSet<String>();
 
 	private volatile BeanFactory beanFactory;
@@ -134,6 +136,55 @@ public class MessageHistoryConfigurer implements SmartLifecycle, BeanFactoryAwar
 		}
 	}
 
+	/**
+	 * Set a {@link MessageHistorySampler} so that only a sample of the messages is
+	 * tracked. The decision is made once, by the inbound endpoint of a flow; downstream
+	 * channels and handlers only append to the history of sampled messages, so
+	 * unsampled messages do not pay the history-writing cost. Messages sent directly to a
+	 * channel, rather than through a gateway or an inbound endpoint, are therefore not
+	 * tracked. Default null: all messages are tracked. Cannot be changed if {@link #isRunning()}; invoke {@link #stop()} first.
+	 * @param historySampler the sampler.
+	 * @since 5.0
+	 * @see RatioMessageHistorySampler
+	 * @see RateLimitingMessageHistorySampler
+	 */
+	public void setHistorySampler(MessageHistorySampler historySampler) {
+		Assert.state(!this.running, "'historySampler' cannot be changed without invoking stop() first");
+		this.historySampler = historySampler;
+	}
+
+	/**
+	 * Track one message in every {@code ratio} entering a flow; a convenience for
+	 * {@link #setHistorySampler(MessageHistorySampler)} with a
+	 * {@link RatioMessageHistorySampler}; 0 disables sampling. Cannot be changed if
+	 * {@link #isRunning()}; invoke {@link #stop()} first.
+	 * @param ratio the ratio.
+	 * @since 5.0
+	 */
+	@ManagedAttribute(description = "track one message in N (0 for all); must invoke stop() before changing.")
+	public void setSampleRatio(int ratio) {
+		setHistorySampler(ratio > 0 ? new RatioMessageHistorySampler(ratio) : null);
+	}
+
+	/**
+	 * Track at most {@code samplesPerSecond} messages entering flows per second; a
+	 * convenience for {@link #setHistorySampler(MessageHistorySampler)} with a
+	 * {@link RateLimitingMessageHistorySampler}; 0 disables sampling. Cannot be changed
+	 * if {@link #isRunning()}; invoke {@link #stop()} first.
+	 * @param samplesPerSecond the limit.
+	 * @since 5.0
+	 */
+	@ManagedAttribute(description = "track at most N messages per second (0 for all); "
+			+ "must invoke stop() before changing.")
+	public void setSamplesPerSecond(int samplesPerSecond) {
+		setHistorySampler(samplesPerSecond > 0 ? new RateLimitingMessageHistorySampler(samplesPerSecond) : null);
+	}
+
+	@ManagedAttribute
+	public String getHistorySamplerString() {
+		return this.historySampler != null ? this.historySampler.toString() : "none";
+	}
+
 	@Override
 	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
 		this.beanFactory = beanFactory;
@@ -173,6 +224,7 @@ public class MessageHistoryConfigurer implements SmartLifecycle, BeanFactoryAwar
 					boolean shouldTrack = PatternMatchUtils.simpleMatch(this.componentNamePatterns, componentName);
 					component.setShouldTrack(shouldTrack);
 					if (shouldTrack) {
+						component.setHistorySampler(this.historySampler);
 						this.currentlyTrackedComponentNames.add(componentName);
 						if (this.logger.isInfoEnabled()) {
 							this.logger.info("Enabling MessageHistory tracking for component '" + componentName + "'");
@@ -193,6 +245,7 @@ public class MessageHistoryConfigurer implements SmartLifecycle, BeanFactoryAwar
 					String componentName = component.getComponentName();
 					if (this.currentlyTrackedComponentNames.contains(componentName)) {
 						component.setShouldTrack(false);
+						component.setHistorySampler(null);
 						if (this.logger.isInfoEnabled()) {
 							this.logger.info("Disabling MessageHistory tracking for component '" + componentName + "'");
 						}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.history;
+
+import org.springframework.messaging.Message;
+
+/**
+ * Strategy to decide, once per flow, whether a message should carry a
+ * {@link MessageHistory}. The decision is made by the inbound endpoint (message
+ * producer, polling adapter or gateway) that first sees the message; a sampled message
+ * carries the {@link MessageHistory#HEADER_NAME} header and downstream channels and
+ * handlers only append to the history of messages that already have it. Channels and
+ * handlers never make the decision themselves (an unsampled message carries no marker,
+ * so each of them would sample it again); consequently, messages that application
+ * code sends directly to a channel are not tracked while a sampler is configured - use
+ * a messaging gateway as the entry point of such flows.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+@FunctionalInterface
+public interface MessageHistorySampler {
+
+	/**
+	 * Return true if history should be written for this message.
+	 * @param message the message entering the flow.
+	 * @return true to sample.
+	 */
+	boolean sample(Message<?> message);
+
+	/**
+	 * Return true if a component configured with this sampler should write history for
+	 * the message: the message is already sampled (it carries a history header) or, if
+	 * the component is an inbound endpoint, the sampler selects it.
+	 * @param sampler the sampler; null means every message is tracked.
+	 * @param message the message.
+	 * @param inbound true if the component is a flow inbound endpoint.
+	 * @return true to write the history.
+	 */
+	static boolean shouldWrite(MessageHistorySampler sampler, Message<?> message, boolean inbound) {
+		return sampler == null
+				|| message.getHeaders().containsKey(MessageHistory.HEADER_NAME)
+				|| (inbound && sampler.sample(message));
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.history;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MessageHistorySampler} that selects at most {@code n} messages per second.
+ * The budget is tracked in one second windows with a pair of atomic counters, so
+ * the check is non-blocking.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class RateLimitingMessageHistorySampler implements MessageHistorySampler {
+
+	private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+
+	private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+	private final AtomicLong sampledInWindow = new AtomicLong();
+
+	private final int samplesPerSecond;
+
+	/**
+	 * Construct an instance that samples at most {@code samplesPerSecond} messages per
+	 * second.
+	 * @param samplesPerSecond the limit.
+	 */
+	public RateLimitingMessageHistorySampler(int samplesPerSecond) {
+		Assert.isTrue(samplesPerSecond > 0, "'samplesPerSecond' must be greater than 0");
+		this.samplesPerSecond = samplesPerSecond;
+	}
+
+	public int getSamplesPerSecond() {
+		return this.samplesPerSecond;
+	}
+
+	@Override
+	public boolean sample(Message<?> message) {
+		long now = System.nanoTime();
+		long start = this.windowStart.get();
+		if (now - start >= WINDOW && this.windowStart.compareAndSet(start, now)) {
+			this.sampledInWindow.set(0);
+		}
+		return this.sampledInWindow.incrementAndGet() <= this.samplesPerSecond;
+	}
+
+	@Override
+	public String toString() {
+		return "RateLimitingMessageHistorySampler [samplesPerSecond=" + this.samplesPerSecond + "]";
+	}
+
+}
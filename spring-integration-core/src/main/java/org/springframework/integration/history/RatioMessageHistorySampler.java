@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.history;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MessageHistorySampler} that selects one message in every {@code n}.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class RatioMessageHistorySampler implements MessageHistorySampler {
+
+	private final AtomicLong counter = new AtomicLong();
+
+	private final int ratio;
+
+	/**
+	 * Construct an instance that samples one message in {@code ratio}.
+	 * @param ratio the ratio; 1 samples every message.
+	 */
+	public RatioMessageHistorySampler(int ratio) {
+		Assert.isTrue(ratio > 0, "'ratio' must be greater than 0");
+		this.ratio = ratio;
+	}
+
+	public int getRatio() {
+		return this.ratio;
+	}
+
+	@Override
+	public boolean sample(Message<?> message) {
+		return this.ratio == 1 || this.counter.getAndIncrement() % this.ratio == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "RatioMessageHistorySampler [ratio=" + this.ratio + "]";
+	}
+
+}
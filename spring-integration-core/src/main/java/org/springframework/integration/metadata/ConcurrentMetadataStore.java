@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2016 the original author or authors.
+ * Copyright 2014-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,8 @@
 
 package org.springframework.integration.metadata;
 
-
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Supports atomic updates to values in the store.
@@ -47,4 +48,26 @@ public interface ConcurrentMetadataStore extends MetadataStore {
 	 */
 	boolean replace(String key, String oldValue, String newValue);
 
+	/**
+	 * Insert each of the entries into the store if its key is not already present.
+	 * Each individual insert is atomic, the batch as a whole is not.
+	 * The default implementation invokes {@link #putIfAbsent(String, String)} for each
+	 * entry; implementations should override it to reduce the number of round trips
+	 * to the underlying store.
+	 * @param entries the keys and values to insert.
+	 * @return the keys that were already present, mapped to their current values;
+	 * an empty map if all the entries were inserted.
+	 * @since 5.0
+	 */
+	default Map<String, String> putAllIfAbsent(Map<String, String> entries) {
+		Map<String, String> existing = new LinkedHashMap<>();
+		entries.forEach((key, value) -> {
+			String oldValue = putIfAbsent(key, value);
+			if (oldValue != null) {
+				existing.put(key, oldValue);
+			}
+		});
+		return existing;
+	}
+
 }
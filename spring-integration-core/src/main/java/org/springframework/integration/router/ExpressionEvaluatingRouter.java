@@ -17,7 +17,9 @@
 package org.springframework.integration.router;
 
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
+import org.springframework.messaging.Message;
 
 /**
  * A Message Router implementation that evaluates the specified SpEL
@@ -30,6 +32,8 @@ import org.springframework.integration.handler.ExpressionEvaluatingMessageProces
  */
 public class ExpressionEvaluatingRouter extends AbstractMessageProcessingRouter {
 
+	private final ExpressionEvaluatingMessageProcessor<Object> processor;
+
 	/**
 	 * Construct an instance by parsing the supplied expression string.
 	 * @param expressionString the expression string.
@@ -43,8 +47,33 @@ public class ExpressionEvaluatingRouter extends AbstractMessageProcessingRouter
 	 * @param expression the expression.
 	 */
 	public ExpressionEvaluatingRouter(Expression expression) {
-		super(new ExpressionEvaluatingMessageProcessor<Object>(expression));
+		this(expression, new ExpressionEvaluatingMessageProcessor<Object>(expression));
+	}
+
+	private ExpressionEvaluatingRouter(Expression expression, ExpressionEvaluatingMessageProcessor<Object> processor) {
+		super(processor);
+		this.processor = processor;
 		setPrimaryExpression(expression);
 	}
 
+	/**
+	 * Set the SpEL compiler mode for the routing expression.
+	 * @param compilerMode the compiler mode.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingMessageProcessor#setCompilerMode(SpelCompilerMode)
+	 */
+	public void setCompilerMode(SpelCompilerMode compilerMode) {
+		this.processor.setCompilerMode(compilerMode);
+	}
+
+	/**
+	 * Set messages used to warm up (and compile) the expression during initialization.
+	 * @param warmUpMessages the messages.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingMessageProcessor#setWarmUpMessages(Message...)
+	 */
+	public void setWarmUpMessages(Message<?>... warmUpMessages) {
+		this.processor.setWarmUpMessages(warmUpMessages);
+	}
+
 }
@@ -0,0 +1,570 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.core.NestedIOException;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.support.MutableMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.PatternMatchUtils;
+
+/**
+ * A compact binary {@link Serializer}/{@link Deserializer} for {@link Message}s, an
+ * alternative to Java serialization for the message stores
+ * ({@code JdbcMessageStore}, {@code JdbcChannelMessageStore}, {@code RedisMessageStore}
+ * etc).
+ * <p>
+ * Java serialization writes class descriptors for the message, its headers and each
+ * header value; this format writes a one byte tag for each value instead. Well-known
+ * header names are encoded as a single byte (dictionary encoding) and lengths and
+ * numbers use variable length integers. {@code String}, {@code byte[]}, {@link UUID},
+ * boxed primitive and {@code null} values are written natively; other payloads are
+ * encoded by the {@link #setPayloadCodec(Codec) payload codec}, if provided, and all
+ * remaining values fall back to Java serialization. As with Java serialization of
+ * {@link MessageHeaders}, header values that are not {@link Serializable} are dropped.
+ * Classes that are Java deserialized or decoded by the payload codec are subject to the
+ * {@link #setWhiteListPatterns(String...) white list}, if any; the JDBC message stores add their own white list patterns to this
+ * serializer when it is their deserializer.
+ * <p>
+ * {@link GenericMessage}, {@link MutableMessage} and {@link MessageHolder} (used by the
+ * key/value stores) instances are encoded compactly, retaining the message id and
+ * timestamp; any other object (e.g. {@code ErrorMessage} or a group metadata) is
+ * Java serialized, so the same instance can be used as a store's only serializer.
+ * <p>
+ * The type parameter allows the instance to be used where a
+ * {@code Serializer<Message<?>>} or a {@code Serializer<Object>} is expected.
+ *
+ * @param <T> the type exposed by the serializer.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class CompactMessageSerializer<T> implements Serializer<T>, Deserializer<T>, BeanClassLoaderAware {
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int KIND_OBJECT = 0;
+
+	private static final int KIND_GENERIC_MESSAGE = 1;
+
+	private static final int KIND_MUTABLE_MESSAGE = 2;
+
+	private static final int KIND_MESSAGE_HOLDER = 3;
+
+	/**
+	 * Lengths up to this size are allocated up front; larger (possibly corrupt) lengths
+	 * are read incrementally, so that a truncated stream fails before allocating them.
+	 */
+	private static final int MAX_PREALLOCATED_LENGTH = 8192;
+
+	private static final int TYPE_NULL = 0;
+
+	private static final int TYPE_STRING = 1;
+
+	private static final int TYPE_INT = 2;
+
+	private static final int TYPE_LONG = 3;
+
+	private static final int TYPE_TRUE = 4;
+
+	private static final int TYPE_FALSE = 5;
+
+	private static final int TYPE_UUID = 6;
+
+	private static final int TYPE_BYTES = 7;
+
+	private static final int TYPE_DOUBLE = 8;
+
+	private static final int TYPE_CODEC = 9;
+
+	private static final int TYPE_SERIALIZED = 10;
+
+	/**
+	 * The header dictionary; the index (plus one) is the encoded name. Entries must
+	 * only ever be appended, to remain compatible with stored data.
+	 */
+	private static final String[] HEADER_DICTIONARY = {
+			IntegrationMessageHeaderAccessor.CORRELATION_ID,
+			IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER,
+			IntegrationMessageHeaderAccessor.SEQUENCE_SIZE,
+			IntegrationMessageHeaderAccessor.SEQUENCE_DETAILS,
+			IntegrationMessageHeaderAccessor.PRIORITY,
+			IntegrationMessageHeaderAccessor.EXPIRATION_DATE,
+			IntegrationMessageHeaderAccessor.ROUTING_SLIP,
+			IntegrationMessageHeaderAccessor.DUPLICATE_MESSAGE,
+			MessageHeaders.REPLY_CHANNEL,
+			MessageHeaders.ERROR_CHANNEL,
+			MessageHeaders.CONTENT_TYPE,
+			MessageHistory.HEADER_NAME
+	};
+
+	private static final Map<String, Integer> HEADER_CODES;
+
+	static {
+		Map<String, Integer> codes = new HashMap<>();
+		for (int i = 0; i < HEADER_DICTIONARY.length; i++) {
+			codes.put(HEADER_DICTIONARY[i], i + 1);
+		}
+		HEADER_CODES = Collections.unmodifiableMap(codes);
+	}
+
+	private volatile Codec payloadCodec;
+
+	private volatile ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+
+	private final Set<String> whiteListPatterns = new LinkedHashSet<>();
+
+	/**
+	 * Set a {@link Codec} for payloads that are not natively supported (anything
+	 * other than {@code String}, {@code byte[]}, {@link UUID} and boxed primitives);
+	 * by default such payloads are Java serialized.
+	 * @param payloadCodec the codec.
+	 */
+	public void setPayloadCodec(Codec payloadCodec) {
+		this.payloadCodec = payloadCodec;
+	}
+
+	/**
+	 * Set simple patterns for the packages/classes that are allowed to be Java
+	 * deserialized (values and objects that are not encoded natively or by the payload
+	 * codec) or decoded by the payload codec. The patterns are applied in order until a match is found. A class can be
+	 * fully qualified or a wildcard '*' is allowed at the beginning or end of the class
+	 * name. Examples: {@code com.foo.*}, {@code *.MyClass}. By default, all classes are
+	 * allowed.
+	 * @param whiteListPatterns the patterns.
+	 * @see org.springframework.integration.support.converter.WhiteListDeserializingConverter
+	 */
+	public void setWhiteListPatterns(String... whiteListPatterns) {
+		synchronized (this.whiteListPatterns) {
+			this.whiteListPatterns.clear();
+			Collections.addAll(this.whiteListPatterns, whiteListPatterns);
+		}
+	}
+
+	/**
+	 * Add package/class patterns to the white list.
+	 * @param patterns the patterns to add.
+	 * @see #setWhiteListPatterns(String...)
+	 */
+	public void addWhiteListPatterns(String... patterns) {
+		synchronized (this.whiteListPatterns) {
+			Collections.addAll(this.whiteListPatterns, patterns);
+		}
+	}
+
+	@Override
+	public void setBeanClassLoader(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	@Override
+	public void serialize(T object, OutputStream outputStream) throws IOException {
+		outputStream.write(FORMAT_VERSION);
+		if (object instanceof MessageHolder) {
+			MessageHolder holder = (MessageHolder) object;
+			if (isCompactMessage(holder.getMessage())) {
+				outputStream.write(KIND_MESSAGE_HOLDER);
+				writeVarLong(outputStream, holder.getMessageMetadata().getTimestamp());
+				outputStream.write(messageKind(holder.getMessage()));
+				writeMessage(holder.getMessage(), outputStream);
+				return;
+			}
+		}
+		else if (isCompactMessage(object)) {
+			outputStream.write(messageKind(object));
+			writeMessage((Message<?>) object, outputStream);
+			return;
+		}
+		outputStream.write(KIND_OBJECT);
+		javaSerialize(object, outputStream);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T deserialize(InputStream inputStream) throws IOException {
+		int version = readByte(inputStream);
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported format version: " + version);
+		}
+		int kind = readByte(inputStream);
+		switch (kind) {
+			case KIND_GENERIC_MESSAGE:
+			case KIND_MUTABLE_MESSAGE:
+				return (T) readMessage(inputStream, kind == KIND_MUTABLE_MESSAGE);
+			case KIND_MESSAGE_HOLDER:
+				long timestamp = readVarLong(inputStream);
+				boolean mutable = readByte(inputStream) == KIND_MUTABLE_MESSAGE;
+				MessageHolder holder = new MessageHolder(readMessage(inputStream, mutable));
+				holder.setTimestamp(timestamp);
+				return (T) holder;
+			case KIND_OBJECT:
+				return (T) javaDeserialize(inputStream);
+			default:
+				throw new IOException("Unknown kind: " + kind);
+		}
+	}
+
+	private static boolean isCompactMessage(Object object) {
+		return object != null
+				&& (object.getClass().equals(GenericMessage.class) || object.getClass().equals(MutableMessage.class))
+				&& ((Message<?>) object).getHeaders().getId() != null;
+	}
+
+	private static int messageKind(Object message) {
+		return message instanceof MutableMessage ? KIND_MUTABLE_MESSAGE : KIND_GENERIC_MESSAGE;
+	}
+
+	private void writeMessage(Message<?> message, OutputStream out) throws IOException {
+		MessageHeaders headers = message.getHeaders();
+		UUID id = headers.getId();
+		Long timestamp = headers.getTimestamp();
+		writeLong(out, id.getMostSignificantBits());
+		writeLong(out, id.getLeastSignificantBits());
+		writeVarLong(out, timestamp != null ? timestamp + 1 : 0L); // 0 means no timestamp
+		List<Map.Entry<String, Object>> entries = new ArrayList<>(headers.size());
+		for (Map.Entry<String, Object> entry : headers.entrySet()) {
+			String name = entry.getKey();
+			Object value = entry.getValue();
+			if (!MessageHeaders.ID.equals(name) && !MessageHeaders.TIMESTAMP.equals(name)
+					&& (value == null || value instanceof Serializable)) {
+				entries.add(entry);
+			}
+		}
+		writeVarInt(out, entries.size());
+		for (Map.Entry<String, Object> entry : entries) {
+			Integer code = HEADER_CODES.get(entry.getKey());
+			if (code != null) {
+				out.write(code);
+			}
+			else {
+				out.write(0);
+				writeString(out, entry.getKey());
+			}
+			writeValue(out, entry.getValue(), false);
+		}
+		writeValue(out, message.getPayload(), true);
+	}
+
+	private Message<?> readMessage(InputStream in, boolean mutable) throws IOException {
+		UUID id = new UUID(readLong(in), readLong(in));
+		long timestamp = readVarLong(in) - 1; // -1 means no timestamp
+		int count = readLength(in);
+		Map<String, Object> headers = new HashMap<>(Math.min(count, 16) + 2);
+		for (int i = 0; i < count; i++) {
+			int code = readByte(in);
+			String name;
+			if (code == 0) {
+				name = readString(in);
+			}
+			else if (code <= HEADER_DICTIONARY.length) {
+				name = HEADER_DICTIONARY[code - 1];
+			}
+			else {
+				throw new IOException("Unknown header code: " + code);
+			}
+			headers.put(name, readValue(in));
+		}
+		Object payload = readValue(in);
+		if (mutable) {
+			headers.put(MessageHeaders.ID, id);
+			headers.put(MessageHeaders.TIMESTAMP, timestamp);
+			return new MutableMessage<>(payload, headers);
+		}
+		else {
+			return new GenericMessage<>(payload, new StoredMessageHeaders(headers, id, timestamp));
+		}
+	}
+
+	private void writeValue(OutputStream out, Object value, boolean payload) throws IOException {
+		if (value == null) {
+			out.write(TYPE_NULL);
+		}
+		else if (value instanceof String) {
+			out.write(TYPE_STRING);
+			writeString(out, (String) value);
+		}
+		else if (value instanceof Integer) {
+			out.write(TYPE_INT);
+			writeVarLong(out, zigZag((Integer) value));
+		}
+		else if (value instanceof Long) {
+			out.write(TYPE_LONG);
+			writeVarLong(out, zigZag((Long) value));
+		}
+		else if (value instanceof Boolean) {
+			out.write((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+		}
+		else if (value instanceof UUID) {
+			out.write(TYPE_UUID);
+			writeLong(out, ((UUID) value).getMostSignificantBits());
+			writeLong(out, ((UUID) value).getLeastSignificantBits());
+		}
+		else if (value instanceof byte[]) {
+			out.write(TYPE_BYTES);
+			writeBytes(out, (byte[]) value);
+		}
+		else if (value instanceof Double) {
+			out.write(TYPE_DOUBLE);
+			writeLong(out, Double.doubleToRawLongBits((Double) value));
+		}
+		else if (payload && this.payloadCodec != null) {
+			out.write(TYPE_CODEC);
+			writeString(out, value.getClass().getName());
+			writeBytes(out, this.payloadCodec.encode(value));
+		}
+		else {
+			out.write(TYPE_SERIALIZED);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			javaSerialize(value, bytes);
+			writeBytes(out, bytes.toByteArray());
+		}
+	}
+
+	private Object readValue(InputStream in) throws IOException {
+		int type = readByte(in);
+		switch (type) {
+			case TYPE_NULL:
+				return null;
+			case TYPE_STRING:
+				return readString(in);
+			case TYPE_INT:
+				return (int) unZigZag(readVarLong(in));
+			case TYPE_LONG:
+				return unZigZag(readVarLong(in));
+			case TYPE_TRUE:
+				return Boolean.TRUE;
+			case TYPE_FALSE:
+				return Boolean.FALSE;
+			case TYPE_UUID:
+				return new UUID(readLong(in), readLong(in));
+			case TYPE_BYTES:
+				return readBytes(in);
+			case TYPE_DOUBLE:
+				return Double.longBitsToDouble(readLong(in));
+			case TYPE_CODEC:
+				String className = readString(in);
+				if (this.payloadCodec == null) {
+					throw new IOException("No payloadCodec configured to decode a " + className);
+				}
+				Class<?> payloadType;
+				try {
+					payloadType = ClassUtils.forName(className, this.classLoader);
+				}
+				catch (ClassNotFoundException e) {
+					throw new NestedIOException("Failed to resolve payload type", e);
+				}
+				checkWhiteList(payloadType);
+				return this.payloadCodec.decode(readBytes(in), payloadType);
+			case TYPE_SERIALIZED:
+				return javaDeserialize(new ByteArrayInputStream(readBytes(in)));
+			default:
+				throw new IOException("Unknown value type: " + type);
+		}
+	}
+
+	private static void javaSerialize(Object object, OutputStream out) throws IOException {
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(out);
+		objectOutputStream.writeObject(object);
+		objectOutputStream.flush();
+	}
+
+	private Object javaDeserialize(InputStream in) throws IOException {
+		ObjectInputStream objectInputStream = new ConfigurableObjectInputStream(in, this.classLoader) {
+
+			@Override
+			protected Class<?> resolveClass(ObjectStreamClass classDesc) throws IOException, ClassNotFoundException {
+				Class<?> clazz = super.resolveClass(classDesc);
+				checkWhiteList(clazz);
+				return clazz;
+			}
+
+		};
+		try {
+			return objectInputStream.readObject();
+		}
+		catch (ClassNotFoundException e) {
+			throw new NestedIOException("Failed to deserialize object type", e);
+		}
+	}
+
+	private void checkWhiteList(Class<?> clazz) {
+		if (clazz.isArray() || clazz.isPrimitive() || clazz.equals(String.class)
+				|| Number.class.isAssignableFrom(clazz)) {
+			return;
+		}
+		synchronized (this.whiteListPatterns) {
+			if (this.whiteListPatterns.isEmpty()) {
+				return;
+			}
+			String className = clazz.getName();
+			for (String pattern : this.whiteListPatterns) {
+				if (PatternMatchUtils.simpleMatch(pattern, className)) {
+					return;
+				}
+			}
+		}
+		throw new SecurityException("Attempt to deserialize unauthorized " + clazz);
+	}
+
+	private static void writeString(OutputStream out, String string) throws IOException {
+		writeBytes(out, string.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String readString(InputStream in) throws IOException {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+
+	private static void writeBytes(OutputStream out, byte[] bytes) throws IOException {
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(InputStream in) throws IOException {
+		int length = readLength(in);
+		if (length <= MAX_PREALLOCATED_LENGTH) {
+			byte[] bytes = new byte[length];
+			readFully(in, bytes, length);
+			return bytes;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(MAX_PREALLOCATED_LENGTH);
+		byte[] chunk = new byte[MAX_PREALLOCATED_LENGTH];
+		int remaining = length;
+		while (remaining > 0) {
+			int n = Math.min(remaining, chunk.length);
+			readFully(in, chunk, n);
+			out.write(chunk, 0, n);
+			remaining -= n;
+		}
+		return out.toByteArray();
+	}
+
+	private static void readFully(InputStream in, byte[] bytes, int length) throws IOException {
+		int offset = 0;
+		while (offset < length) {
+			int n = in.read(bytes, offset, length - offset);
+			if (n < 0) {
+				throw new EOFException();
+			}
+			offset += n;
+		}
+	}
+
+	private static int readLength(InputStream in) throws IOException {
+		long length = readVarLong(in);
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new IOException("Invalid length: " + length);
+		}
+		return (int) length;
+	}
+
+	private static void writeLong(OutputStream out, long value) throws IOException {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			out.write((int) (value >>> shift));
+		}
+	}
+
+	private static long readLong(InputStream in) throws IOException {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | readByte(in);
+		}
+		return value;
+	}
+
+	private static void writeVarInt(OutputStream out, int value) throws IOException {
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	private static void writeVarLong(OutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarLong(InputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte(in);
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static int readByte(InputStream in) throws IOException {
+		int b = in.read();
+		if (b < 0) {
+			throw new EOFException();
+		}
+		return b;
+	}
+
+	/**
+	 * {@link MessageHeaders} restored with the original id and timestamp.
+	 */
+	private static final class StoredMessageHeaders extends MessageHeaders {
+
+		private static final long serialVersionUID = 1L;
+
+		StoredMessageHeaders(Map<String, Object> headers, UUID id, Long timestamp) {
+			super(headers, id, timestamp);
+		}
+
+	}
+
+}
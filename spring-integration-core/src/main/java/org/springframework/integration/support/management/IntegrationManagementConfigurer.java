@@ -20,6 +20,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -59,6 +61,8 @@ public class IntegrationManagementConfigurer implements SmartInitializingSinglet
 
 	private final Map<String, MessageSourceMetrics> sourcesByName = new HashMap<String, MessageSourceMetrics>();
 
+	private final Set<String> uncompiledExpressions = ConcurrentHashMap.newKeySet();
+
 	private ApplicationContext applicationContext;
 
 	private String beanName;
@@ -350,4 +354,24 @@ public class IntegrationManagementConfigurer implements SmartInitializingSinglet
 		return null;
 	}
 
+	/**
+	 * Record an expression that was configured for SpEL compilation but could not
+	 * be compiled; it continues to be evaluated in interpreted mode.
+	 * @param description a description of the expression and its owner.
+	 * @since 5.0
+	 */
+	public void registerUncompiledExpression(String description) {
+		this.uncompiledExpressions.add(description);
+	}
+
+	/**
+	 * Return the expressions that were configured for SpEL compilation but could
+	 * not be compiled after warm-up.
+	 * @return the expression descriptions.
+	 * @since 5.0
+	 */
+	public String[] getUncompiledExpressions() {
+		return this.uncompiledExpressions.toArray(new String[0]);
+	}
+
 }
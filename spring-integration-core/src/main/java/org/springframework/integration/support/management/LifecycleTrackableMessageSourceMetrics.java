@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.support.management;
 
 import org.springframework.context.Lifecycle;
+import org.springframework.integration.history.MessageHistorySampler;
 import org.springframework.util.Assert;
 
 /**
@@ -52,4 +53,9 @@ public class LifecycleTrackableMessageSourceMetrics extends LifecycleMessageSour
 		this.trackable.setShouldTrack(shouldTrack);
 	}
 
+	@Override
+	public void setHistorySampler(MessageHistorySampler historySampler) {
+		this.trackable.setHistorySampler(historySampler);
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.springframework.integration.support.management;
 
+import org.springframework.integration.history.MessageHistorySampler;
 import org.springframework.integration.support.context.NamedComponent;
 import org.springframework.jmx.export.annotation.ManagedOperation;
 
@@ -30,4 +31,17 @@ public interface TrackableComponent extends NamedComponent {
 	@ManagedOperation
 	void setShouldTrack(boolean shouldTrack);
 
+	/**
+	 * Configure a {@link MessageHistorySampler} so that only sampled messages are
+	 * tracked; inbound endpoints consult the sampler, other components only append to
+	 * messages that already carry a history (so messages sent directly to a channel are
+	 * not tracked). Default implementation ignores the
+	 * sampler, tracking all messages.
+	 * @param historySampler the sampler; null to track all messages.
+	 * @since 5.0
+	 */
+	default void setHistorySampler(MessageHistorySampler historySampler) {
+		// no-op
+	}
+
 }
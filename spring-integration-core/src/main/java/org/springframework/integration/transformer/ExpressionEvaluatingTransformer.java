@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@
 package org.springframework.integration.transformer;
 
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
+import org.springframework.messaging.Message;
 
 /**
  * A Message Transformer implementation that evaluates the specified SpEL
@@ -25,12 +27,40 @@ import org.springframework.integration.handler.ExpressionEvaluatingMessageProces
  * payload of a new Message unless it is itself already a Message.
  *
  * @author Mark Fisher
+ * @author Gary Russell
  * @since 2.0
  */
 public class ExpressionEvaluatingTransformer extends AbstractMessageProcessingTransformer {
 
+	private final ExpressionEvaluatingMessageProcessor<Object> processor;
+
 	public ExpressionEvaluatingTransformer(Expression expression) {
-		super(new ExpressionEvaluatingMessageProcessor<Object>(expression));
+		this(new ExpressionEvaluatingMessageProcessor<Object>(expression));
+	}
+
+	private ExpressionEvaluatingTransformer(ExpressionEvaluatingMessageProcessor<Object> processor) {
+		super(processor);
+		this.processor = processor;
+	}
+
+	/**
+	 * Set the SpEL compiler mode for the transformer expression.
+	 * @param compilerMode the compiler mode.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingMessageProcessor#setCompilerMode(SpelCompilerMode)
+	 */
+	public void setCompilerMode(SpelCompilerMode compilerMode) {
+		this.processor.setCompilerMode(compilerMode);
+	}
+
+	/**
+	 * Set messages used to warm up (and compile) the expression during initialization.
+	 * @param warmUpMessages the messages.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingMessageProcessor#setWarmUpMessages(Message...)
+	 */
+	public void setWarmUpMessages(Message<?>... warmUpMessages) {
+		this.processor.setWarmUpMessages(warmUpMessages);
 	}
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013 the original author or authors.
+ * Copyright 2013-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
@@ -28,6 +29,7 @@ import org.springframework.messaging.Message;
 /**
  * @author Mark Fisher
  * @author Artem Bilan
+ * @author Gary Russell
  * @since 3.0
  */
 public class ExpressionEvaluatingHeaderValueMessageProcessor<T> extends AbstractHeaderValueMessageProcessor<T>
@@ -63,6 +65,26 @@ public class ExpressionEvaluatingHeaderValueMessageProcessor<T> extends Abstract
 		this.targetProcessor = new ExpressionEvaluatingMessageProcessor<T>(expression, expectedType);
 	}
 
+	/**
+	 * Set the SpEL compiler mode for the header value expression.
+	 * @param compilerMode the compiler mode.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingMessageProcessor#setCompilerMode(SpelCompilerMode)
+	 */
+	public void setCompilerMode(SpelCompilerMode compilerMode) {
+		this.targetProcessor.setCompilerMode(compilerMode);
+	}
+
+	/**
+	 * Set messages used to warm up (and compile) the expression during initialization.
+	 * @param warmUpMessages the messages.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingMessageProcessor#setWarmUpMessages(Message...)
+	 */
+	public void setWarmUpMessages(Message<?>... warmUpMessages) {
+		this.targetProcessor.setWarmUpMessages(warmUpMessages);
+	}
+
 	public void setBeanFactory(BeanFactory beanFactory) {
 		this.targetProcessor.setBeanFactory(beanFactory);
 	}
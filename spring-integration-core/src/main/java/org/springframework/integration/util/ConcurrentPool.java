@@ -0,0 +1,525 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link ResizablePool} that can be used instead of {@link SimplePool} when the pool
+ * is heavily contended. Obtaining and releasing items does not lock the pool: idle items
+ * are kept on a non-blocking LIFO stack (so the most recently used - "warmest" - item is
+ * reused first) and are claimed with a compare-and-set of their state; callers only
+ * block when the pool is exhausted, in which case they can be served in arrival order
+ * if the pool is constructed to be {@code fair}.
+ * <p>
+ * Optionally, each thread remembers the last item it released and tries to reclaim it
+ * first ({@link #setThreadAffinity(boolean) threadAffinity}). Idle items can be evicted
+ * after a {@link #setMaxIdleTime(long) maxIdleTime} and items can be retired after a
+ * {@link #setMaxLifetime(long) maxLifetime}; both are checked when an item is obtained
+ * or released and, if {@link #startEviction(TaskScheduler, long) eviction} is started,
+ * periodically in the background, where stale idle items are also removed.
+ * {@link ConcurrentPoolFactory} can be used to configure these options for the
+ * components that create their pool with a factory function.
+ *
+ * @param <T> the pooled item type.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ *
+ */
+public class ConcurrentPool<T> implements ResizablePool<T> {
+
+	private static final int IDLE = 0;
+
+	private static final int IN_USE = 1;
+
+	private static final int RETURNING = 2;
+
+	private static final int REMOVED = 3;
+
+	protected final Log logger = LogFactory.getLog(this.getClass());
+
+	private final Semaphore permits;
+
+	private final AtomicInteger poolSize = new AtomicInteger();
+
+	private final AtomicInteger targetPoolSize = new AtomicInteger();
+
+	private final Deque<Entry<T>> available = new ConcurrentLinkedDeque<Entry<T>>();
+
+	private final Map<T, Entry<T>> allocated = new ConcurrentHashMap<T, Entry<T>>();
+
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	private final AtomicInteger activeCount = new AtomicInteger();
+
+	/*
+	 * Each thread's slot holds the entry it last released (thread affinity); the entry
+	 * references the slot so that the slot can be cleared, from any thread, when the
+	 * entry is claimed by another thread or removed.
+	 */
+	private final ThreadLocal<AtomicReference<Entry<T>>> lastReleased =
+			ThreadLocal.withInitial(AtomicReference::new);
+
+	private final SimplePool.PoolItemCallback<T> callback;
+
+	private volatile long waitTimeout = Long.MAX_VALUE;
+
+	private volatile boolean threadAffinity;
+
+	private volatile boolean validateOnCheckout = true;
+
+	private volatile long maxIdleTime;
+
+	private volatile long maxLifetime;
+
+	private volatile ScheduledFuture<?> evictionTask;
+
+	private TaskScheduler evictionScheduler;
+
+	private long evictionInterval;
+
+	/**
+	 * Create a non-fair ConcurrentPool with a specific limit.
+	 * @param poolSize The maximum number of items the pool supports; 0 or less means
+	 * unlimited.
+	 * @param callback A {@link SimplePool.PoolItemCallback} implementation called during
+	 * various pool operations.
+	 */
+	public ConcurrentPool(int poolSize, SimplePool.PoolItemCallback<T> callback) {
+		this(poolSize, callback, false);
+	}
+
+	/**
+	 * Create a ConcurrentPool with a specific limit.
+	 * @param poolSize The maximum number of items the pool supports; 0 or less means
+	 * unlimited.
+	 * @param callback A {@link SimplePool.PoolItemCallback} implementation called during
+	 * various pool operations.
+	 * @param fair true to grant items to threads waiting on an exhausted pool in
+	 * arrival order.
+	 */
+	public ConcurrentPool(int poolSize, SimplePool.PoolItemCallback<T> callback, boolean fair) {
+		Assert.notNull(callback, "'callback' cannot be null");
+		int size = poolSize <= 0 ? Integer.MAX_VALUE : poolSize;
+		this.permits = new Semaphore(size, fair);
+		this.poolSize.set(size);
+		this.targetPoolSize.set(size);
+		this.callback = callback;
+	}
+
+	/**
+	 * Adjusts the wait timeout - the time for which getItem() will wait if no idle
+	 * entries are available.
+	 * <br>
+	 * Default: infinity.
+	 * @param waitTimeout The wait timeout in milliseconds.
+	 */
+	@Override
+	public void setWaitTimeout(long waitTimeout) {
+		this.waitTimeout = waitTimeout;
+	}
+
+	/**
+	 * Set to true to have each thread first try to reclaim the item it last released
+	 * before taking the most recently released item from the pool. Default false.
+	 * @param threadAffinity true to enable thread affinity.
+	 */
+	public void setThreadAffinity(boolean threadAffinity) {
+		this.threadAffinity = threadAffinity;
+	}
+
+	/**
+	 * Set to false to skip the {@link SimplePool.PoolItemCallback#isStale(Object)} check
+	 * when an idle item is obtained - for example when background eviction is used to
+	 * remove stale items and the check is expensive. Default true.
+	 * @param validateOnCheckout false to not validate items when obtained.
+	 */
+	public void setValidateOnCheckout(boolean validateOnCheckout) {
+		this.validateOnCheckout = validateOnCheckout;
+	}
+
+	/**
+	 * Set the time after which an idle item is removed from the pool. Default 0 - idle
+	 * items are not removed.
+	 * @param maxIdleTime the maximum idle time in milliseconds.
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	/**
+	 * Set the time after its creation that an item is removed from the pool (when it is
+	 * next released, or by eviction if it is idle). Default 0 - items are not retired.
+	 * @param maxLifetime the maximum lifetime in milliseconds.
+	 */
+	public void setMaxLifetime(long maxLifetime) {
+		this.maxLifetime = maxLifetime;
+	}
+
+	/**
+	 * Adjusts the current pool size. When reducing the pool size, attempts to
+	 * remove the delta from the pool. If there are not enough unused items in
+	 * the pool, the actual pool size will decrease to the specified size as in-use
+	 * items are returned.
+	 * @param poolSize The desired target pool size.
+	 */
+	@Override
+	public synchronized void setPoolSize(int poolSize) {
+		int delta = poolSize - this.poolSize.get();
+		this.targetPoolSize.addAndGet(delta);
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug(String.format("Target pool size changed by %d, now %d", delta, this.targetPoolSize.get()));
+		}
+		if (delta > 0) {
+			this.poolSize.addAndGet(delta);
+			this.permits.release(delta);
+		}
+		else {
+			while (delta < 0) {
+				if (!this.permits.tryAcquire()) {
+					break;
+				}
+				Entry<T> entry = claimIdle(false);
+				if (entry == null) {
+					this.permits.release();
+					break;
+				}
+				doRemoveEntry(entry);
+				this.poolSize.decrementAndGet();
+				delta++;
+			}
+		}
+		if (delta < 0 && this.logger.isDebugEnabled()) {
+			this.logger.debug(String.format("Pool is overcommitted by %d; items will be removed when returned", -delta));
+		}
+	}
+
+	/**
+	 * Returns the current size of the pool; may be greater than the target pool size
+	 * if it was recently reduced and too many items were in use to allow the new size
+	 * to be set.
+	 */
+	@Override
+	public int getPoolSize() {
+		return this.poolSize.get();
+	}
+
+	@Override
+	public int getIdleCount() {
+		return this.idleCount.get();
+	}
+
+	@Override
+	public int getActiveCount() {
+		return this.activeCount.get();
+	}
+
+	@Override
+	public int getAllocatedCount() {
+		return this.allocated.size();
+	}
+
+	/**
+	 * Obtains an item from the pool; waits up to waitTime milliseconds (default infinity).
+	 * @throws MessagingException if no items become available in time.
+	 */
+	@Override
+	public T getItem() {
+		boolean permitted = false;
+		try {
+			try {
+				permitted = this.permits.tryAcquire()
+						|| this.permits.tryAcquire(this.waitTimeout, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MessagingException("Interrupted awaiting a pooled resource", e);
+			}
+			if (!permitted) {
+				throw new IllegalStateException("Timed out while waiting to acquire a pool entry.");
+			}
+			return doGetItem();
+		}
+		catch (Exception e) {
+			if (permitted) {
+				this.permits.release();
+			}
+			if (e instanceof MessagingException) {
+				throw (MessagingException) e;
+			}
+			throw new MessagingException("Failed to obtain pooled item", e);
+		}
+	}
+
+	private T doGetItem() {
+		Entry<T> entry;
+		while ((entry = claimIdle(this.threadAffinity)) != null) {
+			if (isExpired(entry, System.currentTimeMillis())) {
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Received an expired item " + entry.item + ", will attempt to get a new one.");
+				}
+				doRemoveEntry(entry);
+			}
+			else if (this.validateOnCheckout && this.callback.isStale(entry.item)) {
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Received a stale item " + entry.item + ", will attempt to get a new one.");
+				}
+				doRemoveEntry(entry);
+			}
+			else {
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Obtained " + entry.item + " from pool.");
+				}
+				this.activeCount.incrementAndGet();
+				return entry.item;
+			}
+		}
+		T item = this.callback.createForPool();
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug("Obtained new " + item + ".");
+		}
+		this.allocated.put(item, new Entry<T>(item));
+		this.activeCount.incrementAndGet();
+		return item;
+	}
+
+	/**
+	 * Returns an item to the pool.
+	 */
+	@Override
+	public void releaseItem(T item) {
+		Assert.notNull(item, "Item cannot be null");
+		Entry<T> entry = this.allocated.get(item);
+		Assert.isTrue(entry != null, "You can only release items that were obtained from the pool");
+		if (!entry.state.compareAndSet(IN_USE, RETURNING)) {
+			if (this.logger.isDebugEnabled()) {
+				this.logger.debug("Ignoring release of " + item + " back to the pool - not in use");
+			}
+			return;
+		}
+		this.activeCount.decrementAndGet();
+		if (shrink()) {
+			doRemoveEntry(entry);
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (isRetired(entry, now)) {
+			doRemoveEntry(entry);
+		}
+		else {
+			if (this.logger.isDebugEnabled()) {
+				this.logger.debug("Releasing " + item + " back to the pool");
+			}
+			entry.lastReleased = now;
+			if (this.threadAffinity) {
+				AtomicReference<Entry<T>> slot = this.lastReleased.get();
+				entry.affinitySlot = slot;
+				slot.set(entry);
+			}
+			makeIdle(entry);
+		}
+		this.permits.release();
+	}
+
+	@Override
+	public synchronized void removeAllIdleItems() {
+		Entry<T> entry;
+		while ((entry = claimIdle(false)) != null) {
+			doRemoveEntry(entry);
+		}
+	}
+
+	/**
+	 * Start removing idle items that have exceeded the {@link #setMaxIdleTime(long)
+	 * maxIdleTime} or {@link #setMaxLifetime(long) maxLifetime}, or are stale, every
+	 * {@code interval} milliseconds. The eviction should be stopped with
+	 * {@link #stopEviction()} when the pool is no longer used; the caching session and
+	 * connection factories do so when they are destroyed or stopped.
+	 * @param taskScheduler the scheduler on which to run the eviction.
+	 * @param interval the interval in milliseconds.
+	 */
+	public synchronized void startEviction(TaskScheduler taskScheduler, long interval) {
+		Assert.notNull(taskScheduler, "'taskScheduler' cannot be null");
+		Assert.isTrue(interval > 0, "'interval' must be greater than 0");
+		stopEviction();
+		this.evictionScheduler = taskScheduler;
+		this.evictionInterval = interval;
+		this.evictionTask = taskScheduler.scheduleWithFixedDelay(this::evictIdleItems, interval);
+	}
+
+	/**
+	 * Stop the background eviction, if started.
+	 */
+	public synchronized void stopEviction() {
+		if (this.evictionTask != null) {
+			this.evictionTask.cancel(false);
+			this.evictionTask = null;
+		}
+	}
+
+	/**
+	 * Restart the background eviction with the scheduler and interval of the last
+	 * {@link #startEviction(TaskScheduler, long)}, if it is not running; does nothing if
+	 * eviction was never started.
+	 */
+	public synchronized void restartEviction() {
+		if (this.evictionTask == null && this.evictionScheduler != null) {
+			startEviction(this.evictionScheduler, this.evictionInterval);
+		}
+	}
+
+	/**
+	 * Remove idle items that have exceeded the {@link #setMaxIdleTime(long) maxIdleTime}
+	 * or {@link #setMaxLifetime(long) maxLifetime}, or are stale; invoked periodically
+	 * when eviction is started.
+	 * @return the number of items removed.
+	 */
+	public int evictIdleItems() {
+		int evicted = 0;
+		for (Entry<T> entry : this.allocated.values()) {
+			if (entry.state.get() != IDLE) {
+				continue;
+			}
+			if (!isExpired(entry, System.currentTimeMillis()) && !this.callback.isStale(entry.item)) {
+				continue;
+			}
+			if (entry.state.compareAndSet(IDLE, RETURNING)) {
+				this.idleCount.decrementAndGet();
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Evicting idle item " + entry.item);
+				}
+				doRemoveEntry(entry);
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Claim an idle entry, trying the thread's last released entry first if requested,
+	 * then the most recently released entry. Entries claimed by other threads (or
+	 * removed) since they were queued are discarded from the stack.
+	 */
+	private Entry<T> claimIdle(boolean tryAffinity) {
+		if (tryAffinity) {
+			Entry<T> entry = this.lastReleased.get().getAndSet(null);
+			if (entry != null && entry.state.compareAndSet(IDLE, IN_USE)) {
+				this.idleCount.decrementAndGet();
+				return entry;
+			}
+		}
+		Entry<T> entry;
+		while ((entry = this.available.pollFirst()) != null) {
+			entry.queued.set(false);
+			if (entry.state.compareAndSet(IDLE, IN_USE)) {
+				this.idleCount.decrementAndGet();
+				clearAffinity(entry);
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Release the thread slot (of whichever thread released the entry last) that still
+	 * references the entry, so the slot doesn't retain a claimed or removed item.
+	 */
+	private void clearAffinity(Entry<T> entry) {
+		AtomicReference<Entry<T>> slot = entry.affinitySlot;
+		if (slot != null) {
+			slot.compareAndSet(entry, null);
+			entry.affinitySlot = null;
+		}
+	}
+
+	private void makeIdle(Entry<T> entry) {
+		this.idleCount.incrementAndGet();
+		entry.state.set(IDLE);
+		if (entry.queued.compareAndSet(false, true)) {
+			this.available.offerFirst(entry);
+		}
+	}
+
+	private boolean shrink() {
+		int size;
+		do {
+			size = this.poolSize.get();
+			if (size <= this.targetPoolSize.get()) {
+				return false;
+			}
+		}
+		while (!this.poolSize.compareAndSet(size, size - 1));
+		return true;
+	}
+
+	private boolean isExpired(Entry<T> entry, long now) {
+		return isRetired(entry, now)
+				|| this.maxIdleTime > 0 && now - entry.lastReleased >= this.maxIdleTime;
+	}
+
+	private boolean isRetired(Entry<T> entry, long now) {
+		return this.maxLifetime > 0 && now - entry.created >= this.maxLifetime;
+	}
+
+	private void doRemoveEntry(Entry<T> entry) {
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug("Removing " + entry.item + " from the pool");
+		}
+		entry.state.set(REMOVED);
+		clearAffinity(entry);
+		this.allocated.remove(entry.item);
+		this.callback.removedFromPool(entry.item);
+	}
+
+	private static final class Entry<T> {
+
+		private final T item;
+
+		private final long created = System.currentTimeMillis();
+
+		private final AtomicInteger state = new AtomicInteger(IN_USE);
+
+		private final AtomicBoolean queued = new AtomicBoolean();
+
+		private volatile long lastReleased;
+
+		private volatile AtomicReference<Entry<T>> affinitySlot;
+
+		Entry(T item) {
+			this.item = item;
+		}
+
+	}
+
+}
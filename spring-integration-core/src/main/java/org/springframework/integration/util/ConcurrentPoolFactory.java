@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import java.util.function.BiFunction;
+
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * A pool factory function, for components that accept one (such as the
+ * {@code CachingClientConnectionFactory} and {@code CachingSessionFactory}), that
+ * creates a {@link ConcurrentPool} with the configured options, so that they can be
+ * set as properties rather than in a lambda.
+ *
+ * @param <T> the pooled item type.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ *
+ */
+public class ConcurrentPoolFactory<T>
+		implements BiFunction<Integer, SimplePool.PoolItemCallback<T>, ResizablePool<T>> {
+
+	private boolean fair;
+
+	private boolean threadAffinity;
+
+	private boolean validateOnCheckout = true;
+
+	private long maxIdleTime;
+
+	private long maxLifetime;
+
+	private TaskScheduler evictionScheduler;
+
+	private long evictionInterval;
+
+	/**
+	 * @param fair true to grant items to threads waiting on an exhausted pool in
+	 * arrival order. Default false.
+	 * @see ConcurrentPool#ConcurrentPool(int, SimplePool.PoolItemCallback, boolean)
+	 */
+	public void setFair(boolean fair) {
+		this.fair = fair;
+	}
+
+	/**
+	 * @param threadAffinity true to enable thread affinity. Default false.
+	 * @see ConcurrentPool#setThreadAffinity(boolean)
+	 */
+	public void setThreadAffinity(boolean threadAffinity) {
+		this.threadAffinity = threadAffinity;
+	}
+
+	/**
+	 * @param validateOnCheckout false to not validate items when obtained. Default true.
+	 * @see ConcurrentPool#setValidateOnCheckout(boolean)
+	 */
+	public void setValidateOnCheckout(boolean validateOnCheckout) {
+		this.validateOnCheckout = validateOnCheckout;
+	}
+
+	/**
+	 * @param maxIdleTime the maximum idle time in milliseconds. Default 0 (no limit).
+	 * @see ConcurrentPool#setMaxIdleTime(long)
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	/**
+	 * @param maxLifetime the maximum lifetime in milliseconds. Default 0 (no limit).
+	 * @see ConcurrentPool#setMaxLifetime(long)
+	 */
+	public void setMaxLifetime(long maxLifetime) {
+		this.maxLifetime = maxLifetime;
+	}
+
+	/**
+	 * Start background eviction on the provided scheduler when the pool is created.
+	 * @param evictionScheduler the scheduler.
+	 * @param evictionInterval the interval in milliseconds.
+	 * @see ConcurrentPool#startEviction(TaskScheduler, long)
+	 */
+	public void setEviction(TaskScheduler evictionScheduler, long evictionInterval) {
+		Assert.notNull(evictionScheduler, "'evictionScheduler' cannot be null");
+		Assert.isTrue(evictionInterval > 0, "'evictionInterval' must be greater than 0");
+		this.evictionScheduler = evictionScheduler;
+		this.evictionInterval = evictionInterval;
+	}
+
+	@Override
+	public ResizablePool<T> apply(Integer poolSize, SimplePool.PoolItemCallback<T> callback) {
+		ConcurrentPool<T> pool = new ConcurrentPool<>(poolSize, callback, this.fair);
+		pool.setThreadAffinity(this.threadAffinity);
+		pool.setValidateOnCheckout(this.validateOnCheckout);
+		pool.setMaxIdleTime(this.maxIdleTime);
+		pool.setMaxLifetime(this.maxLifetime);
+		if (this.evictionScheduler != null) {
+			pool.startEviction(this.evictionScheduler, this.evictionInterval);
+		}
+		return pool;
+	}
+
+}
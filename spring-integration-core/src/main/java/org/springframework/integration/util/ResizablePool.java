@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+/**
+ * A {@link Pool} that can be resized and for which the time to wait for an item
+ * can be configured; implemented by {@link SimplePool} and {@link ConcurrentPool}.
+ *
+ * @param <T> the pooled item type.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ *
+ */
+public interface ResizablePool<T> extends Pool<T> {
+
+	/**
+	 * Adjust the pool size. When reducing the pool size, idle items are removed; if
+	 * there are not enough idle items, the actual pool size will decrease to the
+	 * specified size as in-use items are returned.
+	 * @param poolSize The desired target pool size.
+	 */
+	void setPoolSize(int poolSize);
+
+	/**
+	 * Adjust the time for which {@link #getItem()} will wait if no items are available.
+	 * @param waitTimeout The wait timeout in milliseconds.
+	 */
+	void setWaitTimeout(long waitTimeout);
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 the original author or authors.
+ * Copyright 2015-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,19 +17,28 @@
 package org.springframework.integration.codec.kryo;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.Test;
 
+import org.springframework.integration.test.util.TestUtils;
+
 /**
  * @author David Turanski
+ * @author Gary Russell
  * @since 4.2
  */
 public class KryoCodecTests {
@@ -61,6 +70,55 @@ public class KryoCodecTests {
 		assertEquals(str, s2);
 	}
 
+	@Test
+	public void testByteBufferSerialization() throws IOException {
+		PojoCodec codec = new PojoCodec();
+		SomeClassWithNoDefaultConstructors foo = new SomeClassWithNoDefaultConstructors("foo", 123);
+		SomeClassWithNoDefaultConstructors bar = new SomeClassWithNoDefaultConstructors("bar", 456);
+		for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(1024), ByteBuffer.allocateDirect(1024) }) {
+			codec.encode(foo, buffer);
+			codec.encode(bar, buffer);
+			buffer.flip();
+			assertEquals(foo, codec.decode(buffer, SomeClassWithNoDefaultConstructors.class));
+			assertEquals(bar, codec.decode(buffer, SomeClassWithNoDefaultConstructors.class));
+			assertEquals(0, buffer.remaining());
+		}
+	}
+
+	@Test
+	public void testPooledBuffersAreReused() throws IOException {
+		PojoCodec codec = new PojoCodec();
+		codec.setMaxPooledBufferSize(8192);
+		ThreadLocal<?> outputs = TestUtils.getPropertyValue(codec, "outputs", ThreadLocal.class);
+		ThreadLocal<?> inputs = TestUtils.getPropertyValue(codec, "inputs", ThreadLocal.class);
+		assertEquals("hello0", codec.decode(new ByteArrayInputStream(codec.encode("hello0")), String.class));
+		Object output = outputs.get();
+		Object input = inputs.get();
+		assertNotNull(output);
+		assertNotNull(input);
+		for (int i = 1; i < 3; i++) {
+			String str = "hello" + i;
+			assertEquals(str, codec.decode(new ByteArrayInputStream(codec.encode(str)), String.class));
+			assertSame(output, outputs.get());
+			assertSame(input, inputs.get());
+		}
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			large.append('x');
+		}
+		assertEquals(large.toString(), codec.decode(codec.encode(large.toString()), String.class));
+		// the grown buffer is not retained
+		assertNull(outputs.get());
+		assertEquals("small", codec.decode(codec.encode("small"), String.class));
+		assertNotNull(outputs.get());
+		assertNotSame(output, outputs.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxPooledBufferSize() {
+		new PojoCodec().setMaxPooledBufferSize(0);
+	}
+
 	@Test
 	public void testPojoSerialization() throws IOException {
 		PojoCodec codec = new PojoCodec();
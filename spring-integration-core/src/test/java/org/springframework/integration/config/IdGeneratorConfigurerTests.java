@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,9 +20,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
@@ -32,6 +38,7 @@ import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.integration.support.IdGenerators.JdkIdGenerator;
 import org.springframework.integration.support.IdGenerators.SimpleIncrementingIdGenerator;
+import org.springframework.integration.support.IdGenerators.TimeOrderedIdGenerator;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.util.IdGenerator;
@@ -204,6 +211,35 @@ public class IdGeneratorConfigurerTests {
 		context.close();
 	}
 
+	@Test
+	public void testTimeOrdered() throws Exception {
+		TimeOrderedIdGenerator idGenerator = new TimeOrderedIdGenerator(0x12345678);
+		idGenerator.setBlockSize(10);
+		UUID previous = idGenerator.generateId();
+		assertEquals(7, previous.version());
+		assertEquals(2, previous.variant());
+		assertEquals(0x123, previous.getMostSignificantBits() & 0xFFF);
+		assertEquals(0x45678, (previous.getLeastSignificantBits() >>> 42) & 0xFFFFF);
+		assertTrue(Math.abs((previous.getMostSignificantBits() >>> 16) - System.currentTimeMillis()) < 10000);
+		for (int i = 0; i < 100; i++) {
+			UUID id = idGenerator.generateId();
+			assertTrue(id.compareTo(previous) > 0);
+			previous = id;
+		}
+		Set<UUID> ids = ConcurrentHashMap.newKeySet();
+		ExecutorService exec = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 8; i++) {
+			exec.execute(() -> {
+				for (int j = 0; j < 10000; j++) {
+					ids.add(idGenerator.generateId());
+				}
+			});
+		}
+		exec.shutdown();
+		assertTrue(exec.awaitTermination(30, TimeUnit.SECONDS));
+		assertEquals(80000, ids.size());
+	}
+
 	public static class MyIdGenerator implements IdGenerator {
 
 		@Override
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,11 +16,17 @@
 
 package org.springframework.integration.handler;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 import java.util.Arrays;
+import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -41,10 +47,13 @@ import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.config.IntegrationEvaluationContextFactoryBean;
 import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.context.IntegrationProperties;
+import org.springframework.integration.expression.ValueExpression;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.messaging.Message;
@@ -273,6 +282,74 @@ public class ExpressionEvaluatingMessageProcessorTests {
 		assertEquals("foo", processor.processMessage(new GenericMessage<TestPayload>(new TestPayload())));
 	}
 
+	@Test
+	public void testCompiledAfterWarmUp() {
+		ExpressionEvaluatingMessageProcessor<Integer> processor =
+				new ExpressionEvaluatingMessageProcessor<>("payload.length()", Integer.class);
+		processor.setCompilerMode(SpelCompilerMode.IMMEDIATE);
+		processor.setWarmUpMessages(new GenericMessage<>("warm"));
+		processor.setBeanFactory(mock(BeanFactory.class));
+		assertTrue(processor.isCompiled());
+		assertEquals(Integer.valueOf(3), processor.processMessage(new GenericMessage<>("foo")));
+	}
+
+	@Test
+	public void testCompilingParserKeepsConfiguration() {
+		Expression expression = new SpelExpressionParser(new SpelParserConfiguration(true, true))
+				.parseExpression("payload.list[2]");
+		ExpressionEvaluatingMessageProcessor<Object> processor = new ExpressionEvaluatingMessageProcessor<>(expression);
+		processor.setCompilerMode(SpelCompilerMode.MIXED);
+		processor.setBeanFactory(mock(BeanFactory.class));
+		Object compiledExpression = TestUtils.getPropertyValue(processor, "expression");
+		assertNotSame(expression, compiledExpression);
+		SpelParserConfiguration configuration = TestUtils.getPropertyValue(compiledExpression, "configuration",
+				SpelParserConfiguration.class);
+		assertEquals(SpelCompilerMode.MIXED, configuration.getCompilerMode());
+		assertTrue(configuration.isAutoGrowNullReferences());
+		assertTrue(configuration.isAutoGrowCollections());
+	}
+
+	@Test
+	public void testInvalidGlobalCompilerMode() {
+		GenericApplicationContext context = new GenericApplicationContext();
+		Properties properties = new Properties();
+		properties.setProperty(IntegrationProperties.SPEL_COMPILER_MODE, "foo");
+		context.getBeanFactory().registerSingleton(IntegrationContextUtils.INTEGRATION_GLOBAL_PROPERTIES_BEAN_NAME,
+				properties);
+		context.refresh();
+		ExpressionEvaluatingMessageProcessor<Integer> processor =
+				new ExpressionEvaluatingMessageProcessor<>("payload.length()", Integer.class);
+		try {
+			processor.setBeanFactory(context);
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), containsString(IntegrationProperties.SPEL_COMPILER_MODE));
+		}
+		context.close();
+	}
+
+	@Test
+	public void testNotCompiledByDefault() {
+		ExpressionEvaluatingMessageProcessor<Integer> processor =
+				new ExpressionEvaluatingMessageProcessor<>("payload.length()", Integer.class);
+		processor.setWarmUpMessages(new GenericMessage<>("warm"));
+		processor.setBeanFactory(mock(BeanFactory.class));
+		assertFalse(processor.isCompiled());
+		assertEquals(Integer.valueOf(3), processor.processMessage(new GenericMessage<>("foo")));
+	}
+
+	@Test
+	public void testNonSpelExpressionIsNotCompiled() {
+		ExpressionEvaluatingMessageProcessor<String> processor =
+				new ExpressionEvaluatingMessageProcessor<>(new ValueExpression<>("bar"), String.class);
+		processor.setCompilerMode(SpelCompilerMode.MIXED);
+		processor.setWarmUpMessages(new GenericMessage<>("warm"));
+		processor.setBeanFactory(mock(BeanFactory.class));
+		assertFalse(processor.isCompiled());
+		assertEquals("bar", processor.processMessage(new GenericMessage<>("foo")));
+	}
+
 
 	@SuppressWarnings("unused")
 	private static class TestPayload {
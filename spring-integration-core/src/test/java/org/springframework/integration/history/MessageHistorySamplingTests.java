@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.endpoint.MessageProducerSupport;
+import org.springframework.integration.gateway.MessagingGatewaySupport;
+import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class MessageHistorySamplingTests {
+
+	@Test
+	public void testRatioSampling() {
+		MessageHistorySampler sampler = new RatioMessageHistorySampler(2);
+		QueueChannel out = new QueueChannel();
+		out.setBeanName("out");
+		out.setShouldTrack(true);
+		out.setHistorySampler(sampler);
+		TestProducer producer = new TestProducer();
+		producer.setBeanName("in");
+		producer.setOutputChannel(out);
+		producer.setBeanFactory(TestUtils.createTestApplicationContext());
+		producer.setShouldTrack(true);
+		producer.setHistorySampler(sampler);
+		producer.afterPropertiesSet();
+		producer.start();
+		for (int i = 0; i < 4; i++) {
+			producer.send(new GenericMessage<>("foo"));
+		}
+		for (int i = 0; i < 4; i++) {
+			Message<?> received = out.receive(0);
+			assertNotNull(received);
+			MessageHistory history = MessageHistory.read(received);
+			if (i % 2 == 0) {
+				assertEquals(2, history.size());
+				assertEquals("in", history.get(0).getProperty(MessageHistory.NAME_PROPERTY));
+				assertEquals("out", history.get(1).getProperty(MessageHistory.NAME_PROPERTY));
+			}
+			else {
+				assertNull(history);
+			}
+		}
+		producer.stop();
+	}
+
+	@Test
+	public void testDownstreamComponentDoesNotSample() {
+		QueueChannel out = new QueueChannel();
+		out.setBeanName("out");
+		out.setShouldTrack(true);
+		out.setHistorySampler(message -> true);
+		out.send(new GenericMessage<>("foo"));
+		assertNull(MessageHistory.read(out.receive(0)));
+		out.send(MessageHistory.write(new GenericMessage<>("foo"), out));
+		assertEquals(2, MessageHistory.read(out.receive(0)).size());
+	}
+
+	@Test
+	public void testDirectChannelSendIsNotSampled() {
+		MessageHistorySampler sampler = message -> true;
+		DirectChannel channel = new DirectChannel();
+		channel.setBeanName("channel");
+		channel.setShouldTrack(true);
+		channel.setHistorySampler(sampler);
+		AtomicReference<Message<?>> handled = new AtomicReference<>();
+		AbstractMessageHandler handler = new AbstractMessageHandler() {
+
+			@Override
+			protected void handleMessageInternal(Message<?> message) throws Exception {
+				handled.set(message);
+			}
+
+		};
+		handler.setBeanName("handler");
+		handler.setShouldTrack(true);
+		handler.setHistorySampler(sampler);
+		channel.subscribe(handler);
+		// no inbound endpoint sees the message, so nothing decides to sample it
+		channel.send(new GenericMessage<>("foo"));
+		assertNull(MessageHistory.read(handled.get()));
+
+		TestGateway gateway = new TestGateway();
+		gateway.setBeanName("gateway");
+		gateway.setRequestChannel(channel);
+		gateway.setBeanFactory(TestUtils.createTestApplicationContext());
+		gateway.setShouldTrack(true);
+		gateway.setHistorySampler(sampler);
+		gateway.afterPropertiesSet();
+		gateway.send("foo");
+		MessageHistory history = MessageHistory.read(handled.get());
+		assertEquals(3, history.size());
+		assertEquals("gateway", history.get(0).getProperty(MessageHistory.NAME_PROPERTY));
+		assertEquals("channel", history.get(1).getProperty(MessageHistory.NAME_PROPERTY));
+		assertEquals("handler", history.get(2).getProperty(MessageHistory.NAME_PROPERTY));
+	}
+
+	@Test
+	public void testRateLimitingSampler() {
+		MessageHistorySampler sampler = new RateLimitingMessageHistorySampler(3);
+		Message<?> message = new GenericMessage<>("foo");
+		int sampled = 0;
+		for (int i = 0; i < 10; i++) {
+			if (sampler.sample(message)) {
+				sampled++;
+			}
+		}
+		assertEquals(3, sampled);
+	}
+
+	private static class TestProducer extends MessageProducerSupport {
+
+		void send(Message<?> message) {
+			sendMessage(message);
+		}
+
+	}
+
+	private static class TestGateway extends MessagingGatewaySupport {
+
+		@Override
+		protected void send(Object object) {
+			super.send(object);
+		}
+
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.integration.codec.kryo.PojoCodec;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.MutableMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class CompactMessageSerializerTests {
+
+	@Test
+	public void testGenericMessage() throws Exception {
+		CompactMessageSerializer<Message<?>> serializer = new CompactMessageSerializer<>();
+		Message<String> message = MessageBuilder.withPayload("foo")
+				.setCorrelationId("bar")
+				.setSequenceNumber(3)
+				.setSequenceSize(-5)
+				.setHeader("custom", 42L)
+				.setHeader("flag", true)
+				.setHeader("date", new Date(0))
+				.setHeader("notSerializable", new Object())
+				.build();
+		Message<?> restored = roundTrip(serializer, message);
+		assertThat(restored, instanceOf(GenericMessage.class));
+		assertEquals(message.getPayload(), restored.getPayload());
+		assertEquals(message.getHeaders().getId(), restored.getHeaders().getId());
+		assertEquals(message.getHeaders().getTimestamp(), restored.getHeaders().getTimestamp());
+		assertEquals("bar", restored.getHeaders().get("correlationId"));
+		assertEquals(3, restored.getHeaders().get("sequenceNumber"));
+		assertEquals(-5, restored.getHeaders().get("sequenceSize"));
+		assertEquals(42L, restored.getHeaders().get("custom"));
+		assertEquals(true, restored.getHeaders().get("flag"));
+		assertEquals(new Date(0), restored.getHeaders().get("date"));
+		assertFalse(restored.getHeaders().containsKey("notSerializable"));
+	}
+
+	@Test
+	public void testMutableMessageAndHolder() throws Exception {
+		CompactMessageSerializer<Object> serializer = new CompactMessageSerializer<>();
+		MutableMessage<byte[]> message = new MutableMessage<>("foo".getBytes());
+		Object restored = roundTrip(serializer, message);
+		assertThat(restored, instanceOf(MutableMessage.class));
+		assertEquals("foo", new String((byte[]) ((Message<?>) restored).getPayload()));
+		assertEquals(message.getHeaders().getId(), ((Message<?>) restored).getHeaders().getId());
+
+		MessageHolder holder = new MessageHolder(new GenericMessage<>(1.5));
+		holder.setTimestamp(123L);
+		restored = roundTrip(serializer, holder);
+		assertThat(restored, instanceOf(MessageHolder.class));
+		assertEquals(123L, ((MessageHolder) restored).getMessageMetadata().getTimestamp());
+		assertEquals(1.5, ((MessageHolder) restored).getMessage().getPayload());
+		assertEquals(holder.getMessage().getHeaders().getId(), ((MessageHolder) restored).getMessage().getHeaders().getId());
+	}
+
+	@Test
+	public void testFallbackToJavaSerialization() throws Exception {
+		CompactMessageSerializer<Object> serializer = new CompactMessageSerializer<>();
+		ErrorMessage message = new ErrorMessage(new RuntimeException("foo"));
+		Object restored = roundTrip(serializer, message);
+		assertThat(restored, instanceOf(ErrorMessage.class));
+		assertEquals("foo", ((ErrorMessage) restored).getPayload().getMessage());
+		assertNull(roundTrip(serializer, null));
+	}
+
+	@Test
+	public void testWhiteList() throws Exception {
+		CompactMessageSerializer<Message<?>> serializer = new CompactMessageSerializer<>();
+		Message<?> message = MessageBuilder.withPayload("foo")
+				.setHeader("date", new Date())
+				.setHeader("foo", new Foo("bar", 42))
+				.build();
+		serializer.setWhiteListPatterns("java.util.*");
+		try {
+			roundTrip(serializer, message);
+			fail("Expected SecurityException");
+		}
+		catch (SecurityException e) {
+			assertThat(e.getMessage(), containsString("Foo"));
+		}
+		serializer.addWhiteListPatterns("*Foo");
+		Message<?> restored = roundTrip(serializer, message);
+		assertEquals(new Foo("bar", 42), restored.getHeaders().get("foo"));
+	}
+
+	@Test
+	public void testPayloadCodec() throws Exception {
+		CompactMessageSerializer<Message<?>> serializer = new CompactMessageSerializer<>();
+		serializer.setPayloadCodec(new PojoCodec());
+		Foo foo = new Foo("bar", 42);
+		Message<?> restored = roundTrip(serializer, new GenericMessage<>(foo));
+		assertEquals(foo, restored.getPayload());
+		assertSame(Foo.class, restored.getPayload().getClass());
+	}
+
+	@Test
+	public void testPayloadCodecWhiteList() throws Exception {
+		CompactMessageSerializer<Message<?>> serializer = new CompactMessageSerializer<>();
+		serializer.setPayloadCodec(new PojoCodec());
+		serializer.setWhiteListPatterns("java.util.*");
+		Message<?> message = new GenericMessage<>(new Foo("bar", 42));
+		try {
+			roundTrip(serializer, message);
+			fail("Expected SecurityException");
+		}
+		catch (SecurityException e) {
+			assertThat(e.getMessage(), containsString("Foo"));
+		}
+		serializer.addWhiteListPatterns("*Foo");
+		assertEquals(new Foo("bar", 42), roundTrip(serializer, message).getPayload());
+	}
+
+	@Test
+	public void testCorruptLength() throws Exception {
+		CompactMessageSerializer<Message<?>> serializer = new CompactMessageSerializer<>();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(new GenericMessage<>(new byte[0]), out);
+		byte[] bytes = out.toByteArray();
+		// replace the payload length (0) with a negative and a huge length
+		byte[] negative = Arrays.copyOf(bytes, bytes.length + 4);
+		System.arraycopy(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f }, 0,
+				negative, bytes.length - 1, 5);
+		try {
+			serializer.deserialize(new ByteArrayInputStream(negative));
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage(), containsString("Invalid length"));
+		}
+		byte[] huge = Arrays.copyOf(bytes, bytes.length + 4);
+		System.arraycopy(new byte[] { (byte) 0xf0, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07 }, 0,
+				huge, bytes.length - 1, 5);
+		try {
+			serializer.deserialize(new ByteArrayInputStream(huge));
+			fail("Expected EOFException");
+		}
+		catch (EOFException e) {
+			// truncated, rather than allocating the length up front
+		}
+	}
+
+	@Test
+	public void testSmallerThanJavaSerialization() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo")
+				.setCorrelationId("bar")
+				.setSequenceNumber(1)
+				.setSequenceSize(10)
+				.setHeader("custom", "baz")
+				.build();
+		ByteArrayOutputStream compact = new ByteArrayOutputStream();
+		new CompactMessageSerializer<Message<?>>().serialize(message, compact);
+		ByteArrayOutputStream java = new ByteArrayOutputStream();
+		new DefaultSerializer().serialize(message, java);
+		assertThat(compact.size() * 5, lessThan(java.size()));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T roundTrip(CompactMessageSerializer<T> serializer, Object object) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize((T) object, out);
+		return serializer.deserialize(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@SuppressWarnings("serial")
+	private static class Foo implements Serializable {
+
+		private final String name;
+
+		private final int value;
+
+		Foo(String name, int value) {
+			this.name = name;
+			this.value = value;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Foo && ((Foo) other).name.equals(this.name) && ((Foo) other).value == this.value;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.name.hashCode() + this.value;
+		}
+
+	}
+
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * @author Gary Russell
+ * @since 5.0
+ *
+ */
+public class ConcurrentPoolTests {
+
+	@Test
+	public void testReuseAndStale() {
+		final Set<String> strings = Collections.synchronizedSet(new HashSet<String>());
+		final AtomicBoolean stale = new AtomicBoolean();
+		ConcurrentPool<String> pool = stringPool(2, strings, stale);
+		String s1 = pool.getItem();
+		String s2 = pool.getItem();
+		assertNotSame(s1, s2);
+		pool.releaseItem(s1);
+		String s3 = pool.getItem();
+		assertSame(s1, s3);
+		stale.set(true);
+		pool.releaseItem(s3);
+		s3 = pool.getItem();
+		assertNotSame(s1, s3);
+		assertFalse(strings.remove(s1));
+		assertEquals(2, pool.getAllocatedCount());
+	}
+
+	@Test
+	public void testLifo() {
+		final Set<String> strings = Collections.synchronizedSet(new HashSet<String>());
+		ConcurrentPool<String> pool = stringPool(3, strings, new AtomicBoolean());
+		String s1 = pool.getItem();
+		String s2 = pool.getItem();
+		String s3 = pool.getItem();
+		pool.releaseItem(s1);
+		pool.releaseItem(s3);
+		pool.releaseItem(s2);
+		assertSame(s2, pool.getItem());
+		assertSame(s3, pool.getItem());
+		assertSame(s1, pool.getItem());
+	}
+
+	@Test
+	public void testThreadAffinity() {
+		final Set<String> strings = Collections.synchronizedSet(new HashSet<String>());
+		ConcurrentPool<String> pool = stringPool(2, strings, new AtomicBoolean());
+		pool.setThreadAffinity(true);
+		String s1 = pool.getItem();
+		String s2 = pool.getItem();
+		pool.releaseItem(s1);
+		pool.releaseItem(s2);
+		assertSame(s2, pool.getItem());
+		pool.releaseItem(s2);
+		String s3 = pool.getItem();
+		assertSame(s2, s3);
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(1, pool.getActiveCount());
+		assertSame(s1, pool.getItem());
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(2, pool.getActiveCount());
+	}
+
+	@Test
+	public void testAffinitySlotClearedWhenRemoved() throws Exception {
+		final Set<String> strings = Collections.synchronizedSet(new HashSet<String>());
+		ConcurrentPool<String> pool = stringPool(2, strings, new AtomicBoolean());
+		pool.setThreadAffinity(true);
+		String s1 = pool.getItem();
+		pool.releaseItem(s1);
+		ThreadLocal<?> lastReleased = TestUtils.getPropertyValue(pool, "lastReleased", ThreadLocal.class);
+		AtomicReference<?> slot = (AtomicReference<?>) lastReleased.get();
+		assertNotNull(slot.get());
+		// removed on another thread; this thread's slot must not retain the item
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		exec.submit(pool::removeAllIdleItems).get(10, TimeUnit.SECONDS);
+		exec.shutdownNow();
+		assertNull(slot.get());
+		assertFalse(strings.contains(s1));
+		assertNotSame(s1, pool.getItem());
+	}
+
+	@Test
+	public void testPoolFactory() throws Exception {
+		final Set<String> strings = Collections.synchronizedSet(new HashSet<String>());
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+		ConcurrentPoolFactory<String> factory = new ConcurrentPoolFactory<>();
+		factory.setFair(true);
+		factory.setThreadAffinity(true);
+		factory.setMaxIdleTime(50);
+		factory.setMaxLifetime(60000);
+		factory.setEviction(scheduler, 10);
+		ConcurrentPool<String> pool = (ConcurrentPool<String>) factory.apply(2, stringCallback(strings,
+				new AtomicBoolean()));
+		assertTrue(TestUtils.getPropertyValue(pool, "permits", Semaphore.class).isFair());
+		assertTrue(TestUtils.getPropertyValue(pool, "threadAffinity", Boolean.class));
+		assertEquals(60000L, TestUtils.getPropertyValue(pool, "maxLifetime"));
+		pool.releaseItem(pool.getItem());
+		int n = 0;
+		while (n++ < 200 && pool.getAllocatedCount() > 0) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, pool.getAllocatedCount());
+		pool.stopEviction();
+		assertNull(TestUtils.getPropertyValue(pool, "evictionTask"));
+		pool.restartEviction();
+		assertNotNull(TestUtils.getPropertyValue(pool, "evictionTask"));
+		pool.stopEviction();
+		scheduler.destroy();
+	}
+
+	@Test
+	public void testOverCommitAndResize() {
+		final Set<String> strings = Collections.synchronizedSet(new HashSet<String>());
+		final AtomicBoolean stale = new AtomicBoolean();
+		ConcurrentPool<String> pool = stringPool(2, strings, stale);
+		String s1 = pool.getItem();
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(1, pool.getActiveCount());
+		assertEquals(1, pool.getAllocatedCount());
+		pool.releaseItem(s1);
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(1, pool.getAllocatedCount());
+		s1 = pool.getItem();
+		String s2 = pool.getItem();
+		assertNotSame(s1, s2);
+		pool.setWaitTimeout(1);
+		try {
+			pool.getItem();
+			fail("Expected exception");
+		}
+		catch (MessagingException e) { }
+
+		// resize up
+		pool.setPoolSize(4);
+
+		String s3 = pool.getItem();
+		String s4 = pool.getItem();
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(4, pool.getActiveCount());
+		assertEquals(4, pool.getAllocatedCount());
+		pool.releaseItem(s4);
+
+		// resize down
+		pool.setPoolSize(2);
+
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(3, pool.getActiveCount());
+		assertEquals(3, pool.getPoolSize());
+		assertEquals(3, pool.getAllocatedCount());
+		pool.releaseItem(s3);
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(2, pool.getActiveCount());
+		assertEquals(2, pool.getPoolSize());
+		assertEquals(2, pool.getAllocatedCount());
+		pool.releaseItem(s2);
+		pool.releaseItem(s1);
+		assertEquals(2, pool.getIdleCount());
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(2, pool.getPoolSize());
+		assertEquals(2, strings.size());
+		assertEquals(2, pool.getAllocatedCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testForeignObject() {
+		ConcurrentPool<String> pool = stringPool(2, new HashSet<String>(), new AtomicBoolean());
+		pool.getItem();
+		pool.releaseItem("Hello, world!");
+	}
+
+	@Test
+	public void testDoubleReturn() {
+		ConcurrentPool<String> pool = stringPool(2, new HashSet<String>(), new AtomicBoolean());
+		Semaphore permits = TestUtils.getPropertyValue(pool, "permits", Semaphore.class);
+		assertEquals(2, permits.availablePermits());
+		String s1 = pool.getItem();
+		assertEquals(1, permits.availablePermits());
+		pool.releaseItem(s1);
+		assertEquals(2, permits.availablePermits());
+		pool.releaseItem(s1);
+		assertEquals(2, permits.availablePermits());
+		assertEquals(1, pool.getIdleCount());
+	}
+
+	@Test
+	public void testMaxLifetimeAndIdleEviction() throws Exception {
+		final Set<String> strings = Collections.synchronizedSet(new HashSet<String>());
+		ConcurrentPool<String> pool = stringPool(2, strings, new AtomicBoolean());
+		pool.setMaxLifetime(50);
+		String s1 = pool.getItem();
+		Thread.sleep(60);
+		pool.releaseItem(s1);
+		assertFalse(strings.contains(s1));
+		assertEquals(0, pool.getAllocatedCount());
+		assertEquals(0, pool.getIdleCount());
+
+		pool.setMaxLifetime(0);
+		pool.setMaxIdleTime(50);
+		s1 = pool.getItem();
+		String s2 = pool.getItem();
+		pool.releaseItem(s1);
+		pool.releaseItem(s2);
+		assertEquals(0, pool.evictIdleItems());
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+		pool.startEviction(scheduler, 10);
+		int n = 0;
+		while (n++ < 200 && pool.getAllocatedCount() > 0) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, pool.getAllocatedCount());
+		assertEquals(0, pool.getIdleCount());
+		assertTrue(strings.isEmpty());
+		pool.stopEviction();
+		scheduler.destroy();
+		String s3 = pool.getItem();
+		assertNotSame(s1, s3);
+	}
+
+	@Test
+	public void testConcurrentUse() throws Exception {
+		final Set<String> strings = Collections.synchronizedSet(new HashSet<String>());
+		final ConcurrentPool<String> pool = stringPool(4, strings, new AtomicBoolean());
+		pool.setThreadAffinity(true);
+		final Set<String> inUse = Collections.synchronizedSet(new HashSet<String>());
+		final AtomicInteger failures = new AtomicInteger();
+		ExecutorService exec = Executors.newFixedThreadPool(16);
+		for (int i = 0; i < 16; i++) {
+			exec.execute(() -> {
+				for (int j = 0; j < 10000; j++) {
+					String item = pool.getItem();
+					if (!inUse.add(item)) {
+						failures.incrementAndGet();
+					}
+					inUse.remove(item);
+					pool.releaseItem(item);
+				}
+			});
+		}
+		exec.shutdown();
+		assertTrue(exec.awaitTermination(30, TimeUnit.SECONDS));
+		assertEquals(0, failures.get());
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(pool.getAllocatedCount(), pool.getIdleCount());
+		assertTrue(pool.getAllocatedCount() <= 4);
+		assertEquals(4, TestUtils.getPropertyValue(pool, "permits", Semaphore.class).availablePermits());
+	}
+
+	private ConcurrentPool<String> stringPool(int size, final Set<String> strings,
+			final AtomicBoolean stale) {
+		return new ConcurrentPool<String>(size, stringCallback(strings, stale));
+	}
+
+	private SimplePool.PoolItemCallback<String> stringCallback(final Set<String> strings,
+			final AtomicBoolean stale) {
+		final AtomicInteger i = new AtomicInteger();
+		return new SimplePool.PoolItemCallback<String>() {
+
+			@Override
+			public String createForPool() {
+				String string = "String" + i.getAndIncrement();
+				strings.add(string);
+				return string;
+			}
+
+			@Override
+			public boolean isStale(String item) {
+				if (stale.get()) {
+					strings.remove(item);
+				}
+				return stale.get();
+			}
+
+			@Override
+			public void removedFromPool(String item) {
+				strings.remove(item);
+			}
+
+		};
+	}
+
+}
@@ -26,11 +26,12 @@ import java.util.List;
  *
  * @author Mark Fisher
  * @author Iwein Fuld
+ * @author Gary Russell
  */
 public abstract class AbstractFileListFilter<F> implements FileListFilter<F> {
 
 	@Override
-	public final List<F> filterFiles(F[] files) {
+	public List<F> filterFiles(F[] files) {
 		List<F> accepted = new ArrayList<F>();
 		if (files != null) {
 			for (F file : files) {
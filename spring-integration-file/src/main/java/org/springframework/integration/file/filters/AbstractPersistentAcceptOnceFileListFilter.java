@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2016 the original author or authors.
+ * Copyright 2013-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,7 +19,11 @@ package org.springframework.integration.file.filters;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.springframework.integration.metadata.ConcurrentMetadataStore;
 import org.springframework.util.Assert;
@@ -29,6 +33,9 @@ import org.springframework.util.Assert;
  * The default key is 'prefix' plus the absolute file name; value is the timestamp of the file.
  * Files are deemed as already 'seen' if they exist in the store and have the
  * same modified time as the current file.
+ * <p>
+ * {@link #filterFiles(Object[])} checks and stores the whole listing with a single
+ * {@link ConcurrentMetadataStore#putAllIfAbsent(Map)} call.
  *
  * @author Gary Russell
  * @since 3.0
@@ -69,6 +76,48 @@ public abstract class AbstractPersistentAcceptOnceFileListFilter<F> extends Abst
 		this.flushOnUpdate = flushOnUpdate;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * All the files are presented to the store at once, using
+	 * {@link ConcurrentMetadataStore#putAllIfAbsent(Map)}; only the files already in
+	 * the store with a different value need an individual
+	 * {@link ConcurrentMetadataStore#replace(String, String, String) replace}.
+	 * @since 5.0
+	 */
+	@Override
+	public List<F> filterFiles(F[] files) {
+		List<F> accepted = new ArrayList<>();
+		if (files == null || files.length == 0) {
+			return accepted;
+		}
+		Map<String, F> filesByKey = new LinkedHashMap<>();
+		Map<String, String> values = new LinkedHashMap<>();
+		for (F file : files) {
+			String key = buildKey(file);
+			if (!filesByKey.containsKey(key)) {
+				filesByKey.put(key, file);
+				values.put(key, value(file));
+			}
+		}
+		synchronized (this.monitor) {
+			Map<String, String> existing = this.store.putAllIfAbsent(values);
+			for (Entry<String, F> entry : filesByKey.entrySet()) {
+				String key = entry.getKey();
+				F file = entry.getValue();
+				String oldValue = existing.get(key);
+				if (oldValue == null // not in store
+						|| (!isEqual(file, oldValue) && this.store.replace(key, oldValue, values.get(key)))) {
+					accepted.add(file);
+				}
+			}
+			if (!accepted.isEmpty()) {
+				flushIfNeeded();
+			}
+		}
+		return accepted;
+	}
+
 	@Override
 	public boolean accept(F file) {
 		String key = buildKey(file);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,11 +19,14 @@ package org.springframework.integration.file.remote.session;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.function.BiFunction;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.util.ConcurrentPool;
+import org.springframework.integration.util.ResizablePool;
 import org.springframework.integration.util.SimplePool;
 import org.springframework.util.Assert;
 
@@ -44,7 +47,7 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 
 	private final SessionFactory<F> sessionFactory;
 
-	private final SimplePool<Session<F>> pool;
+	private final ResizablePool<Session<F>> pool;
 
 	private final boolean isSharedSessionCapable;
 
@@ -72,10 +75,28 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 	 * @param sessionCacheSize The maximum cache size.
 	 */
 	public CachingSessionFactory(SessionFactory<F> sessionFactory, int sessionCacheSize) {
+		this(sessionFactory, sessionCacheSize, SimplePool::new);
+	}
+
+	/**
+	 * Create a CachingSessionFactory with the specified session limit, using a pool
+	 * created by the provided function; for example {@code ConcurrentPool::new} to use a
+	 * {@link ConcurrentPool}, or a configured
+	 * {@link org.springframework.integration.util.ConcurrentPoolFactory}. Background
+	 * eviction of a {@link ConcurrentPool} is stopped when this factory is destroyed.
+	 * <p>
+	 * Do not cache a {@link DelegatingSessionFactory}, cache each delegate therein instead.
+	 * @param sessionFactory The underlying session factory.
+	 * @param sessionCacheSize The maximum cache size.
+	 * @param poolFactory a function to create the pool from the size and callback.
+	 * @since 5.0
+	 */
+	public CachingSessionFactory(SessionFactory<F> sessionFactory, int sessionCacheSize,
+			BiFunction<Integer, SimplePool.PoolItemCallback<Session<F>>, ResizablePool<Session<F>>> poolFactory) {
 		Assert.isTrue(!(sessionFactory instanceof DelegatingSessionFactory),
 				"'sessionFactory' cannot be a 'DelegatingSessionFactory'; cache each delegate instead");
 		this.sessionFactory = sessionFactory;
-		this.pool = new SimplePool<Session<F>>(sessionCacheSize, new SimplePool.PoolItemCallback<Session<F>>() {
+		this.pool = poolFactory.apply(sessionCacheSize, new SimplePool.PoolItemCallback<Session<F>>() {
 			@Override
 			public Session<F> createForPool() {
 				return CachingSessionFactory.this.sessionFactory.getSession();
@@ -124,10 +145,14 @@ public class CachingSessionFactory<F> implements SessionFactory<F>, DisposableBe
 	}
 
 	/**
-	 * Remove (close) any unused sessions in the pool.
+	 * Remove (close) any unused sessions in the pool and stop the pool's background
+	 * eviction, if any.
 	 */
 	@Override
 	public void destroy() {
+		if (this.pool instanceof ConcurrentPool) {
+			((ConcurrentPool<?>) this.pool).stopEviction();
+		}
 		this.pool.removeAllIdleItems();
 	}
 
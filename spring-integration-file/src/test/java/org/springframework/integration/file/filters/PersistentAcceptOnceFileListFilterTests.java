@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2015 the original author or authors.
+ * Copyright 2013-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,7 @@ import java.io.Flushable;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
@@ -198,4 +199,29 @@ public class PersistentAcceptOnceFileListFilterTests extends AcceptOnceFileListF
 		assertEquals(5, flushes.get());
 	}
 
+	@Test
+	public void testWholeListingInOneBatch() throws Exception {
+		final AtomicInteger batches = new AtomicInteger();
+		ConcurrentMetadataStore store = new SimpleMetadataStore() {
+
+			@Override
+			public Map<String, String> putAllIfAbsent(Map<String, String> entries) {
+				batches.incrementAndGet();
+				return super.putAllIfAbsent(entries);
+			}
+
+		};
+		FileSystemPersistentAcceptOnceFileListFilter filter = new FileSystemPersistentAcceptOnceFileListFilter(
+				store, "batch:");
+		File[] files = new File[] { new File("foo"), new File("bar"), new File("foo"), new File("baz") };
+		List<File> passed = filter.filterFiles(files);
+		assertEquals(3, passed.size());
+		assertEquals("foo", passed.get(0).getName());
+		assertEquals("bar", passed.get(1).getName());
+		assertEquals("baz", passed.get(2).getName());
+		assertEquals(0, filter.filterFiles(files).size());
+		assertEquals(2, batches.get());
+		filter.close();
+	}
+
 }
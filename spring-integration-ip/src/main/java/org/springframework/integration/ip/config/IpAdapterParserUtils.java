@@ -72,6 +72,8 @@ public abstract class IpAdapterParserUtils {
 
 	static final String USING_DIRECT_BUFFERS = "using-direct-buffers";
 
+	static final String BYTE_BUFFER_DECODING = "byte-buffer-decoding";
+
 	static final String SO_LINGER = "so-linger";
 
 	static final String SO_TCP_NODELAY = "so-tcp-no-delay";
@@ -102,6 +104,8 @@ public abstract class IpAdapterParserUtils {
 
 	public static final String REPLY_TIMEOUT = "reply-timeout";
 
+	public static final String CORRELATION_EXPRESSION = "correlation-expression";
+
 	public static final String REPLY_CHANNEL = "reply-channel";
 
 	public static final String LOOKUP_HOST = "lookup-host";
@@ -132,6 +136,12 @@ public abstract class IpAdapterParserUtils {
 
 	public static final String SSL_HANDSHAKE_TIMEOUT = "ssl-handshake-timeout";
 
+	public static final String WRITE_COALESCING_LINGER = "write-coalescing-linger";
+
+	public static final String MAX_PENDING_WRITES = "max-pending-writes";
+
+	public static final String MAX_IN_FLIGHT_MESSAGES = "max-in-flight-messages";
+
 	private IpAdapterParserUtils() {
 	}
 
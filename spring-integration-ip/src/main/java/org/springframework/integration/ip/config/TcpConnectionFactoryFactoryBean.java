@@ -106,12 +106,20 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 
 	private volatile boolean usingDirectBuffers;
 
+	private volatile boolean byteBufferDecoding;
+
 	private volatile String beanName;
 
 	private volatile boolean applySequence;
 
 	private volatile Long readDelay;
 
+	private volatile Long writeCoalescingLinger;
+
+	private volatile Integer maxPendingWrites;
+
+	private volatile Integer maxInFlightMessages;
+
 	private volatile TcpSSLContextSupport sslContextSupport;
 
 	private volatile Integer sslHandshakeTimeout;
@@ -161,6 +169,7 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 				this.setCommonAttributes(connectionFactory);
 				this.setServerAttributes(connectionFactory);
 				connectionFactory.setUsingDirectBuffers(this.usingDirectBuffers);
+				connectionFactory.setByteBufferDecoding(this.byteBufferDecoding);
 				connectionFactory.setTcpNioConnectionSupport(this.obtainNioConnectionSupport());
 				this.connectionFactory = connectionFactory;
 			}
@@ -169,6 +178,7 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 						this.host, this.port);
 				this.setCommonAttributes(connectionFactory);
 				connectionFactory.setUsingDirectBuffers(this.usingDirectBuffers);
+				connectionFactory.setByteBufferDecoding(this.byteBufferDecoding);
 				connectionFactory.setTcpNioConnectionSupport(this.obtainNioConnectionSupport());
 				this.connectionFactory = connectionFactory;
 			}
@@ -219,6 +229,18 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 		if (this.readDelay != null) {
 			factory.setReadDelay(this.readDelay);
 		}
+		if (this.writeCoalescingLinger != null) {
+			if (this.beanFactory != null) {
+				factory.setBeanFactory(this.beanFactory);
+			}
+			factory.setWriteCoalescingLinger(this.writeCoalescingLinger);
+		}
+		if (this.maxPendingWrites != null) {
+			factory.setMaxPendingWrites(this.maxPendingWrites);
+		}
+		if (this.maxInFlightMessages != null) {
+			factory.setMaxInFlightMessages(this.maxInFlightMessages);
+		}
 	}
 
 	private void setServerAttributes(AbstractServerConnectionFactory factory) {
@@ -362,6 +384,15 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 		this.usingDirectBuffers = usingDirectBuffers;
 	}
 
+	/**
+	 * @param byteBufferDecoding the byteBufferDecoding to set.
+	 * @since 5.0
+	 * @see TcpNioServerConnectionFactory#setByteBufferDecoding(boolean)
+	 */
+	public void setByteBufferDecoding(boolean byteBufferDecoding) {
+		this.byteBufferDecoding = byteBufferDecoding;
+	}
+
 	/**
 	 * @param taskExecutor The task executor.
 	 * @see AbstractConnectionFactory#setTaskExecutor(java.util.concurrent.Executor)
@@ -472,6 +503,33 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 		this.readDelay = readDelay;
 	}
 
+	/**
+	 * @param writeCoalescingLinger the write coalescing linger time.
+	 * @since 5.0
+	 * @see AbstractConnectionFactory#setWriteCoalescingLinger(long)
+	 */
+	public void setWriteCoalescingLinger(long writeCoalescingLinger) {
+		this.writeCoalescingLinger = writeCoalescingLinger;
+	}
+
+	/**
+	 * @param maxPendingWrites the maximum number of unflushed messages.
+	 * @since 5.0
+	 * @see AbstractConnectionFactory#setMaxPendingWrites(int)
+	 */
+	public void setMaxPendingWrites(int maxPendingWrites) {
+		this.maxPendingWrites = maxPendingWrites;
+	}
+
+	/**
+	 * @param maxInFlightMessages the maximum number of in flight messages per connection.
+	 * @since 5.0
+	 * @see AbstractConnectionFactory#setMaxInFlightMessages(int)
+	 */
+	public void setMaxInFlightMessages(int maxInFlightMessages) {
+		this.maxInFlightMessages = maxInFlightMessages;
+	}
+
 	public void setSslContextSupport(TcpSSLContextSupport sslContextSupport) {
 		Assert.notNull(sslContextSupport, "TcpSSLContextSupport may not be null");
 		this.sslContextSupport = sslContextSupport;
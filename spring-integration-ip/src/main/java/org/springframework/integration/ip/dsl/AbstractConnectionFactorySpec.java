@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2016-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -219,4 +219,34 @@ public abstract class AbstractConnectionFactorySpec
 		return _this();
 	}
 
+	/**
+	 * @param writeCoalescingLinger the write coalescing linger time (milliseconds).
+	 * @return the spec.
+	 * @see AbstractConnectionFactory#setWriteCoalescingLinger(long)
+	 */
+	public S writeCoalescingLinger(long writeCoalescingLinger) {
+		this.target.setWriteCoalescingLinger(writeCoalescingLinger);
+		return _this();
+	}
+
+	/**
+	 * @param maxPendingWrites the maximum number of unflushed messages.
+	 * @return the spec.
+	 * @see AbstractConnectionFactory#setMaxPendingWrites(int)
+	 */
+	public S maxPendingWrites(int maxPendingWrites) {
+		this.target.setMaxPendingWrites(maxPendingWrites);
+		return _this();
+	}
+
+	/**
+	 * @param maxInFlightMessages the maximum number of in flight messages per connection.
+	 * @return the spec.
+	 * @see AbstractConnectionFactory#setMaxInFlightMessages(int)
+	 */
+	public S maxInFlightMessages(int maxInFlightMessages) {
+		this.target.setMaxInFlightMessages(maxInFlightMessages);
+		return _this();
+	}
+
 }
@@ -89,6 +89,18 @@ public class TcpOutboundGatewaySpec extends MessageHandlerSpec<TcpOutboundGatewa
 		return _this();
 	}
 
+	/**
+	 * Configure a {@link Function} that is applied to both requests and replies to
+	 * correlate them, allowing multiple requests in flight on the same connection.
+	 * @param correlationFunction the function.
+	 * @return the spec.
+	 * @see TcpOutboundGateway#setCorrelationExpression(org.springframework.expression.Expression)
+	 */
+	public TcpOutboundGatewaySpec correlation(Function<Message<?>, ?> correlationFunction) {
+		this.target.setCorrelationExpression(new FunctionExpression<>(correlationFunction));
+		return _this();
+	}
+
 	@Override
 	public Map<Object, String> getComponentsToRegister() {
 		return this.connectionFactory != null
@@ -52,6 +52,12 @@ import org.springframework.util.Assert;
  * (or times out). Asynchronous requests/responses over the same connection are not
  * supported - use a pair of outbound/inbound adapters for that use case.
  * <p>
+ * Starting with version 5.0, when a {@link #setCorrelationExpression(Expression)
+ * correlationExpression} is provided, the gateway multiplexes requests over the
+ * connection(s) instead; any number of requests can be in flight on the same connection
+ * and replies are matched with their requests using the correlation value evaluated
+ * against both messages.
+ * <p>
  * {@link SmartLifecycle} methods delegate to the underlying {@link AbstractConnectionFactory}
  *
  *
@@ -67,6 +73,8 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler
 
 	private final Map<String, AsyncReply> pendingReplies = new ConcurrentHashMap<String, AsyncReply>();
 
+	private final Map<Object, AsyncReply> correlatedReplies = new ConcurrentHashMap<Object, AsyncReply>();
+
 	private final Semaphore semaphore = new Semaphore(1, true);
 
 	private volatile Expression remoteTimeoutExpression = new LiteralExpression("10000");
@@ -75,6 +83,8 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler
 
 	private volatile EvaluationContext evaluationContext = new StandardEvaluationContext();
 
+	private volatile Expression correlationExpression;
+
 	/**
 	 * @param requestTimeout the requestTimeout to set
 	 */
@@ -96,6 +106,24 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler
 		this.remoteTimeoutExpression = remoteTimeoutExpression;
 	}
 
+	/**
+	 * Set an expression to evaluate against both request and reply messages to
+	 * determine a correlation value (for example, a header, or a field at a fixed
+	 * offset in a {@code byte[]} payload). When set, requests are no longer serialized
+	 * on a shared connection; many requests can be in flight on the same connection
+	 * and each reply is routed to the request with an equal correlation value. The
+	 * result must therefore implement {@code equals()} and {@code hashCode()} (a
+	 * {@code byte[]} does not) and must be unique among in-flight requests. The
+	 * {@link #setRequestTimeout(long) requestTimeout} does not apply in this mode;
+	 * the {@link #setRemoteTimeoutExpression(Expression) remoteTimeout} applies to
+	 * each request individually and a timeout does not close the connection.
+	 * @param correlationExpression the expression.
+	 * @since 5.0
+	 */
+	public void setCorrelationExpression(Expression correlationExpression) {
+		this.correlationExpression = correlationExpression;
+	}
+
 	public void setIntegrationEvaluationContext(EvaluationContext evaluationContext) {
 		this.evaluationContext = evaluationContext;
 	}
@@ -113,6 +141,9 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler
 	protected Object handleRequestMessage(Message<?> requestMessage) {
 		Assert.notNull(this.connectionFactory, this.getClass().getName() +
 				" requires a client connection factory");
+		if (this.correlationExpression != null) {
+			return handleCorrelatedRequestMessage(requestMessage);
+		}
 		boolean haveSemaphore = false;
 		TcpConnection connection = null;
 		String connectionId = null;
@@ -176,6 +207,59 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler
 		}
 	}
 
+	private Object handleCorrelatedRequestMessage(Message<?> requestMessage) {
+		TcpConnection connection = null;
+		Object correlationId = null;
+		try {
+			Object correlation = this.correlationExpression.getValue(this.evaluationContext, requestMessage);
+			if (correlation == null) {
+				throw new MessagingException(requestMessage, "The 'correlationExpression' evaluated to null");
+			}
+			connection = this.connectionFactory.getConnection();
+			AsyncReply reply = new AsyncReply(this.remoteTimeoutExpression.getValue(this.evaluationContext,
+					requestMessage, Long.class), connection.getConnectionId());
+			if (this.correlatedReplies.putIfAbsent(correlation, reply) != null) {
+				throw new MessagingException(requestMessage,
+						"A request with correlation '" + correlation + "' is already in flight");
+			}
+			correlationId = correlation;
+			if (logger.isDebugEnabled()) {
+				logger.debug("Added pending reply " + correlationId + " on " + reply.connectionId);
+			}
+			connection.send(requestMessage);
+			Message<?> replyMessage = reply.getReply();
+			if (replyMessage == null) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Remote Timeout for " + correlationId + " on " + reply.connectionId);
+				}
+				// Other requests may be in flight on this connection - leave it open.
+				throw new MessageTimeoutException(requestMessage, "Timed out waiting for response");
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Response " + replyMessage);
+			}
+			return replyMessage;
+		}
+		catch (Exception e) {
+			logger.error("Tcp Gateway exception", e);
+			if (e instanceof MessagingException) {
+				throw (MessagingException) e;
+			}
+			throw new MessagingException("Failed to send or receive", e);
+		}
+		finally {
+			if (correlationId != null) {
+				this.correlatedReplies.remove(correlationId);
+				if (logger.isDebugEnabled()) {
+					logger.debug("Removed pending reply " + correlationId);
+				}
+			}
+			if (connection != null && this.isSingleUse) {
+				connection.close();
+			}
+		}
+	}
+
 	@Override
 	public boolean onMessage(Message<?> message) {
 		String connectionId = (String) message.getHeaders().get(IpHeaders.CONNECTION_ID);
@@ -187,6 +271,9 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler
 		if (logger.isTraceEnabled()) {
 			logger.trace("onMessage: " + connectionId + "(" + message + ")");
 		}
+		if (this.correlationExpression != null) {
+			return onCorrelatedMessage(message, connectionId);
+		}
 		AsyncReply reply = this.pendingReplies.get(connectionId);
 		if (reply == null) {
 			if (message instanceof ErrorMessage) {
@@ -207,6 +294,31 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler
 		return false;
 	}
 
+	private boolean onCorrelatedMessage(Message<?> message, String connectionId) {
+		if (message instanceof ErrorMessage) {
+			/*
+			 * A socket error; convey it to all requests in flight on that connection.
+			 */
+			for (AsyncReply reply : this.correlatedReplies.values()) {
+				if (connectionId.equals(reply.connectionId)) {
+					reply.setReply(message);
+				}
+			}
+			return false;
+		}
+		Object correlation = this.correlationExpression.getValue(this.evaluationContext, message);
+		AsyncReply reply = correlation == null ? null : this.correlatedReplies.get(correlation);
+		if (reply == null) {
+			String errorMessage = "Cannot correlate response - no pending reply for " + correlation
+					+ " on " + connectionId;
+			logger.error(errorMessage);
+			publishNoConnectionEvent(message, connectionId, errorMessage);
+			return false;
+		}
+		reply.setReply(message);
+		return false;
+	}
+
 	private void publishNoConnectionEvent(Message<?> message, String connectionId, String errorMessage) {
 		ApplicationEventPublisher applicationEventPublisher = this.connectionFactory.getApplicationEventPublisher();
 		if (applicationEventPublisher != null) {
@@ -292,12 +404,19 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler
 
 		private final long remoteTimeout;
 
+		private final String connectionId;
+
 		private volatile Message<?> reply;
 
 		private AsyncReply(long remoteTimeout) {
+			this(remoteTimeout, null);
+		}
+
+		private AsyncReply(long remoteTimeout, String connectionId) {
 			this.latch = new CountDownLatch(1);
 			this.secondChanceLatch = new CountDownLatch(1);
 			this.remoteTimeout = remoteTimeout;
+			this.connectionId = connectionId;
 		}
 
 		/**
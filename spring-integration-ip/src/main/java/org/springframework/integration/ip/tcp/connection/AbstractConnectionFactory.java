@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -41,14 +41,19 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.context.IntegrationObjectSupport;
+import org.springframework.integration.ip.tcp.serializer.AbstractPooledBufferByteArraySerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayPool;
 import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
 
 /**
@@ -61,6 +66,11 @@ import org.springframework.util.Assert;
 public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		implements ConnectionFactory, ApplicationEventPublisherAware {
 
+	/**
+	 * The default maximum number of unflushed messages when write coalescing is enabled.
+	 */
+	public static final int DEFAULT_MAX_PENDING_WRITES = 64;
+
 	protected static final int DEFAULT_REPLY_TIMEOUT = 10000;
 
 	private static final int DEFAULT_NIO_HARVEST_INTERVAL = 2000;
@@ -97,6 +107,8 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 
 	private volatile boolean deserializerSet;
 
+	private volatile ByteArrayPool bufferPool;
+
 	private volatile Serializer<?> serializer = new ByteArrayCrLfSerializer();
 
 	private volatile TcpMessageMapper mapper = new TcpMessageMapper();
@@ -129,6 +141,16 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 
 	private volatile Integer sslHandshakeTimeout;
 
+	private volatile long writeCoalescingLinger = -1;
+
+	private volatile int maxPendingWrites = DEFAULT_MAX_PENDING_WRITES;
+
+	private volatile int maxInFlightMessages;
+
+	private final AtomicInteger suspendedConnections = new AtomicInteger();
+
+	private final AtomicLong readSuspensions = new AtomicLong();
+
 	public AbstractConnectionFactory(int port) {
 		this.port = port;
 	}
@@ -384,6 +406,29 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		this.deserializerSet = true;
 	}
 
+	/**
+	 * Set a {@link ByteArrayPool} to be used for deserialization working buffers. It is
+	 * applied to the default deserializer; when a custom
+	 * {@link AbstractPooledBufferByteArraySerializer} is provided, configure it with the
+	 * same pool (available from {@link #getBufferPool()}) to share the buffers.
+	 * @param bufferPool the pool.
+	 * @since 5.0
+	 */
+	public void setBufferPool(ByteArrayPool bufferPool) {
+		this.bufferPool = bufferPool;
+		if (!this.deserializerSet && this.deserializer instanceof AbstractPooledBufferByteArraySerializer) {
+			((AbstractPooledBufferByteArraySerializer) this.deserializer).setBufferPool(bufferPool);
+		}
+	}
+
+	/**
+	 * @return the buffer pool, if any.
+	 * @since 5.0
+	 */
+	public ByteArrayPool getBufferPool() {
+		return this.bufferPool;
+	}
+
 	/**
 	 *
 	 * @param serializer the serializer to set
@@ -458,6 +503,14 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		this.nioHarvestInterval = nioHarvestInterval;
 	}
 
+	/**
+	 * @return the interval (milliseconds) at which closed NIO connections are harvested.
+	 * @since 5.0
+	 */
+	protected int getNioHarvestInterval() {
+		return this.nioHarvestInterval;
+	}
+
 	/**
 	 * Set the handshake timeout used when waiting for SSL handshake data; only applies
 	 * to SSL connections, when using NIO.
@@ -495,6 +548,130 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		this.readDelay = readDelay;
 	}
 
+	/**
+	 * Enable write coalescing on the connections created by this factory. Instead of
+	 * flushing the socket after each message, serialized messages are accumulated in the
+	 * connection's write buffer (sized by {@code soSendBufferSize}) and flushed when the
+	 * buffer fills, when {@link #setMaxPendingWrites(int) maxPendingWrites} messages are
+	 * waiting, or after this linger time (milliseconds); pending data is also flushed
+	 * when the connection is closed. Requires a {@code TaskScheduler}. Default -1
+	 * (disabled).
+	 * @param writeCoalescingLinger the linger time.
+	 * @since 5.0
+	 */
+	public void setWriteCoalescingLinger(long writeCoalescingLinger) {
+		this.writeCoalescingLinger = writeCoalescingLinger;
+	}
+
+	/**
+	 * The maximum number of messages that can be waiting to be flushed on a connection
+	 * when write coalescing is enabled. Default {@value #DEFAULT_MAX_PENDING_WRITES}.
+	 * @param maxPendingWrites the maximum number of pending writes.
+	 * @since 5.0
+	 * @see #setWriteCoalescingLinger(long)
+	 */
+	public void setMaxPendingWrites(int maxPendingWrites) {
+		Assert.isTrue(maxPendingWrites > 0, "'maxPendingWrites' must be greater than 0");
+		this.maxPendingWrites = maxPendingWrites;
+	}
+
+	/**
+	 * Enable read flow control on the NIO connections created by this factory. When the
+	 * number of messages received on a connection, but not yet accepted by the listener
+	 * (e.g. because the send to a bounded channel is blocked), reaches this limit, the
+	 * factory stops reading from the connection (its read interest is removed from the
+	 * selector), so that data remains in the socket and TCP flow control pushes back on
+	 * the sender. Reading resumes when half the messages have been accepted. Default 0
+	 * (no limit). Ignored by non-NIO factories.
+	 * @param maxInFlightMessages the maximum number of in flight messages per connection.
+	 * @since 5.0
+	 * @see TcpNioConnection#setMaxInFlightMessages(int)
+	 */
+	public void setMaxInFlightMessages(int maxInFlightMessages) {
+		Assert.isTrue(maxInFlightMessages >= 0, "'maxInFlightMessages' cannot be negative");
+		this.maxInFlightMessages = maxInFlightMessages;
+	}
+
+	/**
+	 * @return the maximum number of in flight messages per connection.
+	 * @since 5.0
+	 */
+	public int getMaxInFlightMessages() {
+		return this.maxInFlightMessages;
+	}
+
+	/**
+	 * @return the number of connections on which reading is currently suspended.
+	 * @since 5.0
+	 * @see #setMaxInFlightMessages(int)
+	 */
+	public int getSuspendedConnectionCount() {
+		return this.suspendedConnections.get();
+	}
+
+	/**
+	 * @return the total number of times reading has been suspended on a connection.
+	 * @since 5.0
+	 * @see #setMaxInFlightMessages(int)
+	 */
+	public long getReadSuspensionCount() {
+		return this.readSuspensions.get();
+	}
+
+	/**
+	 * Invoke after a read from an NIO connection has completed, before re-enabling read
+	 * interest on its key; if the connection's in flight limit has been reached, reading
+	 * is suspended and read interest is re-enabled when the connection has drained.
+	 * @param connection the connection.
+	 * @param selector the selector.
+	 * @param key the connection's selection key.
+	 * @return true if reading is suspended; the caller must not re-enable read interest.
+	 * @since 5.0
+	 */
+	protected boolean suspendReadsIfNecessary(final TcpNioConnection connection, final Selector selector,
+			final SelectionKey key) {
+		if (this.maxInFlightMessages <= 0) {
+			return false;
+		}
+		// count before suspending; the resumer might run before we return
+		this.suspendedConnections.incrementAndGet();
+		boolean suspended = connection.suspendReadsIfNecessary(() -> {
+			this.suspendedConnections.decrementAndGet();
+			connection.setLastRead(System.currentTimeMillis());
+			try {
+				if (key.channel().isOpen()) {
+					key.interestOps(SelectionKey.OP_READ);
+					selector.wakeup();
+				}
+			}
+			catch (CancelledKeyException e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Selection key " + key + " cancelled");
+				}
+			}
+		});
+		if (suspended) {
+			this.readSuspensions.incrementAndGet();
+		}
+		else {
+			this.suspendedConnections.decrementAndGet();
+		}
+		return suspended;
+	}
+
+	/**
+	 * Enable write coalescing on the connection, if so configured.
+	 * @param connection the connection.
+	 * @since 5.0
+	 */
+	protected void configureWriteCoalescing(TcpConnectionSupport connection) {
+		if (this.writeCoalescingLinger >= 0) {
+			TaskScheduler taskScheduler = getTaskScheduler();
+			Assert.state(taskScheduler != null, "A 'taskScheduler' is required for write coalescing");
+			connection.enableWriteCoalescing(taskScheduler, this.writeCoalescingLinger, this.maxPendingWrites);
+		}
+	}
+
 	@Override
 	protected void onInit() throws Exception {
 		super.onInit();
@@ -505,6 +682,10 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 
 	@Override
 	public void start() {
+		if (this.writeCoalescingLinger >= 0 && !this.soTcpNoDelay && logger.isWarnEnabled()) {
+			logger.warn("Write coalescing is enabled but 'soTcpNoDelay' is false; Nagle's algorithm "
+					+ "may further delay coalesced writes");
+		}
 		if (logger.isInfoEnabled()) {
 			logger.info("started " + this);
 		}
@@ -627,7 +808,13 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 				}
 				else if (this.soTimeout > 0) {
 					TcpNioConnection connection = connections.get(channel);
-					if (now - connection.getLastRead() >= this.soTimeout) {
+					if (connection.isReadSuspended()) {
+						if (logger.isTraceEnabled()) {
+							logger.trace("Skipping timeout check; reads are suspended for " +
+									connection.getConnectionId());
+						}
+					}
+					else if (now - connection.getLastRead() >= this.soTimeout) {
 						/*
 						 * For client connections, we have to wait for 2 timeouts if the last
 						 * send was within the current timeout.
@@ -700,8 +887,10 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 								}
 								if (!delayed) {
 									if (key.channel().isOpen()) {
-										key.interestOps(SelectionKey.OP_READ);
-										selector.wakeup();
+										if (!suspendReadsIfNecessary(connection, selector, key)) {
+											key.interestOps(SelectionKey.OP_READ);
+											selector.wakeup();
+										}
 									}
 									else {
 										connection.sendExceptionToListener(new EOFException("Connection is closed"));
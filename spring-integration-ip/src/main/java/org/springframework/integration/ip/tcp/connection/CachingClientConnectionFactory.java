@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,11 +20,14 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
 
 import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.support.AbstractIntegrationMessageBuilder;
+import org.springframework.integration.util.ConcurrentPool;
+import org.springframework.integration.util.ResizablePool;
 import org.springframework.integration.util.SimplePool;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessagingException;
@@ -44,7 +47,7 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 
 	private final AbstractClientConnectionFactory targetConnectionFactory;
 
-	private final SimplePool<TcpConnectionSupport> pool;
+	private final ResizablePool<TcpConnectionSupport> pool;
 
 	/**
 	 * Construct a caching connection factory that delegates to the provided factory, with
@@ -53,11 +56,29 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 	 * @param poolSize the number of connections to allow.
 	 */
 	public CachingClientConnectionFactory(AbstractClientConnectionFactory target, int poolSize) {
+		this(target, poolSize, SimplePool::new);
+	}
+
+	/**
+	 * Construct a caching connection factory that delegates to the provided factory, with
+	 * the provided pool size, using a pool created by the provided function; for example
+	 * {@code ConcurrentPool::new} to use a {@link ConcurrentPool}, or a configured
+	 * {@link org.springframework.integration.util.ConcurrentPoolFactory}. Background
+	 * eviction of a {@link ConcurrentPool} is stopped when this factory is stopped and
+	 * restarted when it is started.
+	 * @param target the target factory.
+	 * @param poolSize the number of connections to allow.
+	 * @param poolFactory a function to create the pool from the pool size and callback.
+	 * @since 5.0
+	 */
+	public CachingClientConnectionFactory(AbstractClientConnectionFactory target, int poolSize,
+			BiFunction<Integer, SimplePool.PoolItemCallback<TcpConnectionSupport>,
+					ResizablePool<TcpConnectionSupport>> poolFactory) {
 		super("", 0);
 		// override single-use to true so the target creates multiple connections
 		target.setSingleUse(true);
 		this.targetConnectionFactory = target;
-		this.pool = new SimplePool<TcpConnectionSupport>(poolSize,
+		this.pool = poolFactory.apply(poolSize,
 				new SimplePool.PoolItemCallback<TcpConnectionSupport>() {
 
 					@Override
@@ -85,7 +106,7 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 
 	/**
 	 * @param connectionWaitTimeout the new timeout.
-	 * @see SimplePool#setWaitTimeout(long)
+	 * @see ResizablePool#setWaitTimeout(long)
 	 */
 	public void setConnectionWaitTimeout(int connectionWaitTimeout) {
 		this.pool.setWaitTimeout(connectionWaitTimeout);
@@ -93,14 +114,14 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 
 	/**
 	 * @param poolSize the new pool size.
-	 * @see SimplePool#setPoolSize(int)
+	 * @see ResizablePool#setPoolSize(int)
 	 */
 	public void setPoolSize(int poolSize) {
 		this.pool.setPoolSize(poolSize);
 	}
 
 	/**
-	 * @see SimplePool#getPoolSize()
+	 * @see ResizablePool#getPoolSize()
 	 * @return the pool size.
 	 */
 	public int getPoolSize() {
@@ -108,7 +129,7 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 	}
 
 	/**
-	 * @see SimplePool#getIdleCount()
+	 * @see ResizablePool#getIdleCount()
 	 * @return the idle count.
 	 */
 	public int getIdleCount() {
@@ -116,7 +137,7 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 	}
 
 	/**
-	 * @see SimplePool#getActiveCount()
+	 * @see ResizablePool#getActiveCount()
 	 * @return the active count.
 	 */
 	public int getActiveCount() {
@@ -124,7 +145,7 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 	}
 
 	/**
-	 * @see SimplePool#getAllocatedCount()
+	 * @see ResizablePool#getAllocatedCount()
 	 * @return the allocated count.
 	 */
 	public int getAllocatedCount() {
@@ -359,6 +380,36 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 		return this.targetConnectionFactory.isLookupHost();
 	}
 
+	@Override
+	public void setWriteCoalescingLinger(long writeCoalescingLinger) {
+		this.targetConnectionFactory.setWriteCoalescingLinger(writeCoalescingLinger);
+	}
+
+	@Override
+	public void setMaxPendingWrites(int maxPendingWrites) {
+		this.targetConnectionFactory.setMaxPendingWrites(maxPendingWrites);
+	}
+
+	@Override
+	public void setMaxInFlightMessages(int maxInFlightMessages) {
+		this.targetConnectionFactory.setMaxInFlightMessages(maxInFlightMessages);
+	}
+
+	@Override
+	public int getMaxInFlightMessages() {
+		return this.targetConnectionFactory.getMaxInFlightMessages();
+	}
+
+	@Override
+	public int getSuspendedConnectionCount() {
+		return this.targetConnectionFactory.getSuspendedConnectionCount();
+	}
+
+	@Override
+	public long getReadSuspensionCount() {
+		return this.targetConnectionFactory.getReadSuspensionCount();
+	}
+
 
 	@Override
 	public void forceClose(TcpConnection connection) {
@@ -379,12 +430,18 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 	public void start() {
 		setActive(true);
 		this.targetConnectionFactory.start();
+		if (this.pool instanceof ConcurrentPool) {
+			((ConcurrentPool<?>) this.pool).restartEviction();
+		}
 		super.start();
 	}
 
 	@Override
 	public synchronized void stop() {
 		this.targetConnectionFactory.stop();
+		if (this.pool instanceof ConcurrentPool) {
+			((ConcurrentPool<?>) this.pool).stopEviction();
+		}
 		this.pool.removeAllIdleItems();
 	}
 
@@ -0,0 +1,620 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLSession;
+
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.support.AbstractIntegrationMessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.util.Assert;
+
+/**
+ * Given a list of connection factories (typically one for each server in a farm), serves
+ * up {@link TcpConnection}s from the factory that is currently the least loaded.
+ * The load on each factory is measured by the number of requests sent on its connections
+ * that have not yet received a reply ({@link Strategy#LEAST_OUTSTANDING}) or, in
+ * addition, by the exponentially weighted moving average of its reply latency
+ * ({@link Strategy#EWMA_LATENCY}).
+ * <p>
+ * A factory that fails to provide a connection, or on whose connection a send fails,
+ * {@link #setFailureThreshold(int) failureThreshold} consecutive times is ejected for
+ * the {@link #setEjectionTime(long) ejectionTime}; when it is re-admitted, and when
+ * the factory starts, its share of the load can be ramped up linearly over the
+ * {@link #setSlowStartWindow(long) slowStartWindow}. If every factory is ejected,
+ * they are all considered. A failed send is retried on a connection from another
+ * factory.
+ * <p>
+ * To balance each request, this factory and its delegates should be
+ * {@code singleUse} (or the delegates should be {@link CachingClientConnectionFactory}s);
+ * otherwise, as with the {@link FailoverClientConnectionFactory}, a shared connection is
+ * used until it fails.
+ * <p>
+ * Requests are only tracked when a listener is registered (replies are expected); for
+ * send-only use, the load is therefore spread round robin. At most
+ * {@value #MAX_TRACKED_REQUESTS} requests are tracked for each connection; beyond that,
+ * the oldest request is assumed to have lost its reply.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ *
+ */
+public class LoadBalancingClientConnectionFactory extends AbstractClientConnectionFactory {
+
+	/**
+	 * The maximum number of requests awaiting a reply that are tracked for each connection.
+	 */
+	public static final int MAX_TRACKED_REQUESTS = 1000;
+
+	/**
+	 * The load balancing strategy.
+	 */
+	public enum Strategy {
+
+		/**
+		 * Select the factory with the fewest requests awaiting a reply.
+		 */
+		LEAST_OUTSTANDING,
+
+		/**
+		 * Select the factory with the lowest product of requests awaiting a reply and
+		 * the moving average of its reply latency.
+		 */
+		EWMA_LATENCY
+
+	}
+
+	private final List<Target> targets = new ArrayList<>();
+
+	private final AtomicInteger nextTarget = new AtomicInteger();
+
+	private volatile Strategy strategy = Strategy.LEAST_OUTSTANDING;
+
+	private volatile int failureThreshold = 3;
+
+	private volatile long ejectionTime = 30000;
+
+	private volatile long slowStartWindow;
+
+	private volatile double latencySmoothing = 0.3;
+
+	public LoadBalancingClientConnectionFactory(List<AbstractClientConnectionFactory> factories) {
+		super("", 0);
+		Assert.notEmpty(factories, "At least one factory is required");
+		for (AbstractClientConnectionFactory factory : factories) {
+			this.targets.add(new Target(factory));
+		}
+	}
+
+	/**
+	 * Set the load balancing strategy. Default {@link Strategy#LEAST_OUTSTANDING}.
+	 * @param strategy the strategy.
+	 */
+	public void setStrategy(Strategy strategy) {
+		Assert.notNull(strategy, "'strategy' cannot be null");
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Set the number of consecutive failures after which a factory is ejected.
+	 * Default 3.
+	 * @param failureThreshold the failure threshold.
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		Assert.isTrue(failureThreshold > 0, "'failureThreshold' must be greater than 0");
+		this.failureThreshold = failureThreshold;
+	}
+
+	/**
+	 * Set the time (milliseconds) for which an ejected factory is not selected.
+	 * Default 30000.
+	 * @param ejectionTime the ejection time.
+	 */
+	public void setEjectionTime(long ejectionTime) {
+		this.ejectionTime = ejectionTime;
+	}
+
+	/**
+	 * Set the time (milliseconds) over which the share of requests sent to a newly
+	 * started or re-admitted factory is ramped up to its full share. Default 0 (no slow
+	 * start).
+	 * @param slowStartWindow the slow start window.
+	 */
+	public void setSlowStartWindow(long slowStartWindow) {
+		this.slowStartWindow = slowStartWindow;
+	}
+
+	/**
+	 * Set the weight (0 &lt; weight &lt;= 1) given to each new latency sample when
+	 * computing the moving average used by {@link Strategy#EWMA_LATENCY}. Default 0.3.
+	 * @param latencySmoothing the weight.
+	 */
+	public void setLatencySmoothing(double latencySmoothing) {
+		Assert.isTrue(latencySmoothing > 0 && latencySmoothing <= 1, "'latencySmoothing' must be > 0 and <= 1");
+		this.latencySmoothing = latencySmoothing;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		for (Target target : this.targets) {
+			Assert.state(!(this.isSingleUse() ^ target.factory.isSingleUse()),
+				"Inconsistent singleUse - delegate factories must match this one");
+			target.factory.enableManualListenerRegistration();
+		}
+	}
+
+	/**
+	 * Delegate TCP Client Connection factories that are used to receive
+	 * data need a Listener to send the messages to; the connections we serve
+	 * register themselves as the listener on the delegate connections, so they can
+	 * track the replies, and then invoke the listener supplied here.
+	 * @see FailoverClientConnectionFactory#registerListener(TcpListener)
+	 */
+	@Override
+	public void registerListener(TcpListener listener) {
+		super.registerListener(listener);
+	}
+
+	@Override
+	public void registerSender(TcpSender sender) {
+		for (Target target : this.targets) {
+			target.factory.registerSender(sender);
+		}
+	}
+
+	@Override
+	protected TcpConnectionSupport obtainConnection() throws Exception {
+		TcpConnectionSupport connection = this.getTheConnection();
+		if (connection != null && connection.isOpen()) {
+			return connection;
+		}
+		BalancedTcpConnection balancedConnection = new BalancedTcpConnection();
+		if (getListener() != null) {
+			balancedConnection.registerListener(getListener());
+		}
+		if (!isSingleUse()) {
+			setTheConnection(balancedConnection);
+		}
+		return balancedConnection;
+	}
+
+	@Override
+	public void start() {
+		long now = System.currentTimeMillis();
+		for (Target target : this.targets) {
+			target.factory.enableManualListenerRegistration();
+			target.factory.start();
+			target.admitted = now;
+		}
+		this.setActive(true);
+		super.start();
+	}
+
+	@Override
+	public void stop() {
+		this.setActive(false);
+		for (Target target : this.targets) {
+			target.factory.stop();
+		}
+	}
+
+	/**
+	 * Returns true if all factories are running
+	 */
+	@Override
+	public boolean isRunning() {
+		boolean isRunning = true;
+		for (Target target : this.targets) {
+			isRunning = !isRunning ? false : target.factory.isRunning();
+		}
+		return isRunning;
+	}
+
+	/**
+	 * Return the number of requests awaiting a reply on connections from the factory.
+	 * @param factory the factory.
+	 * @return the number of requests.
+	 */
+	public int getOutstandingRequests(AbstractClientConnectionFactory factory) {
+		return getTarget(factory).outstanding.get();
+	}
+
+	/**
+	 * Return the moving average of the reply latency for the factory, in milliseconds.
+	 * @param factory the factory.
+	 * @return the latency, or 0 if no replies have been received.
+	 */
+	public double getLatency(AbstractClientConnectionFactory factory) {
+		return getTarget(factory).latency / 1000000.0;
+	}
+
+	/**
+	 * Return true if the factory is currently ejected.
+	 * @param factory the factory.
+	 * @return true if ejected.
+	 */
+	public boolean isEjected(AbstractClientConnectionFactory factory) {
+		return getTarget(factory).isEjected(System.currentTimeMillis());
+	}
+
+	private Target getTarget(AbstractClientConnectionFactory factory) {
+		for (Target target : this.targets) {
+			if (target.factory == factory) {
+				return target;
+			}
+		}
+		throw new IllegalArgumentException("Unknown factory " + factory);
+	}
+
+	/**
+	 * Select the least loaded target that has not been tried, preferring those that
+	 * are not ejected; ties are broken round robin.
+	 */
+	private Target selectTarget(Set<Target> tried) {
+		long now = System.currentTimeMillis();
+		Target selected = selectTarget(tried, now, false);
+		if (selected == null) {
+			selected = selectTarget(tried, now, true);
+		}
+		return selected;
+	}
+
+	private Target selectTarget(Set<Target> tried, long now, boolean includeEjected) {
+		int size = this.targets.size();
+		int start = (this.nextTarget.getAndIncrement() & Integer.MAX_VALUE) % size;
+		Target selected = null;
+		double lowest = Double.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			Target target = this.targets.get((start + i) % size);
+			if (tried.contains(target) || (!includeEjected && target.isEjected(now))) {
+				continue;
+			}
+			double load = target.load(now);
+			if (selected == null || load < lowest) {
+				selected = target;
+				lowest = load;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * The load balancing state of a delegate factory.
+	 */
+	private final class Target {
+
+		private final AbstractClientConnectionFactory factory;
+
+		private final AtomicInteger outstanding = new AtomicInteger();
+
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+		private volatile double latency; // nanoseconds
+
+		private volatile long ejectedUntil;
+
+		private volatile long admitted;
+
+		Target(AbstractClientConnectionFactory factory) {
+			this.factory = factory;
+		}
+
+		boolean isEjected(long now) {
+			return now < this.ejectedUntil;
+		}
+
+		double load(long now) {
+			double load = this.outstanding.get() + 1;
+			if (LoadBalancingClientConnectionFactory.this.strategy == Strategy.EWMA_LATENCY) {
+				load *= this.latency + 1;
+			}
+			long slowStartWindow = LoadBalancingClientConnectionFactory.this.slowStartWindow;
+			long sinceAdmitted = now - this.admitted;
+			if (slowStartWindow > 0 && sinceAdmitted < slowStartWindow) {
+				load /= Math.max(0.1, (double) sinceAdmitted / slowStartWindow);
+			}
+			return load;
+		}
+
+		synchronized void replied(long latency) {
+			this.consecutiveFailures.set(0);
+			if (this.latency == 0) {
+				this.latency = latency;
+			}
+			else {
+				double smoothing = LoadBalancingClientConnectionFactory.this.latencySmoothing;
+				this.latency = smoothing * latency + (1 - smoothing) * this.latency;
+			}
+		}
+
+		void succeeded() {
+			this.consecutiveFailures.set(0);
+		}
+
+		void failed() {
+			if (this.consecutiveFailures.incrementAndGet() >= LoadBalancingClientConnectionFactory.this.failureThreshold) {
+				this.consecutiveFailures.set(0);
+				long now = System.currentTimeMillis();
+				this.ejectedUntil = now + LoadBalancingClientConnectionFactory.this.ejectionTime;
+				this.admitted = this.ejectedUntil;
+				if (logger.isWarnEnabled()) {
+					logger.warn("Ejecting " + this.factory + " for "
+							+ LoadBalancingClientConnectionFactory.this.ejectionTime + "ms");
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Wrapper for a connection from the selected factory; tracks the requests awaiting
+	 * replies and sends a failed request on a connection from another factory.
+	 */
+	private final class BalancedTcpConnection extends TcpConnectionSupport implements TcpListener {
+
+		private final String connectionId = UUID.randomUUID().toString();
+
+		private final Queue<Long> sendTimes = new ArrayBlockingQueue<>(MAX_TRACKED_REQUESTS);
+
+		private volatile Target target;
+
+		private volatile TcpConnectionSupport delegate;
+
+		private volatile boolean open = true;
+
+		BalancedTcpConnection() throws Exception {
+			findAConnection(new HashSet<>());
+		}
+
+		/**
+		 * Obtain a connection from the least loaded factory that has not already been
+		 * tried.
+		 */
+		private void findAConnection(Set<Target> tried) throws Exception {
+			Exception lastException = null;
+			Target target;
+			while ((target = selectTarget(tried)) != null) {
+				tried.add(target);
+				try {
+					TcpConnectionSupport connection = target.factory.getConnection();
+					if (connection.isOpen()) {
+						if (logger.isDebugEnabled()) {
+							logger.debug("Got " + connection.getConnectionId() + " from " + target.factory);
+						}
+						connection.registerListener(this);
+						this.delegate = connection;
+						this.target = target;
+						return;
+					}
+					target.failed();
+				}
+				catch (Exception e) {
+					if (logger.isDebugEnabled()) {
+						logger.debug(target.factory + " failed with " + e.toString() + ", trying another");
+					}
+					target.failed();
+					lastException = e;
+				}
+			}
+			this.open = false;
+			if (lastException != null) {
+				throw lastException;
+			}
+			throw new IllegalStateException("No connection available from any factory");
+		}
+
+		private void track(Target target) {
+			long now = System.nanoTime();
+			if (!this.sendTimes.offer(now)) {
+				// the oldest request is assumed to have lost its reply
+				if (this.sendTimes.poll() != null) {
+					target.outstanding.decrementAndGet();
+				}
+				this.sendTimes.offer(now);
+			}
+			target.outstanding.incrementAndGet();
+		}
+
+		private void releaseOutstanding() {
+			while (this.sendTimes.poll() != null) {
+				this.target.outstanding.decrementAndGet();
+			}
+		}
+
+		@Override
+		public void close() {
+			releaseOutstanding();
+			this.delegate.close();
+			this.open = false;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return this.open;
+		}
+
+		/**
+		 * Sends to the current connection; if it fails, attempts to send to a
+		 * connection from another factory. If the send fails on a connection from
+		 * every factory, we give up. The request is only tracked if a reply is expected.
+		 */
+		@Override
+		public synchronized void send(Message<?> message) throws Exception {
+			Set<Target> tried = new HashSet<>();
+			boolean expectReply = getListener() != null;
+			while (true) {
+				Target target = this.target;
+				tried.add(target);
+				if (expectReply) {
+					track(target);
+				}
+				try {
+					this.delegate.send(message);
+					target.succeeded();
+					return;
+				}
+				catch (Exception e) {
+					target.failed();
+					if (logger.isDebugEnabled()) {
+						logger.debug("Send to " + this.delegate.getConnectionId() + " failed; trying another factory", e);
+					}
+					releaseOutstanding();
+					this.delegate.close();
+					try {
+						findAConnection(tried);
+					}
+					catch (Exception e1) {
+						logger.error("All connection factories exhausted", e);
+						throw e;
+					}
+				}
+			}
+		}
+
+		@Override
+		public Object getPayload() throws Exception {
+			return this.delegate.getPayload();
+		}
+
+		@Override
+		public void run() {
+			throw new UnsupportedOperationException("Not supported on BalancedTcpConnection");
+		}
+
+		@Override
+		public String getHostName() {
+			return this.delegate.getHostName();
+		}
+
+		@Override
+		public String getHostAddress() {
+			return this.delegate.getHostAddress();
+		}
+
+		@Override
+		public int getPort() {
+			return this.delegate.getPort();
+		}
+
+		@Override
+		public Object getDeserializerStateKey() {
+			return this.delegate.getDeserializerStateKey();
+		}
+
+		@Override
+		public void registerSender(TcpSender sender) {
+			this.delegate.registerSender(sender);
+		}
+
+		@Override
+		public String getConnectionId() {
+			return this.connectionId;
+		}
+
+		@Override
+		public SocketInfo getSocketInfo() {
+			return this.delegate.getSocketInfo();
+		}
+
+		@Override
+		public boolean isServer() {
+			return this.delegate.isServer();
+		}
+
+		@Override
+		public void setMapper(TcpMessageMapper mapper) {
+			this.delegate.setMapper(mapper);
+		}
+
+		@Override
+		public Deserializer<?> getDeserializer() {
+			return this.delegate.getDeserializer();
+		}
+
+		@Override
+		public void setDeserializer(Deserializer<?> deserializer) {
+			this.delegate.setDeserializer(deserializer);
+		}
+
+		@Override
+		public Serializer<?> getSerializer() {
+			return this.delegate.getSerializer();
+		}
+
+		@Override
+		public void setSerializer(Serializer<?> serializer) {
+			this.delegate.setSerializer(serializer);
+		}
+
+		@Override
+		public SSLSession getSslSession() {
+			return this.delegate.getSslSession();
+		}
+
+		/**
+		 * Record the reply latency and replace the connectionId header with ours so the
+		 * listener can correlate a response with a request. We supply the actual
+		 * connectionId in another header for convenience and tracing purposes.
+		 */
+		@Override
+		public boolean onMessage(Message<?> message) {
+			TcpConnectionSupport delegate = this.delegate;
+			if (delegate.getConnectionId().equals(message.getHeaders().get(IpHeaders.CONNECTION_ID))) {
+				Target target = this.target;
+				Long sent = this.sendTimes.poll();
+				if (sent != null) {
+					target.outstanding.decrementAndGet();
+					if (message instanceof ErrorMessage) {
+						target.failed();
+					}
+					else {
+						target.replied(System.nanoTime() - sent);
+					}
+				}
+				AbstractIntegrationMessageBuilder<?> messageBuilder = LoadBalancingClientConnectionFactory.this
+						.getMessageBuilderFactory().fromMessage(message)
+							.setHeader(IpHeaders.CONNECTION_ID, this.getConnectionId());
+				if (message.getHeaders().get(IpHeaders.ACTUAL_CONNECTION_ID) == null) {
+					messageBuilder.setHeader(IpHeaders.ACTUAL_CONNECTION_ID,
+							message.getHeaders().get(IpHeaders.CONNECTION_ID));
+				}
+				return this.getListener().onMessage(messageBuilder.build());
+			}
+			else {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Message from defunct connection ignored " + message);
+				}
+				return false;
+			}
+		}
+
+	}
+
+}
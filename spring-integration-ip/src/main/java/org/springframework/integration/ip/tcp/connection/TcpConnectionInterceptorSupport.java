@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,6 +23,7 @@ import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.scheduling.TaskScheduler;
 
 /**
  * Base class for TcpConnectionIntercepters; passes all method calls through
@@ -136,6 +137,11 @@ public abstract class TcpConnectionInterceptorSupport extends TcpConnectionSuppo
 		this.theConnection.setSerializer(serializer);
 	}
 
+	@Override
+	public void enableWriteCoalescing(TaskScheduler scheduler, long linger, int maxPendingWrites) {
+		this.theConnection.enableWriteCoalescing(scheduler, linger, maxPendingWrites);
+	}
+
 	@Override
 	public boolean isServer() {
 		return this.theConnection.isServer();
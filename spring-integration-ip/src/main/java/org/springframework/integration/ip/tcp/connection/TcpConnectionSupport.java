@@ -1,5 +1,5 @@
 /*
- * Copyright 2001-2016 the original author or authors.
+ * Copyright 2001-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,14 +16,17 @@
 
 package org.springframework.integration.ip.tcp.connection;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
@@ -36,6 +39,7 @@ import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
 
 /**
@@ -89,6 +93,16 @@ public abstract class TcpConnectionSupport implements TcpConnection {
 
 	private volatile boolean manualListenerRegistration;
 
+	private final AtomicInteger pendingWrites = new AtomicInteger();
+
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	private volatile TaskScheduler flushScheduler;
+
+	private volatile long writeLinger = -1;
+
+	private volatile int maxPendingWrites;
+
 	public TcpConnectionSupport() {
 		this(null);
 	}
@@ -230,6 +244,88 @@ public abstract class TcpConnectionSupport implements TcpConnection {
 		}
 	}
 
+	/**
+	 * Enable write coalescing; instead of flushing the socket after each message, the
+	 * serialized data is left in the connection's write buffer and flushed when the
+	 * buffer fills, when {@code maxPendingWrites} messages are waiting, or when
+	 * {@code linger} milliseconds have elapsed since the first unflushed write.
+	 * @param scheduler the scheduler used to flush after the linger time.
+	 * @param linger the maximum time (milliseconds) data remains unflushed.
+	 * @param maxPendingWrites the maximum number of unflushed messages.
+	 * @since 5.0
+	 */
+	public void enableWriteCoalescing(TaskScheduler scheduler, long linger, int maxPendingWrites) {
+		Assert.notNull(scheduler, "'scheduler' cannot be null");
+		Assert.isTrue(linger >= 0, "'linger' cannot be negative");
+		Assert.isTrue(maxPendingWrites > 0, "'maxPendingWrites' must be greater than 0");
+		this.flushScheduler = scheduler;
+		this.maxPendingWrites = maxPendingWrites;
+		this.writeLinger = linger;
+	}
+
+	/**
+	 * Invoked by implementations, while holding their send lock, after a message has
+	 * been serialized to the connection's buffered output stream.
+	 * @return true if the flush has been deferred, false if the implementation should
+	 * flush now.
+	 * @since 5.0
+	 */
+	protected boolean deferFlush() {
+		if (this.writeLinger < 0) {
+			return false;
+		}
+		if (this.pendingWrites.incrementAndGet() >= this.maxPendingWrites) {
+			this.pendingWrites.set(0);
+			return false;
+		}
+		if (this.flushScheduled.compareAndSet(false, true)) {
+			this.flushScheduler.schedule(this::scheduledFlush, new Date(System.currentTimeMillis() + this.writeLinger));
+		}
+		return true;
+	}
+
+	/**
+	 * Flush any data that was written while write coalescing is enabled. Implementations
+	 * must acquire the same lock as their {@code send()} method.
+	 * @throws IOException if the flush fails.
+	 * @since 5.0
+	 */
+	protected void flushPendingWrites() throws IOException {
+	}
+
+	/**
+	 * Attempt to flush any deferred writes before the connection is closed.
+	 * @since 5.0
+	 */
+	protected void flushPendingWritesOnClose() {
+		if (this.writeLinger >= 0 && this.pendingWrites.getAndSet(0) > 0) {
+			try {
+				flushPendingWrites();
+			}
+			catch (Exception e) {
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Failed to flush pending writes on close for " + getConnectionId(), e);
+				}
+			}
+		}
+	}
+
+	private void scheduledFlush() {
+		this.flushScheduled.set(false);
+		this.pendingWrites.set(0);
+		if (!isOpen()) {
+			return;
+		}
+		try {
+			flushPendingWrites();
+		}
+		catch (Exception e) {
+			this.logger.error("Failed to flush pending writes for " + getConnectionId(), e);
+			publishConnectionExceptionEvent(e);
+			closeConnection(true);
+		}
+	}
+
 	/**
 	 * Set the listener that will receive incoming Messages.
 	 * @param listener The listener.
@@ -81,6 +81,7 @@ public class TcpNetConnection extends TcpConnectionSupport implements Scheduling
 	@Override
 	public void close() {
 		this.setNoReadErrorOnClose(true);
+		flushPendingWritesOnClose();
 		try {
 			this.socket.close();
 		}
@@ -106,7 +107,9 @@ public class TcpNetConnection extends TcpConnectionSupport implements Scheduling
 		this.lastSend = System.currentTimeMillis();
 		try {
 			((Serializer<Object>) this.getSerializer()).serialize(object, this.socketOutputStream);
-			this.socketOutputStream.flush();
+			if (!deferFlush()) {
+				this.socketOutputStream.flush();
+			}
 		}
 		catch (Exception e) {
 			this.publishConnectionExceptionEvent(new MessagingException(message, "Failed TCP serialization", e));
@@ -118,6 +121,13 @@ public class TcpNetConnection extends TcpConnectionSupport implements Scheduling
 		}
 	}
 
+	@Override
+	protected synchronized void flushPendingWrites() throws IOException {
+		if (this.socketOutputStream != null) {
+			this.socketOutputStream.flush();
+		}
+	}
+
 	@Override
 	public Object getPayload() throws Exception {
 		return this.getDeserializer().deserialize(inputStream());
@@ -46,6 +46,8 @@ public class TcpNioClientConnectionFactory extends
 
 	private volatile boolean usingDirectBuffers;
 
+	private volatile boolean byteBufferDecoding;
+
 	private volatile Selector selector;
 
 	private final Map<SocketChannel, TcpNioConnection> channelMap = new ConcurrentHashMap<SocketChannel, TcpNioConnection>();
@@ -87,6 +89,8 @@ public class TcpNioClientConnectionFactory extends
 		TcpNioConnection connection = this.tcpNioConnectionSupport.createNewConnection(
 				socketChannel, false, this.isLookupHost(), this.getApplicationEventPublisher(), getComponentName());
 		connection.setUsingDirectBuffers(this.usingDirectBuffers);
+		connection.setByteBufferDecoding(this.byteBufferDecoding);
+		connection.setMaxInFlightMessages(getMaxInFlightMessages());
 		connection.setTaskExecutor(this.getTaskExecutor());
 		if (getSslHandshakeTimeout() != null && connection instanceof TcpNioSSLConnection) {
 			((TcpNioSSLConnection) connection).setHandshakeTimeout(getSslHandshakeTimeout());
@@ -113,6 +117,18 @@ public class TcpNioClientConnectionFactory extends
 		this.usingDirectBuffers = usingDirectBuffers;
 	}
 
+	/**
+	 * When set to true, connections created by this factory decode frames directly
+	 * from the socket read buffer if the deserializer is a
+	 * {@link org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer}.
+	 * @param byteBufferDecoding true to decode directly from the read buffer.
+	 * @since 5.0
+	 * @see TcpNioConnection#setByteBufferDecoding(boolean)
+	 */
+	public void setByteBufferDecoding(boolean byteBufferDecoding) {
+		this.byteBufferDecoding = byteBufferDecoding;
+	}
+
 	public void setTcpNioConnectionSupport(TcpNioConnectionSupport tcpNioSupport) {
 		Assert.notNull(tcpNioSupport, "TcpNioSupport must not be null");
 		this.tcpNioConnectionSupport = tcpNioSupport;
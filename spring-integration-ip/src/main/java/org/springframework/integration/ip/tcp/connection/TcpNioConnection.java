@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -34,12 +34,14 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.SSLSession;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer;
 import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamException;
 import org.springframework.integration.util.CompositeExecutor;
 import org.springframework.messaging.Message;
@@ -58,6 +60,8 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	private static final long DEFAULT_PIPE_TIMEOUT = 60000;
 
+	private static final int DECODED_FRAME_LIMIT = 1000;
+
 	private final SocketChannel socketChannel;
 
 	private final ChannelOutputStream channelOutputStream;
@@ -88,6 +92,28 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	private volatile boolean timedOut;
 
+	private volatile boolean byteBufferDecoding;
+
+	private volatile ByteBufferDeserializer<?> byteBufferDeserializer;
+
+	private final BlockingQueue<Object> decodedFrames = new LinkedBlockingQueue<Object>(DECODED_FRAME_LIMIT);
+
+	private final AtomicBoolean dispatching = new AtomicBoolean();
+
+	private ByteBuffer partialFrame;
+
+	private int partialFrameScanned;
+
+	private Object currentFrame;
+
+	private volatile int maxInFlightMessages;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicBoolean readsSuspended = new AtomicBoolean();
+
+	private volatile Runnable readResumer;
+
 	/**
 	 * Constructs a TcpNetConnection for the SocketChannel.
 	 * @param socketChannel The socketChannel.
@@ -114,9 +140,104 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		this.pipeTimeout = pipeTimeout;
 	}
 
+	/**
+	 * If true, and the deserializer is a {@link ByteBufferDeserializer} that
+	 * {@link ByteBufferDeserializer#supportsByteBufferDecoding() supports it}, frames are
+	 * decoded directly from the buffer used to read from the socket, on the thread that
+	 * performs the read, instead of being written to a pipe that is read by a separate
+	 * assembler thread. Decoded messages are dispatched in order, on a single thread at a
+	 * time, by the task executor.
+	 * @param byteBufferDecoding true to decode directly from the read buffer.
+	 * @since 5.0
+	 */
+	public void setByteBufferDecoding(boolean byteBufferDecoding) {
+		this.byteBufferDecoding = byteBufferDecoding;
+	}
+
+	/**
+	 * Set the maximum number of received messages that can be in flight (decoded but not
+	 * yet accepted by the listener) before the factory stops reading from this
+	 * connection; reading resumes when the number drops to half this value. Reading is
+	 * also suspended while the pipe to the message assembler is full. Default 0 (no
+	 * limit).
+	 * @param maxInFlightMessages the maximum number of in flight messages.
+	 * @since 5.0
+	 * @see #suspendReadsIfNecessary(Runnable)
+	 */
+	public void setMaxInFlightMessages(int maxInFlightMessages) {
+		this.maxInFlightMessages = maxInFlightMessages;
+	}
+
+	/**
+	 * @return the number of received messages not yet accepted by the listener.
+	 * @since 5.0
+	 */
+	public int getInFlightMessageCount() {
+		return this.inFlight.get();
+	}
+
+	/**
+	 * @return true if reading from this connection is currently suspended.
+	 * @since 5.0
+	 */
+	public boolean isReadSuspended() {
+		return this.readsSuspended.get();
+	}
+
+	/**
+	 * Invoked by the factory after a read; if the {@link #setMaxInFlightMessages(int)
+	 * maxInFlightMessages} limit has been reached, or the pipe is full, reading is
+	 * suspended and the factory must not re-enable read interest for the connection. The
+	 * resumer is invoked (on the thread that drains the backlog, or when the connection
+	 * is closed) when the factory should do so.
+	 * @param resumer the callback to resume reading.
+	 * @return true if reading is suspended.
+	 * @since 5.0
+	 */
+	public boolean suspendReadsIfNecessary(Runnable resumer) {
+		int max = this.maxInFlightMessages;
+		if (max <= 0 || !isOpen() || (this.inFlight.get() < max && !this.channelInputStream.isFull())) {
+			return false;
+		}
+		this.readResumer = resumer;
+		this.readsSuspended.set(true);
+		if (logger.isDebugEnabled()) {
+			logger.debug(getConnectionId() + " Suspending reads; in flight: " + this.inFlight.get());
+		}
+		// the backlog may have drained before the flag was set
+		resumeReadsIfPossible();
+		return true;
+	}
+
+	private void messageDone() {
+		this.inFlight.decrementAndGet();
+		resumeReadsIfPossible();
+	}
+
+	private void resumeReadsIfPossible() {
+		if (this.readsSuspended.get() && this.inFlight.get() <= this.maxInFlightMessages / 2
+				&& !this.channelInputStream.isFull()) {
+			resumeReads();
+		}
+	}
+
+	private void resumeReads() {
+		if (this.readsSuspended.compareAndSet(true, false)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug(getConnectionId() + " Resuming reads; in flight: " + this.inFlight.get());
+			}
+			Runnable resumer = this.readResumer;
+			this.readResumer = null;
+			if (resumer != null) {
+				resumer.run();
+			}
+		}
+	}
+
 	@Override
 	public void close() {
 		this.setNoReadErrorOnClose(true);
+		flushPendingWritesOnClose();
 		doClose();
 	}
 
@@ -131,6 +252,7 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		}
 		catch (Exception e) {
 		}
+		resumeReads();
 		super.close();
 	}
 
@@ -152,7 +274,9 @@ public class TcpNioConnection extends TcpConnectionSupport {
 			this.lastSend = System.currentTimeMillis();
 			try {
 				((Serializer<Object>) this.getSerializer()).serialize(object, this.bufferedOutputStream);
-				this.bufferedOutputStream.flush();
+				if (!deferFlush()) {
+					this.bufferedOutputStream.flush();
+				}
 			}
 			catch (Exception e) {
 				this.publishConnectionExceptionEvent(new MessagingException(message, "Failed TCP serialization", e));
@@ -165,8 +289,20 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		}
 	}
 
+	@Override
+	protected void flushPendingWrites() throws IOException {
+		synchronized (this.socketChannel) {
+			if (this.bufferedOutputStream != null) {
+				this.bufferedOutputStream.flush();
+			}
+		}
+	}
+
 	@Override
 	public Object getPayload() throws Exception {
+		if (this.byteBufferDeserializer != null) {
+			return this.currentFrame;
+		}
 		return this.getDeserializer().deserialize(inputStream());
 	}
 
@@ -248,7 +384,13 @@ public class TcpNioConnection extends TcpConnectionSupport {
 						}
 						this.executionControl.decrementAndGet();
 						if (message != null) {
-							sendToChannel(message);
+							this.inFlight.incrementAndGet();
+							try {
+								sendToChannel(message);
+							}
+							finally {
+								messageDone();
+							}
 						}
 					}
 					else {
@@ -400,6 +542,10 @@ public class TcpNioConnection extends TcpConnectionSupport {
 	private void doRead() throws Exception {
 		if (this.rawBuffer == null) {
 			this.rawBuffer = allocate(this.maxMessageSize);
+			if (this.byteBufferDecoding && getDeserializer() instanceof ByteBufferDeserializer
+					&& ((ByteBufferDeserializer<?>) getDeserializer()).supportsByteBufferDecoding()) {
+				this.byteBufferDeserializer = (ByteBufferDeserializer<?>) getDeserializer();
+			}
 		}
 
 		this.writingLatch = new CountDownLatch(1);
@@ -409,8 +555,10 @@ public class TcpNioConnection extends TcpConnectionSupport {
 				ExecutorService executor = Executors.newCachedThreadPool();
 				this.taskExecutor = new CompositeExecutor(executor, executor);
 			}
-			// If there is no assembler running, start one
-			checkForAssembler();
+			if (this.byteBufferDeserializer == null) {
+				// If there is no assembler running, start one
+				checkForAssembler();
+			}
 
 			if (logger.isTraceEnabled()) {
 				logger.trace("Before read:" + this.rawBuffer.position() + "/" + this.rawBuffer.limit());
@@ -419,6 +567,9 @@ public class TcpNioConnection extends TcpConnectionSupport {
 			if (len < 0) {
 				this.writingToPipe = false;
 				this.closeConnection(true);
+				if (this.partialFrame != null && this.partialFrame.position() > 0) {
+					this.sendExceptionToListener(new IOException("Socket closed during message assembly"));
+				}
 			}
 			if (logger.isTraceEnabled()) {
 				logger.trace("After read:" + this.rawBuffer.position() + "/" + this.rawBuffer.limit());
@@ -447,13 +598,133 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	protected void sendToPipe(ByteBuffer rawBuffer) throws IOException {
 		Assert.notNull(rawBuffer, "rawBuffer cannot be null");
-		if (logger.isTraceEnabled()) {
-			logger.trace(this.getConnectionId() + " Sending " + rawBuffer.limit() + " to pipe");
+		if (this.byteBufferDeserializer != null) {
+			try {
+				decodeFrames(rawBuffer);
+			}
+			catch (IOException | RuntimeException e) {
+				this.sendExceptionToListener(e);
+				throw e;
+			}
+		}
+		else {
+			if (logger.isTraceEnabled()) {
+				logger.trace(this.getConnectionId() + " Sending " + rawBuffer.limit() + " to pipe");
+			}
+			this.channelInputStream.write(rawBuffer);
 		}
-		this.channelInputStream.write(rawBuffer);
 		rawBuffer.clear();
 	}
 
+	/**
+	 * Decode as many frames as possible from the buffer; an incomplete frame at the
+	 * end of the buffer is retained and the next buffer is appended to it.
+	 * @param buffer the buffer.
+	 * @throws IOException if the deserializer fails or the dispatcher falls too far behind.
+	 */
+	private void decodeFrames(ByteBuffer buffer) throws IOException {
+		ByteBuffer source = buffer;
+		int scanned = 0;
+		if (this.partialFrame != null && this.partialFrame.position() > 0) {
+			this.partialFrame = ensureCapacity(this.partialFrame, buffer.remaining());
+			this.partialFrame.put(buffer);
+			this.partialFrame.flip();
+			source = this.partialFrame;
+			scanned = this.partialFrameScanned;
+		}
+		Object frame;
+		while (source.hasRemaining() && (frame = this.byteBufferDeserializer.decode(source, scanned)) != null) {
+			scanned = 0;
+			try {
+				if (!this.decodedFrames.offer(frame, this.pipeTimeout, TimeUnit.MILLISECONDS)) {
+					throw new IOException("Timed out waiting for buffer space");
+				}
+				this.inFlight.incrementAndGet();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for buffer space", e);
+			}
+			checkForDispatcher();
+		}
+		// the deserializer has examined all the remaining bytes without finding a frame
+		this.partialFrameScanned = source.remaining();
+		if (source == this.partialFrame) {
+			source.compact();
+		}
+		else if (source.hasRemaining()) {
+			this.partialFrame = ensureCapacity(this.partialFrame, source.remaining());
+			this.partialFrame.put(source);
+		}
+		if (logger.isTraceEnabled()) {
+			logger.trace(this.getConnectionId() + " Decoded frames: " + this.decodedFrames.size() + ", partial: "
+					+ (this.partialFrame == null ? 0 : this.partialFrame.position()));
+		}
+	}
+
+	private ByteBuffer ensureCapacity(ByteBuffer buffer, int needed) {
+		if (buffer == null) {
+			return ByteBuffer.allocate(Math.max(needed, 1024));
+		}
+		if (buffer.remaining() >= needed) {
+			return buffer;
+		}
+		ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(buffer.position() + needed, buffer.capacity() * 2));
+		buffer.flip();
+		newBuffer.put(buffer);
+		return newBuffer;
+	}
+
+	private void checkForDispatcher() {
+		if (this.dispatching.compareAndSet(false, true)) {
+			try {
+				this.taskExecutor.execute2(this::dispatchFrames);
+			}
+			catch (RejectedExecutionException e) {
+				this.dispatching.set(false);
+				if (logger.isInfoEnabled()) {
+					logger.info("Insufficient threads in the assembler fixed thread pool; consider increasing " +
+							"this task executor pool size");
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Convert and send decoded frames, in order; only one dispatcher runs at a time.
+	 */
+	private void dispatchFrames() {
+		do {
+			Object frame;
+			while ((frame = this.decodedFrames.poll()) != null) {
+				Message<?> message;
+				try {
+					this.currentFrame = frame;
+					message = this.getMapper().toMessage(this);
+				}
+				catch (Exception e) {
+					logger.error("Read exception " + this.getConnectionId(), e);
+					this.decodedFrames.clear();
+					this.inFlight.set(0);
+					this.closeConnection(true);
+					this.sendExceptionToListener(e);
+					this.dispatching.set(false);
+					return;
+				}
+				finally {
+					this.currentFrame = null;
+				}
+				if (message != null) {
+					sendToChannel(message);
+				}
+				messageDone();
+			}
+			this.dispatching.set(false);
+		}
+		while (!this.decodedFrames.isEmpty() && this.dispatching.compareAndSet(false, true));
+	}
+
 	private void checkForAssembler() {
 		synchronized (this.executionControl) {
 			if (this.executionControl.incrementAndGet() <= 1) {
@@ -717,6 +988,9 @@ public class TcpNioConnection extends TcpConnectionSupport {
 					if (buffer == null && this.isClosed) {
 						return null;
 					}
+					if (buffer != null) {
+						resumeReadsIfPossible();
+					}
 				}
 				catch (InterruptedException e) {
 					Thread.currentThread().interrupt();
@@ -765,6 +1039,10 @@ public class TcpNioConnection extends TcpConnectionSupport {
 			return this.available.get();
 		}
 
+		boolean isFull() {
+			return this.buffers.remainingCapacity() == 0;
+		}
+
 	}
 
 }
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer;
+import org.springframework.integration.util.CompositeExecutor;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link TcpNioServerConnectionFactory} that reads from its connections using a
+ * fixed number of event loops, instead of dispatching each read to the task executor.
+ * The factory's selector only accepts new connections; each accepted connection is
+ * pinned to one of the event loops (round robin), each of which has its own selector
+ * and runs on a single (long-lived) task executor thread. Reads, frame decoding and (by
+ * default) conversion to messages and dispatch to the listener are all performed on
+ * the connection's event loop thread, so the number of threads does not grow with the
+ * number of connections.
+ * <p>
+ * Frames are decoded directly from the read buffer, so the deserializer must implement
+ * {@link ByteBufferDeserializer} that supports it (the default
+ * {@code ByteArrayCrLfSerializer} does) and
+ * {@link #setByteBufferDecoding(boolean) byteBufferDecoding} cannot be disabled.
+ * Since a slow listener delays all the connections on the same event loop, set
+ * {@link #setDispatchOnEventLoop(boolean) dispatchOnEventLoop} to false to hand the
+ * decoded messages to the task executor instead (preserving order per connection).
+ * SSL/TLS is not supported; the factory cannot be started with a
+ * {@link DefaultTcpNioSSLConnectionSupport}.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ *
+ */
+public class TcpNioEventLoopServerConnectionFactory extends TcpNioServerConnectionFactory {
+
+	private static final Executor CALLER_RUNS = Runnable::run;
+
+	private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+	private volatile int eventLoopCount = Runtime.getRuntime().availableProcessors();
+
+	private volatile boolean dispatchOnEventLoop = true;
+
+	private volatile EventLoop[] eventLoops;
+
+	/**
+	 * Listens for incoming connections on the port.
+	 * @param port The port.
+	 */
+	public TcpNioEventLoopServerConnectionFactory(int port) {
+		super(port);
+		setByteBufferDecoding(true);
+	}
+
+	/**
+	 * Set the number of event loops (threads) used to read from the connections.
+	 * Default: the number of available processors.
+	 * @param eventLoopCount the number of event loops.
+	 */
+	public void setEventLoopCount(int eventLoopCount) {
+		Assert.isTrue(eventLoopCount > 0, "'eventLoopCount' must be greater than 0");
+		this.eventLoopCount = eventLoopCount;
+	}
+
+	/**
+	 * Set to false to dispatch decoded messages to the listener using the task executor
+	 * rather than on the event loop thread. Default true.
+	 * <p>Each connection queues up to 1000 decoded messages for the task executor; when
+	 * that queue is full, the event loop blocks (delaying all its connections) for up
+	 * to the connection's pipe timeout before failing the connection. Configure
+	 * {@link #setMaxInFlightMessages(int) maxInFlightMessages} (well below that number)
+	 * so that reading from a connection that falls behind is suspended instead.
+	 * @param dispatchOnEventLoop false to dispatch on the task executor.
+	 */
+	public void setDispatchOnEventLoop(boolean dispatchOnEventLoop) {
+		this.dispatchOnEventLoop = dispatchOnEventLoop;
+	}
+
+	/**
+	 * Frames are always decoded directly from the read buffer by this factory.
+	 * @param byteBufferDecoding must be true.
+	 */
+	@Override
+	public void setByteBufferDecoding(boolean byteBufferDecoding) {
+		Assert.isTrue(byteBufferDecoding, getClass().getSimpleName() + " requires 'byteBufferDecoding'");
+		super.setByteBufferDecoding(byteBufferDecoding);
+	}
+
+	@Override
+	public String getComponentType() {
+		return "tcp-nio-event-loop-server-connection-factory";
+	}
+
+	@Override
+	public void start() {
+		synchronized (this.lifecycleMonitor) {
+			if (!isActive()) {
+				Assert.state(getDeserializer() instanceof ByteBufferDeserializer
+								&& ((ByteBufferDeserializer<?>) getDeserializer()).supportsByteBufferDecoding(),
+						"The deserializer must implement ByteBufferDeserializer and support decoding from a ByteBuffer");
+				Assert.state(!(getTcpNioConnectionSupport() instanceof DefaultTcpNioSSLConnectionSupport),
+						"SSL connections are not supported by " + getClass().getSimpleName());
+				if (!this.dispatchOnEventLoop && getMaxInFlightMessages() == 0 && logger.isWarnEnabled()) {
+					logger.warn("'maxInFlightMessages' should be set when 'dispatchOnEventLoop' is false; "
+							+ "otherwise a slow listener can block the event loops");
+				}
+				EventLoop[] eventLoops = new EventLoop[this.eventLoopCount];
+				try {
+					for (int i = 0; i < eventLoops.length; i++) {
+						eventLoops[i] = new EventLoop(i == 0);
+					}
+				}
+				catch (IOException e) {
+					closeEventLoops(eventLoops);
+					throw new IllegalStateException("Failed to open event loop selector", e);
+				}
+				this.eventLoops = eventLoops;
+				super.start();
+				Executor taskExecutor = getTaskExecutor();
+				for (EventLoop eventLoop : eventLoops) {
+					taskExecutor.execute(eventLoop);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		setActive(false);
+		EventLoop[] eventLoops = this.eventLoops;
+		if (eventLoops != null) {
+			closeEventLoops(eventLoops);
+			this.eventLoops = null;
+		}
+		super.stop();
+	}
+
+	@Override
+	protected void registerConnection(Selector selector, SocketChannel channel, TcpNioConnection connection)
+			throws IOException {
+		EventLoop[] eventLoops = this.eventLoops;
+		if (eventLoops == null) {
+			throw new IOException("Connection factory is stopped");
+		}
+		if (this.dispatchOnEventLoop) {
+			connection.setTaskExecutor(new CompositeExecutor(CALLER_RUNS, CALLER_RUNS));
+		}
+		int index = (this.nextEventLoop.getAndIncrement() & Integer.MAX_VALUE) % eventLoops.length;
+		eventLoops[index].register(channel, connection);
+	}
+
+	private void closeEventLoops(EventLoop[] eventLoops) {
+		for (EventLoop eventLoop : eventLoops) {
+			if (eventLoop != null) {
+				eventLoop.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads from the connections pinned to it, on a single thread.
+	 */
+	private final class EventLoop implements Runnable {
+
+		private final Selector selector;
+
+		private final boolean harvester;
+
+		private final Queue<Runnable> registrations = new ConcurrentLinkedQueue<>();
+
+		private final Set<TcpNioConnection> connections = new HashSet<>(); // only accessed by the loop thread
+
+		EventLoop(boolean harvester) throws IOException {
+			this.selector = Selector.open();
+			this.harvester = harvester;
+		}
+
+		void register(SocketChannel channel, TcpNioConnection connection) {
+			this.registrations.add(() -> {
+				try {
+					channel.register(this.selector, SelectionKey.OP_READ, connection);
+					this.connections.add(connection);
+				}
+				catch (IOException e) {
+					logger.error("Failed to register connection " + connection.getConnectionId(), e);
+					connection.close();
+				}
+			});
+			this.selector.wakeup();
+		}
+
+		void close() {
+			try {
+				this.selector.close();
+			}
+			catch (IOException e) {
+				logger.error("Error closing event loop selector", e);
+			}
+		}
+
+		@Override
+		public void run() {
+			long nextHousekeeping = System.currentTimeMillis() + getNioHarvestInterval();
+			while (isActive()) {
+				try {
+					int soTimeout = getSoTimeout();
+					long timeout = getNioHarvestInterval();
+					if (soTimeout > 0 && soTimeout < timeout) {
+						timeout = soTimeout;
+					}
+					int selectionCount = this.selector.select(timeout);
+					registerPending();
+					long now = System.currentTimeMillis();
+					if (selectionCount > 0) {
+						processReads(now);
+					}
+					if (now >= nextHousekeeping) {
+						housekeeping(now, soTimeout);
+						nextHousekeeping = now + getNioHarvestInterval();
+					}
+				}
+				catch (ClosedSelectorException e) {
+					break;
+				}
+				catch (Exception e) {
+					if (isActive()) {
+						logger.error("Error in event loop", e);
+					}
+				}
+			}
+			for (TcpNioConnection connection : this.connections) {
+				connection.close();
+			}
+			this.connections.clear();
+		}
+
+		private void registerPending() {
+			Runnable registration;
+			while ((registration = this.registrations.poll()) != null) {
+				registration.run();
+			}
+		}
+
+		private void processReads(long now) {
+			Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+			while (iterator.hasNext()) {
+				SelectionKey key = iterator.next();
+				iterator.remove();
+				TcpNioConnection connection = (TcpNioConnection) key.attachment();
+				try {
+					if (key.isValid() && key.isReadable()) {
+						connection.setLastRead(now);
+						boolean flowControl = getMaxInFlightMessages() > 0;
+						if (flowControl) {
+							// clear interest first; a dispatcher thread might resume reads
+							key.interestOps(0);
+						}
+						try {
+							connection.readPacket();
+						}
+						finally {
+							if (flowControl && key.channel().isOpen()
+									&& !suspendReadsIfNecessary(connection, this.selector, key)) {
+								key.interestOps(SelectionKey.OP_READ);
+							}
+						}
+					}
+				}
+				catch (CancelledKeyException e) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Selection key " + key + " cancelled");
+					}
+				}
+				catch (RejectedExecutionException e) {
+					logger.warn("Dispatch of decoded messages rejected for " + connection.getConnectionId()
+							+ "; they will be dispatched after the next read");
+				}
+				if (!key.channel().isOpen()) {
+					key.cancel();
+					this.connections.remove(connection);
+					connection.sendExceptionToListener(new EOFException("Connection is closed"));
+				}
+			}
+		}
+
+		private void housekeeping(long now, int soTimeout) {
+			Iterator<TcpNioConnection> iterator = this.connections.iterator();
+			while (iterator.hasNext()) {
+				TcpNioConnection connection = iterator.next();
+				if (!connection.isOpen()) {
+					iterator.remove();
+				}
+				else if (soTimeout > 0 && !connection.isReadSuspended()
+						&& now - connection.getLastRead() >= soTimeout) {
+					if (logger.isWarnEnabled()) {
+						logger.warn("Timing out TcpNioConnection " + connection.getConnectionId());
+					}
+					SocketTimeoutException exception = new SocketTimeoutException("Timing out connection");
+					connection.publishConnectionExceptionEvent(exception);
+					connection.timeout();
+					connection.sendExceptionToListener(exception);
+				}
+			}
+			if (this.harvester) {
+				harvestClosedConnections();
+			}
+		}
+
+	}
+
+}
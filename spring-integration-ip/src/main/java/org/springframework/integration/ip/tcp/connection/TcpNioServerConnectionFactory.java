@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -48,6 +48,8 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 
 	private volatile boolean usingDirectBuffers;
 
+	private volatile boolean byteBufferDecoding;
+
 	private final Map<SocketChannel, TcpNioConnection> channelMap = new HashMap<SocketChannel, TcpNioConnection>();
 
 	private volatile Selector selector;
@@ -221,8 +223,7 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 				if (getSslHandshakeTimeout() != null && connection instanceof TcpNioSSLConnection) {
 					((TcpNioSSLConnection) connection).setHandshakeTimeout(getSslHandshakeTimeout());
 				}
-				this.channelMap.put(channel, connection);
-				channel.register(selector, SelectionKey.OP_READ, connection);
+				registerConnection(selector, channel, connection);
 				connection.publishConnectionOpenEvent();
 			}
 			catch (Exception e) {
@@ -232,11 +233,28 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		}
 	}
 
+	/**
+	 * Register a newly accepted connection for reading; by default, the channel is
+	 * registered with the selector that accepted it.
+	 * @param selector the selector that accepted the connection.
+	 * @param channel the channel.
+	 * @param connection the connection.
+	 * @throws IOException if the channel cannot be registered.
+	 * @since 5.0
+	 */
+	protected void registerConnection(Selector selector, SocketChannel channel, TcpNioConnection connection)
+			throws IOException {
+		this.channelMap.put(channel, connection);
+		channel.register(selector, SelectionKey.OP_READ, connection);
+	}
+
 	private TcpNioConnection createTcpNioConnection(SocketChannel socketChannel) {
 		try {
 			TcpNioConnection connection = this.tcpNioConnectionSupport.createNewConnection(socketChannel, true,
 							isLookupHost(), getApplicationEventPublisher(), getComponentName());
 			connection.setUsingDirectBuffers(this.usingDirectBuffers);
+			connection.setByteBufferDecoding(this.byteBufferDecoding);
+			connection.setMaxInFlightMessages(getMaxInFlightMessages());
 			TcpConnectionSupport wrappedConnection = wrapConnection(connection);
 			initializeConnection(wrappedConnection, socketChannel.socket());
 			return connection;
@@ -276,11 +294,31 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		this.usingDirectBuffers = usingDirectBuffers;
 	}
 
+	/**
+	 * When set to true, connections created by this factory decode frames directly
+	 * from the socket read buffer if the deserializer is a
+	 * {@link org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer}.
+	 * @param byteBufferDecoding true to decode directly from the read buffer.
+	 * @since 5.0
+	 * @see TcpNioConnection#setByteBufferDecoding(boolean)
+	 */
+	public void setByteBufferDecoding(boolean byteBufferDecoding) {
+		this.byteBufferDecoding = byteBufferDecoding;
+	}
+
 	public void setTcpNioConnectionSupport(TcpNioConnectionSupport tcpNioSupport) {
 		Assert.notNull(tcpNioSupport, "TcpNioSupport must not be null");
 		this.tcpNioConnectionSupport = tcpNioSupport;
 	}
 
+	/**
+	 * @return the connection support.
+	 * @since 5.0
+	 */
+	protected TcpNioConnectionSupport getTcpNioConnectionSupport() {
+		return this.tcpNioConnectionSupport;
+	}
+
 	/**
 	 * @return the serverChannel
 	 */
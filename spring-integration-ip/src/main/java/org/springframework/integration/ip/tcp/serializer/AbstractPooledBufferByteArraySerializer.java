@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2016-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,12 @@ import org.springframework.util.Assert;
 /**
  * Base class for deserializers that cannot determine the buffer size needed.
  * Optionally pools buffers.
+ * <p>
+ * Starting with version 5.0, a (possibly shared) {@link ByteArrayPool} can be provided
+ * instead; the working buffer then starts small and grows, as needed, up to the
+ * {@code maxMessageSize}; subsequent messages start with the largest size needed so far,
+ * which is halved again (down to the initial size) when a run of messages fits in half
+ * of it.
  *
  * @author Gary Russell
  * @since 4.3
@@ -33,10 +39,31 @@ import org.springframework.util.Assert;
  */
 public abstract class AbstractPooledBufferByteArraySerializer extends AbstractByteArraySerializer {
 
+	/**
+	 * The default initial working buffer size when a {@link ByteArrayPool} is used.
+	 */
+	public static final int DEFAULT_INITIAL_BUFFER_SIZE = 1024;
+
+	/**
+	 * The number of consecutive messages that fit in half the working buffer size
+	 * after which the size is halved.
+	 */
+	private static final int SHRINK_THRESHOLD = 16;
+
 	private SimplePool<byte[]> pool;
 
 	private long poolWaitTimeout = Long.MAX_VALUE;
 
+	private volatile ByteArrayPool bufferPool;
+
+	private final ThreadLocal<byte[]> workingBuffer = new ThreadLocal<byte[]>();
+
+	private volatile int initialBufferSize = DEFAULT_INITIAL_BUFFER_SIZE;
+
+	private volatile int bufferSize = DEFAULT_INITIAL_BUFFER_SIZE;
+
+	private volatile int smallMessages;
+
 	/**
 	 * Set the pool size for deserialization buffers.
 	 * @param size the size, -1 for unlimited.
@@ -44,6 +71,7 @@ public abstract class AbstractPooledBufferByteArraySerializer extends AbstractBy
 	 */
 	public void setPoolSize(int size) {
 		Assert.isNull(this.pool, "Cannot change pool size once set");
+		Assert.state(this.bufferPool == null, "A pool size cannot be set when a 'bufferPool' is provided");
 		this.pool = new SimplePool<byte[]>(size, new PoolItemCallback<byte[]>() {
 
 			@Override
@@ -75,8 +103,55 @@ public abstract class AbstractPooledBufferByteArraySerializer extends AbstractBy
 		}
 	}
 
+	/**
+	 * Set a {@link ByteArrayPool} from which to obtain working buffers; the pool
+	 * may be shared with other serializers. Mutually exclusive with
+	 * {@link #setPoolSize(int)}.
+	 * @param bufferPool the pool.
+	 * @since 5.0
+	 */
+	public void setBufferPool(ByteArrayPool bufferPool) {
+		Assert.state(this.pool == null, "A 'bufferPool' cannot be provided when a pool size is set");
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * @return the buffer pool, if any.
+	 * @since 5.0
+	 */
+	public ByteArrayPool getBufferPool() {
+		return this.bufferPool;
+	}
+
+	/**
+	 * Set the size of the first working buffer obtained from the {@link ByteArrayPool}
+	 * (default {@value #DEFAULT_INITIAL_BUFFER_SIZE}); the size adapts to the messages
+	 * received.
+	 * @param initialBufferSize the size.
+	 * @since 5.0
+	 */
+	public void setInitialBufferSize(int initialBufferSize) {
+		Assert.isTrue(initialBufferSize > 0, "'initialBufferSize' must be greater than 0");
+		this.initialBufferSize = initialBufferSize;
+		this.bufferSize = initialBufferSize;
+	}
+
 	@Override
 	public final byte[] deserialize(InputStream inputStream) throws IOException {
+		ByteArrayPool bufferPool = this.bufferPool;
+		if (bufferPool != null) {
+			this.workingBuffer.set(bufferPool.acquire(Math.min(this.bufferSize, this.maxMessageSize)));
+			try {
+				byte[] data = doDeserialize(inputStream, this.workingBuffer.get());
+				adaptBufferSize(data.length);
+				return data;
+			}
+			finally {
+				// the buffer may have been replaced by ensureCapacity()
+				bufferPool.release(this.workingBuffer.get());
+				this.workingBuffer.remove();
+			}
+		}
 		byte[] buffer = this.pool == null ? new byte[this.maxMessageSize] : this.pool.getItem();
 		try {
 			return doDeserialize(inputStream, buffer);
@@ -89,8 +164,11 @@ public abstract class AbstractPooledBufferByteArraySerializer extends AbstractBy
 	}
 
 	/**
+	 * Implementations must call {@link #ensureCapacity(byte[], int)} before storing
+	 * each byte, because the working buffer may be smaller than the maxMessageSize when
+	 * a {@link ByteArrayPool} is in use.
 	 * @param inputStream the input stream.
-	 * @param buffer the raw working buffer (maxMessageSize).
+	 * @param buffer the raw working buffer.
 	 * @return the decoded bytes.
 	 * @throws IOException an io exception.
 	 * @since 4.3
@@ -106,7 +184,7 @@ public abstract class AbstractPooledBufferByteArraySerializer extends AbstractBy
 	 * already the correct size and there is no pool.
 	 */
 	protected byte[] copyToSizedArray(byte[] buffer, int size) {
-		if (size == buffer.length && this.pool == null) {
+		if (size == buffer.length && this.pool == null && this.bufferPool == null) {
 			return buffer;
 		}
 		byte[] assembledData = new byte[size];
@@ -114,4 +192,50 @@ public abstract class AbstractPooledBufferByteArraySerializer extends AbstractBy
 		return assembledData;
 	}
 
+	/**
+	 * Return a buffer that can hold a byte at the provided index. If the working buffer
+	 * is full, a larger buffer (limited to the maxMessageSize) is obtained, the existing
+	 * data is copied to it and the replaced buffer is returned to the
+	 * {@link ByteArrayPool}; the larger size is then used for subsequent messages.
+	 * Callers must enforce the maxMessageSize and must not use the replaced buffer.
+	 * @param buffer the current working buffer.
+	 * @param index the index at which the next byte will be stored.
+	 * @return the buffer to use.
+	 * @since 5.0
+	 */
+	protected final byte[] ensureCapacity(byte[] buffer, int index) {
+		if (index < buffer.length) {
+			return buffer;
+		}
+		int newSize = Math.max(Math.min(buffer.length * 2, this.maxMessageSize), index + 1);
+		ByteArrayPool bufferPool = this.bufferPool;
+		byte[] newBuffer = bufferPool == null ? new byte[newSize] : bufferPool.acquire(newSize);
+		System.arraycopy(buffer, 0, newBuffer, 0, index);
+		if (bufferPool != null && buffer == this.workingBuffer.get()) {
+			bufferPool.release(buffer);
+			this.workingBuffer.set(newBuffer);
+		}
+		if (newBuffer.length > this.bufferSize) {
+			this.bufferSize = newBuffer.length;
+		}
+		return newBuffer;
+	}
+
+	/*
+	 * Halve the working buffer size after a run of messages that would have fitted in
+	 * half of it, so one large message does not make all subsequent messages use large
+	 * buffers. The counter is shared by concurrent deserializations; races only affect
+	 * when the size is adjusted.
+	 */
+	private void adaptBufferSize(int messageSize) {
+		int size = this.bufferSize;
+		if (size <= this.initialBufferSize || messageSize > size / 2) {
+			this.smallMessages = 0;
+		}
+		else if (++this.smallMessages >= SHRINK_THRESHOLD) {
+			this.smallMessages = 0;
+			this.bufferSize = Math.max(size / 2, this.initialBufferSize);
+		}
+	}
+
 }
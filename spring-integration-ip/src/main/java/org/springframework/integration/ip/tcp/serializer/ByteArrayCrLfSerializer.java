@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,16 +19,19 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Reads data in an InputStream to a byte[]; data must be terminated by \r\n
  * (not included in resulting byte[]).
  * Writes a byte[] to an OutputStream and adds \r\n.
+ * Also decodes frames directly from a {@link ByteBuffer}.
  *
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayCrLfSerializer extends AbstractPooledBufferByteArraySerializer {
+public class ByteArrayCrLfSerializer extends AbstractPooledBufferByteArraySerializer
+		implements ByteBufferDeserializer<byte[]> {
 
 	/**
 	 * A single reusable instance.
@@ -45,11 +48,7 @@ public class ByteArrayCrLfSerializer extends AbstractPooledBufferByteArraySerial
 	 */
 	@Override
 	public byte[] doDeserialize(InputStream inputStream, byte[] buffer) throws IOException {
-		int n = this.fillToCrLf(inputStream, buffer);
-		return this.copyToSizedArray(buffer, n);
-	}
-
-	public int fillToCrLf(InputStream inputStream, byte[] buffer) throws IOException {
+		byte[] working = buffer;
 		int n = 0;
 		int bite;
 		if (logger.isDebugEnabled()) {
@@ -62,25 +61,82 @@ public class ByteArrayCrLfSerializer extends AbstractPooledBufferByteArraySerial
 					throw new SoftEndOfStreamException("Stream closed between payloads");
 				}
 				checkClosure(bite);
-				if (n > 0 && bite == '\n' && buffer[n - 1] == '\r') {
+				if (n > 0 && bite == '\n' && working[n - 1] == '\r') {
 					break;
 				}
-				buffer[n++] = (byte) bite;
+				working = ensureCapacity(working, n);
+				working[n++] = (byte) bite;
 				if (n >= this.maxMessageSize) {
 					throw new IOException("CRLF not found before max message length: " + this.maxMessageSize);
 				}
 			}
-			return n - 1; // trim \r
+			return copyToSizedArray(working, n - 1); // trim \r
 		}
 		catch (SoftEndOfStreamException e) {
 			throw e;
 		}
 		catch (IOException e) {
-			publishEvent(e, buffer, n);
+			publishEvent(e, working, n);
 			throw e;
 		}
 		catch (RuntimeException e) {
-			publishEvent(e, buffer, n);
+			publishEvent(e, working, n);
+			throw e;
+		}
+	}
+
+	/**
+	 * Read data terminated by CRLF into the buffer, which must be large enough to hold
+	 * it.
+	 * @param inputStream the input stream.
+	 * @param buffer the buffer.
+	 * @return the number of bytes, excluding the CRLF.
+	 * @throws IOException an IO exception.
+	 */
+	public int fillToCrLf(InputStream inputStream, byte[] buffer) throws IOException {
+		byte[] data = doDeserialize(inputStream, buffer);
+		if (data != buffer) {
+			System.arraycopy(data, 0, buffer, 0, data.length);
+		}
+		return data.length;
+	}
+
+	/**
+	 * Decodes the next CRLF-terminated frame in the buffer (the CRLF is not included
+	 * in the result).
+	 * @since 5.0
+	 */
+	@Override
+	public byte[] decode(ByteBuffer buffer) throws IOException {
+		return decode(buffer, 0);
+	}
+
+	/**
+	 * Decodes the next CRLF-terminated frame in the buffer, resuming the search for the
+	 * CRLF after the bytes already scanned.
+	 * @since 5.0
+	 */
+	@Override
+	public byte[] decode(ByteBuffer buffer, int scanned) throws IOException {
+		int start = buffer.position();
+		int limit = buffer.limit();
+		for (int i = start + Math.max(scanned, 1); i < limit; i++) {
+			if (buffer.get(i) == '\n' && buffer.get(i - 1) == '\r') {
+				checkFrameLength(i - start);
+				byte[] frame = new byte[i - 1 - start];
+				buffer.get(frame);
+				buffer.position(i + 1);
+				return frame;
+			}
+		}
+		checkFrameLength(limit - start);
+		return null;
+	}
+
+	private void checkFrameLength(int length) throws IOException {
+		if (length >= this.maxMessageSize) {
+			IOException e = new IOException("CRLF not found before max message length: " + this.maxMessageSize);
+			publishEvent(e, null, length);
 			throw e;
 		}
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,11 +19,14 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.util.ReflectionUtils;
+
 
 /**
  * Reads data in an InputStream to a byte[]; data must be preceded by
@@ -38,12 +41,14 @@ import org.apache.commons.logging.LogFactory;
  * Other options are an unsigned byte, and unsigned short.
  *
  * For other header formats, override {@link #readHeader(InputStream)} and
- * {@link #writeHeader(OutputStream, int)}.
+ * {@link #writeHeader(OutputStream, int)} (and {@link #decodeHeader(ByteBuffer)}
+ * if the serializer is used with {@code byteBufferDecoding}).
  *
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer {
+public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
+		implements ByteBufferDeserializer<byte[]> {
 
 
 	/**
@@ -65,6 +70,8 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 
 	private final Log logger = LogFactory.getLog(this.getClass());
 
+	private final boolean streamHeaderOnly;
+
 	/**
 	 * Constructs the serializer using {@link #HEADER_SIZE_INT}
 	 */
@@ -85,6 +92,13 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 			throw new IllegalArgumentException("Illegal header size:" + headerSize);
 		}
 		this.headerSize = headerSize;
+		this.streamHeaderOnly = overrides("readHeader", InputStream.class)
+				&& !overrides("decodeHeader", ByteBuffer.class);
+	}
+
+	private boolean overrides(String methodName, Class<?> parameterType) {
+		Method method = ReflectionUtils.findMethod(getClass(), methodName, parameterType);
+		return method != null && !ByteArrayLengthHeaderSerializer.class.equals(method.getDeclaringClass());
 	}
 
 	/**
@@ -123,6 +137,51 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 		}
 	}
 
+	/**
+	 * Decodes the next length-prefixed frame in the buffer (the header is not
+	 * included in the result), using {@link #decodeHeader(ByteBuffer)}. Throws an
+	 * IOException if the length field exceeds the maxMessageSize.
+	 * @param buffer the buffer.
+	 * @return the data, or null if the complete frame has not yet been received.
+	 * @throws IOException Any IOException.
+	 * @since 5.0
+	 * @see #supportsByteBufferDecoding()
+	 */
+	@Override
+	public byte[] decode(ByteBuffer buffer) throws IOException {
+		int start = buffer.position();
+		int messageLength = decodeHeader(buffer);
+		if (messageLength < 0) {
+			buffer.position(start);
+			return null;
+		}
+		if (messageLength > this.maxMessageSize) {
+			IOException e = new IOException("Message length " + messageLength +
+					" exceeds max message length: " + this.maxMessageSize);
+			publishEvent(e, null, -1);
+			throw e;
+		}
+		if (buffer.remaining() < messageLength) {
+			buffer.position(start);
+			return null;
+		}
+		byte[] frame = new byte[messageLength];
+		buffer.get(frame);
+		return frame;
+	}
+
+	/**
+	 * Returns false if a subclass overrides {@link #readHeader(InputStream)} but not
+	 * {@link #decodeHeader(ByteBuffer)}, in which case connections configured for
+	 * {@code byteBufferDecoding} read frames from the stream instead.
+	 * @return true if frames can be decoded from a buffer.
+	 * @since 5.0
+	 */
+	@Override
+	public boolean supportsByteBufferDecoding() {
+		return !this.streamHeaderOnly;
+	}
+
 	/**
 	 * Writes the byte[] to the output stream, preceded by a 4 byte
 	 * length in network byte order (big endian).
@@ -204,6 +263,45 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 		outputStream.write(lengthPart.array());
 	}
 
+	/**
+	 * Decodes the header at the buffer's position and returns the length of the data
+	 * part, advancing the position past the header. Returns a negative value if the
+	 * complete header has not yet been received; the position is then restored by the
+	 * caller. Override, together with {@link #readHeader(InputStream)}, for other header
+	 * formats.
+	 * @param buffer the buffer.
+	 * @return The length of the data part, or a negative value if more data is needed.
+	 * @throws IOException Any IOException.
+	 * @since 5.0
+	 */
+	protected int decodeHeader(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < this.headerSize) {
+			return -1;
+		}
+		int messageLength;
+		switch (this.headerSize) {
+			case HEADER_SIZE_INT:
+				messageLength = buffer.getInt();
+				if (messageLength < 0) {
+					IllegalArgumentException e = new IllegalArgumentException("Length header:"
+							+ messageLength
+							+ " is negative");
+					publishEvent(e, null, -1);
+					throw e;
+				}
+				break;
+			case HEADER_SIZE_UNSIGNED_BYTE:
+				messageLength = buffer.get() & 0xff;
+				break;
+			case HEADER_SIZE_UNSIGNED_SHORT:
+				messageLength = buffer.getShort() & 0xffff;
+				break;
+			default:
+				throw new IllegalArgumentException("Bad header size:" + this.headerSize);
+		}
+		return messageLength;
+	}
+
 	/**
 	 * Reads the header and returns the length of the data part.
 	 *
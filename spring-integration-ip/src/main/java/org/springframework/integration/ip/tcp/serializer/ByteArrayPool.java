@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.serializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * A pool of byte arrays organized in power-of-two size classes (the smallest being
+ * 256 bytes). {@link #acquire(int)} returns an array from the smallest size class that
+ * can hold the requested number of bytes; {@link #release(byte[])} returns it to the
+ * pool for reuse. Requests larger than the maximum pooled size are satisfied with
+ * a new, exactly sized, array that is not retained when released.
+ * <p>
+ * A single pool can be shared by several
+ * {@link AbstractPooledBufferByteArraySerializer}s (for example, all those used by a
+ * connection factory) to reuse their working buffers; the pool is thread-safe and does
+ * not block.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ *
+ */
+public class ByteArrayPool {
+
+	/**
+	 * The default maximum size of pooled arrays (1Mb).
+	 */
+	public static final int DEFAULT_MAX_ARRAY_SIZE = 1024 * 1024;
+
+	/**
+	 * The default maximum number of idle arrays retained for each size class.
+	 */
+	public static final int DEFAULT_MAX_IDLE_PER_SIZE_CLASS = 32;
+
+	private static final int MIN_SIZE_CLASS_SHIFT = 8;
+
+	private static final int MIN_SIZE_CLASS = 1 << MIN_SIZE_CLASS_SHIFT;
+
+	private final List<Queue<byte[]>> idle = new ArrayList<Queue<byte[]>>();
+
+	private final List<AtomicInteger> idleCounts = new ArrayList<AtomicInteger>();
+
+	private final int maxArraySize;
+
+	private final int maxIdlePerSizeClass;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong releases = new AtomicLong();
+
+	private final AtomicLong discards = new AtomicLong();
+
+	/**
+	 * Construct a pool with {@link #DEFAULT_MAX_ARRAY_SIZE} and
+	 * {@link #DEFAULT_MAX_IDLE_PER_SIZE_CLASS}.
+	 */
+	public ByteArrayPool() {
+		this(DEFAULT_MAX_ARRAY_SIZE, DEFAULT_MAX_IDLE_PER_SIZE_CLASS);
+	}
+
+	/**
+	 * Construct a pool with the provided limits.
+	 * @param maxArraySize the maximum size of pooled arrays; rounded up to a power of two.
+	 * @param maxIdlePerSizeClass the maximum number of idle arrays retained for each
+	 * size class.
+	 */
+	public ByteArrayPool(int maxArraySize, int maxIdlePerSizeClass) {
+		Assert.isTrue(maxArraySize > 0 && maxArraySize <= 1 << 30, "'maxArraySize' must be between 1 and 2^30");
+		Assert.isTrue(maxIdlePerSizeClass > 0, "'maxIdlePerSizeClass' must be greater than 0");
+		int sizeClasses = sizeClassFor(maxArraySize) + 1;
+		this.maxArraySize = MIN_SIZE_CLASS << (sizeClasses - 1);
+		this.maxIdlePerSizeClass = maxIdlePerSizeClass;
+		for (int i = 0; i < sizeClasses; i++) {
+			this.idle.add(new ConcurrentLinkedQueue<byte[]>());
+			this.idleCounts.add(new AtomicInteger());
+		}
+	}
+
+	/**
+	 * Obtain an array that can hold at least the requested number of bytes.
+	 * @param size the minimum size.
+	 * @return the array.
+	 */
+	public byte[] acquire(int size) {
+		if (size > this.maxArraySize) {
+			this.misses.incrementAndGet();
+			return new byte[size];
+		}
+		int sizeClass = sizeClassFor(size);
+		byte[] array = this.idle.get(sizeClass).poll();
+		if (array != null) {
+			this.idleCounts.get(sizeClass).decrementAndGet();
+			this.hits.incrementAndGet();
+			return array;
+		}
+		this.misses.incrementAndGet();
+		return new byte[MIN_SIZE_CLASS << sizeClass];
+	}
+
+	/**
+	 * Return an array to the pool. Arrays that do not match a size class, or for which
+	 * the size class already has the maximum number of idle arrays, are discarded.
+	 * The caller must not use the array after releasing it.
+	 * @param array the array.
+	 */
+	public void release(byte[] array) {
+		int length = array.length;
+		if (length < MIN_SIZE_CLASS || length > this.maxArraySize || Integer.bitCount(length) != 1) {
+			this.discards.incrementAndGet();
+			return;
+		}
+		int sizeClass = Integer.numberOfTrailingZeros(length) - MIN_SIZE_CLASS_SHIFT;
+		AtomicInteger idleCount = this.idleCounts.get(sizeClass);
+		if (idleCount.incrementAndGet() > this.maxIdlePerSizeClass) {
+			idleCount.decrementAndGet();
+			this.discards.incrementAndGet();
+			return;
+		}
+		this.idle.get(sizeClass).offer(array);
+		this.releases.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of requests satisfied by an idle array.
+	 */
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	/**
+	 * @return the number of requests that required a new array.
+	 */
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	/**
+	 * @return the ratio of hits to requests, or 0 if there have been no requests.
+	 */
+	public double getHitRatio() {
+		long hitCount = this.hits.get();
+		long requests = hitCount + this.misses.get();
+		return requests == 0 ? 0 : (double) hitCount / requests;
+	}
+
+	/**
+	 * @return the number of arrays returned to the pool.
+	 */
+	public long getReleaseCount() {
+		return this.releases.get();
+	}
+
+	/**
+	 * @return the number of released arrays that were not retained.
+	 */
+	public long getDiscardCount() {
+		return this.discards.get();
+	}
+
+	/**
+	 * @return the number of idle arrays currently in the pool.
+	 */
+	public int getIdleCount() {
+		int count = 0;
+		for (AtomicInteger idleCount : this.idleCounts) {
+			count += idleCount.get();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the size of the largest pooled arrays.
+	 */
+	public int getMaxArraySize() {
+		return this.maxArraySize;
+	}
+
+	private static int sizeClassFor(int size) {
+		if (size <= MIN_SIZE_CLASS) {
+			return 0;
+		}
+		return Integer.SIZE - Integer.numberOfLeadingZeros(size - 1) - MIN_SIZE_CLASS_SHIFT;
+	}
+
+}
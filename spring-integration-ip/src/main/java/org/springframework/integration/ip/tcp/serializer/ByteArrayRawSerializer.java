@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -72,6 +72,7 @@ public class ByteArrayRawSerializer extends AbstractPooledBufferByteArraySeriali
 
 	@Override
 	protected byte[] doDeserialize(InputStream inputStream, byte[] buffer) throws IOException {
+		byte[] working = buffer;
 		int n = 0;
 		int bite = 0;
 		if (logger.isDebugEnabled()) {
@@ -98,19 +99,20 @@ public class ByteArrayRawSerializer extends AbstractPooledBufferByteArraySeriali
 					throw new IOException("Socket was not closed before max message length: "
 							+ this.maxMessageSize);
 				}
-				buffer[n++] = (byte) bite;
+				working = ensureCapacity(working, n);
+				working[n++] = (byte) bite;
 			}
-			return copyToSizedArray(buffer, n);
+			return copyToSizedArray(working, n);
 		}
 		catch (SoftEndOfStreamException e) {
 			throw e;
 		}
 		catch (IOException e) {
-			publishEvent(e, buffer, n);
+			publishEvent(e, working, n);
 			throw e;
 		}
 		catch (RuntimeException e) {
-			publishEvent(e, buffer, n);
+			publishEvent(e, working, n);
 			throw e;
 		}
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -44,6 +44,7 @@ public class ByteArraySingleTerminatorSerializer extends AbstractPooledBufferByt
 	 */
 	@Override
 	protected byte[] doDeserialize(InputStream inputStream, byte[] buffer) throws IOException {
+		byte[] working = buffer;
 		int n = 0;
 		int bite;
 		if (logger.isDebugEnabled()) {
@@ -59,24 +60,25 @@ public class ByteArraySingleTerminatorSerializer extends AbstractPooledBufferByt
 				if (bite == this.terminator) {
 					break;
 				}
-				buffer[n++] = (byte) bite;
+				working = ensureCapacity(working, n);
+				working[n++] = (byte) bite;
 				if (n >= this.maxMessageSize) {
 					throw new IOException("Terminator '0x" + Integer.toHexString(this.terminator & 0xff)
 							+ "' not found before max message length: "
 							+ this.maxMessageSize);
 				}
 			}
-			return copyToSizedArray(buffer, n);
+			return copyToSizedArray(working, n);
 		}
 		catch (SoftEndOfStreamException e) {
 			throw e;
 		}
 		catch (IOException e) {
-			publishEvent(e, buffer, n);
+			publishEvent(e, working, n);
 			throw e;
 		}
 		catch (RuntimeException e) {
-			publishEvent(e, buffer, n);
+			publishEvent(e, working, n);
 			throw e;
 		}
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2015 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.springframework.integration.mapping.MessageMappingException;
 
@@ -26,11 +27,13 @@ import org.springframework.integration.mapping.MessageMappingException;
  * Reads data in an InputStream to a byte[]; data must be prefixed by &lt;stx&gt; and
  * terminated by &lt;etx&gt; (not included in resulting byte[]).
  * Writes a byte[] to an OutputStream prefixed by &lt;stx&gt; terminated by &lt;etx&gt;
+ * Also decodes frames directly from a {@link ByteBuffer}.
  *
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayStxEtxSerializer extends AbstractPooledBufferByteArraySerializer {
+public class ByteArrayStxEtxSerializer extends AbstractPooledBufferByteArraySerializer
+		implements ByteBufferDeserializer<byte[]> {
 
 	/**
 	 * A single reusable instance.
@@ -55,6 +58,7 @@ public class ByteArrayStxEtxSerializer extends AbstractPooledBufferByteArraySeri
 		if (bite < 0) {
 			throw new SoftEndOfStreamException("Stream closed between payloads");
 		}
+		byte[] working = buffer;
 		int n = 0;
 		try {
 			if (bite != STX) {
@@ -62,20 +66,70 @@ public class ByteArrayStxEtxSerializer extends AbstractPooledBufferByteArraySeri
 			}
 			while ((bite = inputStream.read()) != ETX) {
 				checkClosure(bite);
-				buffer[n++] = (byte) bite;
+				working = ensureCapacity(working, n);
+				working[n++] = (byte) bite;
 				if (n >= this.maxMessageSize) {
 					throw new IOException("ETX not found before max message length: "
 							+ this.maxMessageSize);
 				}
 			}
-			return copyToSizedArray(buffer, n);
+			return copyToSizedArray(working, n);
 		}
 		catch (IOException e) {
-			publishEvent(e, buffer, n);
+			publishEvent(e, working, n);
 			throw e;
 		}
 		catch (RuntimeException e) {
-			publishEvent(e, buffer, n);
+			publishEvent(e, working, n);
+			throw e;
+		}
+	}
+
+	/**
+	 * Decodes the next STX/ETX delimited frame in the buffer (the delimiters are not
+	 * included in the result).
+	 * @since 5.0
+	 */
+	@Override
+	public byte[] decode(ByteBuffer buffer) throws IOException {
+		return decode(buffer, 0);
+	}
+
+	/**
+	 * Decodes the next STX/ETX delimited frame in the buffer, resuming the search for the
+	 * ETX after the bytes already scanned.
+	 * @since 5.0
+	 */
+	@Override
+	public byte[] decode(ByteBuffer buffer, int scanned) throws IOException {
+		int start = buffer.position();
+		int limit = buffer.limit();
+		if (start == limit) {
+			return null;
+		}
+		if (buffer.get(start) != STX) {
+			MessageMappingException e = new MessageMappingException("Expected STX to begin message");
+			publishEvent(e, null, 0);
+			throw e;
+		}
+		for (int i = start + Math.max(scanned, 1); i < limit; i++) {
+			if (buffer.get(i) == ETX) {
+				checkFrameLength(i - start - 1);
+				byte[] frame = new byte[i - start - 1];
+				buffer.position(start + 1);
+				buffer.get(frame);
+				buffer.position(i + 1);
+				return frame;
+			}
+		}
+		checkFrameLength(limit - start - 1);
+		return null;
+	}
+
+	private void checkFrameLength(int length) throws IOException {
+		if (length >= this.maxMessageSize) {
+			IOException e = new IOException("ETX not found before max message length: " + this.maxMessageSize);
+			publishEvent(e, null, length);
 			throw e;
 		}
 	}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reads data in an InputStream to a byte[]; data must be preceded by a variable length
+ * (1-5 byte) unsigned integer header (base 128, least significant group first, the high
+ * order bit of each byte indicating that another byte follows - the same encoding as
+ * Protocol Buffers' length delimited messages). Small frames therefore need only a
+ * single header byte.
+ * <p>
+ * Writes a byte[] to an OutputStream after such a header.
+ * <p>
+ * Optionally, a 4 byte CRC-32 checksum of the frame data (as transmitted) can follow
+ * the header ({@link #setChecksum(boolean) checksum}); it is verified when the frame
+ * is read. Also optionally, frames at least {@link #setCompressionThreshold(int)
+ * compressionThreshold} bytes long are compressed (with {@link Deflater#BEST_SPEED});
+ * in that case, the least significant bit of the header value indicates whether the
+ * frame is compressed, and the remaining bits contain the length. Both ends of the
+ * connection must be configured with the same options.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class ByteArrayVarIntLengthHeaderSerializer extends AbstractByteArraySerializer
+		implements ByteBufferDeserializer<byte[]> {
+
+	private static final int MAX_HEADER_SIZE = 5;
+
+	private static final int CHECKSUM_SIZE = 4;
+
+	private volatile boolean checksum;
+
+	private volatile int compressionThreshold = -1;
+
+	/**
+	 * Set to true to add a CRC-32 checksum to each frame, and verify it when the frame is
+	 * read. Default false.
+	 * @param checksum true to add and verify checksums.
+	 */
+	public void setChecksum(boolean checksum) {
+		this.checksum = checksum;
+	}
+
+	/**
+	 * Set the minimum length of data that will be compressed; 0 to compress all frames.
+	 * The compressed data is only sent if it is smaller than the original. Default -1
+	 * (compression disabled).
+	 * @param compressionThreshold the threshold.
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	/**
+	 * Reads the header from the stream and then reads the provided length from the
+	 * stream and returns the (verified, decompressed) data in a byte[]. Throws an
+	 * IOException if the length exceeds the maxMessageSize or the checksum does not
+	 * match. Throws a {@link SoftEndOfStreamException} if the stream is closed between
+	 * messages.
+	 * @param inputStream The input stream.
+	 * @throws IOException Any IOException.
+	 */
+	@Override
+	public byte[] deserialize(InputStream inputStream) throws IOException {
+		long header = readHeader(inputStream);
+		boolean compressed = isCompressed(header);
+		int frameLength = checkLength(header);
+		byte[] frame = new byte[frameLength];
+		try {
+			int lengthRead = 0;
+			while (lengthRead < frameLength) {
+				int len = inputStream.read(frame, lengthRead, frameLength - lengthRead);
+				if (len < 0) {
+					throw new IOException("Stream closed after " + lengthRead + " of " + frameLength);
+				}
+				lengthRead += len;
+			}
+			return extract(frame, 0, frameLength, compressed);
+		}
+		catch (IOException e) {
+			publishEvent(e, frame, -1);
+			throw e;
+		}
+		catch (RuntimeException e) {
+			publishEvent(e, frame, -1);
+			throw e;
+		}
+	}
+
+	/**
+	 * Decodes the next frame in the buffer (the header and checksum are not included in
+	 * the result). Throws an IOException if the length exceeds the maxMessageSize or the
+	 * checksum does not match.
+	 * @param buffer the buffer.
+	 * @return the data, or null if the complete frame has not yet been received.
+	 * @throws IOException Any IOException.
+	 */
+	@Override
+	public byte[] decode(ByteBuffer buffer) throws IOException {
+		int start = buffer.position();
+		int limit = buffer.limit();
+		long header = 0;
+		int headerSize = 0;
+		while (true) {
+			if (start + headerSize >= limit) {
+				return null;
+			}
+			int bite = buffer.get(start + headerSize);
+			header |= (long) (bite & 0x7f) << (7 * headerSize++);
+			if ((bite & 0x80) == 0) {
+				break;
+			}
+			if (headerSize == MAX_HEADER_SIZE) {
+				IOException e = new IOException("Invalid length header; more than " + MAX_HEADER_SIZE + " bytes");
+				publishEvent(e, null, -1);
+				throw e;
+			}
+		}
+		boolean compressed = isCompressed(header);
+		int frameLength = checkLength(header);
+		if (limit - start - headerSize < frameLength) {
+			return null;
+		}
+		byte[] frame;
+		int offset;
+		if (buffer.hasArray()) {
+			frame = buffer.array();
+			offset = buffer.arrayOffset() + start + headerSize;
+		}
+		else {
+			frame = new byte[frameLength];
+			offset = 0;
+			buffer.position(start + headerSize);
+			buffer.get(frame);
+		}
+		buffer.position(start + headerSize + frameLength);
+		try {
+			return extract(frame, offset, frameLength, compressed);
+		}
+		catch (IOException e) {
+			publishEvent(e, null, -1);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the byte[] to the output stream, preceded by the header (and checksum),
+	 * compressing it if configured to do so.
+	 * @param bytes The bytes.
+	 * @param outputStream The output stream.
+	 */
+	@Override
+	public void serialize(byte[] bytes, OutputStream outputStream) throws IOException {
+		byte[] data = bytes;
+		boolean compressed = false;
+		if (this.compressionThreshold >= 0 && bytes.length >= this.compressionThreshold) {
+			byte[] deflated = compress(bytes);
+			if (deflated.length < bytes.length) {
+				data = deflated;
+				compressed = true;
+			}
+		}
+		long length = data.length + (this.checksum ? CHECKSUM_SIZE : 0);
+		long header = this.compressionThreshold >= 0 ? length << 1 | (compressed ? 1 : 0) : length;
+		byte[] frameHeader = new byte[MAX_HEADER_SIZE + CHECKSUM_SIZE];
+		int headerSize = writeVarInt(header, frameHeader);
+		if (this.checksum) {
+			CRC32 crc = new CRC32();
+			crc.update(data);
+			ByteBuffer.wrap(frameHeader, headerSize, CHECKSUM_SIZE).putInt((int) crc.getValue());
+			headerSize += CHECKSUM_SIZE;
+		}
+		outputStream.write(frameHeader, 0, headerSize);
+		outputStream.write(data);
+	}
+
+	/**
+	 * Reads the variable length header.
+	 * @param inputStream The input stream.
+	 * @return The header value.
+	 * @throws IOException Any IOException.
+	 * @throws SoftEndOfStreamException if socket closes
+	 * before any length data read.
+	 */
+	protected long readHeader(InputStream inputStream) throws IOException {
+		long header = 0;
+		for (int i = 0; i < MAX_HEADER_SIZE; i++) {
+			int bite = inputStream.read();
+			if (bite < 0) {
+				if (i == 0) {
+					throw new SoftEndOfStreamException("Stream closed between payloads");
+				}
+				checkClosure(bite);
+			}
+			header |= (long) (bite & 0x7f) << (7 * i);
+			if ((bite & 0x80) == 0) {
+				return header;
+			}
+		}
+		IOException e = new IOException("Invalid length header; more than " + MAX_HEADER_SIZE + " bytes");
+		publishEvent(e, null, -1);
+		throw e;
+	}
+
+	private boolean isCompressed(long header) {
+		return this.compressionThreshold >= 0 && (header & 1) == 1;
+	}
+
+	private int checkLength(long header) throws IOException {
+		long length = this.compressionThreshold >= 0 ? header >>> 1 : header;
+		if (length > this.maxMessageSize + (this.checksum ? CHECKSUM_SIZE : 0)) {
+			IOException e = new IOException("Message length " + length +
+					" exceeds max message length: " + this.maxMessageSize);
+			publishEvent(e, null, -1);
+			throw e;
+		}
+		if (this.checksum && length < CHECKSUM_SIZE) {
+			IOException e = new IOException("Frame length " + length + " is too short to contain a checksum");
+			publishEvent(e, null, -1);
+			throw e;
+		}
+		return (int) length;
+	}
+
+	/**
+	 * Verify the checksum, if present, and decompress the data, if compressed.
+	 */
+	private byte[] extract(byte[] frame, int offset, int length, boolean compressed) throws IOException {
+		int dataOffset = offset;
+		int dataLength = length;
+		if (this.checksum) {
+			int expected = ByteBuffer.wrap(frame, offset, CHECKSUM_SIZE).getInt();
+			dataOffset += CHECKSUM_SIZE;
+			dataLength -= CHECKSUM_SIZE;
+			CRC32 crc = new CRC32();
+			crc.update(frame, dataOffset, dataLength);
+			if ((int) crc.getValue() != expected) {
+				throw new IOException("Checksum mismatch; the frame is corrupt");
+			}
+		}
+		if (compressed) {
+			return decompress(frame, dataOffset, dataLength);
+		}
+		byte[] data = new byte[dataLength];
+		System.arraycopy(frame, dataOffset, data, 0, dataLength);
+		return data;
+	}
+
+	private byte[] compress(byte[] bytes) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(bytes);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+			byte[] length = new byte[MAX_HEADER_SIZE];
+			out.write(length, 0, writeVarInt(bytes.length, length));
+			byte[] buffer = new byte[Math.min(Math.max(bytes.length, 64), 8192)];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	private byte[] decompress(byte[] frame, int offset, int length) throws IOException {
+		long originalLength = 0;
+		int headerSize = 0;
+		int bite;
+		do {
+			if (headerSize == length || headerSize == MAX_HEADER_SIZE) {
+				throw new IOException("Invalid compressed frame; bad length");
+			}
+			bite = frame[offset + headerSize];
+			originalLength |= (long) (bite & 0x7f) << (7 * headerSize++);
+		}
+		while ((bite & 0x80) != 0);
+		if (originalLength > this.maxMessageSize) {
+			throw new IOException("Message length " + originalLength +
+					" exceeds max message length: " + this.maxMessageSize);
+		}
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(frame, offset + headerSize, length - headerSize);
+			byte[] data = new byte[(int) originalLength];
+			int inflated = 0;
+			while (inflated < data.length) {
+				int count = inflater.inflate(data, inflated, data.length - inflated);
+				if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				inflated += count;
+			}
+			if (inflated != data.length) {
+				throw new IOException("Invalid compressed frame; expected " + data.length
+						+ " bytes, inflated " + inflated);
+			}
+			return data;
+		}
+		catch (DataFormatException e) {
+			throw new IOException("Invalid compressed frame", e);
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+	private static int writeVarInt(long value, byte[] buffer) {
+		long remaining = value;
+		int i = 0;
+		while ((remaining & ~0x7fL) != 0) {
+			buffer[i++] = (byte) ((remaining & 0x7f) | 0x80);
+			remaining >>>= 7;
+		}
+		buffer[i++] = (byte) remaining;
+		return i;
+	}
+
+}
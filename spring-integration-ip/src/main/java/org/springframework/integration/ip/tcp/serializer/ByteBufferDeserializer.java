@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.serializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A frame decoder that operates directly on a {@link ByteBuffer} containing data
+ * read from the network, rather than on an {@link java.io.InputStream}. Used by NIO
+ * connections configured for {@code byteBufferDecoding} to decode frames on the
+ * selector thread without first copying the data into an intermediate stream.
+ *
+ * @param <T> the decoded type.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ *
+ */
+@FunctionalInterface
+public interface ByteBufferDeserializer<T> {
+
+	/**
+	 * Decode the next complete frame from the buffer, starting at its position. If a
+	 * complete frame is available, the buffer's position is advanced past the frame
+	 * (including any framing bytes). If the buffer does not yet contain a complete
+	 * frame, {@code null} is returned and the position is left unchanged; the caller
+	 * will invoke the method again when more data is available.
+	 * @param buffer the buffer, in read mode.
+	 * @return the frame, or null if more data is needed.
+	 * @throws IOException if the data cannot be decoded (for example, a frame exceeds
+	 * the maximum message size).
+	 */
+	T decode(ByteBuffer buffer) throws IOException;
+
+	/**
+	 * Decode the next complete frame from the buffer, as {@link #decode(ByteBuffer)},
+	 * when the first {@code scanned} bytes after the position were already examined by
+	 * a previous invocation that returned {@code null}. Decoders that search for a
+	 * delimiter can resume the search there, instead of scanning a partial frame again
+	 * each time more data is appended to it.
+	 * @param buffer the buffer, in read mode.
+	 * @param scanned the number of bytes already examined.
+	 * @return the frame, or null if more data is needed.
+	 * @throws IOException if the data cannot be decoded.
+	 */
+	default T decode(ByteBuffer buffer, int scanned) throws IOException {
+		return decode(buffer);
+	}
+
+	/**
+	 * Return true if this deserializer can decode frames from a {@link ByteBuffer}.
+	 * Deserializers that also implement the stream-based
+	 * {@link org.springframework.core.serializer.Deserializer} may return false when
+	 * their framing is only available for streams; connections then read from the
+	 * stream instead.
+	 * @return true if {@link #decode(ByteBuffer)} is supported; default true.
+	 */
+	default boolean supportsByteBufferDecoding() {
+		return true;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2016-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -128,4 +128,12 @@ public final class TcpCodecs {
 		}
 	}
 
+	/**
+	 * @return a new {@link ByteArrayVarIntLengthHeaderSerializer}; a new instance is
+	 * returned because it can be configured with checksum and compression options.
+	 */
+	public static ByteArrayVarIntLengthHeaderSerializer varIntLengthHeader() {
+		return new ByteArrayVarIntLengthHeaderSerializer();
+	}
+
 }
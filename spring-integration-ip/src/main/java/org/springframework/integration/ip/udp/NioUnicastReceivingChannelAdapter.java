@@ -0,0 +1,241 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.udp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link UnicastReceivingChannelAdapter} that receives packets using a non-blocking
+ * {@link DatagramChannel}. The receiving thread reads each packet into a single,
+ * reused, direct buffer and only copies the bytes actually received, which avoids
+ * allocating a {@code receiveBufferSize} array for every packet; mapping the packets
+ * to messages is deferred to the task executor.
+ * <p>
+ * When the {@link #setBatchSize(int) batchSize} is greater than one, the receiving
+ * thread hands the immediately available packets to the task executor in groups of up
+ * to that many, which reduces the number of tasks submitted under load; each group is
+ * emitted in a single message with a {@code List<Message<byte[]>>} payload and each
+ * element carries the usual {@link IpHeaders} for its packet. Otherwise, each packet is
+ * handed to the executor as soon as it is received.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ *
+ */
+public class NioUnicastReceivingChannelAdapter extends UnicastReceivingChannelAdapter {
+
+	private volatile DatagramChannel channel;
+
+	private volatile Selector selector;
+
+	private volatile int batchSize = 1;
+
+	/**
+	 * Constructs a NioUnicastReceivingChannelAdapter that listens on the specified port.
+	 * @param port The port.
+	 */
+	public NioUnicastReceivingChannelAdapter(int port) {
+		super(port);
+	}
+
+	/**
+	 * Constructs a NioUnicastReceivingChannelAdapter that listens for packets on
+	 * the specified port. Enables setting the lengthCheck option, which expects
+	 * a length to precede the incoming packets.
+	 * @param port The port.
+	 * @param lengthCheck If true, enables the lengthCheck Option.
+	 */
+	public NioUnicastReceivingChannelAdapter(int port, boolean lengthCheck) {
+		super(port, lengthCheck);
+	}
+
+	/**
+	 * Set the maximum number of packets to emit in a single message; when greater than
+	 * one, the message payload is a {@code List<Message<byte[]>>} containing the packets
+	 * that were available when the channel was read (up to this number). Default 1 - each
+	 * packet is emitted in its own message.
+	 * @param batchSize the batch size.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public synchronized DatagramSocket getSocket() {
+		if (getTheSocket() == null) {
+			try {
+				DatagramChannel channel = DatagramChannel.open();
+				DatagramSocket socket = channel.socket();
+				setSocketAttributes(socket);
+				String localAddress = this.getLocalAddress();
+				int port = super.getPort();
+				if (localAddress == null) {
+					channel.bind(new InetSocketAddress(port));
+				}
+				else {
+					InetAddress whichNic = InetAddress.getByName(localAddress);
+					channel.bind(new InetSocketAddress(whichNic, port));
+				}
+				channel.configureBlocking(false);
+				this.channel = channel;
+				setSocket(socket);
+			}
+			catch (IOException e) {
+				throw new MessagingException("failed to create DatagramChannel", e);
+			}
+		}
+		return getTheSocket();
+	}
+
+	@Override
+	public void run() {
+		getSocket();
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("NIO UDP Receiver running on port:" + this.getPort());
+		}
+
+		DatagramChannel channel = this.channel;
+		ByteBuffer buffer = ByteBuffer.allocateDirect(getReceiveBufferSize());
+		try (Selector selector = Selector.open()) {
+			this.selector = selector;
+			channel.register(selector, SelectionKey.OP_READ);
+			setListening(true);
+			while (this.isActive()) {
+				if (selector.select() > 0) {
+					selector.selectedKeys().clear();
+					receivePackets(channel, buffer);
+				}
+			}
+		}
+		catch (ClosedChannelException e) {
+			// stopped
+		}
+		catch (IOException e) {
+			if (this.isActive()) {
+				logger.error("Failed to receive DatagramPacket; stopping", e);
+				this.stop();
+			}
+		}
+		finally {
+			this.selector = null;
+			this.setListening(false);
+		}
+	}
+
+	/**
+	 * Read all immediately available packets, dispatching each group of
+	 * {@code batchSize} packets as soon as it is complete, so a packet never waits
+	 * for the rest of the drain. Only the bytes actually received are copied out of
+	 * the shared buffer; mapping to messages is deferred to the task executor.
+	 */
+	private void receivePackets(DatagramChannel channel, ByteBuffer buffer) throws IOException {
+		int batchSize = this.batchSize;
+		List<DatagramPacket> packets = new ArrayList<>(batchSize);
+		SocketAddress source;
+		while (this.isActive()) {
+			buffer.clear();
+			source = channel.receive(buffer);
+			if (source == null) {
+				break;
+			}
+			buffer.flip();
+			byte[] data = new byte[buffer.remaining()];
+			buffer.get(data);
+			packets.add(new DatagramPacket(data, data.length, source));
+			if (packets.size() >= batchSize) {
+				dispatch(packets);
+				packets = new ArrayList<>(batchSize);
+			}
+		}
+		if (packets.size() > 0) {
+			dispatch(packets);
+		}
+	}
+
+	private void dispatch(final List<DatagramPacket> packets) {
+		Executor taskExecutor = getTaskExecutor();
+		if (taskExecutor != null) {
+			try {
+				taskExecutor.execute(() -> doSend(packets));
+			}
+			catch (RejectedExecutionException e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Adapter stopped, sending on main thread");
+				}
+				doSend(packets);
+			}
+		}
+	}
+
+	/**
+	 * Map the packets to messages, send any requested acknowledgments and emit the
+	 * messages (individually or as a batch).
+	 * @param packets the packets.
+	 */
+	protected void doSend(List<DatagramPacket> packets) {
+		List<Message<byte[]>> messages = new ArrayList<>(packets.size());
+		for (DatagramPacket packet : packets) {
+			Message<byte[]> message = mapPacket(packet);
+			if (message != null) {
+				if (message.getHeaders().containsKey(IpHeaders.ACK_ADDRESS)) {
+					sendAck(message);
+				}
+				if (this.batchSize > 1) {
+					messages.add(message);
+				}
+				else {
+					sendMessage(message);
+				}
+			}
+		}
+		if (messages.size() > 0) {
+			sendMessage(getMessageBuilderFactory().withPayload(messages).build());
+		}
+	}
+
+	@Override
+	protected void doStop() {
+		super.doStop();
+		Selector selector = this.selector;
+		if (selector != null) {
+			selector.wakeup();
+		}
+		this.channel = null;
+	}
+
+}
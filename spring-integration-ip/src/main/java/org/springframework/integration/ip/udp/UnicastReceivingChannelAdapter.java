@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -183,6 +183,22 @@ public class UnicastReceivingChannelAdapter extends AbstractInternetProtocolRece
 	}
 
 	protected void doSend(final DatagramPacket packet) {
+		Message<byte[]> message = mapPacket(packet);
+		if (message != null) {
+			if (message.getHeaders().containsKey(IpHeaders.ACK_ADDRESS)) {
+				sendAck(message);
+			}
+			sendMessage(message);
+		}
+	}
+
+	/**
+	 * Map the packet to a message, logging any mapping failure.
+	 * @param packet the packet.
+	 * @return the message, or null if the packet could not be mapped (or was empty).
+	 * @since 5.0
+	 */
+	protected Message<byte[]> mapPacket(DatagramPacket packet) {
 		Message<byte[]> message = null;
 		try {
 			message = this.mapper.toMessage(packet);
@@ -193,12 +209,7 @@ public class UnicastReceivingChannelAdapter extends AbstractInternetProtocolRece
 		catch (Exception e) {
 			logger.error("Failed to map packet to message ", e);
 		}
-		if (message != null) {
-			if (message.getHeaders().containsKey(IpHeaders.ACK_ADDRESS)) {
-				sendAck(message);
-			}
-			sendMessage(message);
-		}
+		return message;
 	}
 
 	protected DatagramPacket receive() throws Exception {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,8 +28,10 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.BufferedReader;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
@@ -43,6 +45,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -63,6 +66,7 @@ import org.springframework.expression.Expression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.MessageTimeoutException;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.expression.FunctionExpression;
 import org.springframework.integration.ip.tcp.connection.AbstractClientConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.CachingClientConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.FailoverClientConnectionFactory;
@@ -831,4 +835,71 @@ public class TcpOutboundGatewayTests extends LogAdjustingTestSupport {
 		ccf.stop();
 	}
 
+	@Test
+	public void testCorrelatedMultiplexedRequests() throws Exception {
+		final int requests = 20;
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<ServerSocket> serverSocket = new AtomicReference<ServerSocket>();
+		Executors.newSingleThreadExecutor().execute(() -> {
+			try {
+				ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(0, 10);
+				serverSocket.set(server);
+				latch.countDown();
+				Socket socket = server.accept();
+				BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+				List<String> received = new ArrayList<String>();
+				// only reply when all requests are in flight, in reverse order
+				while (received.size() < requests) {
+					received.add(reader.readLine());
+				}
+				Collections.reverse(received);
+				for (String request : received) {
+					socket.getOutputStream().write((request + ":reply\r\n").getBytes());
+				}
+			}
+			catch (Exception e) {
+				if (!done.get()) {
+					e.printStackTrace();
+				}
+			}
+		});
+		assertTrue(latch.await(10000, TimeUnit.MILLISECONDS));
+		AbstractClientConnectionFactory ccf = new TcpNetClientConnectionFactory("localhost",
+				serverSocket.get().getLocalPort());
+		ccf.setSoTimeout(10000);
+		ccf.setSingleUse(false);
+		ccf.start();
+		TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(ccf);
+		gateway.setCorrelationExpression(new FunctionExpression<Message<?>>(m -> {
+			Object payload = m.getPayload();
+			String data = payload instanceof byte[] ? new String((byte[]) payload) : (String) payload;
+			return data.substring(0, data.indexOf(':'));
+		}));
+		gateway.setRemoteTimeout(10000);
+		gateway.setBeanFactory(mock(BeanFactory.class));
+		gateway.afterPropertiesSet();
+		ExecutorService exec = Executors.newFixedThreadPool(requests);
+		List<QueueChannel> replyChannels = new ArrayList<QueueChannel>();
+		for (int i = 0; i < requests; i++) {
+			QueueChannel replyChannel = new QueueChannel();
+			replyChannels.add(replyChannel);
+			Message<String> request = MessageBuilder.withPayload(i + ":request")
+					.setReplyChannel(replyChannel)
+					.build();
+			exec.execute(() -> gateway.handleMessage(request));
+		}
+		for (int i = 0; i < requests; i++) {
+			Message<?> reply = replyChannels.get(i).receive(10000);
+			assertNotNull(reply);
+			assertEquals(i + ":request:reply", new String((byte[]) reply.getPayload()));
+		}
+		assertEquals(0, TestUtils.getPropertyValue(gateway, "correlatedReplies", Map.class).size());
+		exec.shutdownNow();
+		done.set(true);
+		ccf.stop();
+		serverSocket.get().close();
+	}
+
 }
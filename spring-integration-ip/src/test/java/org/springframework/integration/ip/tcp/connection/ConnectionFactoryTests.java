@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,8 +33,13 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -42,6 +47,8 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import javax.net.ServerSocketFactory;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.Test;
@@ -58,6 +65,7 @@ import org.springframework.integration.ip.event.IpIntegrationEvent;
 import org.springframework.integration.ip.tcp.TcpReceivingChannelAdapter;
 import org.springframework.integration.test.support.LogAdjustingTestSupport;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.support.GenericMessage;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
@@ -244,6 +252,67 @@ public class ConnectionFactoryTests extends LogAdjustingTestSupport {
 		factory.stop();
 	}
 
+	@Test
+	public void testWriteCoalescingNet() throws Exception {
+		testWriteCoalescing(false);
+	}
+
+	@Test
+	public void testWriteCoalescingNio() throws Exception {
+		testWriteCoalescing(true);
+	}
+
+	private void testWriteCoalescing(boolean nio) throws Exception {
+		ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(0);
+		AbstractClientConnectionFactory clientFactory = nio
+				? new TcpNioClientConnectionFactory("localhost", server.getLocalPort())
+				: new TcpNetClientConnectionFactory("localhost", server.getLocalPort());
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		BeanFactory bf = mock(BeanFactory.class);
+		when(bf.containsBean(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME)).thenReturn(true);
+		when(bf.getBean(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, TaskScheduler.class)).thenReturn(scheduler);
+		clientFactory.setBeanFactory(bf);
+		clientFactory.setSoTcpNoDelay(true);
+		clientFactory.setWriteCoalescingLinger(60000);
+		clientFactory.setMaxPendingWrites(3);
+		clientFactory.start();
+		TcpConnectionSupport connection = clientFactory.getConnection();
+		Socket socket = server.accept();
+		socket.setSoTimeout(500);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+		connection.send(new GenericMessage<>("foo"));
+		connection.send(new GenericMessage<>("bar"));
+		try {
+			reader.readLine();
+			fail("Expected timeout; writes should have been deferred");
+		}
+		catch (SocketTimeoutException e) {
+			// expected
+		}
+		connection.send(new GenericMessage<>("baz"));
+		socket.setSoTimeout(10000);
+		assertEquals("foo", reader.readLine());
+		assertEquals("bar", reader.readLine());
+		assertEquals("baz", reader.readLine());
+		connection.send(new GenericMessage<>("qux"));
+		connection.close();
+		assertEquals("qux", reader.readLine());
+		clientFactory.stop();
+
+		clientFactory.setWriteCoalescingLinger(100);
+		clientFactory.start();
+		connection = clientFactory.getConnection();
+		socket = server.accept();
+		socket.setSoTimeout(10000);
+		reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+		connection.send(new GenericMessage<>("fiz"));
+		assertEquals("fiz", reader.readLine());
+		clientFactory.stop();
+		server.close();
+		scheduler.shutdown();
+	}
+
 	@SuppressWarnings("serial")
 	private class FooEvent extends TcpConnectionOpenEvent {
 
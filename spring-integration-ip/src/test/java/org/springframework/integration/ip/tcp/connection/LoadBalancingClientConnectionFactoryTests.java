@@ -0,0 +1,255 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @author Gary Russell
+ * @since 5.0
+ *
+ */
+public class LoadBalancingClientConnectionFactoryTests {
+
+	@Test
+	public void testLeastOutstanding() throws Exception {
+		AbstractClientConnectionFactory factory1 = makeMockFactory();
+		AbstractClientConnectionFactory factory2 = makeMockFactory();
+		TcpConnectionSupport conn1 = makeMockConnection("conn1");
+		TcpConnectionSupport conn2 = makeMockConnection("conn2");
+		when(factory1.getConnection()).thenReturn(conn1);
+		when(factory2.getConnection()).thenReturn(conn2);
+		LoadBalancingClientConnectionFactory factory = makeFactory(factory1, factory2);
+		List<Message<?>> replies = new ArrayList<>();
+		factory.registerListener(replies::add);
+		factory.start();
+		GenericMessage<String> message = new GenericMessage<>("foo");
+		TcpConnectionSupport first = factory.getConnection();
+		first.send(message);
+		TcpConnectionSupport second = factory.getConnection();
+		second.send(message);
+		verify(conn1).send(message);
+		verify(conn2).send(message);
+		assertEquals(1, factory.getOutstandingRequests(factory1));
+		assertEquals(1, factory.getOutstandingRequests(factory2));
+
+		String firstId = delegate(first).getConnectionId();
+		((TcpListener) first).onMessage(MessageBuilder.withPayload("bar")
+				.setHeader(IpHeaders.CONNECTION_ID, firstId)
+				.build());
+		AbstractClientConnectionFactory replied = "conn1".equals(firstId) ? factory1 : factory2;
+		AbstractClientConnectionFactory other = replied == factory1 ? factory2 : factory1;
+		assertEquals(0, factory.getOutstandingRequests(replied));
+		assertEquals(1, factory.getOutstandingRequests(other));
+		assertEquals(1, replies.size());
+		assertEquals(first.getConnectionId(), replies.get(0).getHeaders().get(IpHeaders.CONNECTION_ID));
+		assertEquals(firstId, replies.get(0).getHeaders().get(IpHeaders.ACTUAL_CONNECTION_ID));
+
+		TcpConnectionSupport third = factory.getConnection();
+		assertEquals(firstId, delegate(third).getConnectionId());
+		second.close();
+		assertEquals(0, factory.getOutstandingRequests(other));
+	}
+
+	@Test
+	public void testEjection() throws Exception {
+		AbstractClientConnectionFactory factory1 = makeMockFactory();
+		AbstractClientConnectionFactory factory2 = makeMockFactory();
+		TcpConnectionSupport conn2 = makeMockConnection("conn2");
+		when(factory1.getConnection()).thenThrow(new IOException("fail"));
+		when(factory2.getConnection()).thenReturn(conn2);
+		LoadBalancingClientConnectionFactory factory = makeFactory(factory1, factory2);
+		factory.setFailureThreshold(2);
+		factory.start();
+		for (int i = 0; i < 6; i++) {
+			TcpConnectionSupport connection = factory.getConnection();
+			assertEquals("conn2", delegate(connection).getConnectionId());
+			connection.close();
+		}
+		verify(factory1, times(2)).getConnection();
+		assertTrue(factory.isEjected(factory1));
+		assertFalse(factory.isEjected(factory2));
+	}
+
+	@Test
+	public void testSendFailover() throws Exception {
+		AbstractClientConnectionFactory factory1 = makeMockFactory();
+		AbstractClientConnectionFactory factory2 = makeMockFactory();
+		TcpConnectionSupport conn1 = makeMockConnection("conn1");
+		TcpConnectionSupport conn2 = makeMockConnection("conn2");
+		when(factory1.getConnection()).thenReturn(conn1);
+		when(factory2.getConnection()).thenReturn(conn2);
+		doThrow(new IOException("fail")).when(conn1).send(Mockito.any(Message.class));
+		LoadBalancingClientConnectionFactory factory = makeFactory(factory1, factory2);
+		factory.registerListener(m -> false);
+		factory.start();
+		GenericMessage<String> message = new GenericMessage<>("foo");
+		for (int i = 0; i < 2; i++) {
+			factory.getConnection().send(message);
+		}
+		verify(conn2, times(2)).send(message);
+		assertEquals(0, factory.getOutstandingRequests(factory1));
+		assertEquals(2, factory.getOutstandingRequests(factory2));
+	}
+
+	@Test
+	public void testEwmaLatency() throws Exception {
+		AbstractClientConnectionFactory factory1 = makeMockFactory();
+		AbstractClientConnectionFactory factory2 = makeMockFactory();
+		TcpConnectionSupport conn1 = makeMockConnection("conn1");
+		TcpConnectionSupport conn2 = makeMockConnection("conn2");
+		when(factory1.getConnection()).thenReturn(conn1);
+		when(factory2.getConnection()).thenReturn(conn2);
+		LoadBalancingClientConnectionFactory factory = makeFactory(factory1, factory2);
+		factory.setStrategy(LoadBalancingClientConnectionFactory.Strategy.EWMA_LATENCY);
+		factory.registerListener(m -> false);
+		factory.start();
+		GenericMessage<String> message = new GenericMessage<>("foo");
+		TcpConnectionSupport first = factory.getConnection();
+		first.send(message);
+		TcpConnectionSupport second = factory.getConnection();
+		second.send(message);
+		reply(second);
+		Thread.sleep(50);
+		reply(first);
+		TcpConnectionSupport slow = "conn1".equals(delegate(first).getConnectionId())
+				? first : second;
+		AbstractClientConnectionFactory slowFactory = slow == first ? factory1 : factory2;
+		AbstractClientConnectionFactory fastFactory = slow == first ? factory2 : factory1;
+		assertTrue(factory.getLatency(slowFactory) >= 50);
+		assertTrue(factory.getLatency(fastFactory) < factory.getLatency(slowFactory));
+		first.close();
+		second.close();
+		for (int i = 0; i < 4; i++) {
+			TcpConnectionSupport connection = factory.getConnection();
+			connection.send(message);
+		}
+		assertEquals(4, factory.getOutstandingRequests(fastFactory));
+		assertEquals(0, factory.getOutstandingRequests(slowFactory));
+	}
+
+	@Test
+	public void testSharedConnection() throws Exception {
+		AbstractClientConnectionFactory factory1 = makeMockFactory(false);
+		AbstractClientConnectionFactory factory2 = makeMockFactory(false);
+		TcpConnectionSupport conn1 = makeMockConnection("conn1");
+		TcpConnectionSupport conn2 = makeMockConnection("conn2");
+		when(factory1.getConnection()).thenReturn(conn1);
+		when(factory2.getConnection()).thenReturn(conn2);
+		LoadBalancingClientConnectionFactory factory = new LoadBalancingClientConnectionFactory(
+				Arrays.asList(factory1, factory2));
+		List<Message<?>> replies = new ArrayList<>();
+		factory.registerListener(replies::add);
+		factory.start();
+		GenericMessage<String> message = new GenericMessage<>("foo");
+		TcpConnectionSupport connection = factory.getConnection();
+		for (int i = 0; i < 3; i++) {
+			assertSame(connection, factory.getConnection());
+			connection.send(message);
+		}
+		TcpConnectionSupport delegate = delegate(connection);
+		AbstractClientConnectionFactory used = "conn1".equals(delegate.getConnectionId()) ? factory1 : factory2;
+		verify(delegate, times(3)).send(message);
+		assertEquals(3, factory.getOutstandingRequests(used));
+		reply(connection);
+		assertEquals(2, factory.getOutstandingRequests(used));
+		assertEquals(1, replies.size());
+
+		// replies that never arrive are only tracked up to the limit
+		for (int i = 0; i < LoadBalancingClientConnectionFactory.MAX_TRACKED_REQUESTS; i++) {
+			connection.send(message);
+		}
+		assertEquals(LoadBalancingClientConnectionFactory.MAX_TRACKED_REQUESTS,
+				factory.getOutstandingRequests(used));
+		connection.close();
+		assertEquals(0, factory.getOutstandingRequests(used));
+	}
+
+	@Test
+	public void testNoTrackingWithoutListener() throws Exception {
+		AbstractClientConnectionFactory factory1 = makeMockFactory(false);
+		TcpConnectionSupport conn1 = makeMockConnection("conn1");
+		when(factory1.getConnection()).thenReturn(conn1);
+		LoadBalancingClientConnectionFactory factory = new LoadBalancingClientConnectionFactory(
+				Arrays.asList(factory1));
+		factory.start();
+		GenericMessage<String> message = new GenericMessage<>("foo");
+		for (int i = 0; i < 3; i++) {
+			factory.getConnection().send(message);
+		}
+		verify(conn1, times(3)).send(message);
+		assertEquals(0, factory.getOutstandingRequests(factory1));
+	}
+
+	private void reply(TcpConnectionSupport connection) {
+		((TcpListener) connection).onMessage(MessageBuilder.withPayload("bar")
+				.setHeader(IpHeaders.CONNECTION_ID, delegate(connection).getConnectionId())
+				.build());
+	}
+
+	private TcpConnectionSupport delegate(TcpConnectionSupport connection) {
+		return TestUtils.getPropertyValue(connection, "delegate", TcpConnectionSupport.class);
+	}
+
+	private LoadBalancingClientConnectionFactory makeFactory(AbstractClientConnectionFactory... factories) {
+		LoadBalancingClientConnectionFactory factory = new LoadBalancingClientConnectionFactory(
+				Arrays.asList(factories));
+		factory.setSingleUse(true);
+		return factory;
+	}
+
+	private AbstractClientConnectionFactory makeMockFactory() {
+		return makeMockFactory(true);
+	}
+
+	private AbstractClientConnectionFactory makeMockFactory(boolean singleUse) {
+		AbstractClientConnectionFactory factory = mock(AbstractClientConnectionFactory.class);
+		when(factory.isActive()).thenReturn(true);
+		when(factory.isSingleUse()).thenReturn(singleUse);
+		return factory;
+	}
+
+	private TcpConnectionSupport makeMockConnection(String id) {
+		TcpConnectionSupport connection = mock(TcpConnectionSupport.class);
+		when(connection.isOpen()).thenReturn(true);
+		when(connection.getConnectionId()).thenReturn(id);
+		return connection;
+	}
+
+}
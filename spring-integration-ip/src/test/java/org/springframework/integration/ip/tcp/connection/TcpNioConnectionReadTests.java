@@ -23,6 +23,8 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
 import java.util.ArrayList;
 import java.util.List;
@@ -66,8 +68,14 @@ public class TcpNioConnectionReadTests {
 
 	private AbstractServerConnectionFactory getConnectionFactory(
 			AbstractByteArraySerializer serializer, TcpListener listener, TcpSender sender) throws Exception {
+		return getConnectionFactory(serializer, listener, sender, false);
+	}
+
+	private AbstractServerConnectionFactory getConnectionFactory(AbstractByteArraySerializer serializer,
+			TcpListener listener, TcpSender sender, boolean byteBufferDecoding) throws Exception {
 		TcpNioServerConnectionFactory scf = new TcpNioServerConnectionFactory(0);
 		scf.setUsingDirectBuffers(true);
+		scf.setByteBufferDecoding(byteBufferDecoding);
 		scf.setApplicationEventPublisher(e -> { });
 		scf.setSerializer(serializer);
 		scf.setDeserializer(serializer);
@@ -107,6 +115,38 @@ public class TcpNioConnectionReadTests {
 	}
 
 
+	@Test
+	public void testReadLengthStreamHeaderOnlyByteBufferDecoding() throws Exception {
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer() {
+
+			@Override
+			protected int readHeader(InputStream inputStream) throws IOException {
+				return super.readHeader(inputStream);
+			}
+
+		};
+		final List<Message<?>> responses = new ArrayList<Message<?>>();
+		final Semaphore semaphore = new Semaphore(0);
+		AbstractServerConnectionFactory scf = getConnectionFactory(serializer, message -> {
+			responses.add(message);
+			semaphore.release();
+			return false;
+		}, null, true);
+
+		// The serializer can't decode buffers, so the connection reads from the stream.
+
+		CountDownLatch done = SocketTestUtils.testSendLength(scf.getPort(), latch);
+		latch.countDown();
+		assertTrue(semaphore.tryAcquire(2, 10000, TimeUnit.MILLISECONDS));
+		assertEquals("Did not receive data", 2, responses.size());
+		assertEquals("Data", SocketTestUtils.TEST_STRING + SocketTestUtils.TEST_STRING,
+				new String((byte[]) responses.get(0).getPayload()));
+		assertEquals("Data", SocketTestUtils.TEST_STRING + SocketTestUtils.TEST_STRING,
+				new String((byte[]) responses.get(1).getPayload()));
+		scf.stop();
+		done.countDown();
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testFragmented() throws Exception {
@@ -193,6 +233,101 @@ public class TcpNioConnectionReadTests {
 		done.countDown();
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testReadCrLfByteBufferDecoding() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		final List<Message<?>> responses = new ArrayList<Message<?>>();
+		final Semaphore semaphore = new Semaphore(0);
+		AbstractServerConnectionFactory scf = getConnectionFactory(serializer, message -> {
+			responses.add(message);
+			semaphore.release();
+			return false;
+		}, null, true);
+
+		// Fire up the sender.
+
+		CountDownLatch done = SocketTestUtils.testSendCrLf(scf.getPort(), latch);
+		latch.countDown();
+		assertTrue(semaphore.tryAcquire(2, 10000, TimeUnit.MILLISECONDS));
+		assertEquals("Did not receive data", 2, responses.size());
+		assertEquals("Data", SocketTestUtils.TEST_STRING + SocketTestUtils.TEST_STRING,
+				new String(((Message<byte[]>) responses.get(0)).getPayload()));
+		assertEquals("Data", SocketTestUtils.TEST_STRING + SocketTestUtils.TEST_STRING,
+				new String(((Message<byte[]>) responses.get(1)).getPayload()));
+		scf.stop();
+		done.countDown();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testFragmentedByteBufferDecoding() throws Exception {
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer();
+		final List<Message<?>> responses = new ArrayList<Message<?>>();
+		final Semaphore semaphore = new Semaphore(0);
+		AbstractServerConnectionFactory scf = getConnectionFactory(serializer, message -> {
+			responses.add(message);
+			semaphore.release();
+			return false;
+		}, null, true);
+
+		int howMany = 2;
+		// Fire up the sender.
+		CountDownLatch done = SocketTestUtils.testSendFragmented(scf.getPort(), howMany, false);
+		assertTrue(semaphore.tryAcquire(howMany, 20000, TimeUnit.MILLISECONDS));
+		assertEquals("Expected", howMany, responses.size());
+		for (int i = 0; i < howMany; i++) {
+			assertEquals("Data", "xx",
+					new String(((Message<byte[]>) responses.get(i)).getPayload()));
+		}
+		scf.stop();
+		done.countDown();
+	}
+
+	@Test
+	public void testReadSuspension() throws Exception {
+		TcpNioServerConnectionFactory scf = new TcpNioServerConnectionFactory(0);
+		scf.setByteBufferDecoding(true);
+		scf.setMaxInFlightMessages(2);
+		scf.setApplicationEventPublisher(e -> { });
+		final CountDownLatch blockLatch = new CountDownLatch(1);
+		final Semaphore semaphore = new Semaphore(0);
+		scf.registerListener(message -> {
+			try {
+				blockLatch.await(10, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			semaphore.release();
+			return false;
+		});
+		scf.start();
+		TestingUtilities.waitListening(scf, null);
+		Socket socket = SocketFactory.getDefault().createSocket("localhost", scf.getPort());
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			data.append("foo\r\n");
+		}
+		socket.getOutputStream().write(data.toString().getBytes());
+		int n = 0;
+		while (n++ < 200 && scf.getSuspendedConnectionCount() == 0) {
+			Thread.sleep(50);
+		}
+		assertEquals(1, scf.getSuspendedConnectionCount());
+		assertEquals(0, semaphore.availablePermits());
+		blockLatch.countDown();
+		assertTrue(semaphore.tryAcquire(20, 10, TimeUnit.SECONDS));
+		n = 0;
+		while (n++ < 200 && scf.getSuspendedConnectionCount() > 0) {
+			Thread.sleep(50);
+		}
+		assertEquals(0, scf.getSuspendedConnectionCount());
+		assertTrue(scf.getReadSuspensionCount() >= 1);
+		socket.close();
+		scf.stop();
+	}
+
 	@Test
 	public void testReadLengthOverflow() throws Exception {
 		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer();
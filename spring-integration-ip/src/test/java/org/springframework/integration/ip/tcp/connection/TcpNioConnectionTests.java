@@ -17,8 +17,10 @@
 package org.springframework.integration.ip.tcp.connection;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -46,10 +48,12 @@ import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -672,6 +676,69 @@ public class TcpNioConnectionTests {
 		factory.stop();
 	}
 
+	@Test
+	public void testEventLoopFactoryAllMessagesDelivered() throws Exception {
+		final int numberOfSockets = 100;
+		TcpNioEventLoopServerConnectionFactory factory = new TcpNioEventLoopServerConnectionFactory(0);
+		factory.setApplicationEventPublisher(nullPublisher);
+		factory.setEventLoopCount(2);
+		final CountDownLatch latch = new CountDownLatch(numberOfSockets * 2);
+		final Set<String> threadNames = Collections.synchronizedSet(new HashSet<>());
+		factory.registerListener(message -> {
+			if (!(message instanceof ErrorMessage)) {
+				threadNames.add(Thread.currentThread().getName());
+				latch.countDown();
+			}
+			return false;
+		});
+		factory.start();
+		TestingUtilities.waitListening(factory, null);
+		int port = factory.getPort();
+
+		Socket[] sockets = new Socket[numberOfSockets];
+		for (int i = 0; i < numberOfSockets; i++) {
+			sockets[i] = SocketFactory.getDefault().createSocket("localhost", port);
+		}
+		for (int i = 0; i < numberOfSockets; i++) {
+			sockets[i].getOutputStream().write("foo1 and...".getBytes());
+			sockets[i].getOutputStream().flush();
+		}
+		Thread.sleep(100);
+		for (int i = 0; i < numberOfSockets; i++) {
+			sockets[i].getOutputStream().write(("...foo2\r\nbar1 and...").getBytes());
+			sockets[i].getOutputStream().flush();
+		}
+		for (int i = 0; i < numberOfSockets; i++) {
+			sockets[i].getOutputStream().write(("...bar2\r\n").getBytes());
+			sockets[i].close();
+		}
+
+		assertTrue("latch is still " + latch.getCount(), latch.await(60, TimeUnit.SECONDS));
+		assertThat(threadNames.size(), lessThanOrEqualTo(2));
+		factory.stop();
+	}
+
+	@Test
+	public void testEventLoopFactoryConfigurationIsValidated() throws Exception {
+		TcpNioEventLoopServerConnectionFactory factory = new TcpNioEventLoopServerConnectionFactory(0);
+		try {
+			factory.setByteBufferDecoding(false);
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), containsString("requires 'byteBufferDecoding'"));
+		}
+		factory.setTcpNioConnectionSupport(new DefaultTcpNioSSLConnectionSupport(mock(TcpSSLContextSupport.class)));
+		try {
+			factory.start();
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage(), containsString("SSL connections are not supported"));
+		}
+		assertFalse(factory.isRunning());
+	}
+
 	private CompositeExecutor compositeExecutor() {
 		ThreadPoolTaskExecutor ioExec = new ThreadPoolTaskExecutor();
 		ioExec.setCorePoolSize(2);
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.serializer;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class ByteBufferDeserializationTests {
+
+	@Test
+	public void testCrLf() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		ByteBuffer buffer = ByteBuffer.wrap("foo\r\nbar\r\nba".getBytes());
+		assertEquals("foo", new String(serializer.decode(buffer)));
+		assertEquals("bar", new String(serializer.decode(buffer)));
+		assertNull(serializer.decode(buffer));
+		assertEquals(10, buffer.position());
+		buffer = ByteBuffer.wrap("baz\r".getBytes());
+		assertNull(serializer.decode(buffer));
+		assertEquals(0, buffer.position());
+	}
+
+	@Test
+	public void testCrLfResumesScan() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		ByteBuffer buffer = ByteBuffer.wrap("foo\r".getBytes());
+		assertNull(serializer.decode(buffer, 0));
+		buffer = ByteBuffer.wrap("foo\r\nbar".getBytes());
+		assertEquals("foo", new String(serializer.decode(buffer, 4)));
+		assertEquals(5, buffer.position());
+		// bytes already scanned are not examined again
+		buffer = ByteBuffer.wrap("a\r\nb\r\n".getBytes());
+		assertEquals("a\r\nb", new String(serializer.decode(buffer, 4)));
+	}
+
+	@Test
+	public void testCrLfOverflow() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		serializer.setMaxMessageSize(4);
+		try {
+			serializer.decode(ByteBuffer.wrap("abcdef".getBytes()));
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage(), containsString("CRLF not found before max message length"));
+		}
+	}
+
+	@Test
+	public void testStxEtx() throws Exception {
+		ByteArrayStxEtxSerializer serializer = new ByteArrayStxEtxSerializer();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize("foo".getBytes(), out);
+		serializer.serialize("bar".getBytes(), out);
+		ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray(), 0, out.size() - 1);
+		assertEquals("foo", new String(serializer.decode(buffer)));
+		assertNull(serializer.decode(buffer));
+		assertEquals(5, buffer.position());
+		buffer.limit(out.size());
+		assertEquals("bar", new String(serializer.decode(buffer)));
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testStxEtxResumesScan() throws Exception {
+		ByteArrayStxEtxSerializer serializer = new ByteArrayStxEtxSerializer();
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { ByteArrayStxEtxSerializer.STX, 'f', 'o' });
+		assertNull(serializer.decode(buffer, 0));
+		buffer = ByteBuffer.wrap(new byte[] { ByteArrayStxEtxSerializer.STX, 'f', 'o', 'o',
+				ByteArrayStxEtxSerializer.ETX });
+		assertEquals("foo", new String(serializer.decode(buffer, 3)));
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void testLengthHeader() throws Exception {
+		for (int headerSize : new int[] { ByteArrayLengthHeaderSerializer.HEADER_SIZE_INT,
+				ByteArrayLengthHeaderSerializer.HEADER_SIZE_UNSIGNED_SHORT,
+				ByteArrayLengthHeaderSerializer.HEADER_SIZE_UNSIGNED_BYTE }) {
+			ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer(headerSize);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			serializer.serialize("foo".getBytes(), out);
+			serializer.serialize("bar".getBytes(), out);
+			byte[] bytes = out.toByteArray();
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, headerSize - 1);
+			assertNull(serializer.decode(buffer));
+			buffer.limit(headerSize + 2);
+			assertNull(serializer.decode(buffer));
+			assertEquals(0, buffer.position());
+			buffer.limit(bytes.length);
+			assertEquals("foo", new String(serializer.decode(buffer)));
+			assertEquals("bar", new String(serializer.decode(buffer)));
+			assertFalse(buffer.hasRemaining());
+		}
+	}
+
+	@Test
+	public void testLengthHeaderOverflow() throws Exception {
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer();
+		serializer.setMaxMessageSize(2);
+		ByteBuffer buffer = ByteBuffer.allocate(4);
+		buffer.putInt(0, 3);
+		try {
+			serializer.decode(buffer);
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage(), containsString("exceeds max message length"));
+		}
+	}
+
+	@Test
+	public void testCustomLengthHeader() throws Exception {
+		ByteArrayLengthHeaderSerializer streamOnly = new ByteArrayLengthHeaderSerializer() {
+
+			@Override
+			protected int readHeader(InputStream inputStream) throws IOException {
+				return inputStream.read() - '0';
+			}
+
+		};
+		assertFalse(streamOnly.supportsByteBufferDecoding());
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer() {
+
+			@Override
+			protected int readHeader(InputStream inputStream) throws IOException {
+				return inputStream.read() - '0';
+			}
+
+			@Override
+			protected int decodeHeader(ByteBuffer buffer) throws IOException {
+				return buffer.hasRemaining() ? buffer.get() - '0' : -1;
+			}
+
+		};
+		assertTrue(serializer.supportsByteBufferDecoding());
+		ByteBuffer buffer = ByteBuffer.wrap("3foo2b".getBytes());
+		assertEquals("foo", new String(serializer.decode(buffer)));
+		assertNull(serializer.decode(buffer));
+		assertEquals(4, buffer.position());
+		assertEquals("foo", new String(serializer.deserialize(new ByteArrayInputStream("3foo".getBytes()))));
+	}
+
+	@Test
+	public void testVarIntLengthHeader() throws Exception {
+		ByteArrayVarIntLengthHeaderSerializer serializer = new ByteArrayVarIntLengthHeaderSerializer();
+		serializer.setChecksum(true);
+		serializer.setCompressionThreshold(0);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize("foo".getBytes(), out);
+		byte[] big = new byte[1000];
+		serializer.serialize(big, out);
+		byte[] bytes = out.toByteArray();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, 1);
+		assertNull(serializer.decode(buffer));
+		buffer.limit(8);
+		assertEquals("foo", new String(serializer.decode(buffer)));
+		assertEquals(8, buffer.position());
+		assertNull(serializer.decode(buffer));
+		assertEquals(8, buffer.position());
+		buffer.limit(bytes.length);
+		assertArrayEquals(big, serializer.decode(buffer));
+		assertFalse(buffer.hasRemaining());
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		assertEquals("foo", new String(serializer.decode(direct)));
+		assertArrayEquals(big, serializer.decode(direct));
+		assertFalse(direct.hasRemaining());
+	}
+
+}
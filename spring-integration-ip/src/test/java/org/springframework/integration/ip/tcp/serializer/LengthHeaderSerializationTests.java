@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,11 +16,15 @@
 
 package org.springframework.integration.ip.tcp.serializer;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 
 import org.junit.Before;
@@ -134,4 +138,87 @@ public class LengthHeaderSerializationTests {
 		catch (IllegalArgumentException e) { }
 
 	}
+
+	@Test
+	public void testVarInt() throws Exception {
+		ByteArrayVarIntLengthHeaderSerializer serializer = new ByteArrayVarIntLengthHeaderSerializer();
+		serializer.setMaxMessageSize(0xffff);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		serializer.serialize(TEST.getBytes(), bos);
+		serializer.serialize(test255.getBytes(), bos);
+		serializer.serialize(testFFFF.getBytes(), bos);
+		byte[] bytes = bos.toByteArray();
+		assertEquals(TEST.length(), bytes[0]);
+		assertEquals((byte) 0xff, bytes[TEST.length() + 1]);
+		assertEquals(0x01, bytes[TEST.length() + 2]);
+		assertEquals(1 + TEST.length() + 2 + 255 + 3 + 0xffff, bytes.length);
+		ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
+		assertEquals(TEST, new String(serializer.deserialize(bis)));
+		assertEquals(test255, new String(serializer.deserialize(bis)));
+		assertEquals(testFFFF, new String(serializer.deserialize(bis)));
+		try {
+			serializer.deserialize(bis);
+			fail("Expected SoftEndOfStreamException");
+		}
+		catch (SoftEndOfStreamException e) { }
+		serializer.setMaxMessageSize(255);
+		bis = new ByteArrayInputStream(bytes, TEST.length() + 1 + 2 + 255, bytes.length);
+		try {
+			serializer.deserialize(bis);
+			fail("Expected message length exceeded exception");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage(), containsString("exceeds max message length"));
+		}
+	}
+
+	@Test
+	public void testVarIntChecksum() throws Exception {
+		ByteArrayVarIntLengthHeaderSerializer serializer = new ByteArrayVarIntLengthHeaderSerializer();
+		serializer.setChecksum(true);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		serializer.serialize(TEST.getBytes(), bos);
+		byte[] bytes = bos.toByteArray();
+		assertEquals(1 + 4 + TEST.length(), bytes.length);
+		assertEquals(4 + TEST.length(), bytes[0]);
+		assertEquals(TEST, new String(serializer.deserialize(new ByteArrayInputStream(bytes))));
+		bytes[bytes.length - 1]++;
+		try {
+			serializer.deserialize(new ByteArrayInputStream(bytes));
+			fail("Expected checksum exception");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage(), containsString("Checksum mismatch"));
+		}
+	}
+
+	@Test
+	public void testVarIntCompression() throws Exception {
+		ByteArrayVarIntLengthHeaderSerializer serializer = new ByteArrayVarIntLengthHeaderSerializer();
+		serializer.setMaxMessageSize(0xffff);
+		serializer.setChecksum(true);
+		serializer.setCompressionThreshold(64);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		serializer.serialize(TEST.getBytes(), bos);
+		int uncompressedLength = bos.size();
+		assertEquals(1 + 4 + TEST.length(), uncompressedLength);
+		assertEquals((4 + TEST.length()) << 1, bos.toByteArray()[0]);
+		serializer.serialize(testFFFF.getBytes(), bos);
+		byte[] bytes = bos.toByteArray();
+		assertTrue(bytes.length - uncompressedLength < 1000);
+		assertEquals(1, bytes[uncompressedLength] & 1);
+		ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
+		assertEquals(TEST, new String(serializer.deserialize(bis)));
+		assertEquals(testFFFF, new String(serializer.deserialize(bis)));
+		serializer.setMaxMessageSize(1000);
+		bis = new ByteArrayInputStream(bytes, uncompressedLength, bytes.length);
+		try {
+			serializer.deserialize(bis);
+			fail("Expected message length exceeded exception");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage(), containsString("exceeds max message length"));
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2016-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,10 +18,12 @@ package org.springframework.integration.ip.tcp.serializer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Set;
 
 import org.junit.Test;
@@ -69,4 +71,90 @@ public class PooledDeserializationTests {
 		assertNotSame(bytes, TestUtils.getPropertyValue(deser, "pool.allocated", Set.class).iterator().next());
 	}
 
+	@Test
+	public void testSharedBufferPoolAdaptiveSizing() throws IOException {
+		ByteArrayPool pool = new ByteArrayPool();
+		ByteArrayCrLfSerializer crlf = new ByteArrayCrLfSerializer();
+		crlf.setMaxMessageSize(4096);
+		crlf.setBufferPool(pool);
+		crlf.setInitialBufferSize(256);
+		ByteArrayStxEtxSerializer stxEtx = new ByteArrayStxEtxSerializer();
+		stxEtx.setBufferPool(pool);
+
+		byte[] large = new byte[600];
+		Arrays.fill(large, (byte) 'x');
+		byte[] bytes = crlf.deserialize(new ByteArrayInputStream((new String(large) + "\r\n").getBytes()));
+		assertEquals(new String(large), new String(bytes));
+		// 256, grown to 512, then 1024; the replaced buffers and the final one are returned to the pool
+		assertEquals(0, pool.getHitCount());
+		assertEquals(3, pool.getMissCount());
+		assertEquals(3, pool.getReleaseCount());
+		assertEquals(3, pool.getIdleCount());
+
+		// now starts with 1024
+		bytes = crlf.deserialize(new ByteArrayInputStream("foo\r\n".getBytes()));
+		assertEquals("foo", new String(bytes));
+		assertEquals(3, pool.getMissCount());
+		assertEquals(1, pool.getHitCount());
+		bytes = crlf.deserialize(new ByteArrayInputStream("bar\r\n".getBytes()));
+		assertEquals("bar", new String(bytes));
+		assertEquals(2, pool.getHitCount());
+
+		bytes = stxEtx.deserialize(new ByteArrayInputStream("\u0002baz\u0003".getBytes()));
+		assertEquals("baz", new String(bytes));
+		assertEquals(3, pool.getHitCount());
+		assertEquals(3, pool.getMissCount());
+		assertEquals(3, pool.getIdleCount());
+	}
+
+	@Test
+	public void testSharedBufferPoolShrinks() throws IOException {
+		ByteArrayPool pool = new ByteArrayPool();
+		ByteArrayCrLfSerializer crlf = new ByteArrayCrLfSerializer();
+		crlf.setBufferPool(pool);
+		crlf.setInitialBufferSize(256);
+		byte[] large = new byte[600];
+		Arrays.fill(large, (byte) 'x');
+		crlf.deserialize(new ByteArrayInputStream((new String(large) + "\r\n").getBytes()));
+		assertEquals(1024, TestUtils.getPropertyValue(crlf, "bufferSize"));
+		for (int i = 0; i < 15; i++) {
+			crlf.deserialize(new ByteArrayInputStream("foo\r\n".getBytes()));
+		}
+		assertEquals(1024, TestUtils.getPropertyValue(crlf, "bufferSize"));
+		crlf.deserialize(new ByteArrayInputStream("foo\r\n".getBytes()));
+		assertEquals(512, TestUtils.getPropertyValue(crlf, "bufferSize"));
+		// a message that needs more than half the buffer restarts the count
+		crlf.deserialize(new ByteArrayInputStream((new String(large, 0, 300) + "\r\n").getBytes()));
+		for (int i = 0; i < 15; i++) {
+			crlf.deserialize(new ByteArrayInputStream("foo\r\n".getBytes()));
+		}
+		assertEquals(512, TestUtils.getPropertyValue(crlf, "bufferSize"));
+		crlf.deserialize(new ByteArrayInputStream("foo\r\n".getBytes()));
+		assertEquals(256, TestUtils.getPropertyValue(crlf, "bufferSize"));
+		for (int i = 0; i < 32; i++) {
+			crlf.deserialize(new ByteArrayInputStream("foo\r\n".getBytes()));
+		}
+		// never below the initial size
+		assertEquals(256, TestUtils.getPropertyValue(crlf, "bufferSize"));
+	}
+
+	@Test
+	public void testBufferPoolSizeClasses() {
+		ByteArrayPool pool = new ByteArrayPool(1000, 1);
+		assertEquals(1024, pool.getMaxArraySize());
+		byte[] small = pool.acquire(1);
+		assertEquals(256, small.length);
+		assertEquals(512, pool.acquire(257).length);
+		assertEquals(2000, pool.acquire(2000).length);
+		pool.release(small);
+		pool.release(new byte[256]);
+		pool.release(new byte[300]);
+		assertEquals(1, pool.getReleaseCount());
+		assertEquals(2, pool.getDiscardCount());
+		assertSame(small, pool.acquire(200));
+		assertEquals(1, pool.getHitCount());
+		assertEquals(3, pool.getMissCount());
+		assertEquals(0.25, pool.getHitRatio(), 0.0001);
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2016-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.integration.ip.tcp.serializer;
 
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertThat;
 
 import org.junit.Test;
@@ -62,6 +63,9 @@ public class TcpCodecsTests {
 		codec = TcpCodecs.lengthHeader(4);
 		assertThat(codec, instanceOf(ByteArrayLengthHeaderSerializer.class));
 		assertEquals(4, TestUtils.getPropertyValue(codec, "headerSize"));
+		codec = TcpCodecs.varIntLengthHeader();
+		assertThat(codec, instanceOf(ByteArrayVarIntLengthHeaderSerializer.class));
+		assertNotSame(codec, TcpCodecs.varIntLengthHeader());
 	}
 
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,9 +16,12 @@
 
 package org.springframework.integration.ip.udp;
 
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -28,12 +31,16 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.Inet4Address;
 import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Rule;
@@ -217,6 +224,99 @@ public class UdpChannelAdapterTests {
 		adapter.stop();
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testNioUnicastReceiver() throws Exception {
+		QueueChannel channel = new QueueChannel();
+		NioUnicastReceivingChannelAdapter adapter = new NioUnicastReceivingChannelAdapter(0);
+		adapter.setOutputChannel(channel);
+		adapter.setLookupHost(false);
+		adapter.start();
+		SocketTestUtils.waitListening(adapter);
+		int port = adapter.getPort();
+
+		DatagramSocket datagramSocket = new DatagramSocket(0);
+		byte[] data = "ABCD".getBytes();
+		datagramSocket.send(new DatagramPacket(data, data.length, new InetSocketAddress("localhost", port)));
+		Message<byte[]> receivedMessage = (Message<byte[]>) channel.receive(10000);
+		assertNotNull(receivedMessage);
+		assertEquals("ABCD", new String(receivedMessage.getPayload()));
+		assertEquals(datagramSocket.getLocalPort(), receivedMessage.getHeaders().get(IpHeaders.PORT));
+		datagramSocket.close();
+		adapter.stop();
+		assertFalse(adapter.isActive());
+	}
+
+	@Test
+	public void testNioUnicastReceiverDispatchesEachPacket() throws Exception {
+		QueueChannel channel = new QueueChannel();
+		NioUnicastReceivingChannelAdapter adapter = new NioUnicastReceivingChannelAdapter(0);
+		adapter.setOutputChannel(channel);
+		adapter.setLookupHost(false);
+		ExecutorService exec = Executors.newCachedThreadPool();
+		AtomicInteger tasks = new AtomicInteger();
+		adapter.setTaskExecutor(task -> {
+			tasks.incrementAndGet();
+			exec.execute(task);
+		});
+		adapter.start();
+		SocketTestUtils.waitListening(adapter);
+		int port = adapter.getPort();
+
+		DatagramSocket datagramSocket = new DatagramSocket(0);
+		for (int i = 0; i < 10; i++) {
+			byte[] data = ("foo" + i).getBytes();
+			datagramSocket.send(new DatagramPacket(data, data.length, new InetSocketAddress("localhost", port)));
+		}
+		datagramSocket.close();
+		Set<String> received = new HashSet<>();
+		for (int i = 0; i < 10; i++) {
+			Message<?> message = channel.receive(10000);
+			assertNotNull(message);
+			received.add(new String((byte[]) message.getPayload()));
+		}
+		assertEquals(10, received.size());
+		// the receiving loop and one task per packet
+		assertEquals(11, tasks.get());
+		adapter.stop();
+		exec.shutdownNow();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testNioUnicastReceiverBatching() throws Exception {
+		QueueChannel channel = new QueueChannel();
+		NioUnicastReceivingChannelAdapter adapter = new NioUnicastReceivingChannelAdapter(0);
+		adapter.setOutputChannel(channel);
+		adapter.setLookupHost(false);
+		adapter.setBatchSize(4);
+		adapter.start();
+		SocketTestUtils.waitListening(adapter);
+		int port = adapter.getPort();
+
+		DatagramSocket datagramSocket = new DatagramSocket(0);
+		for (int i = 0; i < 10; i++) {
+			byte[] data = ("foo" + i).getBytes();
+			datagramSocket.send(new DatagramPacket(data, data.length, new InetSocketAddress("localhost", port)));
+		}
+		datagramSocket.close();
+		Set<String> received = new HashSet<>();
+		while (received.size() < 10) {
+			Message<?> batch = channel.receive(10000);
+			assertNotNull(batch);
+			List<Message<byte[]>> messages = (List<Message<byte[]>>) batch.getPayload();
+			assertThat(messages.size(), lessThanOrEqualTo(4));
+			for (Message<byte[]> message : messages) {
+				assertNotNull(message.getHeaders().get(IpHeaders.IP_ADDRESS));
+				received.add(new String(message.getPayload()));
+			}
+		}
+		for (int i = 0; i < 10; i++) {
+			assertTrue(received.contains("foo" + i));
+		}
+		adapter.stop();
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testUnicastSender() throws Exception {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,10 +28,13 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionException;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.util.AbstractExpressionEvaluator;
 import org.springframework.jdbc.core.namedparam.AbstractSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.util.Assert;
 
 /**
  * An implementation of {@link SqlParameterSourceFactory} which creates an {@link SqlParameterSource} that evaluates
@@ -61,9 +65,11 @@ public class ExpressionEvaluatingSqlParameterSourceFactory extends AbstractExpre
 	 */
 	private volatile Map<String, Expression[]> parameterExpressions;
 
+	private volatile ExpressionParser parser = PARSER;
+
 	public ExpressionEvaluatingSqlParameterSourceFactory() {
 		this.staticParameters = Collections.unmodifiableMap(new HashMap<String, Object>());
-		this.parameterExpressions = new HashMap<String, Expression[]>();
+		this.parameterExpressions = new ConcurrentHashMap<String, Expression[]>();
 	}
 
 	/**
@@ -113,19 +119,43 @@ public class ExpressionEvaluatingSqlParameterSourceFactory extends AbstractExpre
 	 * @param parameterExpressions the parameter expressions to set
 	 */
 	public void setParameterExpressions(Map<String, String> parameterExpressions) {
-		Map<String, Expression[]> paramExpressions = new HashMap<String, Expression[]>(parameterExpressions.size());
+		Map<String, Expression[]> paramExpressions = new ConcurrentHashMap<>(parameterExpressions.size());
 		for (Map.Entry<String, String> entry : parameterExpressions.entrySet()) {
-			String key = entry.getKey();
-			String expression = entry.getValue();
-			Expression[] expressions = new Expression[] {
-					PARSER.parseExpression(expression),
-					PARSER.parseExpression("#root.![" + expression + "]")
-			};
-			paramExpressions.put(key, expressions);
+			paramExpressions.put(entry.getKey(), parseParameterExpression(entry.getValue()));
+		}
+		this.parameterExpressions = paramExpressions;
+	}
+
+	/**
+	 * Set the {@link SpelCompilerMode} for the parameter expressions, including those
+	 * implied by the parameter names. With {@link SpelCompilerMode#IMMEDIATE IMMEDIATE}
+	 * or {@link SpelCompilerMode#MIXED MIXED}, each expression is compiled to bytecode
+	 * for the types seen in its first evaluations, so the parameter extraction is not
+	 * interpreted for each message; in {@code MIXED} mode an expression that fails
+	 * because the types change falls back to interpretation and is compiled again.
+	 * Default {@link SpelCompilerMode#OFF OFF}.
+	 * @param compilerMode the compiler mode.
+	 * @since 5.0
+	 */
+	public void setCompilerMode(SpelCompilerMode compilerMode) {
+		Assert.notNull(compilerMode, "'compilerMode' cannot be null");
+		this.parser = compilerMode == SpelCompilerMode.OFF
+				? PARSER
+				: new SpelExpressionParser(new SpelParserConfiguration(compilerMode, null));
+		Map<String, Expression[]> paramExpressions = new ConcurrentHashMap<>();
+		for (Map.Entry<String, Expression[]> entry : this.parameterExpressions.entrySet()) {
+			paramExpressions.put(entry.getKey(), parseParameterExpression(entry.getValue()[0].getExpressionString()));
 		}
 		this.parameterExpressions = paramExpressions;
 	}
 
+	private Expression[] parseParameterExpression(String expression) {
+		return new Expression[] {
+				this.parser.parseExpression(expression),
+				this.parser.parseExpression("#root.![" + expression + "]")
+		};
+	}
+
 	@Override
 	public SqlParameterSource createParameterSource(final Object input) {
 		return new ExpressionEvaluatingSqlParameterSource(input, this.staticParameters, this.parameterExpressions, true);
@@ -180,22 +210,17 @@ public class ExpressionEvaluatingSqlParameterSourceFactory extends AbstractExpre
 				return cachedByHasValue;
 			}
 
-			if (!this.parameterExpressions.containsKey(paramName)) {
-				Expression[] expressions = new Expression[] {
-						PARSER.parseExpression(paramName),
-						PARSER.parseExpression("#root.![" + paramName + "]")
-				};
-				ExpressionEvaluatingSqlParameterSourceFactory.this.parameterExpressions.put(paramName, expressions);
-				this.parameterExpressions.put(paramName, expressions);
-			}
+			// parsed once per parameter name and shared by all the sources of the factory
+			Expression[] expressions = this.parameterExpressions.computeIfAbsent(paramName,
+					ExpressionEvaluatingSqlParameterSourceFactory.this::parseParameterExpression);
 
 			Expression expression = null;
 
 			if (this.input instanceof Collection<?>) {
-				expression = this.parameterExpressions.get(paramName)[1];
+				expression = expressions[1];
 			}
 			else {
-				expression = this.parameterExpressions.get(paramName)[0];
+				expression = expressions[0];
 			}
 
 			Object value = evaluateExpression(expression, this.input);
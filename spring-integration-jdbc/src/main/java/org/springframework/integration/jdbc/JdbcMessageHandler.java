@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.integration.jdbc;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -26,7 +27,10 @@ import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.springframework.context.Lifecycle;
 import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.integration.support.PartialSuccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.PreparedStatementCallback;
@@ -55,12 +59,18 @@ import org.springframework.util.LinkedCaseInsensitiveMap;
  *
  * N.B. do not use quotes to escape the header keys. The default SQL parameter source (from Spring JDBC) can also handle
  * headers with dotted names (e.g. <code>business.id</code>)
+ * <p>
+ * When a {@link #setBatchSize(int) batchSize} greater than one is configured, messages are
+ * buffered and written with a single JDBC batch when the batch size, the
+ * {@link #setBatchMaxBytes(long) byte limit} or the {@link #setBatchTimeout(long) timeout}
+ * is reached, as well as when the handler is stopped.
  *
  * @author Dave Syer
  * @author Artem Bilan
+ * @author Gary Russell
  * @since 2.0
  */
-public class JdbcMessageHandler extends AbstractMessageHandler {
+public class JdbcMessageHandler extends AbstractMessageHandler implements Lifecycle {
 
 	private final ResultSetExtractor<List<Map<String, Object>>> generatedKeysResultSetExtractor =
 			new RowMapperResultSetExtractor<Map<String, Object>>(new ColumnMapRowMapper(), 1);
@@ -78,6 +88,10 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 
 	private MessagePreparedStatementSetter preparedStatementSetter;
 
+	private final MessageBatcher batcher = new MessageBatcher(this::executeBatch, this::getTaskScheduler);
+
+	private volatile boolean running;
+
 	/**
 	 * Constructor taking {@link DataSource} from which the DB Connection can be obtained and the select query to
 	 * execute to retrieve new rows.
@@ -130,6 +144,43 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 		this.preparedStatementSetter = preparedStatementSetter;
 	}
 
+	/**
+	 * Set the number of messages to accumulate before executing them with a single
+	 * JDBC batch update. Default 1 (no batching). Messages are written behind the sender;
+	 * a failed batch is reported with a {@link PartialSuccessException} containing the
+	 * messages that were written and the complete batch, thrown to the sender of the
+	 * message that triggered the write or, for a timed write, handled by the task
+	 * scheduler's error handler (the {@code errorChannel} by default).
+	 * Mutually exclusive with {@link #setKeysGenerated(boolean) keysGenerated}.
+	 * @param batchSize the batch size.
+	 * @since 5.0
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batcher.setBatchSize(batchSize);
+	}
+
+	/**
+	 * Set the approximate number of payload bytes ({@code byte[]} and {@code String}
+	 * payloads) to accumulate before writing a batch; default 0 (no byte limit).
+	 * Only applies when {@link #setBatchSize(int) batching} is enabled.
+	 * @param batchMaxBytes the byte limit.
+	 * @since 5.0
+	 */
+	public void setBatchMaxBytes(long batchMaxBytes) {
+		this.batcher.setBatchMaxBytes(batchMaxBytes);
+	}
+
+	/**
+	 * Set the maximum time in milliseconds a message may wait in a partial batch
+	 * before the batch is written; default 1000. Only applies when
+	 * {@link #setBatchSize(int) batching} is enabled.
+	 * @param batchTimeout the timeout.
+	 * @since 5.0
+	 */
+	public void setBatchTimeout(long batchTimeout) {
+		this.batcher.setBatchTimeout(batchTimeout);
+	}
+
 	@Override
 	public String getComponentType() {
 		return "jdbc:outbound-channel-adapter";
@@ -143,6 +194,27 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 		if (this.sqlParameterSourceFactory == null && this.preparedStatementSetter == null) {
 			this.sqlParameterSourceFactory = new BeanPropertySqlParameterSourceFactory();
 		}
+		Assert.state(!this.batcher.isBatching() || !this.keysGenerated,
+				"'keysGenerated' is not supported with batch updates");
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+	}
+
+	/**
+	 * Write any buffered messages.
+	 */
+	@Override
+	public void stop() {
+		this.running = false;
+		flush();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
 	}
 
 	/**
@@ -150,6 +222,10 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 	 */
 	@Override
 	protected void handleMessageInternal(Message<?> message) throws Exception {
+		if (this.batcher.isBatching()) {
+			this.batcher.add(message);
+			return;
+		}
 		List<? extends Map<String, Object>> keys = executeUpdateQuery(message, this.keysGenerated);
 		if (!keys.isEmpty() && logger.isDebugEnabled()) {
 			logger.debug("Generated keys: " + keys);
@@ -203,4 +279,47 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 		}
 	}
 
+	/**
+	 * Write any buffered messages with a single batch update.
+	 * @throws PartialSuccessException if the batch update fails.
+	 * @since 5.0
+	 */
+	public void flush() {
+		this.batcher.flush();
+	}
+
+	private void executeBatch(final List<Message<?>> messages) {
+		try {
+			if (this.preparedStatementSetter != null) {
+				this.jdbcOperations.getJdbcOperations().batchUpdate(this.updateSql,
+						new BatchPreparedStatementSetter() {
+
+							@Override
+							public void setValues(PreparedStatement ps, int i) throws SQLException {
+								JdbcMessageHandler.this.preparedStatementSetter.setValues(ps, messages.get(i));
+							}
+
+							@Override
+							public int getBatchSize() {
+								return messages.size();
+							}
+
+						});
+			}
+			else {
+				SqlParameterSource[] parameterSources = new SqlParameterSource[messages.size()];
+				for (int i = 0; i < parameterSources.length; i++) {
+					parameterSources[i] = this.sqlParameterSourceFactory.createParameterSource(messages.get(i));
+				}
+				this.jdbcOperations.batchUpdate(this.updateSql, parameterSources);
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Batch of " + messages.size() + " messages written");
+			}
+		}
+		catch (RuntimeException e) {
+			throw MessageBatcher.partialSuccess("Batch update failed", e, messages, 0, messages.size());
+		}
+	}
+
 }
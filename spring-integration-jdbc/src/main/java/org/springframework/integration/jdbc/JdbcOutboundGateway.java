@@ -31,10 +31,14 @@ import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
 /**
  * @author Dave Syer
  * @author Gunnar Hillert
  * @author Artem Bilan
+ * @author Gary Russell
  *
  * @since 2.0
  */
@@ -53,6 +57,8 @@ public class JdbcOutboundGateway extends AbstractReplyProducingMessageHandler im
 
 	private volatile Integer maxRowsPerPoll;
 
+	private Scheduler scheduler;
+
 	public JdbcOutboundGateway(DataSource dataSource, String updateQuery) {
 		this(new JdbcTemplate(dataSource), updateQuery, null);
 	}
@@ -104,6 +110,24 @@ public class JdbcOutboundGateway extends AbstractReplyProducingMessageHandler im
 		this.maxRowsPerPoll = maxRowsPerPoll;
 	}
 
+	/**
+	 * Set a {@link Scheduler} on which the SQL statements are executed, making the
+	 * gateway non-blocking for the calling thread: the reply is a {@link Mono} that is
+	 * completed on the scheduler, and {@link #setAsync(boolean) async} mode is enabled.
+	 * When the output channel is a reactive channel (such as a {@code FluxMessageChannel}),
+	 * the reply is subscribed to by that channel; otherwise it is sent to the output
+	 * channel when the {@link Mono} completes.
+	 * Since JDBC is a blocking API, use a scheduler with a bounded number of threads
+	 * (matching the connection pool size), such as {@code Schedulers.newParallel()}.
+	 * A transaction bound to the calling thread does not propagate to the scheduler
+	 * thread, so the statements are not part of the caller's transaction.
+	 * @param scheduler the scheduler.
+	 * @since 5.0
+	 */
+	public void setScheduler(Scheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
 	@Override
 	public String getComponentType() {
 		return "jdbc:outbound-gateway";
@@ -125,10 +149,23 @@ public class JdbcOutboundGateway extends AbstractReplyProducingMessageHandler im
 			((ExpressionEvaluatingSqlParameterSourceFactory) this.sqlParameterSourceFactory)
 					.setBeanFactory(this.getBeanFactory());
 		}
+
+		if (this.scheduler != null) {
+			setAsync(true);
+		}
 	}
 
 	@Override
 	protected Object handleRequestMessage(Message<?> requestMessage) {
+		if (this.scheduler != null) {
+			// an empty Mono fails with a ReplyRequiredException in the superclass when a reply is required
+			return Mono.fromCallable(() -> doHandleRequestMessage(requestMessage))
+					.subscribeOn(this.scheduler);
+		}
+		return doHandleRequestMessage(requestMessage);
+	}
+
+	private Object doHandleRequestMessage(Message<?> requestMessage) {
 
 		List<?> list;
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,35 +16,57 @@
 
 package org.springframework.integration.jdbc;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.sql.DataSource;
 
+import org.springframework.context.Lifecycle;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.core.MessageSource;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.core.namedparam.EmptySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
 
 /**
  * A polling channel adapter that creates messages from the payload returned by
  * executing a select query. Optionally an update can be executed after the
  * select in order to update processed rows.
+ * <p>
+ * In {@link #setStreaming(boolean) streaming} mode, the result set is read through a
+ * forward-only cursor that stays open across {@link #receive()} calls, within a single
+ * transaction (of bounded {@link #setMaxCursorLifetime(long) lifetime} when an update
+ * query is configured); each call emits the next row (or chunk of rows) as it is read
+ * and {@code null} once the result set is exhausted, after which the next call
+ * executes the query again.
  *
  * @author Jonas Partner
  * @author Dave Syer
  * @author Artem Bilan
+ * @author Gary Russell
  *
  * @since 2.0
  */
-public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implements MessageSource<Object> {
+public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implements MessageSource<Object>, Lifecycle {
 
 	private final NamedParameterJdbcOperations jdbcOperations;
 
@@ -65,6 +87,24 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 
 	private volatile int maxRowsPerPoll = 0;
 
+	private final Object cursorMonitor = new Object();
+
+	private DataSource dataSource;
+
+	private boolean streaming;
+
+	private int fetchSize = 1000;
+
+	private int chunkSize = 1;
+
+	private long maxCursorLifetime = 60000;
+
+	private volatile boolean running;
+
+	private Cursor cursor;
+
+	private boolean cursorExhausted;
+
 	/**
 	 * Constructor taking {@link DataSource} from which the DB Connection can be
 	 * obtained and the select query to execute to retrieve new rows.
@@ -75,6 +115,7 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 	public JdbcPollingChannelAdapter(DataSource dataSource, String selectQuery) {
 		this.jdbcOperations = new NamedParameterJdbcTemplate(dataSource);
 		this.selectQuery = selectQuery;
+		this.dataSource = dataSource;
 	}
 
 	/**
@@ -87,6 +128,9 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 	public JdbcPollingChannelAdapter(JdbcOperations jdbcOperations, String selectQuery) {
 		this.jdbcOperations = new NamedParameterJdbcTemplate(jdbcOperations);
 		this.selectQuery = selectQuery;
+		if (jdbcOperations instanceof JdbcTemplate) {
+			this.dataSource = ((JdbcTemplate) jdbcOperations).getDataSource();
+		}
 	}
 
 	public void setRowMapper(RowMapper<?> rowMapper) {
@@ -126,9 +170,96 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 		this.maxRowsPerPoll = maxRows;
 	}
 
+	/**
+	 * Set to true to read the result set through a forward-only cursor, emitting rows
+	 * as they are read instead of materializing the whole result in one message.
+	 * The cursor uses its own connection, in a transaction (auto-commit disabled, which
+	 * some drivers, such as PostgreSQL's, require to honor the fetch size), so it does not
+	 * take part in the poller's transaction. Updates are executed on the same connection,
+	 * with JDBC batches, as each chunk is emitted; they are committed when the cursor is
+	 * closed - when the result set is exhausted, the adapter is stopped, or the
+	 * {@link #setMaxCursorLifetime(long) maximum lifetime} is reached - and rolled back
+	 * if reading or updating fails. The commit does not depend on the outcome of the
+	 * downstream flow: rows whose messages have already been emitted are committed as
+	 * processed even if the flow later fails for them. Requires a {@link DataSource}.
+	 * @param streaming true to stream.
+	 * @since 5.0
+	 * @see #setFetchSize(int)
+	 * @see #setChunkSize(int)
+	 * @see #setMaxCursorLifetime(long)
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Set the JDBC fetch size for the streaming cursor; default 1000.
+	 * @param fetchSize the fetch size.
+	 * @since 5.0
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Set the number of rows per message in streaming mode. With the default (1),
+	 * each message payload is a single (mapped) row; otherwise it is a list of up to
+	 * {@code chunkSize} rows.
+	 * @param chunkSize the chunk size.
+	 * @since 5.0
+	 */
+	public void setChunkSize(int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "'chunkSize' must be greater than 0");
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Set the maximum time in milliseconds that a streaming cursor (and its transaction,
+	 * which holds the connection and any locks taken by the updates) stays open when an
+	 * {@link #setUpdateSql(String) update query} is configured; default 60000. When it is
+	 * reached, the next {@link #receive()} commits and closes the cursor and executes the
+	 * query again, so the select query must exclude the rows that the update query has
+	 * already processed. Without an update query, the cursor stays open until the result
+	 * set is exhausted (or the adapter is stopped), so rows are never read twice.
+	 * @param maxCursorLifetime the maximum lifetime.
+	 * @since 5.0
+	 */
+	public void setMaxCursorLifetime(long maxCursorLifetime) {
+		Assert.isTrue(maxCursorLifetime > 0, "'maxCursorLifetime' must be greater than 0");
+		this.maxCursorLifetime = maxCursorLifetime;
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+	}
+
+	/**
+	 * Close any open streaming cursor.
+	 */
+	@Override
+	public void stop() {
+		this.running = false;
+		synchronized (this.cursorMonitor) {
+			try {
+				closeCursor(true);
+			}
+			catch (SQLException e) {
+				logger.error("Failed to commit the streaming cursor transaction", e);
+			}
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
 	@Override
 	protected void onInit() throws Exception {
 		super.onInit();
+		Assert.state(!this.streaming || this.dataSource != null,
+				"A 'DataSource' (or a 'JdbcTemplate' with a 'DataSource') is required for streaming");
 		if (!this.sqlParameterSourceFactorySet && this.getBeanFactory() != null) {
 			((ExpressionEvaluatingSqlParameterSourceFactory) this.sqlParameterSourceFactory)
 					.setBeanFactory(this.getBeanFactory());
@@ -144,7 +275,7 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 	 */
 	@Override
 	public Message<Object> receive() {
-		Object payload = poll();
+		Object payload = this.streaming ? pollCursor() : poll();
 		if (payload == null) {
 			return null;
 		}
@@ -179,6 +310,105 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 		this.jdbcOperations.update(this.updateSql, updateParameterSource);
 	}
 
+	private Object pollCursor() {
+		synchronized (this.cursorMonitor) {
+			if (this.cursorExhausted) {
+				// end the current polling cycle before querying again
+				this.cursorExhausted = false;
+				return null;
+			}
+			List<Object> rows;
+			try {
+				if (this.cursor != null && this.updateSql != null && this.cursor.isExpired()) {
+					closeCursor(true);
+				}
+				if (this.cursor == null) {
+					this.cursor = openCursor();
+				}
+				rows = this.cursor.next(this.chunkSize);
+				if (rows.isEmpty()) {
+					closeCursor(true);
+					return null;
+				}
+				if (this.updateSql != null) {
+					executeCursorUpdates(rows);
+				}
+				if (rows.size() < this.chunkSize) {
+					closeCursor(true);
+					this.cursorExhausted = true;
+				}
+			}
+			catch (SQLException e) {
+				rollbackCursor();
+				throw new MessagingException("Failed to stream the results of [" + this.selectQuery + "]", e);
+			}
+			catch (RuntimeException e) {
+				rollbackCursor();
+				throw e;
+			}
+			return this.chunkSize == 1 ? rows.get(0) : rows;
+		}
+	}
+
+	private void executeCursorUpdates(List<Object> rows) {
+		NamedParameterJdbcOperations updateOperations = this.cursor.updateOperations;
+		if (this.updatePerRow) {
+			SqlParameterSource[] parameterSources = new SqlParameterSource[rows.size()];
+			for (int i = 0; i < parameterSources.length; i++) {
+				parameterSources[i] = this.sqlParameterSourceFactory.createParameterSource(rows.get(i));
+			}
+			updateOperations.batchUpdate(this.updateSql, parameterSources);
+		}
+		else {
+			updateOperations.update(this.updateSql,
+					this.sqlParameterSourceFactory.createParameterSource(this.chunkSize == 1 ? rows.get(0) : rows));
+		}
+	}
+
+	private Cursor openCursor() throws SQLException {
+		SqlParameterSource parameterSource = this.sqlQueryParameterSource != null
+				? this.sqlQueryParameterSource
+				: EmptySqlParameterSource.INSTANCE;
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(this.selectQuery);
+		String sql = NamedParameterUtils.substituteNamedParameters(parsedSql, parameterSource);
+		Object[] parameters = NamedParameterUtils.buildValueArray(parsedSql, parameterSource, null);
+		Connection connection = this.dataSource.getConnection();
+		try {
+			connection.setAutoCommit(false);
+			PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			statement.setFetchSize(this.fetchSize);
+			if (this.maxRowsPerPoll > 0) {
+				statement.setMaxRows(this.maxRowsPerPoll);
+			}
+			new ArgumentPreparedStatementSetter(parameters).setValues(statement);
+			return new Cursor(connection, statement, statement.executeQuery());
+		}
+		catch (SQLException e) {
+			JdbcUtils.closeConnection(connection);
+			throw e;
+		}
+	}
+
+	private void closeCursor(boolean commit) throws SQLException {
+		Cursor cursor = this.cursor;
+		if (cursor != null) {
+			this.cursor = null;
+			cursor.close(commit);
+		}
+	}
+
+	private void rollbackCursor() {
+		try {
+			closeCursor(false);
+		}
+		catch (SQLException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to roll back the streaming cursor transaction", e);
+			}
+		}
+	}
+
 	protected List<?> doPoll(SqlParameterSource sqlQueryParameterSource) {
 		final RowMapper<?> rowMapper = this.rowMapper == null ? new ColumnMapRowMapper() : this.rowMapper;
 		ResultSetExtractor<List<Object>> resultSetExtractor;
@@ -213,4 +443,72 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 		return "jdbc:inbound-channel-adapter";
 	}
 
+	/**
+	 * An open streaming result set, the resources that back it and the operations
+	 * that execute the updates in its transaction.
+	 */
+	private final class Cursor {
+
+		private final Connection connection;
+
+		private final PreparedStatement statement;
+
+		private final ResultSet resultSet;
+
+		private final RowMapper<?> rowMapper;
+
+		private final NamedParameterJdbcOperations updateOperations;
+
+		private final long expiresAt;
+
+		private int rowNum;
+
+		Cursor(Connection connection, PreparedStatement statement, ResultSet resultSet) {
+			this.connection = connection;
+			this.statement = statement;
+			this.resultSet = resultSet;
+			RowMapper<?> rowMapper = JdbcPollingChannelAdapter.this.rowMapper;
+			this.rowMapper = rowMapper == null ? new ColumnMapRowMapper() : rowMapper;
+			this.updateOperations = new NamedParameterJdbcTemplate(new SingleConnectionDataSource(connection, true));
+			this.expiresAt = System.currentTimeMillis() + JdbcPollingChannelAdapter.this.maxCursorLifetime;
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() > this.expiresAt;
+		}
+
+		List<Object> next(int count) throws SQLException {
+			List<Object> rows = new ArrayList<>(count);
+			while (rows.size() < count && this.resultSet.next()) {
+				rows.add(this.rowMapper.mapRow(this.resultSet, this.rowNum++));
+			}
+			return rows;
+		}
+
+		void close(boolean commit) throws SQLException {
+			JdbcUtils.closeResultSet(this.resultSet);
+			JdbcUtils.closeStatement(this.statement);
+			try {
+				if (commit) {
+					this.connection.commit();
+				}
+				else {
+					this.connection.rollback();
+				}
+			}
+			finally {
+				try {
+					this.connection.setAutoCommit(true);
+				}
+				catch (SQLException e) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Failed to reset auto-commit on the streaming cursor connection", e);
+					}
+				}
+				JdbcUtils.closeConnection(this.connection);
+			}
+		}
+
+	}
+
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc;
+
+import java.sql.BatchUpdateException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.integration.support.PartialSuccessException;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * Accumulates messages for the batching JDBC message handlers and hands each batch
+ * to the executor when the batch size, the byte limit or the timeout is reached,
+ * or when {@link #flush() flushed}. Batches are executed on the caller's thread,
+ * outside of the monitor.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+final class MessageBatcher {
+
+	private final Object monitor = new Object();
+
+	private final Consumer<List<Message<?>>> executor;
+
+	private final Supplier<TaskScheduler> taskScheduler;
+
+	private int batchSize = 1;
+
+	private long batchMaxBytes;
+
+	private long batchTimeout = 1000;
+
+	private List<Message<?>> batch = new ArrayList<>();
+
+	private long batchBytes;
+
+	private ScheduledFuture<?> batchTimeoutFuture;
+
+	MessageBatcher(Consumer<List<Message<?>>> executor, Supplier<TaskScheduler> taskScheduler) {
+		this.executor = executor;
+		this.taskScheduler = taskScheduler;
+	}
+
+	void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	void setBatchMaxBytes(long batchMaxBytes) {
+		this.batchMaxBytes = batchMaxBytes;
+	}
+
+	void setBatchTimeout(long batchTimeout) {
+		Assert.isTrue(batchTimeout > 0, "'batchTimeout' must be greater than 0");
+		this.batchTimeout = batchTimeout;
+	}
+
+	boolean isBatching() {
+		return this.batchSize > 1;
+	}
+
+	void add(Message<?> message) {
+		List<Message<?>> messages = null;
+		synchronized (this.monitor) {
+			this.batch.add(message);
+			this.batchBytes += payloadBytes(message.getPayload());
+			if (this.batch.size() >= this.batchSize
+					|| (this.batchMaxBytes > 0 && this.batchBytes >= this.batchMaxBytes)) {
+				messages = takeBatch();
+			}
+			else if (this.batchTimeoutFuture == null) {
+				TaskScheduler scheduler = this.taskScheduler.get();
+				Assert.state(scheduler != null, "A 'taskScheduler' is required for batch timeouts");
+				this.batchTimeoutFuture = scheduler.schedule(this::flush,
+						new Date(System.currentTimeMillis() + this.batchTimeout));
+			}
+		}
+		if (messages != null) {
+			this.executor.accept(messages);
+		}
+	}
+
+	void flush() {
+		List<Message<?>> messages;
+		synchronized (this.monitor) {
+			messages = takeBatch();
+		}
+		if (!messages.isEmpty()) {
+			this.executor.accept(messages);
+		}
+	}
+
+	private List<Message<?>> takeBatch() {
+		List<Message<?>> messages = this.batch;
+		this.batch = new ArrayList<>(this.batchSize);
+		this.batchBytes = 0;
+		if (this.batchTimeoutFuture != null) {
+			this.batchTimeoutFuture.cancel(false);
+			this.batchTimeoutFuture = null;
+		}
+		return messages;
+	}
+
+	/**
+	 * Build the exception for a failed JDBC batch of {@code messages[start, end)};
+	 * the messages before {@code start} were already executed successfully.
+	 * @param description the description of the failed operation.
+	 * @param cause the failure.
+	 * @param messages the complete list of messages.
+	 * @param start the index of the first message of the failed batch.
+	 * @param end the index after the last message of the failed batch.
+	 * @return the exception.
+	 */
+	static PartialSuccessException partialSuccess(String description, RuntimeException cause,
+			List<Message<?>> messages, int start, int end) {
+
+		List<Message<?>> executed = new ArrayList<>(messages.subList(0, start));
+		Message<?> failed = null;
+		int[] updateCounts = updateCounts(cause);
+		for (int i = start; i < end; i++) {
+			int index = i - start;
+			if (updateCounts != null && index < updateCounts.length && updateCounts[index] != Statement.EXECUTE_FAILED) {
+				executed.add(messages.get(i));
+			}
+			else if (failed == null) {
+				failed = messages.get(i);
+			}
+		}
+		return new PartialSuccessException(failed, description + "; " + executed.size() + " of "
+				+ messages.size() + " messages were executed", cause, executed, messages);
+	}
+
+	/*
+	 * The driver's update counts stop at the first failure or report EXECUTE_FAILED
+	 * for each failed statement, depending on whether it continues after a failure.
+	 */
+	static int[] updateCounts(Throwable e) {
+		Throwable cause = e;
+		while (cause != null && !(cause instanceof BatchUpdateException)) {
+			cause = cause.getCause();
+		}
+		return cause != null ? ((BatchUpdateException) cause).getUpdateCounts() : null;
+	}
+
+	private static long payloadBytes(Object payload) {
+		if (payload instanceof byte[]) {
+			return ((byte[]) payload).length;
+		}
+		else if (payload instanceof String) {
+			return ((String) payload).length();
+		}
+		return 0;
+	}
+
+}
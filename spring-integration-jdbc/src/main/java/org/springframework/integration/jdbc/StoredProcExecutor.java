@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -34,14 +34,18 @@ import org.springframework.expression.BeanResolver;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.common.LiteralExpression;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.jdbc.storedproc.ProcedureParameter;
+import org.springframework.integration.support.PartialSuccessException;
+import org.springframework.jdbc.core.CallableStatementCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SqlInOutParameter;
 import org.springframework.jdbc.core.SqlOutParameter;
 import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.StatementCreatorUtils;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcCall;
 import org.springframework.jdbc.core.simple.SimpleJdbcCallOperations;
@@ -75,6 +79,11 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 	private static final boolean guavaPresent = ClassUtils.isPresent("com.google.common.cache.LoadingCache",
 			StoredProcExecutor.class.getClassLoader());
 
+	/**
+	 * Whether to use the Google Guava cache; the internal cache is used otherwise.
+	 */
+	private final boolean useGuavaCache;
+
 	private volatile EvaluationContext evaluationContext;
 
 	private volatile BeanFactory beanFactory = null;
@@ -90,6 +99,18 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 
 	private volatile Map<String, SimpleJdbcCallOperations> jdbcCallOperationsMap;
 
+	private long jdbcCallOperationsMapHits;
+
+	private long jdbcCallOperationsMapMisses;
+
+	private long jdbcCallOperationsMapEvictions;
+
+	private long jdbcCallOperationsMapLoadExceptions;
+
+	private long jdbcCallOperationsMapLoadTime;
+
+	private volatile SpelCompilerMode compilerMode;
+
 	private volatile Expression storedProcedureNameExpression;
 
 	/**
@@ -161,9 +182,18 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 	 * @param dataSource used to create a {@link SimpleJdbcCall} instance, must not be Null
 	 */
 	public StoredProcExecutor(DataSource dataSource) {
+		this(dataSource, guavaPresent);
+	}
 
+	/**
+	 * Package-private so that tests can use the internal cache when Guava is present.
+	 * @param dataSource the data source.
+	 * @param useGuavaCache true to use the Google Guava cache (which must be present).
+	 */
+	StoredProcExecutor(DataSource dataSource, boolean useGuavaCache) {
 		Assert.notNull(dataSource, "dataSource must not be null.");
 		this.dataSource = dataSource;
+		this.useGuavaCache = useGuavaCache;
 	}
 
 	/**
@@ -188,6 +218,9 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 				expressionSourceFactory.setBeanFactory(this.beanFactory);
 				expressionSourceFactory.setStaticParameters(ProcedureParameter.convertStaticParameters(this.procedureParameters));
 				expressionSourceFactory.setParameterExpressions(ProcedureParameter.convertExpressions(this.procedureParameters));
+				if (this.compilerMode != null) {
+					expressionSourceFactory.setCompilerMode(this.compilerMode);
+				}
 
 				this.sqlParameterSourceFactory = expressionSourceFactory;
 
@@ -220,7 +253,7 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 
 		}
 
-		if (guavaPresent) {
+		if (this.useGuavaCache) {
 			this.guavaCacheWrapper = new GuavaCacheWrapper(this, this.jdbcCallOperationsCacheSize);
 		}
 		else {
@@ -232,7 +265,11 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 
 						@Override
 						protected boolean removeEldestEntry(Entry<String, SimpleJdbcCallOperations> eldest) {
-							return size() > StoredProcExecutor.this.jdbcCallOperationsCacheSize;
+							boolean evict = size() > StoredProcExecutor.this.jdbcCallOperationsCacheSize;
+							if (evict) {
+								StoredProcExecutor.this.jdbcCallOperationsMapEvictions++;
+							}
+							return evict;
 						}
 
 					};
@@ -243,7 +280,7 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 
 	private SimpleJdbcCall createSimpleJdbcCall(String storedProcedureName) {
 
-		final SimpleJdbcCall simpleJdbcCall = new SimpleJdbcCall(this.dataSource);
+		final SimpleJdbcCall simpleJdbcCall = new BatchCapableSimpleJdbcCall(this.dataSource);
 
 		if (this.isFunction) {
 			simpleJdbcCall.withFunctionName(storedProcedureName);
@@ -298,17 +335,91 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 		Assert.notNull(this.usePayloadAsParameterSource, "Property usePayloadAsParameterSource "
 				+ "was Null. Did you call afterPropertiesSet()?");
 
-		final Object input;
+		return executeStoredProcedureInternal(parameterSourceInput(message), evaluateExpression(message));
 
-		if (this.usePayloadAsParameterSource) {
-			input = message.getPayload();
+	}
+
+	/**
+	 * Execute the Stored Procedure once for each {@link Message}, using JDBC batches
+	 * of {@link java.sql.CallableStatement}s: one batch for each run of consecutive
+	 * messages resolving to the same procedure name. Only supported for stored procedures
+	 * with {@code IN} parameters only, without return value or returned result sets.
+	 * @param messages the messages.
+	 * @throws PartialSuccessException if a batch fails, containing the messages
+	 * that were executed successfully and the complete list.
+	 * @since 5.0
+	 */
+	public void executeStoredProcedureBatch(List<Message<?>> messages) {
+		Assert.notNull(messages, "'messages' must not be null.");
+		assertBatchCapable();
+		String[] names = new String[messages.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = evaluateExpression(messages.get(i));
 		}
-		else {
-			input = message;
+		int start = 0;
+		while (start < names.length) {
+			int end = start + 1;
+			while (end < names.length && names[end].equals(names[start])) {
+				end++;
+			}
+			executeStoredProcedureBatchInternal(names[start], messages, start, end);
+			start = end;
 		}
+	}
 
-		return executeStoredProcedureInternal(input, evaluateExpression(message));
+	private void executeStoredProcedureBatchInternal(String storedProcedureName, List<Message<?>> messages,
+			int start, int end) {
 
+		BatchCapableSimpleJdbcCall call = (BatchCapableSimpleJdbcCall) obtainSimpleJdbcCall(storedProcedureName);
+		call.compile();
+		List<SqlParameter> parameters = call.callParameters();
+		for (SqlParameter parameter : parameters) {
+			Assert.state(!(parameter instanceof SqlOutParameter) && !parameter.isResultsParameter(),
+					"Batch execution is only supported for Stored Procedures with IN parameters only.");
+		}
+		try {
+			call.getJdbcTemplate().execute(call.getCallString(), (CallableStatementCallback<int[]>) cs -> {
+				for (int i = start; i < end; i++) {
+					Map<String, Object> values = call.matchInParameters(
+							this.sqlParameterSourceFactory.createParameterSource(parameterSourceInput(messages.get(i))));
+					for (int j = 0; j < parameters.size(); j++) {
+						SqlParameter parameter = parameters.get(j);
+						StatementCreatorUtils.setParameterValue(cs, j + 1, parameter, values.get(parameter.getName()));
+					}
+					cs.addBatch();
+				}
+				return cs.executeBatch();
+			});
+		}
+		catch (RuntimeException e) {
+			throw MessageBatcher.partialSuccess("Batch execution of Stored Procedure '" + storedProcedureName
+					+ "' failed", e, messages, start, end);
+		}
+	}
+
+	/**
+	 * Verify that the configuration allows {@link #executeStoredProcedureBatch(List) batch
+	 * execution}: a Stored Procedure without return value, returned result sets or
+	 * declared {@code OUT} parameters. Parameters obtained from the JDBC meta data can
+	 * only be verified when the procedure is first executed.
+	 * @throws IllegalStateException if batch execution is not supported.
+	 */
+	void assertBatchCapable() {
+		Assert.state(!this.isFunction && !this.returnValueRequired && this.returningResultSetRowMappers.isEmpty(),
+				"Batch execution is only supported for Stored Procedures without return value or result sets.");
+		for (SqlParameter parameter : this.sqlParameters) {
+			Assert.state(!(parameter instanceof SqlOutParameter) && !parameter.isResultsParameter(),
+					"Batch execution is only supported for Stored Procedures with IN parameters only.");
+		}
+	}
+
+	private Object parameterSourceInput(Message<?> message) {
+		if (this.usePayloadAsParameterSource) {
+			return message.getPayload();
+		}
+		else {
+			return message;
+		}
 	}
 
 	private String evaluateExpression(Message<?> message) {
@@ -343,21 +454,33 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 	}
 
 	private SimpleJdbcCallOperations obtainSimpleJdbcCall(String storedProcedureName) {
-		if (guavaPresent) {
+		if (this.useGuavaCache) {
 			return this.guavaCacheWrapper.jdbcCallOperationsCache.getUnchecked(storedProcedureName);
 		}
 		else {
-			SimpleJdbcCallOperations operations = this.jdbcCallOperationsMap.get(storedProcedureName);
-			if (operations == null) {
-				synchronized (this.jdbcCallOperationsMapMonitor) {
-					operations = this.jdbcCallOperationsMap.get(storedProcedureName);
-					if (operations == null) {
+			// the map is access-ordered, so even get() must be synchronized
+			synchronized (this.jdbcCallOperationsMapMonitor) {
+				SimpleJdbcCallOperations operations = this.jdbcCallOperationsMap.get(storedProcedureName);
+				if (operations == null) {
+					this.jdbcCallOperationsMapMisses++;
+					long start = System.nanoTime();
+					try {
 						operations = createSimpleJdbcCall(storedProcedureName);
-						this.jdbcCallOperationsMap.put(storedProcedureName, operations);
 					}
+					catch (RuntimeException e) {
+						this.jdbcCallOperationsMapLoadExceptions++;
+						throw e;
+					}
+					finally {
+						this.jdbcCallOperationsMapLoadTime += System.nanoTime() - start;
+					}
+					this.jdbcCallOperationsMap.put(storedProcedureName, operations);
+				}
+				else {
+					this.jdbcCallOperationsMapHits++;
 				}
+				return operations;
 			}
-			return operations;
 		}
 	}
 
@@ -376,6 +499,20 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 		this.ignoreColumnMetaData = ignoreColumnMetaData;
 	}
 
+	/**
+	 * Set the {@link SpelCompilerMode} for the {@link ProcedureParameter} expressions,
+	 * so that the parameter values are extracted by compiled expressions, specialized
+	 * for the message types seen in the first evaluations.
+	 * Only applies to the default {@link ExpressionEvaluatingSqlParameterSourceFactory}
+	 * created for the {@link #setProcedureParameters(List) procedureParameters}.
+	 * @param compilerMode the compiler mode.
+	 * @since 5.0
+	 * @see ExpressionEvaluatingSqlParameterSourceFactory#setCompilerMode(SpelCompilerMode)
+	 */
+	public void setCompilerMode(SpelCompilerMode compilerMode) {
+		this.compilerMode = compilerMode;
+	}
+
 	/**
 	 * Custom Stored Procedure parameters that may contain static values
 	 * or Strings representing an {@link Expression}.
@@ -590,7 +727,7 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 	 * by the Spring bean definition phase.
 	 */
 	public Object getJdbcCallOperationsCacheStatistics() {
-		if (!guavaPresent) {
+		if (!this.useGuavaCache) {
 			throw new UnsupportedOperationException("The Google Guava library isn't present in the classpath.");
 		}
 		return this.guavaCacheWrapper.jdbcCallOperationsCache.stats();
@@ -602,6 +739,8 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 	 *
 	 * Provides the properties of {@link CacheStats} as a {@link Map}. This allows
 	 * for exposing the those properties easily via JMX.
+	 * When Google Guava is not present, the same properties are provided for the
+	 * internal bounded cache.
 	 *
 	 * @return Map containing metrics of the JdbcCallOperationsCache
 	 *
@@ -609,8 +748,28 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 	 */
 	@ManagedMetric
 	public Map<String, Object> getJdbcCallOperationsCacheStatisticsAsMap() {
-		if (!guavaPresent) {
-			throw new UnsupportedOperationException("The Google Guava library isn't present in the classpath.");
+		if (!this.useGuavaCache) {
+			final Map<String, Object> cacheStatistics = new HashMap<String, Object>(11);
+			synchronized (this.jdbcCallOperationsMapMonitor) {
+				long hits = this.jdbcCallOperationsMapHits;
+				long misses = this.jdbcCallOperationsMapMisses;
+				long requests = hits + misses;
+				long loadExceptions = this.jdbcCallOperationsMapLoadExceptions;
+				long loadTime = this.jdbcCallOperationsMapLoadTime;
+				// every miss is a load, as with Guava's CacheStats
+				cacheStatistics.put("averageLoadPenalty", misses == 0 ? 0.0 : (double) loadTime / misses);
+				cacheStatistics.put("evictionCount", this.jdbcCallOperationsMapEvictions);
+				cacheStatistics.put("hitCount", hits);
+				cacheStatistics.put("hitRate", requests == 0 ? 1.0 : (double) hits / requests);
+				cacheStatistics.put("loadCount", misses);
+				cacheStatistics.put("loadExceptionCount", loadExceptions);
+				cacheStatistics.put("loadExceptionRate", misses == 0 ? 0.0 : (double) loadExceptions / misses);
+				cacheStatistics.put("loadSuccessCount", misses - loadExceptions);
+				cacheStatistics.put("missCount", misses);
+				cacheStatistics.put("missRate", requests == 0 ? 0.0 : (double) misses / requests);
+				cacheStatistics.put("totalLoadTime", loadTime);
+			}
+			return Collections.unmodifiableMap(cacheStatistics);
 		}
 		final CacheStats cacheStats = (CacheStats) getJdbcCallOperationsCacheStatistics();
 		final Map<String, Object> cacheStatistics = new HashMap<String, Object>(11);
@@ -655,6 +814,25 @@ public class StoredProcExecutor implements BeanFactoryAware, InitializingBean {
 		this.beanFactory = beanFactory;
 	}
 
+	/**
+	 * Exposes the call parameters and their values, to execute the call in a JDBC batch.
+	 */
+	private static final class BatchCapableSimpleJdbcCall extends SimpleJdbcCall {
+
+		BatchCapableSimpleJdbcCall(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		List<SqlParameter> callParameters() {
+			return getCallParameters();
+		}
+
+		Map<String, Object> matchInParameters(SqlParameterSource parameterSource) {
+			return matchInParameterValuesWithCallParameters(parameterSource);
+		}
+
+	}
+
 	/**
 	 * The lazy-load workaround class to avoid {@link NoClassDefFoundError}
 	 * for {@link CacheLoader} class, when Google Guava isn't present in the CLASSPATH.
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,8 +19,10 @@ package org.springframework.integration.jdbc;
 import java.util.Map;
 
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.Lifecycle;
 import org.springframework.integration.handler.AbstractMessageHandler;
 import org.springframework.integration.jdbc.storedproc.ProcedureParameter;
+import org.springframework.integration.support.PartialSuccessException;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
 
@@ -44,13 +46,22 @@ import org.springframework.util.Assert;
  * SQL function calls. If you believe there are valid use-cases for that, please file a
  * feature request at http://jira.springsource.org.
  *
+ * When a {@link #setBatchSize(int) batchSize} greater than one is configured, messages are
+ * buffered and executed with a single JDBC batch when the batch size or the
+ * {@link #setBatchTimeout(long) timeout} is reached, as well as when the handler is stopped.
+ *
  * @author Gunnar Hillert
+ * @author Gary Russell
  * @since 2.1
  */
-public class StoredProcMessageHandler extends AbstractMessageHandler implements InitializingBean {
+public class StoredProcMessageHandler extends AbstractMessageHandler implements InitializingBean, Lifecycle {
 
 	private final StoredProcExecutor executor;
 
+	private final MessageBatcher batcher;
+
+	private volatile boolean running;
+
 	/**
 	 *
 	 * Constructor passing in the {@link StoredProcExecutor}.
@@ -61,7 +72,34 @@ public class StoredProcMessageHandler extends AbstractMessageHandler implements
 	public StoredProcMessageHandler(StoredProcExecutor storedProcExecutor) {
 		Assert.notNull(storedProcExecutor, "storedProcExecutor must not be null.");
 		this.executor = storedProcExecutor;
+		this.batcher = new MessageBatcher(storedProcExecutor::executeStoredProcedureBatch, this::getTaskScheduler);
+	}
+
+	/**
+	 * Set the number of messages to accumulate before executing the Stored Procedure
+	 * for all of them with a single JDBC batch. Default 1 (no batching). Only supported
+	 * for Stored Procedures with {@code IN} parameters only, which is verified against the
+	 * {@link StoredProcExecutor} configuration when the handler is initialized. A failed batch is reported
+	 * with a {@link PartialSuccessException}, thrown to the sender of the message that
+	 * triggered the execution or, for a timed execution, handled by the task scheduler's
+	 * error handler (the {@code errorChannel} by default).
+	 * @param batchSize the batch size.
+	 * @since 5.0
+	 * @see StoredProcExecutor#executeStoredProcedureBatch(java.util.List)
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batcher.setBatchSize(batchSize);
+	}
 
+	/**
+	 * Set the maximum time in milliseconds a message may wait in a partial batch
+	 * before the batch is executed; default 1000. Only applies when
+	 * {@link #setBatchSize(int) batching} is enabled.
+	 * @param batchTimeout the timeout.
+	 * @since 5.0
+	 */
+	public void setBatchTimeout(long batchTimeout) {
+		this.batcher.setBatchTimeout(batchTimeout);
 	}
 
 	@Override
@@ -69,6 +107,42 @@ public class StoredProcMessageHandler extends AbstractMessageHandler implements
 		return "jdbc:stored-proc-outbound-channel-adapter";
 	}
 
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		if (this.batcher.isBatching()) {
+			this.executor.assertBatchCapable();
+		}
+	}
+
+	@Override
+	public void start() {
+		this.running = true;
+	}
+
+	/**
+	 * Execute any buffered messages.
+	 */
+	@Override
+	public void stop() {
+		this.running = false;
+		flush();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * Execute any buffered messages with a single batch.
+	 * @throws PartialSuccessException if the batch execution fails.
+	 * @since 5.0
+	 */
+	public void flush() {
+		this.batcher.flush();
+	}
+
 	/**
 	 * Executes the Stored procedure, delegates to executeStoredProcedure(...).
 	 * Any return values from the Stored procedure are ignored.
@@ -78,6 +152,11 @@ public class StoredProcMessageHandler extends AbstractMessageHandler implements
 	@Override
 	protected void handleMessageInternal(Message<?> message) {
 
+		if (this.batcher.isBatching()) {
+			this.batcher.add(message);
+			return;
+		}
+
 		Map<String, Object> resultMap = this.executor.executeStoredProcedure(message);
 
 		if (logger.isDebugEnabled()) {
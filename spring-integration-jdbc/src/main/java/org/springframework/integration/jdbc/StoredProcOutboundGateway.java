@@ -25,12 +25,16 @@ import org.springframework.messaging.MessageHandlingException;
 import org.springframework.messaging.MessagingException;
 import org.springframework.util.Assert;
 
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
 /**
  * An {@link AbstractReplyProducingMessageHandler} implementation for performing
  * RDBMS stored procedures which return results.
  *
  * @author Gunnar Hillert
  * @author Artem Bilan
+ * @author Gary Russell
  *
  * @since 2.1
  */
@@ -42,6 +46,8 @@ public class StoredProcOutboundGateway extends AbstractReplyProducingMessageHand
 
 	private boolean requiresReplyExplicitlySet;
 
+	private Scheduler scheduler;
+
 	/**
 	 * Constructor taking {@link StoredProcExecutor}.
 	 * @param storedProcExecutor Must not be null.
@@ -81,6 +87,21 @@ public class StoredProcOutboundGateway extends AbstractReplyProducingMessageHand
 		this.expectSingleResult = expectSingleResult;
 	}
 
+	/**
+	 * Set a {@link Scheduler} on which the stored procedure is executed, making the
+	 * gateway non-blocking for the calling thread: the reply is a {@link Mono} that is
+	 * completed on the scheduler, and {@link #setAsync(boolean) async} mode is enabled.
+	 * Use a scheduler with a bounded number of threads (matching the connection pool size).
+	 * A transaction bound to the calling thread does not propagate to the scheduler
+	 * thread, so the statements are not part of the caller's transaction.
+	 * @param scheduler the scheduler.
+	 * @since 5.0
+	 * @see JdbcOutboundGateway#setScheduler(Scheduler)
+	 */
+	public void setScheduler(Scheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
 	@Override
 	public String getComponentType() {
 		return "jdbc:stored-proc-outbound-gateway";
@@ -92,10 +113,22 @@ public class StoredProcOutboundGateway extends AbstractReplyProducingMessageHand
 		if (!this.requiresReplyExplicitlySet) {
 			setRequiresReply(this.expectSingleResult);
 		}
+		if (this.scheduler != null) {
+			setAsync(true);
+		}
 	}
 
 	@Override
 	protected Object handleRequestMessage(Message<?> requestMessage) {
+		if (this.scheduler != null) {
+			// an empty Mono fails with a ReplyRequiredException in the superclass when a reply is required
+			return Mono.fromCallable(() -> doHandleRequestMessage(requestMessage))
+					.subscribeOn(this.scheduler);
+		}
+		return doHandleRequestMessage(requestMessage);
+	}
+
+	private Object doHandleRequestMessage(Message<?> requestMessage) {
 		Map<String, Object> resultMap = this.executor.executeStoredProcedure(requestMessage);
 
 		final Object payload;
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.channel;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.util.Assert;
+
+/**
+ * A single listener on a dedicated PostgreSQL connection that receives the
+ * {@code NOTIFY} events raised by the {@code INT_CHANNEL_MESSAGE} insert trigger
+ * (see {@code schema-postgresql-notify.sql}) and wakes up the matching
+ * {@link Subscription}s, typically {@link PostgresSubscribableChannel}s.
+ * <p>
+ * All subscriptions are also notified when no event arrives within the
+ * {@link #setNotificationTimeout(int) notification timeout} and after the connection
+ * is (re-)established, so messages inserted while not listening are not stranded.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+public final class PostgresChannelMessageTableSubscriber implements SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(PostgresChannelMessageTableSubscriber.class);
+
+	private static final int GROUP_KEY_LENGTH = 36;
+
+	private final PgConnectionSupplier connectionSupplier;
+
+	private final String channelName;
+
+	private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+	private Executor taskExecutor = new SimpleAsyncTaskExecutor("postgres-channel-notifier-");
+
+	private int notificationTimeout = 60000;
+
+	private long reconnectDelay = 5000;
+
+	private boolean autoStartup = true;
+
+	private int phase = Integer.MIN_VALUE + 1000;
+
+	private volatile boolean running;
+
+	private volatile CountDownLatch stopped = new CountDownLatch(0);
+
+	private volatile Connection connection;
+
+	/**
+	 * Create a subscriber for the default {@code INT_} table prefix.
+	 * @param connectionSupplier the supplier of the dedicated listening connection.
+	 */
+	public PostgresChannelMessageTableSubscriber(PgConnectionSupplier connectionSupplier) {
+		this(connectionSupplier, JdbcChannelMessageStore.DEFAULT_TABLE_PREFIX);
+	}
+
+	/**
+	 * Create a subscriber for the provided table prefix; the trigger must notify
+	 * the {@code <prefix>channel_message_notify} channel (lower case).
+	 * @param connectionSupplier the supplier of the dedicated listening connection.
+	 * @param tablePrefix the table prefix.
+	 */
+	public PostgresChannelMessageTableSubscriber(PgConnectionSupplier connectionSupplier, String tablePrefix) {
+		Assert.notNull(connectionSupplier, "'connectionSupplier' must not be null");
+		Assert.notNull(tablePrefix, "'tablePrefix' must not be null");
+		this.connectionSupplier = connectionSupplier;
+		this.channelName = tablePrefix.toLowerCase() + "channel_message_notify";
+	}
+
+	/**
+	 * Set the executor for the listening thread; it must provide a dedicated,
+	 * long-running thread.
+	 * @param taskExecutor the executor.
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		Assert.notNull(taskExecutor, "'taskExecutor' must not be null");
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set the time in milliseconds to wait for a notification before notifying all
+	 * subscriptions anyway (fallback polling); default 60000.
+	 * @param notificationTimeout the timeout.
+	 */
+	public void setNotificationTimeout(int notificationTimeout) {
+		Assert.isTrue(notificationTimeout > 0, "'notificationTimeout' must be greater than 0");
+		this.notificationTimeout = notificationTimeout;
+	}
+
+	/**
+	 * Set the time in milliseconds to wait before reconnecting after a failure; default 5000.
+	 * @param reconnectDelay the delay.
+	 */
+	public void setReconnectDelay(long reconnectDelay) {
+		this.reconnectDelay = reconnectDelay;
+	}
+
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	public void setPhase(int phase) {
+		this.phase = phase;
+	}
+
+	/**
+	 * Add a subscription.
+	 * @param subscription the subscription.
+	 * @return true if the subscription was added.
+	 */
+	public boolean subscribe(Subscription subscription) {
+		return this.subscriptions.computeIfAbsent(key(subscription.getRegion(), subscription.getGroupId()),
+				k -> ConcurrentHashMap.newKeySet()).add(subscription);
+	}
+
+	/**
+	 * Remove a subscription.
+	 * @param subscription the subscription.
+	 * @return true if the subscription was removed.
+	 */
+	public boolean unsubscribe(Subscription subscription) {
+		Set<Subscription> set = this.subscriptions.get(key(subscription.getRegion(), subscription.getGroupId()));
+		return set != null && set.remove(subscription);
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return this.autoStartup;
+	}
+
+	@Override
+	public int getPhase() {
+		return this.phase;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (this.running) {
+			return;
+		}
+		this.running = true;
+		this.stopped = new CountDownLatch(1);
+		this.taskExecutor.execute(this::listen);
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (!this.running) {
+			return;
+		}
+		this.running = false;
+		Connection connection = this.connection;
+		if (connection != null) {
+			try {
+				connection.close();
+			}
+			catch (SQLException e) {
+				// ignore
+			}
+		}
+		try {
+			if (!this.stopped.await(this.notificationTimeout + 5000, TimeUnit.MILLISECONDS)) {
+				logger.warn("The listening thread did not stop in time");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	private void listen() {
+		try {
+			while (this.running) {
+				try {
+					this.connection = this.connectionSupplier.get();
+					PGConnection pgConnection = this.connection.unwrap(PGConnection.class);
+					try (Statement statement = this.connection.createStatement()) {
+						statement.execute("LISTEN " + this.channelName);
+					}
+					notifyAllSubscriptions();
+					while (this.running) {
+						PGNotification[] notifications = pgConnection.getNotifications(this.notificationTimeout);
+						if (notifications == null || notifications.length == 0) {
+							notifyAllSubscriptions();
+						}
+						else {
+							for (PGNotification notification : notifications) {
+								notifySubscriptions(notification.getParameter());
+							}
+						}
+					}
+				}
+				catch (Exception e) {
+					if (this.running) {
+						logger.error("Failed to listen for notifications on '" + this.channelName
+								+ "'; reconnecting in " + this.reconnectDelay + "ms", e);
+						notifyAllSubscriptions();
+						Thread.sleep(this.reconnectDelay);
+					}
+				}
+				finally {
+					closeConnection();
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			this.running = false;
+			this.stopped.countDown();
+		}
+	}
+
+	private void closeConnection() {
+		Connection connection = this.connection;
+		this.connection = null;
+		if (connection != null) {
+			try {
+				connection.close();
+			}
+			catch (SQLException e) {
+				// ignore
+			}
+		}
+	}
+
+	/*
+	 * The trigger sends "<region> <groupKey>"; the group key is a fixed-length UUID
+	 * while the region may contain spaces.
+	 */
+	private void notifySubscriptions(String parameter) {
+		if (parameter == null || parameter.length() < GROUP_KEY_LENGTH + 1) {
+			notifyAllSubscriptions();
+			return;
+		}
+		Set<Subscription> set = this.subscriptions.get(parameter);
+		if (set != null) {
+			set.forEach(this::notifyUpdate);
+		}
+	}
+
+	private void notifyAllSubscriptions() {
+		this.subscriptions.values().forEach(set -> set.forEach(this::notifyUpdate));
+	}
+
+	private void notifyUpdate(Subscription subscription) {
+		try {
+			subscription.notifyUpdate();
+		}
+		catch (Exception e) {
+			logger.error("Failed to notify " + subscription, e);
+		}
+	}
+
+	private static String key(String region, Object groupId) {
+		return region + " " + UUIDConverter.getUUID(groupId).toString();
+	}
+
+	/**
+	 * Supplies a new, dedicated PostgreSQL connection for listening; it is closed
+	 * when the subscriber stops or the connection fails. It must not be a pooled
+	 * connection, and it must {@link Connection#unwrap(Class) unwrap} to a
+	 * {@link PGConnection}.
+	 */
+	@FunctionalInterface
+	public interface PgConnectionSupplier {
+
+		/**
+		 * Get a new connection.
+		 * @return the connection.
+		 * @throws SQLException if the connection can't be established.
+		 */
+		Connection get() throws SQLException;
+
+	}
+
+	/**
+	 * A subscription to the notifications for a message group (channel) and region.
+	 */
+	public interface Subscription {
+
+		/**
+		 * Called on the listening thread when messages may be available;
+		 * implementations should hand off any work to another thread.
+		 */
+		void notifyUpdate();
+
+		/**
+		 * @return the region of the {@link JdbcChannelMessageStore}.
+		 */
+		String getRegion();
+
+		/**
+		 * @return the message group id.
+		 */
+		Object getGroupId();
+
+	}
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.channel;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.integration.channel.AbstractSubscribableChannel;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.integration.dispatcher.MessageDispatcher;
+import org.springframework.integration.dispatcher.RoundRobinLoadBalancingStrategy;
+import org.springframework.integration.dispatcher.UnicastingDispatcher;
+import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
+import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
+import org.springframework.integration.util.ErrorHandlingTaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+import org.springframework.util.backoff.BackOff;
+import org.springframework.util.backoff.BackOffExecution;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * A {@link org.springframework.messaging.SubscribableChannel} backed by a
+ * {@link JdbcChannelMessageStore} on PostgreSQL. Sent messages are stored in the
+ * {@code INT_CHANNEL_MESSAGE} table; subscribers are woken by the
+ * {@link PostgresChannelMessageTableSubscriber} when the insert trigger raises a
+ * {@code NOTIFY}, instead of polling the table on an interval. Messages are then
+ * removed from the store and dispatched to one subscriber each, optionally within
+ * a transaction, on the {@link #setDispatcherExecutor(Executor) dispatcher executor}.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class PostgresSubscribableChannel extends AbstractSubscribableChannel
+		implements PostgresChannelMessageTableSubscriber.Subscription {
+
+	private final JdbcChannelMessageStore jdbcChannelMessageStore;
+
+	private final Object groupId;
+
+	private final PostgresChannelMessageTableSubscriber messageTableSubscriber;
+
+	private final UnicastingDispatcher dispatcher = new UnicastingDispatcher();
+
+	private final AtomicBoolean draining = new AtomicBoolean();
+
+	private final AtomicBoolean updated = new AtomicBoolean();
+
+	private Executor dispatcherExecutor = new SimpleAsyncTaskExecutor();
+
+	private ErrorHandler errorHandler;
+
+	private TransactionTemplate transactionTemplate;
+
+	private BackOff failureBackOff = new FixedBackOff(1000, FixedBackOff.UNLIMITED_ATTEMPTS);
+
+	// only accessed by the (single) draining thread
+	private BackOffExecution failureBackOffExecution;
+
+	private long retryDelay;
+
+	/**
+	 * Create a channel for the provided group id.
+	 * @param jdbcChannelMessageStore the store; it must use the
+	 * {@link org.springframework.integration.jdbc.store.channel.PostgresChannelMessageStoreQueryProvider}.
+	 * @param groupId the group id (usually the channel name).
+	 * @param messageTableSubscriber the subscriber that receives the notifications.
+	 */
+	public PostgresSubscribableChannel(JdbcChannelMessageStore jdbcChannelMessageStore, Object groupId,
+			PostgresChannelMessageTableSubscriber messageTableSubscriber) {
+		Assert.notNull(jdbcChannelMessageStore, "'jdbcChannelMessageStore' must not be null");
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Assert.notNull(messageTableSubscriber, "'messageTableSubscriber' must not be null");
+		this.jdbcChannelMessageStore = jdbcChannelMessageStore;
+		this.groupId = groupId;
+		this.messageTableSubscriber = messageTableSubscriber;
+		this.dispatcher.setLoadBalancingStrategy(new RoundRobinLoadBalancingStrategy());
+	}
+
+	/**
+	 * Set the executor used to remove messages from the store and dispatch them;
+	 * default {@link SimpleAsyncTaskExecutor}.
+	 * @param dispatcherExecutor the executor.
+	 */
+	public void setDispatcherExecutor(Executor dispatcherExecutor) {
+		Assert.notNull(dispatcherExecutor, "'dispatcherExecutor' must not be null");
+		this.dispatcherExecutor = dispatcherExecutor;
+	}
+
+	/**
+	 * Set the {@link ErrorHandler} for dispatch failures; default a
+	 * {@link MessagePublishingErrorHandler} that sends them to the error channel. The
+	 * channel keeps draining the store after a failure has been handled.
+	 * @param errorHandler the error handler.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		Assert.notNull(errorHandler, "'errorHandler' must not be null");
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Set a transaction manager so that each message is removed from the store and
+	 * dispatched within a transaction; if dispatching fails, the transaction is rolled
+	 * back and the message is retried after the {@link #setFailureBackOff(BackOff) failure back off}.
+	 * Without a transaction manager, a message whose dispatch fails has already been
+	 * removed from the store; the failure is sent to the
+	 * {@link #setErrorHandler(ErrorHandler) error handler} and the back off delays the
+	 * next message.
+	 * @param transactionManager the transaction manager.
+	 */
+	public void setTransactionManager(PlatformTransactionManager transactionManager) {
+		this.transactionTemplate = transactionManager == null ? null : new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * Set the {@link BackOff} applied when dispatching a message fails; the channel
+	 * pauses draining for the back off interval, instead of re-polling the same message
+	 * (within a transaction) or failing on the following messages in a tight loop, and
+	 * then resumes. Within a transaction, when the back off is exhausted, the message is
+	 * removed from the store and the failure is sent to the error handler. Default:
+	 * retry every second, without limit.
+	 * @param failureBackOff the back off.
+	 * @see #setTransactionManager(PlatformTransactionManager)
+	 */
+	public void setFailureBackOff(BackOff failureBackOff) {
+		Assert.notNull(failureBackOff, "'failureBackOff' must not be null");
+		this.failureBackOff = failureBackOff;
+	}
+
+	@Override
+	public String getRegion() {
+		return this.jdbcChannelMessageStore.getRegion();
+	}
+
+	@Override
+	public Object getGroupId() {
+		return this.groupId;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		if (this.errorHandler == null) {
+			this.errorHandler = new MessagePublishingErrorHandler(new BeanFactoryChannelResolver(getBeanFactory()));
+		}
+		if (!(this.dispatcherExecutor instanceof ErrorHandlingTaskExecutor)) {
+			this.dispatcherExecutor = new ErrorHandlingTaskExecutor(this.dispatcherExecutor, this.errorHandler);
+		}
+	}
+
+	@Override
+	public boolean subscribe(MessageHandler handler) {
+		boolean subscribed = super.subscribe(handler);
+		if (this.dispatcher.getHandlerCount() == 1) {
+			this.messageTableSubscriber.subscribe(this);
+			notifyUpdate();
+		}
+		return subscribed;
+	}
+
+	@Override
+	public boolean unsubscribe(MessageHandler handle) {
+		boolean unsubscribed = super.unsubscribe(handle);
+		if (this.dispatcher.getHandlerCount() == 0) {
+			this.messageTableSubscriber.unsubscribe(this);
+		}
+		return unsubscribed;
+	}
+
+	@Override
+	protected MessageDispatcher getDispatcher() {
+		return this.dispatcher;
+	}
+
+	@Override
+	protected boolean doSend(Message<?> message, long timeout) {
+		this.jdbcChannelMessageStore.addMessageToGroup(this.groupId, message);
+		return true;
+	}
+
+	/**
+	 * Schedule a drain of the stored messages; at most one drain runs at a time and
+	 * a notification that arrives during a drain causes it to check the store again.
+	 */
+	@Override
+	public void notifyUpdate() {
+		this.updated.set(true);
+		if (this.draining.compareAndSet(false, true)) {
+			this.dispatcherExecutor.execute(this::drain);
+		}
+	}
+
+	private void drain() {
+		try {
+			while (this.updated.getAndSet(false)) {
+				while (this.dispatcher.getHandlerCount() > 0 && pollAndDispatch()) {
+					this.updated.set(false);
+				}
+			}
+		}
+		finally {
+			this.draining.set(false);
+			if (this.updated.get() && this.dispatcher.getHandlerCount() > 0
+					&& this.draining.compareAndSet(false, true)) {
+				this.dispatcherExecutor.execute(this::drain);
+			}
+		}
+	}
+
+	private void backOff() {
+		try {
+			Thread.sleep(this.retryDelay);
+			// the failed message (within a transaction) or others may still be in the store
+			this.updated.set(true);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			this.retryDelay = 0;
+		}
+	}
+
+	/*
+	 * Returns false when there are no more messages to drain (or the thread is
+	 * interrupted); a failure is handled and, after the back off, draining continues.
+	 */
+	private boolean pollAndDispatch() {
+		try {
+			boolean dispatched = this.transactionTemplate != null
+					? pollAndDispatchInTransaction()
+					: doPollAndDispatch();
+			this.failureBackOffExecution = null;
+			return dispatched;
+		}
+		catch (RuntimeException e) {
+			if (this.transactionTemplate == null) {
+				// the message is already removed from the store; just delay the next one
+				isFailureBackOffExhausted();
+			}
+			this.errorHandler.handleError(e);
+			if (this.retryDelay > 0) {
+				backOff();
+			}
+			return !Thread.currentThread().isInterrupted();
+		}
+	}
+
+	private boolean pollAndDispatchInTransaction() {
+		RuntimeException[] discarded = new RuntimeException[1];
+		Boolean dispatched = this.transactionTemplate.execute(status -> {
+			try {
+				return doPollAndDispatch();
+			}
+			catch (RuntimeException e) {
+				if (!isFailureBackOffExhausted()) {
+					throw e;
+				}
+				// commit the removal of the message; the failure is reported below
+				discarded[0] = e;
+				return true;
+			}
+		});
+		if (discarded[0] != null) {
+			throw discarded[0];
+		}
+		return Boolean.TRUE.equals(dispatched);
+	}
+
+	private boolean isFailureBackOffExhausted() {
+		if (this.failureBackOffExecution == null) {
+			this.failureBackOffExecution = this.failureBackOff.start();
+		}
+		long delay = this.failureBackOffExecution.nextBackOff();
+		if (delay == BackOffExecution.STOP) {
+			this.failureBackOffExecution = null;
+			return true;
+		}
+		this.retryDelay = Math.max(delay, 1);
+		return false;
+	}
+
+	private boolean doPollAndDispatch() {
+		Message<?> message = this.jdbcChannelMessageStore.pollMessageFromGroup(this.groupId);
+		if (message == null) {
+			return false;
+		}
+		this.dispatcher.dispatch(message);
+		return true;
+	}
+
+}
@@ -16,7 +16,10 @@
 
 package org.springframework.integration.jdbc.lock;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import javax.sql.DataSource;
@@ -25,6 +28,8 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
@@ -42,6 +47,7 @@ import org.springframework.util.Assert;
  * @author Dave Syer
  * @author Artem Bilan
  * @author Glenn Renfro
+ * @author Gary Russell
  *
  * @since 4.3
  */
@@ -59,24 +65,38 @@ public class DefaultLockRepository implements LockRepository, InitializingBean {
 	 */
 	public static final int DEFAULT_TTL = 10000;
 
+	/**
+	 * The maximum number of lock keys in the {@code IN} clause of a single renewal statement.
+	 */
+	private static final int MAX_RENEWAL_KEYS = 1000;
+
 	private final String id;
 
 	private final JdbcTemplate template;
 
+	private final NamedParameterJdbcTemplate namedTemplate;
+
 	private int ttl = DEFAULT_TTL;
 
 	private String prefix = DEFAULT_TABLE_PREFIX;
 
 	private String region = "DEFAULT";
 
+	private boolean deleteExpiredOnAcquire = true;
+
 	private String deleteQuery = "DELETE FROM %SLOCK WHERE REGION=? AND LOCK_KEY=? AND CLIENT_ID=?";
 
 	private String deleteExpiredQuery = "DELETE FROM %SLOCK WHERE REGION=? AND LOCK_KEY=? AND CREATED_DATE<?";
 
 	private String deleteAllQuery = "DELETE FROM %SLOCK WHERE REGION=? AND CLIENT_ID=?";
 
+	private String deleteAllExpiredQuery = "DELETE FROM %SLOCK WHERE REGION=? AND CREATED_DATE<?";
+
 	private String updateQuery = "UPDATE %SLOCK SET CREATED_DATE=? WHERE REGION=? AND LOCK_KEY=? AND CLIENT_ID=?";
 
+	private String renewQuery = "UPDATE %SLOCK SET CREATED_DATE=:createdDate WHERE REGION=:region "
+			+ "AND CLIENT_ID=:clientId AND LOCK_KEY IN (:lockKeys)";
+
 	private String insertQuery = "INSERT INTO %SLOCK (REGION, LOCK_KEY, CLIENT_ID, CREATED_DATE) VALUES (?, ?, ?, ?)";
 
 	private String countQuery = "SELECT COUNT(REGION) FROM %SLOCK WHERE REGION=? AND LOCK_KEY=? AND CLIENT_ID=? AND CREATED_DATE>=?";
@@ -101,6 +121,7 @@ public class DefaultLockRepository implements LockRepository, InitializingBean {
 	public DefaultLockRepository(DataSource dataSource, String id) {
 		Assert.hasText(id, "id must not be null nor empty");
 		this.template = new JdbcTemplate(dataSource);
+		this.namedTemplate = new NamedParameterJdbcTemplate(this.template);
 		this.id = id;
 	}
 
@@ -131,12 +152,38 @@ public class DefaultLockRepository implements LockRepository, InitializingBean {
 		this.ttl = timeToLive;
 	}
 
+	/**
+	 * Return the time (in milliseconds) to expire dead locks.
+	 * @return the time to live.
+	 * @since 5.0
+	 */
+	public int getTimeToLive() {
+		return this.ttl;
+	}
+
+	/**
+	 * Set to false to skip the removal of the expired lock before each
+	 * {@link #acquire(String)} and {@link #isAcquired(String)}, saving a round trip
+	 * per lock operation. Expired locks are then only removed by {@link #deleteExpired()},
+	 * which must be invoked periodically - for example by setting a
+	 * {@link JdbcLockRegistry#setRenewalInterval(long) renewal interval} on the registry,
+	 * or with a scheduled task; otherwise an expired lock (for example, one left by a
+	 * crashed application) is never released. Default true.
+	 * @param deleteExpiredOnAcquire false to only remove expired locks in a sweep.
+	 * @since 5.0
+	 */
+	public void setDeleteExpiredOnAcquire(boolean deleteExpiredOnAcquire) {
+		this.deleteExpiredOnAcquire = deleteExpiredOnAcquire;
+	}
+
 	@Override
 	public void afterPropertiesSet() {
 		this.deleteQuery = String.format(this.deleteQuery, this.prefix);
 		this.deleteExpiredQuery = String.format(this.deleteExpiredQuery, this.prefix);
 		this.deleteAllQuery = String.format(this.deleteAllQuery, this.prefix);
+		this.deleteAllExpiredQuery = String.format(this.deleteAllExpiredQuery, this.prefix);
 		this.updateQuery = String.format(this.updateQuery, this.prefix);
+		this.renewQuery = String.format(this.renewQuery, this.prefix);
 		this.insertQuery = String.format(this.insertQuery, this.prefix);
 		this.countQuery = String.format(this.countQuery, this.prefix);
 	}
@@ -154,7 +201,9 @@ public class DefaultLockRepository implements LockRepository, InitializingBean {
 	@Transactional(isolation = Isolation.SERIALIZABLE, timeout = 1)
 	@Override
 	public boolean acquire(String lock) {
-		deleteExpired(lock);
+		if (this.deleteExpiredOnAcquire) {
+			deleteExpired(lock);
+		}
 		if (this.template.update(this.updateQuery, new Date(), this.region, lock, this.id) > 0) {
 			return true;
 		}
@@ -168,11 +217,35 @@ public class DefaultLockRepository implements LockRepository, InitializingBean {
 
 	@Override
 	public boolean isAcquired(String lock) {
-		deleteExpired(lock);
+		if (this.deleteExpiredOnAcquire) {
+			deleteExpired(lock);
+		}
 		return this.template.queryForObject(this.countQuery, Integer.class, this.region, lock, this.id,
 				new Date(System.currentTimeMillis() - this.ttl)) == 1;
 	}
 
+	@Override
+	public int renew(Collection<String> locks) {
+		List<String> keys = new ArrayList<>(locks);
+		Date now = new Date();
+		int renewed = 0;
+		for (int i = 0; i < keys.size(); i += MAX_RENEWAL_KEYS) {
+			MapSqlParameterSource parameters = new MapSqlParameterSource()
+					.addValue("createdDate", now)
+					.addValue("region", this.region)
+					.addValue("clientId", this.id)
+					.addValue("lockKeys", keys.subList(i, Math.min(i + MAX_RENEWAL_KEYS, keys.size())));
+			renewed += this.namedTemplate.update(this.renewQuery, parameters);
+		}
+		return renewed;
+	}
+
+	@Override
+	public int deleteExpired() {
+		return this.template.update(this.deleteAllExpiredQuery, this.region,
+				new Date(System.currentTimeMillis() - this.ttl));
+	}
+
 	private int deleteExpired(String lock) {
 		return this.template.update(this.deleteExpiredQuery, this.region, lock,
 				new Date(System.currentTimeMillis() - this.ttl));
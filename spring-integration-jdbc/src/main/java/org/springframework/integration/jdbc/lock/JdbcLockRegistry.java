@@ -19,12 +19,21 @@ package org.springframework.integration.jdbc.lock;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.dao.CannotSerializeTransactionException;
 import org.springframework.dao.DataAccessResourceFailureException;
@@ -33,6 +42,7 @@ import org.springframework.integration.support.locks.DefaultLockRegistry;
 import org.springframework.integration.support.locks.ExpirableLockRegistry;
 import org.springframework.integration.support.locks.LockRegistry;
 import org.springframework.integration.util.UUIDConverter;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.transaction.TransactionTimedOutException;
 import org.springframework.util.Assert;
 
@@ -42,29 +52,144 @@ import org.springframework.util.Assert;
  * same semantics as the {@link DefaultLockRegistry}, but the locks taken will be global,
  * as long as the underlying database supports the "serializable" isolation level in its
  * transactions.
+ * <p>
+ * When a {@link TaskScheduler} and a {@link #setRenewalInterval(long) renewal interval}
+ * are provided, the leases of all the locks held by this registry are extended with a
+ * single statement per interval, expired locks are removed by a single sweep (see
+ * {@link DefaultLockRepository#setDeleteExpiredOnAcquire(boolean)}), and re-entrant
+ * acquisitions by the thread already holding a lock are satisfied locally, without a
+ * database round trip. Without renewal, re-entrant acquisitions refresh the lease.
  *
  * @author Dave Syer
  * @author Artem Bilan
  * @author Vedran Pavic
  * @author Kai Zimmermann
+ * @author Gary Russell
  *
  * @since 4.3
  */
-public class JdbcLockRegistry implements ExpirableLockRegistry {
+public class JdbcLockRegistry implements ExpirableLockRegistry, InitializingBean, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(JdbcLockRegistry.class);
 
 	private final Map<String, JdbcLock> locks = new ConcurrentHashMap<>();
 
+	private final Set<String> heldLocks = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong lockOperations = new AtomicLong();
+
+	private final AtomicLong repositoryCalls = new AtomicLong();
+
 	private final LockRepository client;
 
+	private TaskScheduler taskScheduler;
+
+	private long renewalInterval;
+
+	private volatile ScheduledFuture<?> renewalTask;
+
 	public JdbcLockRegistry(LockRepository client) {
 		this.client = client;
 	}
 
+	/**
+	 * Set the {@link TaskScheduler} used to periodically renew the held locks and
+	 * remove the expired ones; requires a {@link #setRenewalInterval(long) renewal interval}.
+	 * @param taskScheduler the task scheduler.
+	 * @since 5.0
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Set the interval (in milliseconds) at which the leases of all the locks held by
+	 * this registry are renewed with a single statement and the expired locks are
+	 * removed. Must be less than the repository's time to live. Requires a
+	 * {@link #setTaskScheduler(TaskScheduler) task scheduler}; default 0 (no renewal,
+	 * in which case re-entrant acquisitions refresh the lease of the lock instead).
+	 * @param renewalInterval the renewal interval.
+	 * @since 5.0
+	 */
+	public void setRenewalInterval(long renewalInterval) {
+		this.renewalInterval = renewalInterval;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		if (this.renewalInterval > 0) {
+			Assert.notNull(this.taskScheduler, "A 'taskScheduler' is required when a 'renewalInterval' is set");
+			Object repository = AopProxyUtils.getSingletonTarget(this.client);
+			if (repository == null) {
+				repository = this.client;
+			}
+			if (repository instanceof DefaultLockRepository) {
+				int timeToLive = ((DefaultLockRepository) repository).getTimeToLive();
+				Assert.isTrue(this.renewalInterval < timeToLive, "The 'renewalInterval' (" + this.renewalInterval
+						+ ") must be less than the repository's 'timeToLive' (" + timeToLive + ")");
+			}
+			this.renewalTask = this.taskScheduler.scheduleAtFixedRate(this::renewLocks, this.renewalInterval);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		ScheduledFuture<?> task = this.renewalTask;
+		if (task != null) {
+			task.cancel(false);
+			this.renewalTask = null;
+		}
+	}
+
 	@Override
 	public Lock obtain(Object lockKey) {
 		Assert.isInstanceOf(String.class, lockKey);
 		String path = pathFor((String) lockKey);
-		return this.locks.computeIfAbsent(path, p -> new JdbcLock(this.client, p));
+		return this.locks.computeIfAbsent(path, JdbcLock::new);
+	}
+
+	/**
+	 * Renew the leases of all the locks currently held by this registry with a single
+	 * repository call, then remove the expired locks. Invoked periodically when a
+	 * {@link #setRenewalInterval(long) renewal interval} is set.
+	 * @since 5.0
+	 */
+	public void renewLocks() {
+		try {
+			if (!this.heldLocks.isEmpty()) {
+				this.repositoryCalls.incrementAndGet();
+				this.client.renew(this.heldLocks);
+			}
+			this.repositoryCalls.incrementAndGet();
+			this.client.deleteExpired();
+		}
+		catch (Exception e) {
+			logger.error("Failed to renew locks", e);
+		}
+	}
+
+	/**
+	 * Return the number of lock and unlock operations performed on the locks of this
+	 * registry.
+	 * @return the number of lock operations.
+	 * @since 5.0
+	 */
+	public long getLockOperationCount() {
+		return this.lockOperations.get();
+	}
+
+	/**
+	 * Return the number of calls made to the {@link LockRepository}, including the
+	 * periodic renewals.
+	 * @return the number of repository calls.
+	 * @since 5.0
+	 */
+	public long getRepositoryCallCount() {
+		return this.repositoryCalls.get();
+	}
+
+	private boolean isRenewing() {
+		return this.renewalTask != null;
 	}
 
 	private String pathFor(String input) {
@@ -84,9 +209,7 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 		}
 	}
 
-	private static final class JdbcLock implements Lock {
-
-		private final LockRepository mutex;
+	private final class JdbcLock implements Lock {
 
 		private final String path;
 
@@ -94,8 +217,7 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 
 		private final ReentrantLock delegate = new ReentrantLock();
 
-		JdbcLock(LockRepository client, String path) {
-			this.mutex = client;
+		JdbcLock(String path) {
 			this.path = path;
 		}
 
@@ -106,6 +228,10 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 		@Override
 		public void lock() {
 			this.delegate.lock();
+			JdbcLockRegistry.this.lockOperations.incrementAndGet();
+			if (this.delegate.getHoldCount() > 1 && isRenewing()) {
+				return;
+			}
 			while (true) {
 				try {
 					while (!doLock()) {
@@ -137,6 +263,10 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 		@Override
 		public void lockInterruptibly() throws InterruptedException {
 			this.delegate.lockInterruptibly();
+			JdbcLockRegistry.this.lockOperations.incrementAndGet();
+			if (this.delegate.getHoldCount() > 1 && isRenewing()) {
+				return;
+			}
 			while (true) {
 				try {
 					while (!doLock()) {
@@ -179,6 +309,10 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 			if (!this.delegate.tryLock(time, unit)) {
 				return false;
 			}
+			JdbcLockRegistry.this.lockOperations.incrementAndGet();
+			if (this.delegate.getHoldCount() > 1 && isRenewing()) {
+				return true;
+			}
 			long expire = now + TimeUnit.MILLISECONDS.convert(time, unit);
 			boolean acquired;
 			while (true) {
@@ -202,9 +336,11 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 		}
 
 		private boolean doLock() {
-			boolean acquired = this.mutex.acquire(this.path);
+			JdbcLockRegistry.this.repositoryCalls.incrementAndGet();
+			boolean acquired = JdbcLockRegistry.this.client.acquire(this.path);
 			if (acquired) {
 				this.lastUsed = System.currentTimeMillis();
+				JdbcLockRegistry.this.heldLocks.add(this.path);
 			}
 			return acquired;
 		}
@@ -214,12 +350,15 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 			if (!this.delegate.isHeldByCurrentThread()) {
 				throw new IllegalMonitorStateException("You do not own mutex at " + this.path);
 			}
+			JdbcLockRegistry.this.lockOperations.incrementAndGet();
 			if (this.delegate.getHoldCount() > 1) {
 				this.delegate.unlock();
 				return;
 			}
 			try {
-				this.mutex.delete(this.path);
+				JdbcLockRegistry.this.heldLocks.remove(this.path);
+				JdbcLockRegistry.this.repositoryCalls.incrementAndGet();
+				JdbcLockRegistry.this.client.delete(this.path);
 			}
 			catch (Exception e) {
 				throw new DataAccessResourceFailureException("Failed to release mutex at " + this.path, e);
@@ -235,7 +374,7 @@ public class JdbcLockRegistry implements ExpirableLockRegistry {
 		}
 
 		public boolean isAcquiredInThisProcess() {
-			return this.mutex.isAcquired(this.path);
+			return this.delegate.isLocked();
 		}
 
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2016-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.jdbc.lock;
 
 import java.io.Closeable;
+import java.util.Collection;
 
 /**
  * Encapsulation of the SQL shunting that is needed for locks. A {@link JdbcLockRegistry}
@@ -24,6 +25,8 @@ import java.io.Closeable;
  * has to be declared as a bean.
  *
  * @author Dave Syer
+ * @author Gary Russell
+ *
  * @since 4.3
  */
 public interface LockRepository extends Closeable {
@@ -34,6 +37,38 @@ public interface LockRepository extends Closeable {
 
 	boolean acquire(String lock);
 
+	/**
+	 * Extend the lease of the provided locks, held by this client; locks that are no
+	 * longer held (for example, expired and removed) must not be re-created.
+	 * The default implementation re-acquires, individually, each lock that
+	 * {@link #isAcquired(String) is still acquired}; implementations should override it
+	 * to renew all the locks with a single round trip, updating the existing lock
+	 * records only.
+	 * @param locks the locks to renew.
+	 * @return the number of locks renewed.
+	 * @since 5.0
+	 */
+	default int renew(Collection<String> locks) {
+		int renewed = 0;
+		for (String lock : locks) {
+			if (isAcquired(lock) && acquire(lock)) {
+				renewed++;
+			}
+		}
+		return renewed;
+	}
+
+	/**
+	 * Remove all the expired locks (of any client).
+	 * The default implementation does nothing, assuming that expired locks are
+	 * removed on each individual lock operation.
+	 * @return the number of locks removed.
+	 * @since 5.0
+	 */
+	default int deleteExpired() {
+		return 0;
+	}
+
 	@Override
 	void close();
 
@@ -16,15 +16,30 @@
 
 package org.springframework.integration.jdbc.metadata;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.integration.metadata.ConcurrentMetadataStore;
 import org.springframework.integration.metadata.MetadataStore;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
 /**
@@ -34,9 +49,15 @@ import org.springframework.util.Assert;
  * where <code>*</code> is the target database type.
  * <p>
  * The transaction management is required to use this {@link MetadataStore}.
+ * <p>
+ * An optional, bounded near-cache with a time to live can be configured using
+ * {@link #setCacheSize(int)} to avoid a database round trip for {@link #get(String)}
+ * of keys that were recently read or written by this store; the conditional operations
+ * always access the database.
  *
  * @author Bojan Vukasovic
  * @author Artem Bilan
+ * @author Gary Russell
  *
  * @since 5.0
  */
@@ -47,14 +68,32 @@ public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingB
 	 */
 	public static final String DEFAULT_TABLE_PREFIX = "INT_";
 
+	/**
+	 * Default value for the cache time-to-live property.
+	 */
+	public static final long DEFAULT_CACHE_TTL = 60000;
+
+	private static final int MAX_IN_CLAUSE_KEYS = 1000;
+
 	private final JdbcOperations jdbcTemplate;
 
+	private final NamedParameterJdbcOperations namedJdbcTemplate;
+
+	private int cacheSize;
+
+	private long cacheTimeToLive = DEFAULT_CACHE_TTL;
+
+	private Map<String, CachedValue> cache;
+
 	private volatile String tablePrefix = DEFAULT_TABLE_PREFIX;
 
 	private volatile String region = "DEFAULT";
 
 	private String getValueQuery = "SELECT METADATA_VALUE FROM %SMETADATA_STORE WHERE METADATA_KEY=? AND REGION=?";
 
+	private String getValuesQuery = "SELECT METADATA_KEY, METADATA_VALUE FROM %SMETADATA_STORE "
+			+ "WHERE REGION=:region AND METADATA_KEY IN (:keys)";
+
 	private String getValueForUpdateQuery = "SELECT METADATA_VALUE FROM %SMETADATA_STORE WHERE METADATA_KEY=? AND REGION=? FOR UPDATE";
 
 	private String replaceValueQuery = "UPDATE %SMETADATA_STORE SET METADATA_VALUE=? WHERE METADATA_KEY=? AND METADATA_VALUE=? AND REGION=?";
@@ -69,11 +108,27 @@ public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingB
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		this.getValueQuery = String.format(this.getValueQuery, this.tablePrefix);
+		this.getValuesQuery = String.format(this.getValuesQuery, this.tablePrefix);
 		this.getValueForUpdateQuery = String.format(this.getValueForUpdateQuery, this.tablePrefix);
 		this.replaceValueQuery = String.format(this.replaceValueQuery, this.tablePrefix);
 		this.replaceValueByKeyQuery = String.format(this.replaceValueByKeyQuery, this.tablePrefix);
 		this.removeValueQuery = String.format(this.removeValueQuery, this.tablePrefix);
 		this.putIfAbsentValueQuery = String.format(this.putIfAbsentValueQuery, this.tablePrefix, this.tablePrefix);
+		if (this.cacheSize > 0) {
+			this.cache = createCache();
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private Map<String, CachedValue> createCache() {
+		return Collections.synchronizedMap(new LinkedHashMap<String, CachedValue>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Entry<String, CachedValue> eldest) {
+				return size() > JdbcMetadataStore.this.cacheSize;
+			}
+
+		});
 	}
 
 	/**
@@ -91,6 +146,7 @@ public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingB
 	public JdbcMetadataStore(JdbcOperations jdbcOperations) {
 		Assert.notNull(jdbcOperations, "'jdbcOperations' must not be null");
 		this.jdbcTemplate = jdbcOperations;
+		this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcOperations);
 	}
 
 	/**
@@ -116,11 +172,57 @@ public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingB
 		this.region = region;
 	}
 
+	/**
+	 * Set the maximum number of entries in the near-cache; when exceeded, the least
+	 * recently used entries are evicted. Default 0 (no cache).
+	 * Entries are only added to the cache after the transaction (if any) commits;
+	 * updates made by other applications are not visible to {@link #get(String)} until
+	 * the cached entry expires. {@link #putIfAbsent(String, String)},
+	 * {@link #putAllIfAbsent(Map)} and {@link #replace(String, String, String)} always
+	 * access the database.
+	 * @param cacheSize the cache size.
+	 * @since 5.0
+	 * @see #setCacheTimeToLive(long)
+	 */
+	public void setCacheSize(int cacheSize) {
+		Assert.isTrue(cacheSize >= 0, "'cacheSize' must not be negative");
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Set the time (in milliseconds) after which a cached entry is no longer used and
+	 * the database is queried again. Default {@link #DEFAULT_CACHE_TTL}.
+	 * @param cacheTimeToLive the time to live.
+	 * @since 5.0
+	 * @see #setCacheSize(int)
+	 */
+	public void setCacheTimeToLive(long cacheTimeToLive) {
+		Assert.isTrue(cacheTimeToLive > 0, "'cacheTimeToLive' must be greater than 0");
+		this.cacheTimeToLive = cacheTimeToLive;
+	}
+
+	/**
+	 * Remove all the entries from the near-cache, if configured.
+	 * @since 5.0
+	 */
+	public void clearCache() {
+		if (this.cache != null) {
+			this.cache.clear();
+		}
+	}
+
 	@Override
 	@Transactional
 	public String putIfAbsent(String key, String value) {
 		Assert.notNull(key, "'key' cannot be null");
 		Assert.notNull(value, "'value' cannot be null");
+		// never answered from the cache: the key may have been removed by another client
+		String oldValue = doPutIfAbsent(key, value);
+		cache(key, oldValue == null ? value : oldValue);
+		return oldValue;
+	}
+
+	private String doPutIfAbsent(String key, String value) {
 		while (true) {
 			//try to insert if does not exists
 			int affectedRows = tryToPutIfAbsent(key, value);
@@ -140,6 +242,81 @@ public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingB
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The existing values are read with a single query (per 1000 keys) and the
+	 * missing entries are inserted with a single JDBC batch; an entry inserted
+	 * concurrently by another client in between is resolved individually. The near-cache,
+	 * if any, is updated but not used to answer this operation.
+	 */
+	@Override
+	@Transactional
+	public Map<String, String> putAllIfAbsent(Map<String, String> entries) {
+		Assert.notNull(entries, "'entries' cannot be null");
+		Map<String, String> existing = new LinkedHashMap<>();
+		List<String> keysToQuery = new ArrayList<>();
+		for (Entry<String, String> entry : entries.entrySet()) {
+			Assert.notNull(entry.getKey(), "'key' cannot be null");
+			Assert.notNull(entry.getValue(), "'value' cannot be null");
+			keysToQuery.add(entry.getKey());
+		}
+		for (int i = 0; i < keysToQuery.size(); i += MAX_IN_CLAUSE_KEYS) {
+			MapSqlParameterSource parameters = new MapSqlParameterSource()
+					.addValue("region", this.region)
+					.addValue("keys", keysToQuery.subList(i, Math.min(i + MAX_IN_CLAUSE_KEYS, keysToQuery.size())));
+			this.namedJdbcTemplate.query(this.getValuesQuery, parameters,
+					rs -> {
+						existing.put(rs.getString(1), rs.getString(2));
+					});
+		}
+		List<Entry<String, String>> toInsert = new ArrayList<>();
+		for (Entry<String, String> entry : entries.entrySet()) {
+			if (existing.containsKey(entry.getKey())) {
+				cache(entry.getKey(), existing.get(entry.getKey()));
+			}
+			else {
+				toInsert.add(entry);
+			}
+		}
+		if (!toInsert.isEmpty()) {
+			int[] affectedRows = this.jdbcTemplate.batchUpdate(this.putIfAbsentValueQuery,
+					new BatchPreparedStatementSetter() {
+
+						@Override
+						public void setValues(PreparedStatement ps, int i) throws SQLException {
+							Entry<String, String> entry = toInsert.get(i);
+							ps.setString(1, entry.getKey());
+							ps.setString(2, entry.getValue());
+							ps.setString(3, JdbcMetadataStore.this.region);
+							ps.setString(4, entry.getKey());
+							ps.setString(5, JdbcMetadataStore.this.region);
+						}
+
+						@Override
+						public int getBatchSize() {
+							return toInsert.size();
+						}
+
+					});
+			for (int i = 0; i < toInsert.size(); i++) {
+				Entry<String, String> entry = toInsert.get(i);
+				// SUCCESS_NO_INFO (negative) is treated as inserted
+				if (i < affectedRows.length && affectedRows[i] == 0) {
+					// inserted by another client after our query
+					String oldValue = doPutIfAbsent(entry.getKey(), entry.getValue());
+					if (oldValue != null) {
+						existing.put(entry.getKey(), oldValue);
+						cache(entry.getKey(), oldValue);
+						continue;
+					}
+				}
+				cache(entry.getKey(), entry.getValue());
+			}
+		}
+		return existing;
+	}
+
 	private int tryToPutIfAbsent(String key, String value) {
 		return this.jdbcTemplate.update(this.putIfAbsentValueQuery,
 				ps -> {
@@ -164,7 +341,14 @@ public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingB
 					ps.setString(3, oldValue);
 					ps.setString(4, this.region);
 				});
-		return affectedRows > 0;
+		if (affectedRows > 0) {
+			cache(key, newValue);
+			return true;
+		}
+		else {
+			evict(key);
+			return false;
+		}
 	}
 
 	@Override
@@ -193,6 +377,7 @@ public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingB
 							ps.setString(3, this.region);
 						});
 			}
+			cache(key, value);
 			return;
 		}
 	}
@@ -201,8 +386,14 @@ public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingB
 	@Transactional
 	public String get(String key) {
 		Assert.notNull(key, "'key' cannot be null");
+		String cached = getCached(key);
+		if (cached != null) {
+			return cached;
+		}
 		try {
-			return this.jdbcTemplate.queryForObject(this.getValueQuery, String.class, key, this.region);
+			String value = this.jdbcTemplate.queryForObject(this.getValueQuery, String.class, key, this.region);
+			cache(key, value);
+			return value;
 		}
 		catch (EmptyResultDataAccessException e) {
 			//if there are no rows with this key, return null
@@ -214,6 +405,7 @@ public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingB
 	@Transactional
 	public String remove(String key) {
 		Assert.notNull(key, "'key' cannot be null");
+		evict(key);
 		String oldValue;
 		try {
 			//select old value and lock row for removal
@@ -231,4 +423,61 @@ public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingB
 		return null;
 	}
 
+	private String getCached(String key) {
+		if (this.cache == null) {
+			return null;
+		}
+		CachedValue cached = this.cache.get(key);
+		if (cached == null) {
+			return null;
+		}
+		if (cached.expiresAt < System.currentTimeMillis()) {
+			this.cache.remove(key);
+			return null;
+		}
+		return cached.value;
+	}
+
+	private void cache(String key, String value) {
+		if (this.cache != null && value != null) {
+			if (TransactionSynchronizationManager.isSynchronizationActive()
+					&& TransactionSynchronizationManager.isActualTransactionActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+					@Override
+					public void afterCommit() {
+						doCache(key, value);
+					}
+
+				});
+			}
+			else {
+				doCache(key, value);
+			}
+		}
+	}
+
+	private void doCache(String key, String value) {
+		this.cache.put(key, new CachedValue(value, System.currentTimeMillis() + this.cacheTimeToLive));
+	}
+
+	private void evict(String key) {
+		if (this.cache != null) {
+			this.cache.remove(key);
+		}
+	}
+
+	private static final class CachedValue {
+
+		private final String value;
+
+		private final long expiresAt;
+
+		CachedValue(String value, long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+
+	}
+
 }
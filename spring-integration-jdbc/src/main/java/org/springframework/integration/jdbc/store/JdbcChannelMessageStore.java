@@ -17,15 +17,15 @@
 package org.springframework.integration.jdbc.store;
 
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
@@ -41,6 +41,7 @@ import org.springframework.integration.jdbc.store.channel.ChannelMessageStorePre
 import org.springframework.integration.jdbc.store.channel.ChannelMessageStoreQueryProvider;
 import org.springframework.integration.jdbc.store.channel.MessageRowMapper;
 import org.springframework.integration.jdbc.store.channel.OracleChannelMessageStoreQueryProvider;
+import org.springframework.integration.store.CompactMessageSerializer;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupFactory;
 import org.springframework.integration.store.MessageGroupStore;
@@ -93,6 +94,8 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 
 	private static final Log logger = LogFactory.getLog(JdbcChannelMessageStore.class);
 
+	private static final int MAX_BATCH_POLL_TEMPLATES = 16;
+
 	/**
 	 * Default region property, used to partition the message store. For example,
 	 * a separate Spring Integration application with overlapping channel names
@@ -120,13 +123,13 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 	@Deprecated
 	public static final String CREATED_DATE_KEY = JdbcChannelMessageStore.class.getSimpleName() + ".CREATED_DATE";
 
-	private final Set<String> idCache = new HashSet<>();
-
-	private final ReadWriteLock idCacheLock = new ReentrantReadWriteLock();
-
-	private final Lock idCacheReadLock = this.idCacheLock.readLock();
+	private final Set<String> idCache = ConcurrentHashMap.newKeySet();
 
-	private final Lock idCacheWriteLock = this.idCacheLock.writeLock();
+	/**
+	 * The ids in the cache plus the polls in progress that will add one; reserved before
+	 * polling, so that the cache size limit cannot be exceeded by concurrent pollers.
+	 */
+	private final AtomicInteger idCacheReservations = new AtomicInteger();
 
 	private ChannelMessageStoreQueryProvider channelMessageStoreQueryProvider;
 
@@ -138,6 +141,8 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 
 	private WhiteListDeserializingConverter deserializer;
 
+	private CompactMessageSerializer<?> compactDeserializer;
+
 	private SerializingConverter serializer;
 
 	private LobHandler lobHandler = new DefaultLobHandler();
@@ -152,8 +157,20 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 
 	private boolean usingIdCache = false;
 
+	private int idCacheMaxSize = Integer.MAX_VALUE;
+
+	private boolean usingSkipLocked;
+
 	private boolean priorityEnabled;
 
+	/*
+	 * Batch poll templates by max rows; only the first MAX_BATCH_POLL_TEMPLATES distinct
+	 * sizes are cached, so that callers passing arbitrary sizes do not grow the map
+	 * without bound. The sizes can't be rounded up to shared buckets because the Oracle
+	 * query relies on the template's max rows to lock only the returned rows.
+	 */
+	private final Map<Integer, NamedParameterJdbcTemplate> batchPollTemplates = new ConcurrentHashMap<>();
+
 	/**
 	 * Convenient constructor for configuration use.
 	 */
@@ -196,17 +213,24 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public void setDeserializer(Deserializer<? extends Message<?>> deserializer) {
 		this.deserializer = new WhiteListDeserializingConverter((Deserializer) deserializer);
+		this.compactDeserializer = deserializer instanceof CompactMessageSerializer
+				? (CompactMessageSerializer<?>) deserializer
+				: null;
 	}
 
 	/**
 	 * Add patterns for packages/classes that are allowed to be deserialized. A class can
 	 * be fully qualified or a wildcard '*' is allowed at the beginning or end of the
-	 * class name. Examples: {@code com.foo.*}, {@code *.MyClass}.
+	 * class name. Examples: {@code com.foo.*}, {@code *.MyClass}. The patterns are also
+	 * added to a {@link CompactMessageSerializer} deserializer.
 	 * @param patterns the patterns.
 	 * @since 4.2.13
 	 */
 	public void addWhiteListPatterns(String... patterns) {
 		this.deserializer.addWhiteListPatterns(patterns);
+		if (this.compactDeserializer != null) {
+			this.compactDeserializer.addWhiteListPatterns(patterns);
+		}
 	}
 
 	/**
@@ -280,6 +304,15 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 		this.region = region;
 	}
 
+	/**
+	 * Return the region of this store.
+	 * @return the region.
+	 * @since 5.0
+	 */
+	public String getRegion() {
+		return this.region;
+	}
+
 	/**
 	 * A converter for serializing messages to byte arrays for storage.
 	 * @param serializer The serializer to set
@@ -334,12 +367,42 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 	 * </int:poller>
 	 * }
 	 * </pre>
+	 * <p>With databases that support {@code SKIP LOCKED}, consider
+	 * {@link #setUsingSkipLocked(boolean)} instead.</p>
 	 * @param usingIdCache When <code>true</code> the id cache will be used.
 	 */
 	public void setUsingIdCache(boolean usingIdCache) {
 		this.usingIdCache = usingIdCache;
 	}
 
+	/**
+	 * Set to true to poll single messages with the {@code SKIP LOCKED} batch poll query of
+	 * the {@link ChannelMessageStoreQueryProvider} (Postgres, MySQL 8.0 and Oracle), with
+	 * {@code max_rows = 1}; rows locked by other transactions are then skipped by the
+	 * database, without the in-memory id cache and the id list it adds to each poll.
+	 * This requires the polls to be performed within a transaction and cannot be combined
+	 * with {@link #setUsingIdCache(boolean) usingIdCache}. Default false.
+	 * @param usingSkipLocked true to use {@code SKIP LOCKED} polls.
+	 * @since 5.0
+	 */
+	public void setUsingSkipLocked(boolean usingSkipLocked) {
+		this.usingSkipLocked = usingSkipLocked;
+	}
+
+	/**
+	 * Set the maximum number of in-flight message ids in the id cache; when the
+	 * cache is full, polls return no message until ids are removed with
+	 * {@link #removeFromIdCache(String)}. This bounds the number of in-flight messages
+	 * and the size of the exclusion list sent with each poll. Default unbounded.
+	 * @param idCacheMaxSize the maximum size.
+	 * @since 5.0
+	 * @see #setUsingIdCache(boolean)
+	 */
+	public void setIdCacheMaxSize(int idCacheMaxSize) {
+		Assert.isTrue(idCacheMaxSize > 0, "'idCacheMaxSize' must be greater than 0");
+		this.idCacheMaxSize = idCacheMaxSize;
+	}
+
 	public void setPriorityEnabled(boolean priorityEnabled) {
 		this.priorityEnabled = priorityEnabled;
 	}
@@ -383,6 +446,12 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 	public void afterPropertiesSet() throws Exception {
 		Assert.state(this.jdbcTemplate != null, "A DataSource or JdbcTemplate must be provided");
 		Assert.notNull(this.channelMessageStoreQueryProvider, "A channelMessageStoreQueryProvider must be provided.");
+		if (this.usingSkipLocked) {
+			Assert.state(!this.usingIdCache, "'usingSkipLocked' and 'usingIdCache' are mutually exclusive");
+			Assert.state(getSkipLockedQuery() != null, () -> "The "
+					+ this.channelMessageStoreQueryProvider.getClass().getSimpleName()
+					+ " does not provide SKIP LOCKED poll queries; 'usingSkipLocked' cannot be used");
+		}
 
 		if (this.messageRowMapper == null) {
 			this.messageRowMapper = new MessageRowMapper(this.deserializer, this.lobHandler);
@@ -508,6 +577,81 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 		return polledMessage;
 	}
 
+	/**
+	 * Poll up to {@code maxMessages} of the oldest messages persisted for the given
+	 * group id, removing them with a single {@code DELETE} statement.
+	 * <p>When the {@link ChannelMessageStoreQueryProvider} supports batch polling
+	 * (the Postgres, MySQL and Oracle providers, using {@code FOR UPDATE SKIP LOCKED}),
+	 * rows locked by concurrent transactions are skipped, so several nodes can drain
+	 * the same channel concurrently without the {@link #setUsingIdCache(boolean) id cache};
+	 * the call must be performed within a transaction for the row locks to be held.
+	 * Otherwise this falls back to repeated {@link #pollMessageFromGroup(Object)} calls.
+	 * @param groupId the group id (channel identifier).
+	 * @param maxMessages the maximum number of messages to return.
+	 * @return the messages; empty if there are none.
+	 * @since 5.0
+	 */
+	public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+		Assert.isTrue(maxMessages > 0, "'maxMessages' must be greater than 0");
+		String batchQuery = this.priorityEnabled
+				? this.channelMessageStoreQueryProvider.getPriorityPollFromGroupBatchQuery()
+				: this.channelMessageStoreQueryProvider.getPollFromGroupBatchQuery();
+		String deleteQuery = this.channelMessageStoreQueryProvider.getDeleteMessagesQuery();
+		if (batchQuery == null || deleteQuery == null) {
+			List<Message<?>> messages = new ArrayList<>();
+			Message<?> message;
+			while (messages.size() < maxMessages && (message = pollMessageFromGroup(groupId)) != null) {
+				messages.add(message);
+			}
+			return messages;
+		}
+
+		MapSqlParameterSource parameters = new MapSqlParameterSource()
+				.addValue("region", this.region)
+				.addValue("group_key", getKey(groupId))
+				.addValue("max_rows", maxMessages);
+		NamedParameterJdbcTemplate template = this.batchPollTemplates.get(maxMessages);
+		if (template == null) {
+			template = createBatchPollTemplate(maxMessages);
+			if (this.batchPollTemplates.size() < MAX_BATCH_POLL_TEMPLATES) {
+				this.batchPollTemplates.putIfAbsent(maxMessages, template);
+			}
+		}
+		List<Message<?>> messages = template.query(getQuery(batchQuery), parameters, this.messageRowMapper);
+		if (messages.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<String> ids = new ArrayList<>(messages.size());
+		for (Message<?> message : messages) {
+			ids.add(getKey(message.getHeaders().getId()));
+		}
+		parameters.addValue("message_ids", ids);
+		int deleted = template.update(getQuery(deleteQuery), parameters);
+		if (deleted != messages.size()) {
+			logger.warn(String.format("Polled %d messages but deleted %d; a concurrent consumer may have "
+					+ "removed some of them; is the poll running within a transaction?", messages.size(), deleted));
+		}
+		else if (logger.isDebugEnabled()) {
+			logger.debug(String.format("Polled and deleted %d messages.", deleted));
+		}
+		return messages;
+	}
+
+	/*
+	 * The store's template is limited to one row; batch polls need their own fetch size
+	 * and max rows (the Oracle query relies on them, rather than a LIMIT clause, to lock
+	 * only the returned rows).
+	 */
+	private NamedParameterJdbcTemplate createBatchPollTemplate(int maxRows) {
+		JdbcTemplate template = new JdbcTemplate(this.jdbcTemplate.getDataSource());
+		template.setFetchSize(maxRows);
+		template.setMaxRows(maxRows);
+		template.setQueryTimeout(this.jdbcTemplate.getQueryTimeout());
+		template.setExceptionTranslator(this.jdbcTemplate.getExceptionTranslator());
+		return new NamedParameterJdbcTemplate(template);
+	}
+
 	/**
 	 * This method executes a call to the DB to get the oldest Message in the
 	 * MessageGroup which in the context of the {@link JdbcChannelMessageStore}
@@ -525,60 +669,88 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 
 		String query;
 
-		final List<Message<?>> messages;
-
-		this.idCacheReadLock.lock();
-		try {
-			if (this.usingIdCache && !this.idCache.isEmpty()) {
+		if (this.usingSkipLocked) {
+			query = getQuery(getSkipLockedQuery());
+			parameters.addValue("max_rows", 1);
+		}
+		else if (this.usingIdCache) {
+			if (this.idCacheReservations.incrementAndGet() > this.idCacheMaxSize) {
+				this.idCacheReservations.decrementAndGet();
+				if (logger.isDebugEnabled()) {
+					logger.debug("The id cache is full (" + this.idCacheMaxSize + " in-flight messages); skipping poll");
+				}
+				return null;
+			}
+			List<String> inFlightIds = new ArrayList<>(this.idCache);
+			if (!inFlightIds.isEmpty()) {
 				if (this.priorityEnabled) {
 					query = getQuery(this.channelMessageStoreQueryProvider.getPriorityPollFromGroupExcludeIdsQuery());
 				}
 				else {
 					query = getQuery(this.channelMessageStoreQueryProvider.getPollFromGroupExcludeIdsQuery());
 				}
-				parameters.addValue("message_ids", this.idCache);
+				parameters.addValue("message_ids", inFlightIds);
 			}
 			else {
-				if (this.priorityEnabled) {
-					query = getQuery(this.channelMessageStoreQueryProvider.getPriorityPollFromGroupQuery());
-				}
-				else {
-					query = getQuery(this.channelMessageStoreQueryProvider.getPollFromGroupQuery());
-				}
+				query = getPollFromGroupQuery();
 			}
-			messages = namedParameterJdbcTemplate.query(query, parameters, this.messageRowMapper);
 		}
-		finally {
-			this.idCacheReadLock.unlock();
+		else {
+			query = getPollFromGroupQuery();
 		}
 
-
-		Assert.state(messages.size() < 2,
-				() -> "The query must return zero or 1 row; got " + messages.size() + " rows");
+		final List<Message<?>> messages;
+		boolean reserved = this.usingIdCache && !this.usingSkipLocked;
+		try {
+			messages = namedParameterJdbcTemplate.query(query, parameters, this.messageRowMapper);
+			Assert.state(messages.size() < 2,
+					() -> "The query must return zero or 1 row; got " + messages.size() + " rows");
+		}
+		catch (RuntimeException e) {
+			if (reserved) {
+				this.idCacheReservations.decrementAndGet();
+			}
+			throw e;
+		}
 		if (messages.size() > 0) {
 
 			final Message<?> message = messages.get(0);
 			final String messageId = message.getHeaders().getId().toString();
 
-			if (this.usingIdCache) {
-				this.idCacheWriteLock.lock();
-				try {
-					boolean added = this.idCache.add(messageId);
-
-					if (logger.isDebugEnabled()) {
-						logger.debug(String.format("Polled message with id '%s' added: '%s'.", messageId, added));
-					}
+			if (reserved) {
+				boolean added = this.idCache.add(messageId);
+				if (!added) {
+					this.idCacheReservations.decrementAndGet();
 				}
-				finally {
-					this.idCacheWriteLock.unlock();
+
+				if (logger.isDebugEnabled()) {
+					logger.debug(String.format("Polled message with id '%s' added: '%s'.", messageId, added));
 				}
 			}
 
 			return message;
 		}
+		if (reserved) {
+			this.idCacheReservations.decrementAndGet();
+		}
 		return null;
 	}
 
+	private String getSkipLockedQuery() {
+		return this.priorityEnabled
+				? this.channelMessageStoreQueryProvider.getPriorityPollFromGroupBatchQuery()
+				: this.channelMessageStoreQueryProvider.getPollFromGroupBatchQuery();
+	}
+
+	private String getPollFromGroupQuery() {
+		if (this.priorityEnabled) {
+			return getQuery(this.channelMessageStoreQueryProvider.getPriorityPollFromGroupQuery());
+		}
+		else {
+			return getQuery(this.channelMessageStoreQueryProvider.getPollFromGroupQuery());
+		}
+	}
+
 	private boolean doRemoveMessageFromGroup(Object groupId, Message<?> messageToRemove) {
 		final UUID id = messageToRemove.getHeaders().getId();
 
@@ -610,12 +782,8 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 		if (logger.isDebugEnabled()) {
 			logger.debug("Removing Message Id: " + messageId);
 		}
-		this.idCacheWriteLock.lock();
-		try {
-			this.idCache.remove(messageId);
-		}
-		finally {
-			this.idCacheWriteLock.unlock();
+		if (this.idCache.remove(messageId)) {
+			this.idCacheReservations.decrementAndGet();
 		}
 	}
 
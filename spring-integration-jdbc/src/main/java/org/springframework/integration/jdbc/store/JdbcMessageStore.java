@@ -40,6 +40,7 @@ import org.springframework.core.serializer.Serializer;
 import org.springframework.core.serializer.support.SerializingConverter;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.integration.store.AbstractMessageGroupStore;
+import org.springframework.integration.store.CompactMessageSerializer;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageMetadata;
 import org.springframework.integration.store.MessageStore;
@@ -191,6 +192,8 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	private volatile WhiteListDeserializingConverter deserializer;
 
+	private volatile CompactMessageSerializer<?> compactDeserializer;
+
 	private volatile SerializingConverter serializer;
 
 	private volatile LobHandler lobHandler = new DefaultLobHandler();
@@ -266,17 +269,24 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public void setDeserializer(Deserializer<? extends Message<?>> deserializer) {
 		this.deserializer = new WhiteListDeserializingConverter((Deserializer) deserializer);
+		this.compactDeserializer = deserializer instanceof CompactMessageSerializer
+				? (CompactMessageSerializer<?>) deserializer
+				: null;
 	}
 
 	/**
 	 * Add patterns for packages/classes that are allowed to be deserialized. A class can
 	 * be fully qualified or a wildcard '*' is allowed at the beginning or end of the
-	 * class name. Examples: {@code com.foo.*}, {@code *.MyClass}.
+	 * class name. Examples: {@code com.foo.*}, {@code *.MyClass}. The patterns are also
+	 * added to a {@link CompactMessageSerializer} deserializer.
 	 * @param patterns the patterns.
 	 * @since 4.2.13
 	 */
 	public void addWhiteListPatterns(String... patterns) {
 		this.deserializer.addWhiteListPatterns(patterns);
+		if (this.compactDeserializer != null) {
+			this.compactDeserializer.addWhiteListPatterns(patterns);
+		}
 	}
 
 	@Override
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ package org.springframework.integration.jdbc.store.channel;
 /**
  * @author Gunnar Hillert
  * @author Artem Bilan
+ * @author Gary Russell
  * @since 2.2
  */
 public abstract class AbstractChannelMessageStoreQueryProvider implements ChannelMessageStoreQueryProvider {
@@ -49,4 +50,9 @@ public abstract class AbstractChannelMessageStoreQueryProvider implements Channe
 		return "DELETE from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=? and REGION=?";
 	}
 
+	public String getDeleteMessagesQuery() {
+		return "DELETE from %PREFIX%CHANNEL_MESSAGE where MESSAGE_ID in (:message_ids) "
+				+ "and GROUP_KEY=:group_key and REGION=:region";
+	}
+
 }
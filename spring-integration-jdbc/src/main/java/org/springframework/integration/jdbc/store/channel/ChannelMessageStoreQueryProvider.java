@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -103,4 +103,34 @@ public interface ChannelMessageStoreQueryProvider {
 	 */
 	String getDeleteMessageGroupQuery();
 
+	/**
+	 * Get the query used to retrieve up to {@code :max_rows} of the oldest messages
+	 * for a channel, skipping rows locked by other transactions
+	 * (e.g. {@code FOR UPDATE SKIP LOCKED}).
+	 * @return Sql Query, or null if batch polling is not supported.
+	 * @since 5.0
+	 */
+	default String getPollFromGroupBatchQuery() {
+		return null;
+	}
+
+	/**
+	 * Get the query used to retrieve up to {@code :max_rows} of the oldest messages
+	 * by priority for a channel, skipping rows locked by other transactions.
+	 * @return Sql Query, or null if batch polling is not supported.
+	 * @since 5.0
+	 */
+	default String getPriorityPollFromGroupBatchQuery() {
+		return null;
+	}
+
+	/**
+	 * Query to delete the messages with the provided {@code :message_ids} from a channel.
+	 * @return Sql Query, or null if not supported.
+	 * @since 5.0
+	 */
+	default String getDeleteMessagesQuery() {
+		return null;
+	}
+
 }
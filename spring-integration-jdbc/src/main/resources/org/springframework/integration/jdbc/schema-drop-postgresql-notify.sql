@@ -0,0 +1,2 @@
+DROP TRIGGER INT_CHANNEL_MESSAGE_NOTIFY_TRG ON INT_CHANNEL_MESSAGE ;
+DROP FUNCTION INT_CHANNEL_MESSAGE_NOTIFY_FCT() ;
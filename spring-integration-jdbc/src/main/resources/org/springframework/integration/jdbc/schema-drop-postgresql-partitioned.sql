@@ -0,0 +1,2 @@
+DROP TABLE INT_CHANNEL_MESSAGE ;
+DROP SEQUENCE INT_MESSAGE_SEQ ;
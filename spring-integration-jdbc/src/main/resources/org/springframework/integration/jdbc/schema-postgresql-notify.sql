@@ -0,0 +1,24 @@
+-- Notifies PostgresChannelMessageTableSubscriber listeners of INT_CHANNEL_MESSAGE inserts.
+-- Statements are separated by '^^^ END OF SCRIPT ^^^' because the function body contains semicolons;
+-- use that separator when running this script with Spring's ScriptUtils or ResourceDatabasePopulator.
+-- The script assumes the default 'INT_' table prefix. For another prefix (e.g. 'MY_'), copy the script and
+-- replace each 'INT_' with the prefix, and the 'int_channel_message_notify' channel with the lower case prefix
+-- followed by 'channel_message_notify' (e.g. 'my_channel_message_notify'); that is the channel that the
+-- PostgresChannelMessageTableSubscriber created with the same table prefix listens on.
+
+CREATE OR REPLACE FUNCTION INT_CHANNEL_MESSAGE_NOTIFY_FCT()
+RETURNS TRIGGER AS
+$BODY$
+BEGIN
+	PERFORM pg_notify('int_channel_message_notify', NEW.REGION || ' ' || NEW.GROUP_KEY);
+	RETURN NEW;
+END;
+$BODY$
+LANGUAGE PLPGSQL
+^^^ END OF SCRIPT ^^^
+
+CREATE TRIGGER INT_CHANNEL_MESSAGE_NOTIFY_TRG
+AFTER INSERT ON INT_CHANNEL_MESSAGE
+FOR EACH ROW
+EXECUTE PROCEDURE INT_CHANNEL_MESSAGE_NOTIFY_FCT()
+^^^ END OF SCRIPT ^^^
@@ -0,0 +1,31 @@
+-- Hash-partitioned (by GROUP_KEY) INT_CHANNEL_MESSAGE table for the JdbcChannelMessageStore; requires PostgreSQL 11 or later.
+-- Use instead of the INT_CHANNEL_MESSAGE table (and its indexes) from schema-postgresql.sql; the other tables are unchanged.
+-- Each message group (channel) lives in one partition, so inserts and deletes are spread over several smaller tables
+-- and indexes that are vacuumed independently. Change the number of partitions (MODULUS) according to the number of groups.
+-- This spreads the load of different groups only: all the messages of one group are in the same partition, so it does
+-- not relieve the contention of a single hot channel, whose producers and consumers still share one partition and index.
+
+CREATE SEQUENCE IF NOT EXISTS INT_MESSAGE_SEQ START WITH 1 INCREMENT BY 1 NO CYCLE;
+
+CREATE TABLE INT_CHANNEL_MESSAGE (
+	MESSAGE_ID CHAR(36) NOT NULL,
+	GROUP_KEY CHAR(36) NOT NULL,
+	CREATED_DATE BIGINT NOT NULL,
+	MESSAGE_PRIORITY BIGINT,
+	MESSAGE_SEQUENCE BIGINT NOT NULL DEFAULT nextval('INT_MESSAGE_SEQ'),
+	MESSAGE_BYTES BYTEA,
+	REGION VARCHAR(100) NOT NULL,
+	constraint INT_CHANNEL_MESSAGE_PK primary key (GROUP_KEY, MESSAGE_ID, REGION)
+) PARTITION BY HASH (GROUP_KEY);
+
+CREATE TABLE INT_CHANNEL_MESSAGE_P0 PARTITION OF INT_CHANNEL_MESSAGE FOR VALUES WITH (MODULUS 8, REMAINDER 0);
+CREATE TABLE INT_CHANNEL_MESSAGE_P1 PARTITION OF INT_CHANNEL_MESSAGE FOR VALUES WITH (MODULUS 8, REMAINDER 1);
+CREATE TABLE INT_CHANNEL_MESSAGE_P2 PARTITION OF INT_CHANNEL_MESSAGE FOR VALUES WITH (MODULUS 8, REMAINDER 2);
+CREATE TABLE INT_CHANNEL_MESSAGE_P3 PARTITION OF INT_CHANNEL_MESSAGE FOR VALUES WITH (MODULUS 8, REMAINDER 3);
+CREATE TABLE INT_CHANNEL_MESSAGE_P4 PARTITION OF INT_CHANNEL_MESSAGE FOR VALUES WITH (MODULUS 8, REMAINDER 4);
+CREATE TABLE INT_CHANNEL_MESSAGE_P5 PARTITION OF INT_CHANNEL_MESSAGE FOR VALUES WITH (MODULUS 8, REMAINDER 5);
+CREATE TABLE INT_CHANNEL_MESSAGE_P6 PARTITION OF INT_CHANNEL_MESSAGE FOR VALUES WITH (MODULUS 8, REMAINDER 6);
+CREATE TABLE INT_CHANNEL_MESSAGE_P7 PARTITION OF INT_CHANNEL_MESSAGE FOR VALUES WITH (MODULUS 8, REMAINDER 7);
+
+CREATE INDEX INT_CHANNEL_MSG_DATE_IDX ON INT_CHANNEL_MESSAGE (GROUP_KEY, REGION, CREATED_DATE, MESSAGE_SEQUENCE);
+CREATE INDEX INT_CHANNEL_MSG_PRIORITY_IDX ON INT_CHANNEL_MESSAGE (GROUP_KEY, REGION, MESSAGE_PRIORITY DESC NULLS LAST, CREATED_DATE, MESSAGE_SEQUENCE);
@@ -17,7 +17,9 @@
 package org.springframework.integration.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -27,17 +29,22 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.PartialSuccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * @author Dave Syer
  * @author Artem Bilan
+ * @author Gary Russell
  */
 public class JdbcMessageHandlerIntegrationTests {
 
@@ -134,4 +141,76 @@ public class JdbcMessageHandlerIntegrationTests {
 		assertEquals("Wrong name", "foo", map.get("NAME"));
 	}
 
+	@Test
+	public void testBatchInsert() {
+		GenericApplicationContext context = batchContext();
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate,
+				"insert into foos (id, status, name) values (:headers[id], 0, :payload)");
+		handler.setBatchSize(3);
+		handler.setBatchTimeout(60000);
+		handler.setBeanFactory(context);
+		handler.afterPropertiesSet();
+		handler.start();
+		handler.handleMessage(new GenericMessage<>("foo"));
+		handler.handleMessage(new GenericMessage<>("bar"));
+		assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FOOS", Integer.class));
+		handler.handleMessage(new GenericMessage<>("baz"));
+		assertEquals(Integer.valueOf(3), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FOOS", Integer.class));
+		handler.handleMessage(new GenericMessage<>("qux"));
+		handler.stop();
+		assertEquals(Integer.valueOf(4), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FOOS", Integer.class));
+		context.close();
+	}
+
+	@Test
+	public void testBatchInsertTimeout() throws Exception {
+		GenericApplicationContext context = batchContext();
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate,
+				"insert into foos (id, status, name) values (:headers[id], 0, :payload)");
+		handler.setBatchSize(10);
+		handler.setBatchTimeout(100);
+		handler.setBeanFactory(context);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<>("foo"));
+		int n = 0;
+		while (n++ < 100 && jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FOOS", Integer.class) == 0) {
+			Thread.sleep(100);
+		}
+		assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FOOS", Integer.class));
+		context.close();
+	}
+
+	@Test
+	public void testBatchInsertPartialFailure() {
+		GenericApplicationContext context = batchContext();
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate,
+				"insert into foos (id, status, name) values (:headers[id], 0, :payload)");
+		handler.setBatchSize(3);
+		handler.setBatchTimeout(60000);
+		handler.setBeanFactory(context);
+		handler.afterPropertiesSet();
+		Message<String> tooLong = new GenericMessage<>("this name is much too long for the column");
+		handler.handleMessage(new GenericMessage<>("foo"));
+		handler.handleMessage(tooLong);
+		try {
+			handler.handleMessage(new GenericMessage<>("bar"));
+			fail("Expected PartialSuccessException");
+		}
+		catch (PartialSuccessException e) {
+			assertEquals(3, e.getDerivedInput().size());
+			assertFalse(e.getPartialResults().contains(tooLong));
+			assertTrue(e.getPartialResults().size() < 3);
+		}
+		context.close();
+	}
+
+	private static GenericApplicationContext batchContext() {
+		GenericApplicationContext context = new GenericApplicationContext();
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+		context.getBeanFactory().registerSingleton(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, scheduler);
+		context.refresh();
+		return context;
+	}
+
 }
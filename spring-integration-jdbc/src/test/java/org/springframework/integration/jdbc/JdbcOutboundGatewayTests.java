@@ -16,7 +16,10 @@
 
 package org.springframework.integration.jdbc;
 
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
@@ -26,9 +29,16 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  *
@@ -117,4 +127,31 @@ public class JdbcOutboundGatewayTests {
 		}
 	}
 
+	@Test
+	public void testAsyncReplyOnScheduler() {
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("CREATE TABLE ASYNC_GATEWAY (ID INT, NAME VARCHAR(10))");
+		jdbcTemplate.update("INSERT INTO ASYNC_GATEWAY VALUES (1, 'foo')");
+		Scheduler scheduler = Schedulers.newSingle("jdbcGateway");
+		try {
+			JdbcOutboundGateway gateway = new JdbcOutboundGateway(dataSource, null,
+					"SELECT NAME FROM ASYNC_GATEWAY WHERE ID = :payload");
+			gateway.setRowMapper((rs, rowNum) -> rs.getString("NAME") + ":" + Thread.currentThread().getName());
+			gateway.setScheduler(scheduler);
+			QueueChannel replies = new QueueChannel();
+			gateway.setOutputChannel(replies);
+			gateway.setBeanFactory(mock(BeanFactory.class));
+			gateway.afterPropertiesSet();
+
+			gateway.handleMessage(new GenericMessage<>(1));
+			Message<?> reply = replies.receive(10000);
+			assertNotNull(reply);
+			assertThat((String) reply.getPayload(), startsWith("foo:jdbcGateway"));
+		}
+		finally {
+			scheduler.dispose();
+			jdbcTemplate.execute("DROP TABLE ASYNC_GATEWAY");
+		}
+	}
+
 }
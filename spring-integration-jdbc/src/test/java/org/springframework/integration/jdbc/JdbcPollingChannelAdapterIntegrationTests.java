@@ -266,6 +266,106 @@ public class JdbcPollingChannelAdapterIntegrationTests {
 		assertNull("Message received when no rows in table", message);
 	}
 
+	@Test
+	public void testStreamingRowsWithBatchInsertPerRow() {
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(embeddedDatabase,
+				"select * from item order by id");
+		adapter.setStreaming(true);
+		adapter.setFetchSize(2);
+		adapter.setUpdateSql("insert into copy values(:id,10)");
+		adapter.setUpdatePerRow(true);
+		adapter.setRowMapper(new ItemRowMapper());
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		for (int i = 1; i <= 5; i++) {
+			jdbcTemplate.update("insert into item values(?,2)", i);
+		}
+		for (int i = 1; i <= 5; i++) {
+			Message<Object> message = adapter.receive();
+			assertTrue("Wrong payload type", message.getPayload() instanceof Item);
+			assertEquals("Wrong id", i, ((Item) message.getPayload()).getId());
+		}
+		assertNull(adapter.receive());
+		assertEquals(Integer.valueOf(5), jdbcTemplate.queryForObject("select count(*) from copy", Integer.class));
+		adapter.stop();
+	}
+
+	@Test
+	public void testStreamingChunks() {
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(embeddedDatabase,
+				"select * from item order by id");
+		adapter.setStreaming(true);
+		adapter.setChunkSize(2);
+		adapter.setRowMapper(new ItemRowMapper());
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		for (int i = 1; i <= 5; i++) {
+			jdbcTemplate.update("insert into item values(?,2)", i);
+		}
+		assertEquals(2, ((List<?>) adapter.receive().getPayload()).size());
+		assertEquals(2, ((List<?>) adapter.receive().getPayload()).size());
+		List<?> last = (List<?>) adapter.receive().getPayload();
+		assertEquals(1, last.size());
+		assertEquals(5, ((Item) last.get(0)).getId());
+		// end of the polling cycle, then the query is executed again
+		assertNull(adapter.receive());
+		assertEquals(2, ((List<?>) adapter.receive().getPayload()).size());
+		adapter.stop();
+	}
+
+	@Test
+	public void testStreamingCursorLifetime() throws Exception {
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(embeddedDatabase,
+				"select * from item where status = 2 order by id");
+		adapter.setStreaming(true);
+		adapter.setMaxCursorLifetime(100);
+		adapter.setUpdateSql("update item set status = 10 where id = :id");
+		adapter.setUpdatePerRow(true);
+		adapter.setRowMapper(new ItemRowMapper());
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		for (int i = 1; i <= 5; i++) {
+			jdbcTemplate.update("insert into item values(?,2)", i);
+		}
+		assertEquals(1, ((Item) adapter.receive().getPayload()).getId());
+		assertEquals(2, ((Item) adapter.receive().getPayload()).getId());
+		jdbcTemplate.update("insert into item values(0,2)");
+		Thread.sleep(200);
+		// the updates are committed and the query is executed again
+		assertEquals(0, ((Item) adapter.receive().getPayload()).getId());
+		for (int i = 3; i <= 5; i++) {
+			assertEquals(i, ((Item) adapter.receive().getPayload()).getId());
+		}
+		assertNull(adapter.receive());
+		assertEquals(Integer.valueOf(6),
+				jdbcTemplate.queryForObject("select count(*) from item where status = 10", Integer.class));
+		adapter.stop();
+	}
+
+	@Test
+	public void testStreamingCursorLifetimeIgnoredWithoutUpdate() throws Exception {
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(embeddedDatabase,
+				"select * from item order by id");
+		adapter.setStreaming(true);
+		adapter.setMaxCursorLifetime(100);
+		adapter.setRowMapper(new ItemRowMapper());
+		adapter.setBeanFactory(mock(BeanFactory.class));
+		adapter.afterPropertiesSet();
+		for (int i = 1; i <= 5; i++) {
+			jdbcTemplate.update("insert into item values(?,2)", i);
+		}
+		assertEquals(1, ((Item) adapter.receive().getPayload()).getId());
+		assertEquals(2, ((Item) adapter.receive().getPayload()).getId());
+		jdbcTemplate.update("insert into item values(0,2)");
+		Thread.sleep(200);
+		// the cursor is not re-opened, so rows 1 and 2 are not emitted again (and 0 not at all)
+		for (int i = 3; i <= 5; i++) {
+			assertEquals(i, ((Item) adapter.receive().getPayload()).getId());
+		}
+		assertNull(adapter.receive());
+		adapter.stop();
+	}
+
 	private static class Item {
 
 		private int id;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,11 +16,16 @@
 
 package org.springframework.integration.jdbc;
 
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +43,7 @@ import org.springframework.integration.jdbc.storedproc.ProcedureParameter;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlOutParameter;
 import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.core.simple.SimpleJdbcCall;
 import org.springframework.jdbc.core.simple.SimpleJdbcCallOperations;
@@ -433,6 +439,78 @@ public class StoredProcExecutorTests {
 
 	}
 
+	@Test
+	public void testInternalJdbcCallOperationsCacheStatistics() throws Exception {
+		StoredProcExecutor storedProcExecutor = new StoredProcExecutor(mock(DataSource.class), false);
+		storedProcExecutor.setStoredProcedureName("123");
+		storedProcExecutor.setBeanFactory(mock(BeanFactory.class));
+		storedProcExecutor.afterPropertiesSet();
+
+		for (int i = 1; i <= 3; i++) {
+			try {
+				storedProcExecutor.executeStoredProcedure(MessageBuilder.withPayload("test").build());
+			}
+			catch (Exception e) {
+				// no database - only the cache lookup is of interest
+			}
+		}
+
+		Map<String, Object> stats = storedProcExecutor.getJdbcCallOperationsCacheStatisticsAsMap();
+		assertThat(stats.keySet(), containsInAnyOrder("averageLoadPenalty", "evictionCount", "hitCount", "hitRate",
+				"loadCount", "loadExceptionCount", "loadExceptionRate", "loadSuccessCount", "missCount", "missRate",
+				"totalLoadTime"));
+		assertEquals(2L, stats.get("hitCount"));
+		assertEquals(1L, stats.get("missCount"));
+		assertEquals(1L, stats.get("loadCount"));
+		assertEquals(1L, stats.get("loadSuccessCount"));
+		assertEquals(0L, stats.get("loadExceptionCount"));
+		assertEquals(0L, stats.get("evictionCount"));
+		assertEquals(2.0 / 3, (Double) stats.get("hitRate"), 0.001);
+		assertEquals(1.0 / 3, (Double) stats.get("missRate"), 0.001);
+		try {
+			storedProcExecutor.getJdbcCallOperationsCacheStatistics();
+			fail("Expected UnsupportedOperationException");
+		}
+		catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testBatchNotSupportedIsRejectedAtInitialization() throws Exception {
+		StoredProcExecutor storedProcExecutor = new StoredProcExecutor(mock(DataSource.class));
+		storedProcExecutor.setStoredProcedureName("123");
+		storedProcExecutor.setSqlParameters(Collections.singletonList(new SqlOutParameter("out", Types.INTEGER)));
+		storedProcExecutor.setBeanFactory(mock(BeanFactory.class));
+		storedProcExecutor.afterPropertiesSet();
+		StoredProcMessageHandler handler = new StoredProcMessageHandler(storedProcExecutor);
+		handler.setBatchSize(2);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		try {
+			handler.afterPropertiesSet();
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage(), containsString("IN parameters only"));
+		}
+
+		storedProcExecutor = new StoredProcExecutor(mock(DataSource.class));
+		storedProcExecutor.setStoredProcedureName("123");
+		storedProcExecutor.setReturnValueRequired(true);
+		storedProcExecutor.setBeanFactory(mock(BeanFactory.class));
+		storedProcExecutor.afterPropertiesSet();
+		handler = new StoredProcMessageHandler(storedProcExecutor);
+		handler.setBatchSize(2);
+		handler.setBeanFactory(mock(BeanFactory.class));
+		try {
+			handler.afterPropertiesSet();
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage(), containsString("without return value"));
+		}
+	}
+
 	private void mockTheOperationsCache(final StoredProcExecutor storedProcExecutor) {
 		Object cache = TestUtils.getPropertyValue(storedProcExecutor,
 				"guavaCacheWrapper.jdbcCallOperationsCache.localCache");
@@ -16,11 +16,17 @@
 
 package org.springframework.integration.jdbc;
 
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -30,15 +36,26 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.config.ExpressionFactoryBean;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.handler.ReplyRequiredException;
 import org.springframework.integration.jdbc.storedproc.ProcedureParameter;
 import org.springframework.integration.jdbc.storedproc.User;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * @author Gunnar Hillert
@@ -204,4 +221,112 @@ public class StoredProcMessageHandlerDerbyIntegrationTests {
 		assertEquals("Wrong email", "static_email", map.get("EMAIL"));
 	}
 
+	@Test
+	public void testDerbyStoredProcedureBatchInsert() {
+		StoredProcExecutor storedProcExecutor = new StoredProcExecutor(embeddedDatabase);
+		StoredProcMessageHandler messageHandler = new StoredProcMessageHandler(storedProcExecutor);
+
+		storedProcExecutor.setStoredProcedureName("CREATE_USER");
+
+		final List<ProcedureParameter> procedureParameters = new ArrayList<ProcedureParameter>();
+		procedureParameters.add(new ProcedureParameter("USERNAME", null, "payload.username"));
+		procedureParameters.add(new ProcedureParameter("password", null, "payload.password"));
+		procedureParameters.add(new ProcedureParameter("email", "static_email", null));
+
+		storedProcExecutor.setProcedureParameters(procedureParameters);
+		storedProcExecutor.setCompilerMode(SpelCompilerMode.IMMEDIATE);
+		storedProcExecutor.setBeanFactory(mock(BeanFactory.class));
+		storedProcExecutor.afterPropertiesSet();
+
+		GenericApplicationContext context = new GenericApplicationContext();
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+		context.getBeanFactory().registerSingleton(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, scheduler);
+		context.refresh();
+
+		messageHandler.setBatchSize(3);
+		messageHandler.setBatchTimeout(60000);
+		messageHandler.setBeanFactory(context);
+		messageHandler.afterPropertiesSet();
+		messageHandler.start();
+
+		messageHandler.handleMessage(MessageBuilder.withPayload(new User("user1", "pw1", "email")).build());
+		messageHandler.handleMessage(MessageBuilder.withPayload(new User("user2", "pw2", "email")).build());
+		assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM USERS", Integer.class));
+		messageHandler.handleMessage(MessageBuilder.withPayload(new User("user3", "pw3", "email")).build());
+		assertEquals(Integer.valueOf(3), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM USERS", Integer.class));
+		messageHandler.handleMessage(MessageBuilder.withPayload(new User("user4", "pw4", "email")).build());
+		messageHandler.stop();
+		assertEquals(Integer.valueOf(4), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM USERS", Integer.class));
+
+		Map<String, Object> map = jdbcTemplate.queryForMap("SELECT * FROM USERS WHERE USERNAME=?", "user2");
+		assertEquals("Wrong password", "pw2", map.get("PASSWORD"));
+		assertEquals("Wrong email", "static_email", map.get("EMAIL"));
+
+		Map<String, Object> cacheStatistics = storedProcExecutor.getJdbcCallOperationsCacheStatisticsAsMap();
+		assertEquals(1L, ((Number) cacheStatistics.get("hitCount")).longValue());
+		assertEquals(1L, ((Number) cacheStatistics.get("missCount")).longValue());
+		context.close();
+		scheduler.destroy();
+	}
+
+	@Test
+	public void testDerbyStoredProcOutboundGatewayAsync() {
+		StoredProcExecutor storedProcExecutor = new StoredProcExecutor(embeddedDatabase);
+		storedProcExecutor.setStoredProcedureName("CREATE_USER_RETURN_ALL");
+		storedProcExecutor.setReturningResultSetRowMappers(Collections.<String, RowMapper<?>>singletonMap("out",
+				(rs, rowNum) -> rs.getString("USERNAME") + ":" + Thread.currentThread().getName()));
+		storedProcExecutor.setBeanFactory(mock(BeanFactory.class));
+		storedProcExecutor.afterPropertiesSet();
+		StoredProcOutboundGateway gateway = new StoredProcOutboundGateway(storedProcExecutor);
+		gateway.setExpectSingleResult(true);
+		Scheduler scheduler = Schedulers.newSingle("storedProcGateway");
+		gateway.setScheduler(scheduler);
+		QueueChannel replies = new QueueChannel();
+		gateway.setOutputChannel(replies);
+		gateway.setBeanFactory(mock(BeanFactory.class));
+		gateway.afterPropertiesSet();
+		try {
+			gateway.handleMessage(MessageBuilder.withPayload(new User("username", "password", "email")).build());
+			Message<?> reply = replies.receive(10000);
+			assertNotNull(reply);
+			List<?> users = (List<?>) reply.getPayload();
+			assertEquals(1, users.size());
+			assertThat((String) users.get(0), startsWith("username:storedProcGateway"));
+		}
+		finally {
+			scheduler.dispose();
+		}
+	}
+
+	@Test
+	public void testDerbyStoredProcOutboundGatewayAsyncRequiresReply() {
+		StoredProcExecutor storedProcExecutor = new StoredProcExecutor(embeddedDatabase);
+		storedProcExecutor.setStoredProcedureName("CREATE_USER");
+		storedProcExecutor.setBeanFactory(mock(BeanFactory.class));
+		storedProcExecutor.afterPropertiesSet();
+		StoredProcOutboundGateway gateway = new StoredProcOutboundGateway(storedProcExecutor);
+		gateway.setExpectSingleResult(true);
+		Scheduler scheduler = Schedulers.newSingle("storedProcGateway");
+		gateway.setScheduler(scheduler);
+		QueueChannel replies = new QueueChannel();
+		gateway.setOutputChannel(replies);
+		gateway.setBeanFactory(mock(BeanFactory.class));
+		gateway.afterPropertiesSet();
+		QueueChannel errors = new QueueChannel();
+		try {
+			gateway.handleMessage(MessageBuilder.withPayload(new User("username", "password", "email"))
+					.setErrorChannel(errors)
+					.build());
+			Message<?> error = errors.receive(10000);
+			assertNotNull(error);
+			assertThat(error.getPayload(), instanceOf(ReplyRequiredException.class));
+			assertNull(replies.receive(0));
+			assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM USERS", Integer.class));
+		}
+		finally {
+			scheduler.dispose();
+		}
+	}
+
 }
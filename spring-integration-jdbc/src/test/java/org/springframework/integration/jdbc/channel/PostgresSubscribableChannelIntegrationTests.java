@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
+import org.springframework.integration.jdbc.store.channel.PostgresChannelMessageStoreQueryProvider;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * Exercises the {@code schema-postgresql-notify.sql} trigger against a real PostgreSQL
+ * server; skipped unless one is available at the URL given by the
+ * {@code postgres.url} system property (default {@code jdbc:postgresql://localhost/postgres}),
+ * with the {@code postgres.user} and {@code postgres.password} properties.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class PostgresSubscribableChannelIntegrationTests {
+
+	private static final String URL = System.getProperty("postgres.url", "jdbc:postgresql://localhost/postgres");
+
+	private static final String USER = System.getProperty("postgres.user", "postgres");
+
+	private static final String PASSWORD = System.getProperty("postgres.password", "postgres");
+
+	private static DriverManagerDataSource dataSource;
+
+	@BeforeClass
+	public static void setUp() {
+		DriverManager.setLoginTimeout(1);
+		try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD)) {
+			// available
+		}
+		catch (Exception e) {
+			Assume.assumeNoException("PostgreSQL is not available", e);
+		}
+		dataSource = new DriverManagerDataSource(URL, USER, PASSWORD);
+		populate("schema-postgresql.sql", null);
+		populate("schema-postgresql-notify.sql", "^^^ END OF SCRIPT ^^^");
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		if (dataSource != null) {
+			populate("schema-drop-postgresql-notify.sql", null);
+			populate("schema-drop-postgresql.sql", null);
+		}
+	}
+
+	private static void populate(String script, String separator) {
+		ResourceDatabasePopulator populator =
+				new ResourceDatabasePopulator(new ClassPathResource("org/springframework/integration/jdbc/" + script));
+		if (separator != null) {
+			populator.setSeparator(separator);
+		}
+		populator.setContinueOnError(true);
+		populator.execute(dataSource);
+	}
+
+	@Test
+	public void testInsertTriggerNotifiesChannel() throws Exception {
+		JdbcChannelMessageStore store = new JdbcChannelMessageStore(dataSource);
+		store.setChannelMessageStoreQueryProvider(new PostgresChannelMessageStoreQueryProvider());
+		store.afterPropertiesSet();
+		PostgresChannelMessageTableSubscriber subscriber =
+				new PostgresChannelMessageTableSubscriber(() -> DriverManager.getConnection(URL, USER, PASSWORD));
+		// no fallback polling during the test, so only the NOTIFY can deliver the message
+		subscriber.setNotificationTimeout(600000);
+		PostgresSubscribableChannel channel = new PostgresSubscribableChannel(store, "notifyTest", subscriber);
+		channel.setTransactionManager(new DataSourceTransactionManager(dataSource));
+		channel.setBeanFactory(mock(BeanFactory.class));
+		channel.afterPropertiesSet();
+		BlockingQueue<Message<?>> received = new LinkedBlockingQueue<>();
+		channel.subscribe(received::add);
+		subscriber.start();
+		try {
+			// let the subscriber LISTEN before inserting
+			Thread.sleep(1000);
+			channel.send(new GenericMessage<>("foo"));
+			Message<?> message = received.poll(10, TimeUnit.SECONDS);
+			assertNotNull(message);
+			assertEquals("foo", message.getPayload());
+		}
+		finally {
+			subscriber.stop();
+		}
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * Uses a mock {@link PGConnection} in place of a PostgreSQL server; see
+ * {@link PostgresSubscribableChannelIntegrationTests} for the trigger.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class PostgresSubscribableChannelTests {
+
+	@Test
+	public void testNotificationWakesSubscription() throws Exception {
+		BlockingQueue<PGNotification[]> notifications = new LinkedBlockingQueue<>();
+		Connection connection = mock(Connection.class, withSettings().extraInterfaces(PGConnection.class));
+		PGConnection pgConnection = (PGConnection) connection;
+		given(connection.unwrap(PGConnection.class)).willReturn(pgConnection);
+		given(connection.createStatement()).willReturn(mock(Statement.class));
+		willAnswer(invocation -> {
+			PGNotification[] next = notifications.poll(invocation.getArgument(0), TimeUnit.MILLISECONDS);
+			return next == null ? new PGNotification[0] : next;
+		}).given(pgConnection).getNotifications(anyInt());
+		willAnswer(invocation -> notifications.add(new PGNotification[0])).given(connection).close();
+
+		PostgresChannelMessageTableSubscriber subscriber = new PostgresChannelMessageTableSubscriber(() -> connection);
+		subscriber.setNotificationTimeout(60000);
+		CountDownLatch initial = new CountDownLatch(1);
+		CountDownLatch notified = new CountDownLatch(2);
+		PostgresChannelMessageTableSubscriber.Subscription subscription =
+				new PostgresChannelMessageTableSubscriber.Subscription() {
+
+					@Override
+					public void notifyUpdate() {
+						initial.countDown();
+						notified.countDown();
+					}
+
+					@Override
+					public String getRegion() {
+						return "DEFAULT";
+					}
+
+					@Override
+					public Object getGroupId() {
+						return "foo";
+					}
+
+				};
+		assertTrue(subscriber.subscribe(subscription));
+		subscriber.start();
+		assertTrue(initial.await(10, TimeUnit.SECONDS));
+		assertEquals(1, notified.getCount());
+
+		notifications.add(new PGNotification[] { notification("DEFAULT " + UUIDConverter.getUUID("bar")) });
+		notifications.add(new PGNotification[] { notification("DEFAULT " + UUIDConverter.getUUID("foo")) });
+		assertTrue(notified.await(10, TimeUnit.SECONDS));
+		subscriber.stop();
+		assertFalse(subscriber.isRunning());
+	}
+
+	@Test
+	public void testChannelDrainsStoreOnNotification() throws Exception {
+		JdbcChannelMessageStore store = mock(JdbcChannelMessageStore.class);
+		given(store.getRegion()).willReturn("DEFAULT");
+		Message<?> message = new GenericMessage<>("foo");
+		given(store.pollMessageFromGroup("channel")).willReturn(message, null);
+		PostgresChannelMessageTableSubscriber subscriber =
+				new PostgresChannelMessageTableSubscriber(() -> mock(Connection.class));
+		PostgresSubscribableChannel channel = new PostgresSubscribableChannel(store, "channel", subscriber);
+		channel.setBeanFactory(mock(BeanFactory.class));
+		channel.afterPropertiesSet();
+
+		BlockingQueue<Message<?>> received = new LinkedBlockingQueue<>();
+		channel.subscribe(received::add);
+		Message<?> receivedMessage = received.poll(10, TimeUnit.SECONDS);
+		assertNotNull(receivedMessage);
+		assertEquals("foo", receivedMessage.getPayload());
+
+		channel.send(new GenericMessage<>("bar"));
+		verify(store).addMessageToGroup(eq("channel"), any(Message.class));
+	}
+
+	@Test
+	public void testFailedDispatchBacksOff() throws Exception {
+		JdbcChannelMessageStore store = mock(JdbcChannelMessageStore.class);
+		given(store.getRegion()).willReturn("DEFAULT");
+		Message<?> message = new GenericMessage<>("foo");
+		given(store.pollMessageFromGroup("channel")).willReturn(message, message, message, null);
+		PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+		PostgresChannelMessageTableSubscriber subscriber =
+				new PostgresChannelMessageTableSubscriber(() -> mock(Connection.class));
+		PostgresSubscribableChannel channel = new PostgresSubscribableChannel(store, "channel", subscriber);
+		channel.setTransactionManager(transactionManager);
+		channel.setFailureBackOff(new FixedBackOff(100, 2));
+		BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+		channel.setErrorHandler(errors::add);
+		channel.setBeanFactory(mock(BeanFactory.class));
+		channel.afterPropertiesSet();
+
+		AtomicInteger attempts = new AtomicInteger();
+		long start = System.currentTimeMillis();
+		channel.subscribe(m -> {
+			attempts.incrementAndGet();
+			throw new MessagingException(m, "test");
+		});
+		for (int i = 0; i < 3; i++) {
+			assertNotNull(errors.poll(10, TimeUnit.SECONDS));
+		}
+		assertTrue(System.currentTimeMillis() - start >= 200);
+		assertEquals(3, attempts.get());
+		// the first two attempts are rolled back, the third is discarded (committed)
+		verify(transactionManager, times(2)).rollback(any());
+		// and draining continues
+		verify(store, timeout(10000).times(4)).pollMessageFromGroup("channel");
+	}
+
+	@Test
+	public void testFailedDispatchWithoutTransactionKeepsDraining() throws Exception {
+		JdbcChannelMessageStore store = mock(JdbcChannelMessageStore.class);
+		given(store.getRegion()).willReturn("DEFAULT");
+		given(store.pollMessageFromGroup("channel"))
+				.willReturn(new GenericMessage<>("foo"), new GenericMessage<>("bar"), null);
+		PostgresChannelMessageTableSubscriber subscriber =
+				new PostgresChannelMessageTableSubscriber(() -> mock(Connection.class));
+		PostgresSubscribableChannel channel = new PostgresSubscribableChannel(store, "channel", subscriber);
+		channel.setFailureBackOff(new FixedBackOff(100, FixedBackOff.UNLIMITED_ATTEMPTS));
+		BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+		channel.setErrorHandler(errors::add);
+		channel.setBeanFactory(mock(BeanFactory.class));
+		channel.afterPropertiesSet();
+
+		BlockingQueue<Message<?>> received = new LinkedBlockingQueue<>();
+		long start = System.currentTimeMillis();
+		channel.subscribe(m -> {
+			if ("foo".equals(m.getPayload())) {
+				throw new MessagingException(m, "test");
+			}
+			received.add(m);
+		});
+		assertNotNull(errors.poll(10, TimeUnit.SECONDS));
+		Message<?> next = received.poll(10, TimeUnit.SECONDS);
+		assertNotNull(next);
+		assertEquals("bar", next.getPayload());
+		assertTrue(System.currentTimeMillis() - start >= 100);
+		verify(store, timeout(10000).times(3)).pollMessageFromGroup("channel");
+	}
+
+	private static PGNotification notification(String parameter) {
+		PGNotification notification = mock(PGNotification.class);
+		given(notification.getParameter()).willReturn(parameter);
+		return notification;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 the original author or authors.
+ * Copyright 2016-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,7 +24,14 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
@@ -33,18 +40,24 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 
+import javax.sql.DataSource;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 /**
  * @author Dave Syer
+ * @author Gary Russell
+ *
  * @since 4.3
  */
 @ContextConfiguration
@@ -58,6 +71,9 @@ public class JdbcLockRegistryTests {
 	@Autowired
 	private LockRepository client;
 
+	@Autowired
+	private DataSource dataSource;
+
 	@Before
 	public void clear() {
 		this.registry.expireUnusedOlderThan(0);
@@ -130,6 +146,117 @@ public class JdbcLockRegistryTests {
 		}
 	}
 
+	@Test
+	public void testReentrantLockNoRepositoryCalls() throws Exception {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		JdbcLockRegistry registry = new JdbcLockRegistry(this.client);
+		registry.setTaskScheduler(scheduler);
+		registry.setRenewalInterval(5000);
+		registry.afterPropertiesSet();
+		try {
+			Lock lock = registry.obtain("foo");
+			long calls = registry.getRepositoryCallCount();
+			long operations = registry.getLockOperationCount();
+			lock.lock();
+			try {
+				lock.lock();
+				assertTrue(lock.tryLock());
+				lock.unlock();
+				lock.unlock();
+			}
+			finally {
+				lock.unlock();
+			}
+			assertEquals(calls + 2, registry.getRepositoryCallCount());
+			assertEquals(operations + 6, registry.getLockOperationCount());
+		}
+		finally {
+			registry.destroy();
+			scheduler.destroy();
+		}
+	}
+
+	@Test
+	public void testReentrantLockRefreshesWithoutRenewal() throws Exception {
+		Lock lock = this.registry.obtain("foo");
+		long calls = this.registry.getRepositoryCallCount();
+		lock.lock();
+		try {
+			lock.lock();
+			assertTrue(lock.tryLock());
+			lock.unlock();
+			lock.unlock();
+		}
+		finally {
+			lock.unlock();
+		}
+		// acquire, refresh twice, delete
+		assertEquals(calls + 4, this.registry.getRepositoryCallCount());
+	}
+
+	@Test
+	public void testRenewalIntervalMustBeLessThanTimeToLive() {
+		JdbcLockRegistry registry = new JdbcLockRegistry(this.client);
+		registry.setTaskScheduler(new ThreadPoolTaskScheduler());
+		registry.setRenewalInterval(DefaultLockRepository.DEFAULT_TTL);
+		try {
+			registry.afterPropertiesSet();
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), containsString("must be less than the repository's 'timeToLive'"));
+		}
+	}
+
+	@Test
+	public void testDefaultRenewDoesNotRecreateLocks() {
+		LockRepository repository = mock(LockRepository.class);
+		given(repository.renew(any())).willCallRealMethod();
+		given(repository.isAcquired("foo")).willReturn(true);
+		given(repository.acquire("foo")).willReturn(true);
+		assertEquals(1, repository.renew(Arrays.asList("foo", "bar")));
+		verify(repository, never()).acquire("bar");
+	}
+
+	@Test
+	public void testBatchedRenewalAndExpirySweep() throws Exception {
+		DefaultLockRepository repository = new DefaultLockRepository(this.dataSource, "client1");
+		repository.setTimeToLive(500);
+		repository.setDeleteExpiredOnAcquire(false);
+		repository.afterPropertiesSet();
+		DefaultLockRepository other = new DefaultLockRepository(this.dataSource, "client2");
+		other.setTimeToLive(500);
+		other.setDeleteExpiredOnAcquire(false);
+		other.afterPropertiesSet();
+		JdbcLockRegistry registry = new JdbcLockRegistry(repository);
+		String foo = UUIDConverter.getUUID("foo").toString();
+		String bar = UUIDConverter.getUUID("bar").toString();
+		Lock lock1 = registry.obtain("foo");
+		Lock lock2 = registry.obtain("bar");
+		lock1.lock();
+		lock2.lock();
+		try {
+			Thread.sleep(300);
+			long calls = registry.getRepositoryCallCount();
+			registry.renewLocks();
+			assertEquals(calls + 2, registry.getRepositoryCallCount());
+			Thread.sleep(300);
+			assertTrue(repository.isAcquired(foo));
+			assertTrue(repository.isAcquired(bar));
+			Thread.sleep(300);
+			assertFalse(repository.isAcquired(foo));
+			assertFalse(other.acquire(foo));
+			assertTrue(other.deleteExpired() >= 2);
+			assertTrue(other.acquire(foo));
+		}
+		finally {
+			lock2.unlock();
+			lock1.unlock();
+			other.close();
+		}
+	}
+
 	@Test
 	public void testTwoLocks() throws Exception {
 		for (int i = 0; i < 10; i++) {
@@ -16,8 +16,15 @@
 
 package org.springframework.integration.jdbc.metadata;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.sql.DataSource;
 
@@ -25,13 +32,17 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
  * @author Bojan Vukasovic
+ * @author Gary Russell
+ *
  * @since 5.0
  */
 @ContextConfiguration
@@ -106,4 +117,82 @@ public class JdbcMetadataStoreTests {
 		assertEquals("bar", bar);
 	}
 
+	@Test
+	public void onlyAbsentKeysAreInsertedOnPutAllIfAbsent() {
+		metadataStore.put("foo", "bar");
+		Map<String, String> entries = new LinkedHashMap<>();
+		entries.put("foo", "baz");
+		entries.put("qux", "quux");
+		Map<String, String> existing = metadataStore.putAllIfAbsent(entries);
+		assertEquals(Collections.singletonMap("foo", "bar"), existing);
+		assertEquals("bar", metadataStore.get("foo"));
+		assertEquals("quux", metadataStore.get("qux"));
+	}
+
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void cachedValuesAreUsedUntilInvalidated() throws Exception {
+		JdbcMetadataStore cachingStore = new JdbcMetadataStore(dataSource);
+		cachingStore.setCacheSize(1);
+		cachingStore.afterPropertiesSet();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		try {
+			cachingStore.put("cached", "bar");
+			jdbcTemplate.update("UPDATE INT_METADATA_STORE SET METADATA_VALUE='baz' WHERE METADATA_KEY='cached'");
+			assertEquals("bar", cachingStore.get("cached"));
+			cachingStore.clearCache();
+			assertEquals("baz", cachingStore.get("cached"));
+			cachingStore.put("evictor", "bar");
+			jdbcTemplate.update("UPDATE INT_METADATA_STORE SET METADATA_VALUE='qux' WHERE METADATA_KEY='cached'");
+			assertEquals("qux", cachingStore.get("cached"));
+		}
+		finally {
+			cachingStore.remove("cached");
+			cachingStore.remove("evictor");
+		}
+		assertNull(cachingStore.get("cached"));
+	}
+
+	@Test
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void conditionalOperationsBypassCache() throws Exception {
+		JdbcMetadataStore cachingStore = new JdbcMetadataStore(dataSource);
+		cachingStore.setCacheSize(10);
+		cachingStore.afterPropertiesSet();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		try {
+			cachingStore.put("cached", "bar");
+			jdbcTemplate.update("UPDATE INT_METADATA_STORE SET METADATA_VALUE='baz' WHERE METADATA_KEY='cached'");
+			assertEquals("baz", cachingStore.putIfAbsent("cached", "qux"));
+			jdbcTemplate.update("DELETE FROM INT_METADATA_STORE WHERE METADATA_KEY='cached'");
+			assertNull(cachingStore.putIfAbsent("cached", "qux"));
+			jdbcTemplate.update("DELETE FROM INT_METADATA_STORE WHERE METADATA_KEY='cached'");
+			assertEquals(Collections.emptyMap(),
+					cachingStore.putAllIfAbsent(Collections.singletonMap("cached", "bar")));
+			assertEquals("bar", cachingStore.get("cached"));
+		}
+		finally {
+			cachingStore.remove("cached");
+		}
+	}
+
+	@Test
+	public void invalidCacheSettings() {
+		JdbcMetadataStore cachingStore = new JdbcMetadataStore(dataSource);
+		try {
+			cachingStore.setCacheSize(-1);
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), containsString("'cacheSize'"));
+		}
+		try {
+			cachingStore.setCacheTimeToLive(0);
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), containsString("'cacheTimeToLive'"));
+		}
+	}
+
 }
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertNull;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
 
 import javax.sql.DataSource;
 
@@ -133,6 +134,29 @@ public abstract class AbstractJdbcChannelMessageStoreTests {
 		assertEquals(message.getHeaders().getId(), messageFromDb.getHeaders().getId());
 	}
 
+	@Test
+	public void testPollMessages() {
+		Message<String> message1 = MessageBuilder.withPayload("Cartman").build();
+		Message<String> message2 = MessageBuilder.withPayload("Kenny").build();
+		Message<String> message3 = MessageBuilder.withPayload("Kyle").build();
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, message1);
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, message2);
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, message3);
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		List<Message<?>> messages = transactionTemplate.execute(status ->
+				messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 2));
+		assertEquals(2, messages.size());
+		assertEquals(message1.getHeaders().getId(), messages.get(0).getHeaders().getId());
+		assertEquals(message2.getHeaders().getId(), messages.get(1).getHeaders().getId());
+		assertEquals(1, messageStore.messageGroupSize(TEST_MESSAGE_GROUP));
+
+		messages = transactionTemplate.execute(status -> messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 2));
+		assertEquals(1, messages.size());
+		assertEquals(message3.getHeaders().getId(), messages.get(0).getHeaders().getId());
+		assertEquals(0, messageStore.messageGroupSize(TEST_MESSAGE_GROUP));
+	}
+
 	private ChannelMessageStorePreparedStatementSetter getMessageGroupPreparedStatementSetter() {
 		return new ChannelMessageStorePreparedStatementSetter() {
 
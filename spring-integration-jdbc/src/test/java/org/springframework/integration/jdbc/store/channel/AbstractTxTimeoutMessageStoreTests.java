@@ -18,12 +18,15 @@ package org.springframework.integration.jdbc.store.channel;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
@@ -46,6 +49,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
 import org.springframework.integration.util.UUIDConverter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.messaging.Message;
@@ -64,6 +68,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 /**
  * @author Gunnar Hillert
  * @author Artem Bilan
+ * @author Gary Russell
  */
 @RunWith(SpringJUnit4ClassRunner.class)
 @DirtiesContext // close at the end after class
@@ -196,6 +201,107 @@ public abstract class AbstractTxTimeoutMessageStoreTests {
 		assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
 	}
 
+	@Test
+	public void testIdCacheConcurrentPollers() throws Exception {
+		final String groupId = "testIdCacheConcurrentPollersGroup";
+		final int messageCount = 400;
+		for (int i = 0; i < messageCount; i++) {
+			this.jdbcChannelMessageStore.addMessageToGroup(groupId, new GenericMessage<>("testIdCacheMessage"));
+		}
+
+		final Set<Object> polled = ConcurrentHashMap.newKeySet();
+		final AtomicInteger duplicates = new AtomicInteger();
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+		final int concurrency = 8;
+		ExecutorService executorService = Executors.newFixedThreadPool(concurrency);
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < concurrency; i++) {
+			executorService.execute(() -> {
+				int empty = 0;
+				while (empty < 10) {
+					Message<?> message = transactionTemplate.execute(status -> {
+						Message<?> polledMessage = this.jdbcChannelMessageStore.pollMessageFromGroup(groupId);
+						if (polledMessage != null) {
+							this.jdbcChannelMessageStore.removeFromIdCache(polledMessage.getHeaders().getId().toString());
+						}
+						return polledMessage;
+					});
+					if (message == null) {
+						empty++;
+					}
+					else if (!polled.add(message.getHeaders().getId())) {
+						duplicates.incrementAndGet();
+					}
+				}
+			});
+		}
+		executorService.shutdown();
+		assertTrue(executorService.awaitTermination(60, TimeUnit.SECONDS));
+		log.info(String.format("%d pollers drained %d messages in %dms", concurrency, polled.size(),
+				System.currentTimeMillis() - start));
+		assertEquals(messageCount, polled.size());
+		assertEquals(0, duplicates.get());
+		assertEquals(0, this.jdbcChannelMessageStore.getSizeOfIdCache());
+	}
+
+	@Test
+	public void testIdCacheMaxSize() {
+		JdbcChannelMessageStore store = new JdbcChannelMessageStore(this.dataSource);
+		store.setChannelMessageStoreQueryProvider(
+				TestUtils.getPropertyValue(this.jdbcChannelMessageStore, "channelMessageStoreQueryProvider",
+						ChannelMessageStoreQueryProvider.class));
+		store.setRegion("testIdCacheMaxSize");
+		store.setUsingIdCache(true);
+		store.setIdCacheMaxSize(1);
+		try {
+			store.afterPropertiesSet();
+		}
+		catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		String groupId = "testIdCacheMaxSizeGroup";
+		store.addMessageToGroup(groupId, new GenericMessage<>("foo"));
+		store.addMessageToGroup(groupId, new GenericMessage<>("bar"));
+		Message<?> message = store.pollMessageFromGroup(groupId);
+		assertNotNull(message);
+		assertEquals(1, store.getSizeOfIdCache());
+		assertNull(store.pollMessageFromGroup(groupId));
+		store.removeFromIdCache(message.getHeaders().getId().toString());
+		assertEquals(0, store.getSizeOfIdCache());
+		message = store.pollMessageFromGroup(groupId);
+		assertNotNull(message);
+		assertEquals(1, store.getSizeOfIdCache());
+		store.removeFromIdCache(message.getHeaders().getId().toString());
+		store.removeMessageGroup(groupId);
+	}
+
+	@Test
+	public void testIdCacheMaxSizeConcurrentPollers() throws Exception {
+		JdbcChannelMessageStore store = new JdbcChannelMessageStore(this.dataSource);
+		store.setChannelMessageStoreQueryProvider(
+				TestUtils.getPropertyValue(this.jdbcChannelMessageStore, "channelMessageStoreQueryProvider",
+						ChannelMessageStoreQueryProvider.class));
+		store.setRegion("testIdCacheMaxSizeConcurrent");
+		store.setUsingIdCache(true);
+		store.setIdCacheMaxSize(2);
+		store.afterPropertiesSet();
+		String groupId = "testIdCacheMaxSizeConcurrentGroup";
+		for (int i = 0; i < 10; i++) {
+			store.addMessageToGroup(groupId, new GenericMessage<>("foo" + i));
+		}
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+		ExecutorService executorService = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 8; i++) {
+			executorService.execute(() -> transactionTemplate.execute(status -> store.pollMessageFromGroup(groupId)));
+		}
+		executorService.shutdown();
+		assertTrue(executorService.awaitTermination(30, TimeUnit.SECONDS));
+		// ids are never removed, so no more than the limit can be polled
+		assertThat(store.getSizeOfIdCache(), Matchers.lessThanOrEqualTo(2));
+		assertThat(store.getSizeOfIdCache(), Matchers.greaterThan(0));
+		store.removeMessageGroup(groupId);
+	}
+
 	@Test
 	public void testInt3181ConcurrentPolling() throws InterruptedException {
 		for (int i = 0; i < 10; i++) {
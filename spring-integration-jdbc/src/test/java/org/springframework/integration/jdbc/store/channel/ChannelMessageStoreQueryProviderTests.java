@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.store.channel;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class ChannelMessageStoreQueryProviderTests {
+
+	private static final String DELETE_MESSAGES = "DELETE from %PREFIX%CHANNEL_MESSAGE where MESSAGE_ID in (:message_ids) "
+			+ "and GROUP_KEY=:group_key and REGION=:region";
+
+	@Test
+	public void testPostgresBatchQueries() {
+		ChannelMessageStoreQueryProvider provider = new PostgresChannelMessageStoreQueryProvider();
+		assertThat(provider.getPollFromGroupBatchQuery(),
+				endsWith("order by CREATED_DATE, MESSAGE_SEQUENCE LIMIT :max_rows FOR UPDATE SKIP LOCKED"));
+		assertThat(provider.getPriorityPollFromGroupBatchQuery(),
+				endsWith("order by MESSAGE_PRIORITY DESC NULLS LAST, CREATED_DATE, MESSAGE_SEQUENCE "
+						+ "LIMIT :max_rows FOR UPDATE SKIP LOCKED"));
+		assertEquals(DELETE_MESSAGES, provider.getDeleteMessagesQuery());
+	}
+
+	@Test
+	public void testMySqlBatchQueries() {
+		ChannelMessageStoreQueryProvider provider = new MySqlChannelMessageStoreQueryProvider();
+		assertThat(provider.getPollFromGroupBatchQuery(),
+				endsWith("order by CREATED_DATE, MESSAGE_SEQUENCE LIMIT :max_rows FOR UPDATE SKIP LOCKED"));
+		assertThat(provider.getPriorityPollFromGroupBatchQuery(),
+				endsWith("order by MESSAGE_PRIORITY DESC, CREATED_DATE, MESSAGE_SEQUENCE "
+						+ "LIMIT :max_rows FOR UPDATE SKIP LOCKED"));
+		assertEquals(DELETE_MESSAGES, provider.getDeleteMessagesQuery());
+	}
+
+	@Test
+	public void testOracleBatchQueries() {
+		ChannelMessageStoreQueryProvider provider = new OracleChannelMessageStoreQueryProvider();
+		// Oracle has no LIMIT with FOR UPDATE; the store's template max rows bounds the batch
+		assertThat(provider.getPollFromGroupBatchQuery(),
+				endsWith("order by CREATED_DATE, MESSAGE_SEQUENCE FOR UPDATE SKIP LOCKED"));
+		assertThat(provider.getPollFromGroupBatchQuery(), not(containsString(":max_rows")));
+		assertThat(provider.getPriorityPollFromGroupBatchQuery(),
+				endsWith("order by MESSAGE_PRIORITY DESC NULLS LAST, CREATED_DATE, MESSAGE_SEQUENCE "
+						+ "FOR UPDATE SKIP LOCKED"));
+		assertEquals(DELETE_MESSAGES, provider.getDeleteMessagesQuery());
+	}
+
+	@Test
+	public void testNoBatchQueries() {
+		for (ChannelMessageStoreQueryProvider provider : new ChannelMessageStoreQueryProvider[] {
+				new DerbyChannelMessageStoreQueryProvider(), new H2ChannelMessageStoreQueryProvider(),
+				new HsqlChannelMessageStoreQueryProvider() }) {
+			assertNull(provider.getPollFromGroupBatchQuery());
+			assertNull(provider.getPriorityPollFromGroupBatchQuery());
+		}
+	}
+
+}
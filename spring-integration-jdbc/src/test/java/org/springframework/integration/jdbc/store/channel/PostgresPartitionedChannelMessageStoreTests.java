@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.store.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Exercises {@code schema-postgresql-partitioned.sql} against a real PostgreSQL (11 or
+ * later) server; skipped unless one is available at the URL given by the
+ * {@code postgres.url} system property (default {@code jdbc:postgresql://localhost/postgres}),
+ * with the {@code postgres.user} and {@code postgres.password} properties.
+ *
+ * @author Gary Russell
+ * @since 5.0
+ */
+public class PostgresPartitionedChannelMessageStoreTests {
+
+	private static final String URL = System.getProperty("postgres.url", "jdbc:postgresql://localhost/postgres");
+
+	private static final String USER = System.getProperty("postgres.user", "postgres");
+
+	private static final String PASSWORD = System.getProperty("postgres.password", "postgres");
+
+	private static DriverManagerDataSource dataSource;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		DriverManager.setLoginTimeout(1);
+		int version = 0;
+		try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD)) {
+			version = connection.getMetaData().getDatabaseMajorVersion();
+		}
+		catch (Exception e) {
+			Assume.assumeNoException("PostgreSQL is not available", e);
+		}
+		Assume.assumeTrue("Hash partitioning requires PostgreSQL 11 or later", version >= 11);
+		dataSource = new DriverManagerDataSource(URL, USER, PASSWORD);
+		populate("schema-postgresql-partitioned.sql");
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		if (dataSource != null) {
+			populate("schema-drop-postgresql-partitioned.sql");
+		}
+	}
+
+	private static void populate(String script) {
+		ResourceDatabasePopulator populator =
+				new ResourceDatabasePopulator(new ClassPathResource("org/springframework/integration/jdbc/" + script));
+		populator.setContinueOnError(true);
+		populator.execute(dataSource);
+	}
+
+	@Test
+	public void testRoundTrip() {
+		JdbcChannelMessageStore store = new JdbcChannelMessageStore(dataSource);
+		store.setChannelMessageStoreQueryProvider(new PostgresChannelMessageStoreQueryProvider());
+		store.afterPropertiesSet();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		assertEquals(Integer.valueOf(8), jdbcTemplate.queryForObject(
+				"select count(*) from pg_inherits where inhparent = 'int_channel_message'::regclass", Integer.class));
+
+		store.addMessageToGroup("partitioned", new GenericMessage<>("foo"));
+		store.addMessageToGroup("partitioned", new GenericMessage<>("bar"));
+		store.addMessageToGroup("partitioned", new GenericMessage<>("baz"));
+		store.addMessageToGroup("other", new GenericMessage<>("qux"));
+		assertEquals(3, store.messageGroupSize("partitioned"));
+
+		Message<?> message = store.pollMessageFromGroup("partitioned");
+		assertNotNull(message);
+		assertEquals("foo", message.getPayload());
+
+		List<Message<?>> messages = new TransactionTemplate(new DataSourceTransactionManager(dataSource))
+				.execute(status -> store.pollMessagesFromGroup("partitioned", 5));
+		assertEquals(2, messages.size());
+		assertEquals("bar", messages.get(0).getPayload());
+		assertEquals("baz", messages.get(1).getPayload());
+		assertNull(store.pollMessageFromGroup("partitioned"));
+
+		assertEquals("qux", store.pollMessageFromGroup("other").getPayload());
+	}
+
+}
@@ -34,6 +34,7 @@ import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.gateway.MessagingGatewaySupport;
+import org.springframework.integration.history.MessageHistorySampler;
 import org.springframework.integration.support.DefaultMessageBuilderFactory;
 import org.springframework.integration.support.MessageBuilderFactory;
 import org.springframework.integration.support.management.TrackableComponent;
@@ -147,6 +148,11 @@ public class ChannelPublishingJmsMessageListener
 		this.gatewayDelegate.setShouldTrack(shouldTrack);
 	}
 
+	@Override
+	public void setHistorySampler(MessageHistorySampler historySampler) {
+		this.gatewayDelegate.setHistorySampler(historySampler);
+	}
+
 	@Override
 	public String getComponentName() {
 		return this.gatewayDelegate.getComponentName();